@@ -0,0 +1,41 @@
+package com.whu.hongjing.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 持仓平均成本的交易回放（CustomerHoldingServiceImpl.recalculateAndSaveHoldings 的计算部分），结果以“客户/秒”计。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HoldingCostReplayBenchmark {
+
+    private static final int CUSTOMERS = 1000;
+
+    @Param({SyntheticCustomers.SMALL, SyntheticCustomers.MEDIUM, SyntheticCustomers.LARGE})
+    public String scenario;
+
+    private SyntheticCustomers data;
+    private LocalDateTime now;
+
+    @Setup
+    public void setup() {
+        now = LocalDateTime.of(2025, 7, 14, 10, 30);
+        data = SyntheticCustomers.generate(scenario, CUSTOMERS, 20250714L, now);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CUSTOMERS)
+    public void replay(Blackhole blackhole) {
+        for (int i = 0; i < CUSTOMERS; i++) {
+            blackhole.consume(HoldingCostReplay.replay(data.customers.get(i).getId(), data.transactions.get(i), now));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.whu.hongjing.service;
+
+import com.whu.hongjing.enums.RiskLevelEnum;
+import com.whu.hongjing.pojo.entity.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 基准测试用的内存客户数据：按场景生成不同规模的客户（持仓只数、交易笔数），不需要数据库。
+ * 同一个种子总是生成相同的数据，保证不同版本的测量结果可以直接对比。
+ */
+final class SyntheticCustomers {
+
+    // 场景：轻量客户 / 普通客户 / 重度交易客户
+    static final String SMALL = "small";
+    static final String MEDIUM = "medium";
+    static final String LARGE = "large";
+
+    static final int FUND_COUNT = 500;
+
+    final Map<String, FundInfo> fundInfoMap = new HashMap<>();
+    final List<Customer> customers = new ArrayList<>();
+    final List<RiskAssessment> assessments = new ArrayList<>();
+    // 每个客户按交易时间升序排列的全部交易
+    final List<List<FundTransaction>> transactions = new ArrayList<>();
+    // 每个客户按交易回放得到、并按最新净值计价后的持仓
+    final List<List<CustomerHolding>> holdings = new ArrayList<>();
+
+    private SyntheticCustomers() {
+    }
+
+    /**
+     * @param scenario SMALL / MEDIUM / LARGE
+     * @param customerCount 客户数
+     * @param now 计算标签时的“当前时间”，交易分布在它之前的两年内
+     */
+    static SyntheticCustomers generate(String scenario, int customerCount, long seed, LocalDateTime now) {
+        int maxFunds;
+        int maxTransactions;
+        switch (scenario) {
+            case SMALL: maxFunds = 3; maxTransactions = 10; break;
+            case MEDIUM: maxFunds = 10; maxTransactions = 100; break;
+            case LARGE: maxFunds = 30; maxTransactions = 1000; break;
+            default: throw new IllegalArgumentException("未知的场景: " + scenario);
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        SyntheticCustomers data = new SyntheticCustomers();
+        List<FundInfo> funds = new ArrayList<>(FUND_COUNT);
+        for (int i = 0; i < FUND_COUNT; i++) {
+            FundInfo fund = new FundInfo();
+            fund.setFundCode(String.format("%06d", i));
+            fund.setRiskScore(1 + random.nextInt(5));
+            fund.setNetValue(BigDecimal.valueOf(5000 + random.nextInt(25000), 4));
+            funds.add(fund);
+            data.fundInfoMap.put(fund.getFundCode(), fund);
+        }
+
+        for (int c = 0; c < customerCount; c++) {
+            long customerId = c + 1L;
+            Customer customer = new Customer();
+            customer.setId(customerId);
+            customer.setGender(random.nextBoolean() ? "男" : "女");
+            customer.setOccupation(MockDataSimulator.OCCUPATIONS[random.nextInt(MockDataSimulator.OCCUPATIONS.length)]);
+            customer.setBirthDate(LocalDate.of(1950 + random.nextInt(55), 1 + random.nextInt(12), 1 + random.nextInt(28)));
+            data.customers.add(customer);
+
+            RiskAssessment assessment = new RiskAssessment();
+            assessment.setCustomerId(customerId);
+            assessment.setRiskScore(random.nextInt(101));
+            assessment.setRiskLevel(RiskLevelEnum.getByScore(assessment.getRiskScore()).getLevelName());
+            data.assessments.add(assessment);
+
+            // 先为客户选定几只常买的基金，交易都落在这些基金上
+            List<FundInfo> owned = new ArrayList<>();
+            int fundCount = 1 + random.nextInt(maxFunds);
+            for (int i = 0; i < fundCount; i++) {
+                owned.add(funds.get(random.nextInt(FUND_COUNT)));
+            }
+            int txCount = maxTransactions / 2 + random.nextInt(maxTransactions / 2 + 1);
+            Map<String, BigDecimal> sharesByFund = new HashMap<>();
+            List<FundTransaction> txs = new ArrayList<>(txCount);
+            LocalDateTime time = now.minusDays(730);
+            long stepMinutes = Math.max(1, 730L * 24 * 60 / txCount);
+            for (int i = 0; i < txCount; i++) {
+                time = time.plusMinutes(1 + random.nextLong(stepMinutes));
+                FundInfo fund = owned.get(random.nextInt(owned.size()));
+                BigDecimal price = BigDecimal.valueOf(5000 + random.nextInt(25000), 4);
+                BigDecimal held = sharesByFund.getOrDefault(fund.getFundCode(), BigDecimal.ZERO);
+                FundTransaction tx = new FundTransaction();
+                tx.setCustomerId(customerId);
+                tx.setFundCode(fund.getFundCode());
+                tx.setSharePrice(price);
+                tx.setTransactionTime(time);
+                if (held.signum() > 0 && random.nextInt(4) == 0) {
+                    // 赎回已有份额的一部分
+                    BigDecimal shares = held.multiply(BigDecimal.valueOf(1 + random.nextInt(100), 2)).setScale(2, RoundingMode.DOWN);
+                    tx.setTransactionType("赎回");
+                    tx.setTransactionShares(shares);
+                    tx.setTransactionAmount(shares.multiply(price).setScale(2, RoundingMode.HALF_UP));
+                    sharesByFund.put(fund.getFundCode(), held.subtract(shares));
+                } else {
+                    BigDecimal amount = BigDecimal.valueOf(100_00 + random.nextInt(5_000_000), 2);
+                    BigDecimal shares = amount.divide(price, 2, RoundingMode.DOWN);
+                    tx.setTransactionType("申购");
+                    tx.setTransactionAmount(amount);
+                    tx.setTransactionShares(shares);
+                    sharesByFund.put(fund.getFundCode(), held.add(shares));
+                }
+                txs.add(tx);
+            }
+            data.transactions.add(txs);
+
+            List<CustomerHolding> customerHoldings = HoldingCostReplay.replay(customerId, txs, now);
+            for (CustomerHolding holding : customerHoldings) {
+                holding.setMarketValue(holding.getTotalShares()
+                        .multiply(data.fundInfoMap.get(holding.getFundCode()).getNetValue()).setScale(2, RoundingMode.HALF_UP));
+            }
+            data.holdings.add(customerHoldings);
+        }
+        return data;
+    }
+}
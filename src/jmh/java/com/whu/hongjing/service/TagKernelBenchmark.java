@@ -0,0 +1,92 @@
+package com.whu.hongjing.service;
+
+import com.whu.hongjing.constants.TaggingConstants;
+import com.whu.hongjing.pojo.entity.CustomerHolding;
+import com.whu.hongjing.pojo.entity.FundInfo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 资产标签和实盘风险标签：定点数内核（TagKernel）与原先的 BigDecimal 写法对比，结果以“客户/秒”计。
+ * 两者的内存分配量差异通过 -prof gc 的 gc.alloc.rate.norm 比较（结果一致性由单元测试 TagKernelTest 保证）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TagKernelBenchmark {
+
+    private static final int CUSTOMERS = 1000;
+
+    @Param({SyntheticCustomers.SMALL, SyntheticCustomers.MEDIUM, SyntheticCustomers.LARGE})
+    public String scenario;
+
+    private SyntheticCustomers data;
+
+    @Setup
+    public void setup() {
+        data = SyntheticCustomers.generate(scenario, CUSTOMERS, 20250714L, LocalDateTime.of(2025, 7, 14, 10, 30));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CUSTOMERS)
+    public void fixedPointKernel(Blackhole blackhole) {
+        for (int i = 0; i < CUSTOMERS; i++) {
+            List<CustomerHolding> holdings = data.holdings.get(i);
+            blackhole.consume(TagKernel.assetLabel(TagKernel.totalMarketValueCents(holdings)));
+            blackhole.consume(TagKernel.actualRiskLabel(TagKernel.actualRiskLevel(holdings, data.fundInfoMap)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CUSTOMERS)
+    public void bigDecimalReference(Blackhole blackhole) {
+        for (int i = 0; i < CUSTOMERS; i++) {
+            List<CustomerHolding> holdings = data.holdings.get(i);
+            blackhole.consume(referenceAssetLabel(referenceTotal(holdings)));
+            blackhole.consume(referenceActualRiskLabel(holdings, data.fundInfoMap));
+        }
+    }
+
+    // ---------------- 原先的 BigDecimal 写法，作为对照 ----------------
+
+    private static BigDecimal referenceTotal(List<CustomerHolding> holdings) {
+        return holdings.stream().map(CustomerHolding::getMarketValue).filter(Objects::nonNull).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static String referenceAssetLabel(BigDecimal mValue) {
+        if (mValue.compareTo(TaggingConstants.ASSET_THRESHOLD_HIGH) >= 0) return TaggingConstants.LABEL_ASSET_HIGH;
+        if (mValue.compareTo(TaggingConstants.ASSET_THRESHOLD_LOW) >= 0) return TaggingConstants.LABEL_ASSET_MEDIUM;
+        return TaggingConstants.LABEL_ASSET_LOW;
+    }
+
+    private static String referenceActualRiskLabel(List<CustomerHolding> holdings, Map<String, FundInfo> fundInfoMap) {
+        if (holdings.isEmpty()) return TaggingConstants.LABEL_ACTUAL_RISK_UNKNOWN;
+        BigDecimal totalMarketValue = referenceTotal(holdings);
+        if (totalMarketValue.compareTo(BigDecimal.ZERO) <= 0) return TaggingConstants.LABEL_ACTUAL_RISK_UNKNOWN;
+
+        BigDecimal weightedRiskSum = BigDecimal.ZERO;
+        for (CustomerHolding holding : holdings) {
+            FundInfo fund = fundInfoMap.get(holding.getFundCode());
+            if (fund != null && fund.getRiskScore() != null && holding.getMarketValue() != null) {
+                weightedRiskSum = weightedRiskSum.add(holding.getMarketValue().multiply(new BigDecimal(fund.getRiskScore())));
+            }
+        }
+        double actualRiskScore = weightedRiskSum.divide(totalMarketValue, 2, RoundingMode.HALF_UP).doubleValue();
+        if (actualRiskScore >= TaggingConstants.ACTUAL_RISK_THRESHOLD_AGGRESSIVE) return TaggingConstants.LABEL_ACTUAL_RISK_AGGRESSIVE;
+        if (actualRiskScore >= TaggingConstants.ACTUAL_RISK_THRESHOLD_GROWTH) return TaggingConstants.LABEL_ACTUAL_RISK_GROWTH;
+        if (actualRiskScore >= TaggingConstants.ACTUAL_RISK_THRESHOLD_BALANCED) return TaggingConstants.LABEL_ACTUAL_RISK_BALANCED;
+        if (actualRiskScore >= TaggingConstants.ACTUAL_RISK_THRESHOLD_STEADY) return TaggingConstants.LABEL_ACTUAL_RISK_STEADY;
+        return TaggingConstants.LABEL_ACTUAL_RISK_CONSERVATIVE;
+    }
+}
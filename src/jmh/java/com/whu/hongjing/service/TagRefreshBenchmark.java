@@ -0,0 +1,60 @@
+package com.whu.hongjing.service;
+
+import com.whu.hongjing.pojo.entity.CustomerProfile;
+import com.whu.hongjing.pojo.entity.CustomerTagRelation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 标签刷新的计算部分：交易指标累加（CustomerTradeMetrics）、画像计算和标签生成，即 TagRefreshWorker 在读完数据之后、
+ * 写回数据库之前做的全部工作。结果以“客户/秒”计，配合 -prof gc 可以看到每个客户的内存分配量。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TagRefreshBenchmark {
+
+    private static final int CUSTOMERS = 1000;
+
+    @Param({SyntheticCustomers.SMALL, SyntheticCustomers.MEDIUM, SyntheticCustomers.LARGE})
+    public String scenario;
+
+    private SyntheticCustomers data;
+    private TagRefreshWorker worker;
+    private LocalDateTime now;
+
+    @Setup
+    public void setup() {
+        now = LocalDateTime.of(2025, 7, 14, 10, 30);
+        data = SyntheticCustomers.generate(scenario, CUSTOMERS, 20250714L, now);
+        // 只调用不访问数据库的计算方法，不需要注入任何依赖
+        worker = new TagRefreshWorker();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CUSTOMERS)
+    public void refreshTags(Blackhole blackhole) {
+        for (int i = 0; i < CUSTOMERS; i++) {
+            CustomerTradeMetrics tradeMetrics = CustomerTradeMetrics.of(data.transactions.get(i), now);
+            CustomerProfile profile = worker.calculateProfile(data.customers.get(i), null, data.holdings.get(i), tradeMetrics);
+            List<CustomerTagRelation> tags = worker.generateAllTags(data.customers.get(i), profile, data.assessments.get(i),
+                    tradeMetrics, data.holdings.get(i), data.fundInfoMap);
+            blackhole.consume(tags);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CUSTOMERS)
+    public void tradeMetricsOnly(Blackhole blackhole) {
+        for (int i = 0; i < CUSTOMERS; i++) {
+            blackhole.consume(CustomerTradeMetrics.of(data.transactions.get(i), now));
+        }
+    }
+}
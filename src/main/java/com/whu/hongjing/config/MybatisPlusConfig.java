@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.annotation.DbType; // 导入DbType
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.OptimisticLockerInnerInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor; // 导入分页插件
+import com.whu.hongjing.service.SqlStatementStats;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -25,4 +26,12 @@ public class MybatisPlusConfig {
 
         return interceptor;
     }
-}
\ No newline at end of file
+
+    /**
+     * 按语句ID统计 SQL 耗时、行数和次数，并输出慢 SQL 日志
+     */
+    @Bean
+    public SqlTimingInterceptor sqlTimingInterceptor(SqlStatementStats sqlStatementStats) {
+        return new SqlTimingInterceptor(sqlStatementStats);
+    }
+}
@@ -0,0 +1,54 @@
+package com.whu.hongjing.config;
+
+import com.whu.hongjing.service.HongjingMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.listener.RetryListenerSupport;
+
+/**
+ * 统计所有 @Retryable 方法（如 DailyUpdateWriterService、MockDataWriterService 的事务写入）的失败尝试和重试耗尽次数。
+ * 容器中的 RetryListener 会被 @EnableRetry 自动应用到所有没有单独指定 listeners 的 @Retryable 方法上。
+ */
+@Configuration
+public class RetryMetricsConfig {
+
+    @Bean
+    public RetryListener retryMetricsListener(HongjingMetrics metrics) {
+        return new RetryListenerSupport() {
+            @Override
+            public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+                metrics.countRetryAttempt(methodName(context), throwable);
+            }
+
+            @Override
+            public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+                if (throwable != null) {
+                    metrics.countRetryExhausted(methodName(context));
+                }
+            }
+        };
+    }
+
+    /**
+     * 重试上下文的名称默认是方法的完整签名，如 "public void a.b.DailyUpdateWriterService.save(java.util.List)"，
+     * 只保留 "DailyUpdateWriterService.save" 作为指标标签
+     */
+    private static String methodName(RetryContext context) {
+        Object name = context.getAttribute(RetryContext.NAME);
+        if (name == null) {
+            return "unknown";
+        }
+        String signature = name.toString();
+        int paren = signature.indexOf('(');
+        if (paren >= 0) {
+            signature = signature.substring(0, paren);
+        }
+        signature = signature.substring(signature.lastIndexOf(' ') + 1);
+        int methodDot = signature.lastIndexOf('.');
+        int classDot = methodDot > 0 ? signature.lastIndexOf('.', methodDot - 1) : -1;
+        return signature.substring(classDot + 1);
+    }
+}
@@ -0,0 +1,96 @@
+package com.whu.hongjing.config;
+
+import com.whu.hongjing.service.SqlStatementStats;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.core.Ordered;
+
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 统计每条 MyBatis 语句的执行耗时、行数和次数。
+ * 在 Executor 层计时：排在所有插件的最内层（HIGHEST_PRECEDENCE），因此 MyBatis-Plus 分页插件发出的 COUNT 查询
+ * （语句ID以 _mpCount 结尾）和加了 LIMIT 的分页查询会分别计时。
+ * saveBatch 等批量执行器的写入在 update 时只是加入批次，真正的数据库耗时发生在 flushStatements，
+ * 因此批量写入按 flush 计时，记在 "语句ID[batch]" 名下，每次 flush 计一次，行数为批次中写入的行数。
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "flushStatements", args = {})
+})
+public class SqlTimingInterceptor implements Interceptor, Ordered {
+
+    private final SqlStatementStats sqlStatementStats;
+
+    public SqlTimingInterceptor(SqlStatementStats sqlStatementStats) {
+        this.sqlStatementStats = sqlStatementStats;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if ("flushStatements".equals(invocation.getMethod().getName())) {
+            return interceptFlush(invocation);
+        }
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        Object parameter = invocation.getArgs()[1];
+        long start = System.nanoTime();
+        Object result = invocation.proceed();
+        long elapsed = System.nanoTime() - start;
+
+        if (result instanceof Integer && (Integer) result == BatchExecutor.BATCH_UPDATE_RETURN_VALUE) {
+            // 批量执行器中的一行，只是加入批次，耗时在 flush 时统计
+            return result;
+        }
+        long rows = -1;
+        if (result instanceof Collection) {
+            rows = ((Collection<?>) result).size();
+        } else if (result instanceof Integer) {
+            rows = (Integer) result;
+        }
+        sqlStatementStats.record(statement, statement.getId(), elapsed, rows, parameter);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object interceptFlush(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        Object result = invocation.proceed();
+        long elapsed = System.nanoTime() - start;
+        if (!(result instanceof List) || ((List<?>) result).isEmpty()) {
+            return result;
+        }
+        List<BatchResult> batches = (List<BatchResult>) result;
+        // 一次 flush 可能包含多条不同的语句，耗时按批次平均分摊
+        long share = elapsed / batches.size();
+        for (BatchResult batch : batches) {
+            long rows = 0;
+            for (int count : batch.getUpdateCounts()) {
+                if (count > 0) rows += count;
+                else if (count == Statement.SUCCESS_NO_INFO) rows += 1;
+            }
+            Object firstParameter = batch.getParameterObjects().isEmpty() ? null : batch.getParameterObjects().get(0);
+            sqlStatementStats.record(batch.getMappedStatement(), batch.getMappedStatement().getId() + "[batch]", share, rows, firstParameter);
+        }
+        return result;
+    }
+
+    @Override
+    public int getOrder() {
+        // 数组注入时排在最前，最先被应用为插件，因此处在代理链的最内层
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
@@ -16,7 +16,6 @@ import org.springframework.web.bind.annotation.*;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
@@ -44,7 +43,7 @@ public class AIController {
             ProfitLossVO profitLossVO = customerService.getProfitLossVO(customerId);
             List<CustomerTagRelation> tags = customerTagRelationService.lambdaQuery().eq(CustomerTagRelation::getCustomerId, customerId).list();
             List<CustomerHolding> holdings = customerHoldingService.listByCustomerId(customerId);
-            Map<String, FundInfo> fundInfoMap = fundInfoService.list().stream().collect(Collectors.toMap(FundInfo::getFundCode, Function.identity()));
+            Map<String, FundInfo> fundInfoMap = fundInfoService.getSnapshot().getFundsByCode();
 
             // 2. 计算图表数据 (复用PageController中的逻辑)
             Map<String, BigDecimal> assetAllocationData = calculateAssetAllocation(holdings, fundInfoMap);
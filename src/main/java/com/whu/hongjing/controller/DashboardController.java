@@ -7,11 +7,13 @@ import com.whu.hongjing.pojo.vo.DashboardFilteredResultVO;
 import com.whu.hongjing.pojo.vo.TagVO;
 import com.whu.hongjing.service.CustomerService;
 import com.whu.hongjing.service.CustomerTagRelationService;
+import com.whu.hongjing.service.TagStatsCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -27,9 +29,16 @@ public class DashboardController {
     @Autowired
     private CustomerService customerService;
 
+    @Autowired
+    private TagStatsCache tagStatsCache;
+
     @GetMapping("/all-stats")
     @Operation(summary = "获取所有标签类别的统计数据（用于页面初始化）")
-    public Map<String, List<TagVO>> getAllStats() {
+    public Map<String, List<TagVO>> getAllStats(WebRequest webRequest) {
+        // 两次画像刷新之间标签统计不会变化，浏览器轮询时带上次的 ETag 即可得到 304，无需重新统计和传输
+        if (webRequest.checkNotModified(tagStatsCache.getETag())) {
+            return null;
+        }
         List<TagVO> allTags = customerTagRelationService.getTagStats();
         Map<String, List<TagVO>> groupedTags = allTags.stream().collect(Collectors.groupingBy(TagVO::getTagCategory));
         List<String> categoryOrder = List.of(
@@ -11,8 +11,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 //import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import com.whu.hongjing.service.FundDataImportService;
+import com.whu.hongjing.service.FundNavHistoryService;
+import org.springframework.format.annotation.DateTimeFormat;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 @RestController
 @RequestMapping("/api/fund-info")
@@ -25,6 +33,9 @@ public class FundInfoController {
     @Autowired
     private FundDataImportService fundDataImportService; // 注入新的导入服务
 
+    @Autowired
+    private FundNavHistoryService fundNavHistoryService;
+
 //    @Operation(summary = "新增基金信息")
 //    @PostMapping("/add")
 //    public boolean addFundInfo(@RequestBody @Validated FundInfoDTO dto) {
@@ -77,4 +88,35 @@ public class FundInfoController {
             return new ApiResponseVO(false, "数据导入失败: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "查询某只基金某一天的历史净值")
+    @GetMapping("/{fundCode}/nav")
+    public ApiResponseVO<BigDecimal> getHistoricalNav(@PathVariable String fundCode,
+                                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        BigDecimal nav = fundNavHistoryService.getNav(fundCode, date);
+        return nav != null ? ApiResponseVO.success("查询成功", nav) : ApiResponseVO.error("该基金在 " + date + " 没有净值记录");
+    }
+
+    @Operation(summary = "查询某只基金一段时间的净值走势（默认最近90天）")
+    @GetMapping("/{fundCode}/nav-history")
+    public NavigableMap<LocalDate, BigDecimal> getNavHistory(@PathVariable String fundCode,
+                                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(90);
+        Map<String, NavigableMap<LocalDate, BigDecimal>> series = fundNavHistoryService.getNavSeries(Collections.singletonList(fundCode), start, end);
+        return series.getOrDefault(fundCode, new TreeMap<>());
+    }
+
+    @PostMapping("/nav-history/rebuild-store")
+    @Operation(summary = "【手动触发】从数据库重建本地的净值历史文件")
+    public ApiResponseVO rebuildNavStore() {
+        try {
+            int days = fundNavHistoryService.rebuildStore();
+            return new ApiResponseVO(true, "净值历史文件重建完成！共 " + days + " 天。");
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ApiResponseVO(false, "净值历史文件重建失败: " + e.getMessage());
+        }
+    }
+}
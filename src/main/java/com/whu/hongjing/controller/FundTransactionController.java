@@ -6,6 +6,7 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 //import com.whu.hongjing.pojo.dto.FundTransactionDTO;
 import com.whu.hongjing.pojo.entity.FundTransaction;
 import com.whu.hongjing.service.FundTransactionService;
+import com.whu.hongjing.service.HongjingMetrics;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 //import org.springframework.beans.BeanUtils;
@@ -22,18 +23,20 @@ public class FundTransactionController {
 
     @Autowired
     private FundTransactionService fundTransactionService;
+    @Autowired
+    private HongjingMetrics metrics;
 
 // ================ 以下没有提供前端接口实现 ================
     @Operation(summary = "申购基金")
     @PostMapping("/purchase")
     public FundTransaction purchase(@RequestBody @Validated FundPurchaseDTO dto) {
-        return fundTransactionService.createPurchaseTransaction(dto);
+        return metrics.timeTrade("purchase", () -> fundTransactionService.createPurchaseTransaction(dto));
     }
 
     @Operation(summary = "赎回基金")
     @PostMapping("/redeem")
     public FundTransaction redeem(@RequestBody @Validated FundRedeemDTO dto) {
-        return fundTransactionService.createRedeemTransaction(dto);
+        return metrics.timeTrade("redeem", () -> fundTransactionService.createRedeemTransaction(dto));
     }
 
 // ============ 以下在pagecontroller里优化为了综合根据客户姓名、基金代码、交易类型查询 ============
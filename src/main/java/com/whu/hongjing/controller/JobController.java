@@ -0,0 +1,57 @@
+package com.whu.hongjing.controller;
+
+import com.whu.hongjing.pojo.entity.JobFailedItem;
+import com.whu.hongjing.pojo.entity.JobRun;
+import com.whu.hongjing.pojo.vo.ApiResponseVO;
+import com.whu.hongjing.service.JobCheckpointService;
+import com.whu.hongjing.service.JobRunService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/jobs")
+@Tag(name = "批处理任务", description = "批处理任务的运行记录与实时进度")
+public class JobController {
+
+    @Autowired
+    private JobRunService jobRunService;
+    @Autowired
+    private JobCheckpointService jobCheckpointService;
+
+    /**
+     * 查询一个任务，运行中的任务返回实时的阶段、行数和吞吐
+     */
+    @GetMapping("/{id}")
+    @Operation(summary = "查询任务的状态与实时进度")
+    public ApiResponseVO<JobRun> getJob(@PathVariable Long id) {
+        JobRun run = jobRunService.getRun(id);
+        if (run == null) {
+            return ApiResponseVO.error("任务 " + id + " 不存在");
+        }
+        return ApiResponseVO.success("查询成功", run);
+    }
+
+    /**
+     * 最近的运行记录，可按任务名称筛选，用于对比不同日期的吞吐
+     */
+    @GetMapping
+    @Operation(summary = "按提交时间倒序列出最近的任务运行记录")
+    public ApiResponseVO<List<JobRun>> listJobs(@RequestParam(required = false) String jobName,
+                                                @RequestParam(defaultValue = "20") int limit) {
+        return ApiResponseVO.success("查询成功", jobRunService.listRecent(jobName, limit));
+    }
+
+    /**
+     * 任务的重试名单：逐条处理后仍然失败的数据及失败原因
+     */
+    @GetMapping("/failures")
+    @Operation(summary = "查询任务的重试名单（失败的数据ID与失败原因）")
+    public ApiResponseVO<List<JobFailedItem>> listFailures(@RequestParam(defaultValue = JobRunService.JOB_TAG_REFRESH_FULL) String jobName,
+                                                           @RequestParam(defaultValue = "100") int limit) {
+        return ApiResponseVO.success("查询成功", jobCheckpointService.listFailedItems(jobName, limit));
+    }
+}
@@ -1,15 +1,23 @@
 package com.whu.hongjing.controller;
+import com.whu.hongjing.service.BenchmarkDatasetGenerator;
+import com.whu.hongjing.service.JobRunService;
 import com.whu.hongjing.service.ScheduledTasksService;
+import com.whu.hongjing.pojo.vo.BenchmarkDatasetVO;
 import com.whu.hongjing.pojo.vo.ApiResponseVO;
+import com.whu.hongjing.pojo.vo.MarketValueBenchmarkVO;
 import com.whu.hongjing.service.MockDataService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
 @RestController
 @RequestMapping("/api/mock-data")
 @Tag(name = "测试数据生成工具", description = "用于生成和刷新各类模拟数据的接口")
@@ -19,45 +27,86 @@ public class MockDataController {
     private MockDataService mockDataService;
     @Autowired
     private ScheduledTasksService scheduledTasksService;
+    @Autowired
+    private BenchmarkDatasetGenerator benchmarkDatasetGenerator;
+    @Autowired
+    private JobRunService jobRunService;
 
 
+    /**
+     * 以下批量工具都是异步任务：接口立即返回任务ID，执行结果和实时进度通过 /api/jobs/{id} 查看
+     */
     @PostMapping("/create-customers")
-    @Operation(summary = "【工具I：创世】生成一批全新的模拟客户及其初始风险评估")
-    public ApiResponseVO createCustomers(@RequestParam(defaultValue = "50") int count) {
-        try {
-            String resultMessage = mockDataService.createMockCustomers(count);
-            return new ApiResponseVO(true, resultMessage);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return new ApiResponseVO(false, "模拟客户生成失败: " + e.getMessage());
-        }
+    @Operation(summary = "【工具I：创世】生成一批全新的模拟客户及其初始风险评估（异步任务，返回任务ID）")
+    public ApiResponseVO<Long> createCustomers(@RequestParam(defaultValue = "50") int count) {
+        return submitJob(JobRunService.JOB_CREATE_CUSTOMERS, "模拟客户生成", () -> mockDataService.createMockCustomers(count));
     }
 
     @PostMapping("/simulate-trading-days")
-    @Operation(summary = "【工具II：演绎】为所有现有客户模拟接下来一段时间的交易")
-    public ApiResponseVO simulateTradingDays(@RequestParam(defaultValue = "30") int days) {
-        try {
-            String resultMessage = mockDataService.simulateTradingDays(days);
-            return new ApiResponseVO(true, resultMessage);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return new ApiResponseVO(false, "交易模拟失败: " + e.getMessage());
-        }
+    @Operation(summary = "【工具II：演绎】为所有现有客户模拟接下来一段时间的交易（异步任务，返回任务ID）")
+    public ApiResponseVO<Long> simulateTradingDays(@RequestParam(defaultValue = "30") int days) {
+        return submitJob(JobRunService.JOB_SIMULATE_TRADING, "交易模拟", () -> mockDataService.simulateTradingDays(days));
     }
 
     /**
      * 手动触发一次每日的基金净值更新，以及所有客户持仓市值的重新计算。调用的是定时任务的服务而非测试数据的服务。
      */
     @PostMapping("/trigger-daily-update")
-    @Operation(summary = "【工具III：刷新净值】手动触发一次每日净值和市值的更新任务，并接着更新客户持仓数据。")
-    public ApiResponseVO triggerDailyUpdate() {
-        try {
-            // 直接调用定时任务的核心方法
+    @Operation(summary = "【工具III：刷新净值】手动触发一次每日净值和市值的更新任务，并接着更新客户持仓数据（异步任务，返回任务ID）。")
+    public ApiResponseVO<Long> triggerDailyUpdate() {
+        // 调用的是定时任务的核心方法
+        return submitJob(JobRunService.JOB_DAILY_UPDATE, "每日净值和市值更新", () -> {
             scheduledTasksService.updateNetValueAndMarketValueDaily();
-            return new ApiResponseVO(true, "每日净值和市值更新任务已手动触发并成功执行！同时更新了客户持仓数据！");
+            return "每日净值和市值更新完成，同时更新了客户持仓数据";
+        });
+    }
+
+    /**
+     * 在当前数据和硬件上，对比两种持仓市值计价引擎的耗时，用于决定 hongjing.market-value.engine 的取值。
+     * 会重新计价全部持仓，因此与每日市值更新任务互斥
+     */
+    @PostMapping("/benchmark-market-value")
+    @Operation(summary = "【工具IV：基准对比】交替执行 Java 流水线和 SQL 分段 UPDATE 两种市值计价引擎，对比耗时（异步任务，返回任务ID）")
+    public ApiResponseVO<Long> benchmarkMarketValue(@RequestParam(defaultValue = "3") int rounds) {
+        return submitJob(JobRunService.JOB_BENCHMARK_MARKET_VALUE, "市值引擎基准对比", () -> {
+            MarketValueBenchmarkVO result = scheduledTasksService.benchmarkMarketValueEngines(rounds);
+            return "基准对比完成：" + result.getRounds() + " 轮，持仓 " + result.getHoldingCount() + " 行，Java 流水线平均 "
+                    + result.getJavaAvgMillis() + " ms（各轮 " + result.getJavaMillis() + "），SQL 分段 UPDATE 平均 "
+                    + result.getSqlAvgMillis() + " ms（各轮 " + result.getSqlMillis() + "），当前配置 " + result.getConfiguredEngine();
+        });
+    }
+
+    /**
+     * 生成可复现的基准数据集：相同的种子、规模参数和基金目录总是生成完全相同的数据。
+     * 写入数据库时会批量插入持仓，因此与每日市值更新任务互斥
+     */
+    @PostMapping("/benchmark-dataset")
+    @Operation(summary = "【工具V：基准数据集】按种子生成可复现的大规模客户、风险评估、交易和持仓数据，写入数据库，或输出为 LOAD DATA 文件（outputDir 为输出根目录下的相对路径；异步任务，返回任务ID）")
+    public ApiResponseVO<Long> generateBenchmarkDataset(
+            @RequestParam(defaultValue = "42") long seed,
+            @RequestParam(defaultValue = "10000") int customers,
+            @RequestParam(defaultValue = "30") int days,
+            @RequestParam(defaultValue = "10") int tradePercent,
+            @RequestParam(defaultValue = "2025-01-01") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+            @RequestParam(required = false) String outputDir) {
+        return submitJob(JobRunService.JOB_BENCHMARK_DATASET, "基准数据集生成", () -> {
+            BenchmarkDatasetVO result = benchmarkDatasetGenerator.generate(seed, customers, days, tradePercent, asOf, outputDir);
+            return "基准数据集生成完成：种子 " + result.getSeed() + "，客户 " + result.getCustomers() + "（ID从 " + result.getFirstCustomerId()
+                    + " 开始），风险评估 " + result.getAssessments() + "，交易 " + result.getTransactions() + "，持仓 " + result.getHoldings()
+                    + "，耗时 " + result.getElapsedMillis() + " ms，" + result.getRowsPerSecond() + " 行/秒，写入"
+                    + (BenchmarkDatasetGenerator.TARGET_FILES.equals(result.getTarget()) ? "文件 " + result.getOutputDir() : "数据库");
+        });
+    }
+
+    private ApiResponseVO<Long> submitJob(String jobName, String description, Supplier<String> job) {
+        try {
+            Long jobId = jobRunService.submit(jobName, job);
+            return ApiResponseVO.success(description + "任务已提交，任务ID " + jobId, jobId);
+        } catch (IllegalStateException e) {
+            return ApiResponseVO.error(e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
-            return new ApiResponseVO(false, "手动触发每日任务失败: " + e.getMessage());
+            return ApiResponseVO.error(description + "任务提交失败: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -19,6 +19,7 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
@@ -34,6 +35,8 @@ public class PageController {
     @Autowired
     private CustomerService customerService;
     @Autowired
+    private TagStatsCache tagStatsCache;
+    @Autowired
     private CustomerHoldingService customerHoldingService;
     @Autowired
     private FundInfoService fundInfoService;
@@ -42,6 +45,8 @@ public class PageController {
     @Autowired
     private FundTransactionService fundTransactionService;
     @Autowired
+    private CustomerAssetSnapshotService customerAssetSnapshotService;
+    @Autowired
     private RiskAssessmentService riskAssessmentService;
     @Autowired
     private ObjectMapper objectMapper;
@@ -169,7 +174,7 @@ public class PageController {
         model.addAttribute("fundName", fundName);
         model.addAttribute("fundType", fundType);
         model.addAttribute("riskScore", riskScore);
-        List<String> fundTypes = fundInfoService.list().stream().map(FundInfo::getFundType).distinct().sorted().collect(Collectors.toList());
+        List<String> fundTypes = fundInfoService.getSnapshot().getFundTypes();
         model.addAttribute("fundTypes", fundTypes);
         return "fund/list";
     }
@@ -292,8 +297,12 @@ public class PageController {
      * 显示标签管理页面
      */
     @GetMapping("/tag/list")
-    public String tagList(Model model) throws JsonProcessingException
+    public String tagList(Model model, WebRequest webRequest) throws JsonProcessingException
     {
+        // 标签没有刷新过，浏览器缓存的页面仍然有效，直接返回 304
+        if (webRequest.checkNotModified(tagStatsCache.getETag())) {
+            return null;
+        }
         List<TagVO> allTags = customerTagRelationService.getTagStats();
         List<String> categoryOrder = List.of(
             TaggingConstants.CATEGORY_AGE, TaggingConstants.CATEGORY_GENDER, TaggingConstants.CATEGORY_OCCUPATION,
@@ -433,8 +442,8 @@ public class PageController {
         // 3. 准备关联数据，用于后续高效计算。
         // a. 提取所有持仓中不重复的基金代码。
         List<String> fundCodes = holdings.stream().map(CustomerHolding::getFundCode).distinct().collect(Collectors.toList());
-        // b. 一次性从数据库中查询出所有相关的基金信息，并存入Map，避免在循环中重复查询（N+1问题）。
-        Map<String, FundInfo> fundInfoMap = fundInfoService.listByIds(fundCodes).stream().collect(Collectors.toMap(FundInfo::getFundCode, Function.identity()));
+        // b. 相关的基金信息直接从共享的基金快照中取，不再查询数据库。
+        Map<String, FundInfo> fundInfoMap = fundInfoService.getSnapshot().getFundsByCode();
 
         // 4. 计算“资产类别分布图”所需的数据。
         // 按基金类型(fundType)对持仓进行分组，并对每个分组的市值(marketValue)进行求和。
@@ -483,73 +492,33 @@ public class PageController {
      * 【 为历史走势双曲线图和资金流图准备数据 】
      */
     private void prepareHistoricalData(Long customerId, Model model) {
-        List<FundTransaction> transactions = fundTransactionService.list(
-            new QueryWrapper<FundTransaction>().eq("customer_id", customerId).orderByAsc("transaction_time")
-        );
+        // 直接读取预先维护好的每日资产快照（按主键范围读取），不再回放全部交易明细
+        List<CustomerAssetSnapshot> snapshots = customerAssetSnapshotService.getSnapshots(customerId);
 
-        if (transactions == null || transactions.isEmpty()) {
+        if (snapshots.isEmpty()) {
             model.addAttribute("historicalDataJson", "{}");
             model.addAttribute("monthlyFlowJson", "{}");
             return;
         }
 
         // --- 计算1：双曲线图（资产总额 vs 累计净投入） ---
-        Map<String, Map<String, BigDecimal>> historicalData = new LinkedHashMap<>();  // 存放最后每一天的计算结果，string为date MAP存储每天的累计净投入与资产的entry（string标识”assets“或"investment"）
-
-        BigDecimal cumulativeInvestment = BigDecimal.ZERO;  // 初始化累计净投入值
-        Map<String, BigDecimal> currentShares = new HashMap<>();  // 存储所有基金的已有持有份额
-
-        for (FundTransaction tx : transactions) {
-            String date = tx.getTransactionTime().toLocalDate().toString();
-            String fundCode = tx.getFundCode();
-
-            // 1： 更新累计净投入 (现金流口径)
-            if ("申购".equals(tx.getTransactionType())) {
-                cumulativeInvestment = cumulativeInvestment.add(tx.getTransactionAmount());
-            } else {
-                cumulativeInvestment = cumulativeInvestment.subtract(tx.getTransactionAmount());
-            }
-
-            // 2： 更新资产总额-更新份额
-            BigDecimal shares = currentShares.getOrDefault(fundCode, BigDecimal.ZERO); // 获取当前基金的持有份额
-            if ("申购".equals(tx.getTransactionType())) {
-                currentShares.put(fundCode, shares.add(tx.getTransactionShares()));   // 将交易的份额添加至当前基金的总持有份额
-            } else {
-                currentShares.put(fundCode, shares.subtract(tx.getTransactionShares()));
-            }
-
-            // 2： 更新资产总额-更新总市值 ， 使用【所有】基金的【当前】份额 和 【当前这笔交易的】的成交价净值来估算总市值
-                // （因为没有存储每只基金每一天的数据表格，对其他当天未发生过交易的基金，其当天的数值无法确定，只能用一个模拟的估值）
-            BigDecimal totalMarketValue = BigDecimal.ZERO;
-            for(Map.Entry<String, BigDecimal> entry : currentShares.entrySet()) {
-                // 这里用当天交易的基金净值，去估算所有持仓的市值，是简化方案的核心：对所有基金的持仓份额entry 都用当前交易的成交价净值tx.getSharePrice()相乘模拟市值波动
-                totalMarketValue = totalMarketValue.add(
-                    entry.getValue().multiply(tx.getSharePrice() != null ? tx.getSharePrice() : BigDecimal.ONE)
-                );
-            }
+        Map<String, Map<String, BigDecimal>> historicalData = new LinkedHashMap<>();  // 存放每一天的快照，string为date MAP存储每天的累计净投入与资产的entry（string标识”assets“或"investment"）
+        // --- 计算2：月度资金净流入/流出（只统计有交易的日期） ---
+        Map<String, BigDecimal> sortedMonthlyFlow = new LinkedHashMap<>();
 
+        for (CustomerAssetSnapshot snapshot : snapshots) {
             Map<String, BigDecimal> dailyData = new HashMap<>();
-            dailyData.put("assets", totalMarketValue.setScale(2, RoundingMode.HALF_UP));
-            dailyData.put("investment", cumulativeInvestment.setScale(2, RoundingMode.HALF_UP));
-            historicalData.put(date, dailyData);
+            dailyData.put("assets", snapshot.getTotalAssets());
+            dailyData.put("investment", snapshot.getNetInvestment());
+            historicalData.put(snapshot.getSnapshotDate().toString(), dailyData);
+
+            if (snapshot.getDailyFlow() != null) {
+                // 快照按日期升序，月份自然有序
+                sortedMonthlyFlow.merge(snapshot.getSnapshotDate().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM")),
+                        snapshot.getDailyFlow(), BigDecimal::add);
+            }
         }
 
-        // --- 计算2：月度资金净流入/流出 ---
-        Map<String, BigDecimal> monthlyFlowData = transactions.stream()
-            .collect(Collectors.groupingBy(
-                tx -> tx.getTransactionTime().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM")),
-                Collectors.mapping(
-                    tx -> "申购".equals(tx.getTransactionType()) ? tx.getTransactionAmount() : tx.getTransactionAmount().negate(),
-                    Collectors.reducing(BigDecimal.ZERO, BigDecimal::add)
-                )
-            ));
-
-        // 按月份排序
-        Map<String, BigDecimal> sortedMonthlyFlow = new LinkedHashMap<>();
-        monthlyFlowData.entrySet().stream()
-            .sorted(Map.Entry.comparingByKey())
-            .forEachOrdered(e -> sortedMonthlyFlow.put(e.getKey(), e.getValue()));
-
         // --- 将数据转换为JSON ---
         try {
             model.addAttribute("historicalDataJson", objectMapper.writeValueAsString(historicalData));
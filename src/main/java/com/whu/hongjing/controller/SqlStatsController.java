@@ -0,0 +1,36 @@
+package com.whu.hongjing.controller;
+
+import com.whu.hongjing.pojo.vo.ApiResponseVO;
+import com.whu.hongjing.pojo.vo.SqlStatementStatVO;
+import com.whu.hongjing.service.SqlStatementStats;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/sql-stats")
+@Tag(name = "SQL执行统计", description = "按 MyBatis 语句统计的耗时、行数和次数")
+public class SqlStatsController {
+
+    @Autowired
+    private SqlStatementStats sqlStatementStats;
+
+    /**
+     * 找出占用数据库时间最多的语句
+     */
+    @GetMapping("/top")
+    @Operation(summary = "按累计耗时从高到低列出前 N 条 SQL 语句")
+    public ApiResponseVO<List<SqlStatementStatVO>> top(@RequestParam(defaultValue = "20") int limit) {
+        return ApiResponseVO.success("查询成功", sqlStatementStats.topByTotalTime(limit));
+    }
+
+    @PostMapping("/reset")
+    @Operation(summary = "清空累计的 SQL 统计，开始新一轮观测")
+    public ApiResponseVO reset() {
+        sqlStatementStats.reset();
+        return new ApiResponseVO(true, "SQL 统计已清空");
+    }
+}
@@ -1,6 +1,9 @@
 package com.whu.hongjing.controller;
 
 import com.whu.hongjing.pojo.vo.ApiResponseVO; // <-- 1. 导入我们新的VO类
+import com.whu.hongjing.pojo.vo.TagRefreshLagVO;
+import com.whu.hongjing.service.AsyncTagRefresher;
+import com.whu.hongjing.service.JobRunService;
 import com.whu.hongjing.service.TagRefreshService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -16,6 +19,12 @@ public class TagController {
     @Autowired
     private TagRefreshService tagRefreshService;
 
+    @Autowired
+    private AsyncTagRefresher asyncTagRefresher;
+
+    @Autowired
+    private JobRunService jobRunService;
+
     @PostMapping("/refresh/{customerId}")
     @Operation(summary = "【手动触发】刷新指定客户的所有标签")
     public ApiResponseVO refreshCustomerTags(@PathVariable Long customerId) { // <-- 2. 修改返回类型为 ApiResponseVO
@@ -30,21 +39,50 @@ public class TagController {
 
 
     /**
-     * 手动触发一次对所有客户的全量画像刷新。(异步操作，接口会立即返回，后台将开始执行耗时的批量任务。)
+     * 手动触发一次对所有客户的全量画像刷新。(异步操作，接口立即返回任务ID，可通过 /api/jobs/{id} 查看进度。)
      */
     @PostMapping("/refresh-all")
-    @Operation(summary = "【手动触发】刷新所有客户的标签（异步后台任务）")
-    public ApiResponseVO refreshAllCustomerTags() {
+    @Operation(summary = "【手动触发】刷新所有客户的标签（异步后台任务，返回任务ID）；resume=true 时从上一轮未完成的检查点继续，默认从头开始")
+    public ApiResponseVO<Long> refreshAllCustomerTags(@RequestParam(defaultValue = "false") boolean resume) {
         try {
-            // 直接调用我们的异步批量服务
-            tagRefreshService.refreshAllTagsAtomically();
-            // 立即返回成功响应，告知前端任务已启动
-            return new ApiResponseVO(true, "全量标签刷新任务已成功执行完毕！");
+            Long jobId = jobRunService.submit(JobRunService.JOB_TAG_REFRESH_FULL, () -> {
+                tagRefreshService.refreshAllTagsAtomically(resume);
+                return resume ? "全量标签刷新完成（从检查点续跑）" : "全量标签刷新完成";
+            });
+            // 立即返回任务ID，前端据此轮询进度
+            return ApiResponseVO.success("全量标签刷新任务已提交，任务ID " + jobId, jobId);
+        } catch (IllegalStateException e) {
+            return ApiResponseVO.error(e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
-            return new ApiResponseVO(false, "启动全量刷新任务失败: " + e.getMessage());
+            return ApiResponseVO.error("启动全量刷新任务失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 重新刷新全量刷新重试名单中的客户（全量刷新中逐个刷新仍然失败的客户）
+     */
+    @PostMapping("/refresh-failed")
+    @Operation(summary = "【手动触发】重试全量刷新中失败的客户（异步后台任务，返回任务ID）")
+    public ApiResponseVO<Long> retryFailedCustomerTags() {
+        try {
+            Long jobId = jobRunService.submit(JobRunService.JOB_TAG_REFRESH_RETRY, tagRefreshService::retryFailedCustomers);
+            return ApiResponseVO.success("重试任务已提交，任务ID " + jobId, jobId);
+        } catch (IllegalStateException e) {
+            return ApiResponseVO.error(e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ApiResponseVO.error("启动重试任务失败: " + e.getMessage());
         }
     }
 
 
+    /**
+     * 查看交易后画像异步刷新的积压与延迟情况
+     */
+    @GetMapping("/refresh-lag")
+    @Operation(summary = "查询交易后标签异步刷新的延迟统计")
+    public ApiResponseVO<TagRefreshLagVO> getRefreshLag() {
+        return ApiResponseVO.success("查询成功", asyncTagRefresher.getLagStats());
+    }
 }
\ No newline at end of file
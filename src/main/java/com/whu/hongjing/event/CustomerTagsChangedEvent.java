@@ -0,0 +1,22 @@
+package com.whu.hongjing.event;
+
+import com.whu.hongjing.pojo.entity.CustomerTagRelation;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 一次画像刷新中客户标签实际发生了变化的事件。
+ * 在刷新事务中发布，事务提交后由内存中的标签索引据此增量更新。
+ */
+@Getter
+@AllArgsConstructor
+public class CustomerTagsChangedEvent {
+
+    // 新增的标签行
+    private final List<CustomerTagRelation> added;
+
+    // 被移除的标签行
+    private final List<CustomerTagRelation> removed;
+}
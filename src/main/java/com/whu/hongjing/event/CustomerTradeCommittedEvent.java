@@ -0,0 +1,15 @@
+package com.whu.hongjing.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 客户发生了一笔交易（申购/赎回）的事件。
+ * 在交易事务中发布，由监听方在事务提交之后再处理，保证处理时读到的是已提交的持仓和交易数据。
+ */
+@Getter
+@AllArgsConstructor
+public class CustomerTradeCommittedEvent {
+
+    private final Long customerId;
+}
@@ -0,0 +1,16 @@
+package com.whu.hongjing.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 一次批量画像刷新（全量或每日增量）执行完毕的事件。
+ * 依赖标签分布的预计算数据（如标签共现统计）据此重建。
+ */
+@Getter
+@AllArgsConstructor
+public class TagRefreshCompletedEvent {
+
+    // 本次刷新处理的客户数
+    private final int customerCount;
+}
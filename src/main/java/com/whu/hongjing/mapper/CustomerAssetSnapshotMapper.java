@@ -0,0 +1,34 @@
+package com.whu.hongjing.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.whu.hongjing.pojo.entity.CustomerAssetSnapshot;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+
+@Mapper
+public interface CustomerAssetSnapshotMapper extends BaseMapper<CustomerAssetSnapshot> {
+
+    /**
+     * 一笔交易之后写入客户当天的快照：总资产由调用方按当天净值计算，净投入取盈亏汇总表，当天的资金流累加本笔交易
+     */
+    int upsertAfterTrade(@Param("customerId") Long customerId, @Param("snapshotDate") LocalDate snapshotDate,
+                         @Param("totalAssets") BigDecimal totalAssets, @Param("flow") BigDecimal flow);
+
+    /**
+     * 从盈亏汇总表为一个客户ID区间内所有有资产或有投入的客户写入某天的快照，已有的资金流保持不变
+     */
+    int snapshotRange(@Param("fromId") long fromId, @Param("toId") long toId, @Param("snapshotDate") LocalDate snapshotDate);
+
+    /**
+     * 批量写入回放得到的快照，已存在的日期整行覆盖
+     */
+    int upsertBatch(@Param("snapshots") Collection<CustomerAssetSnapshot> snapshots);
+
+    /**
+     * 删除待重建客户从登记日期起、到 before 之前（不含）已经不准确的快照
+     */
+    int deleteStaleForRebuild(@Param("customerIds") Collection<Long> customerIds, @Param("before") LocalDate before);
+}
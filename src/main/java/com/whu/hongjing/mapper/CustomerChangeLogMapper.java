@@ -0,0 +1,23 @@
+package com.whu.hongjing.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.whu.hongjing.pojo.entity.CustomerChangeLog;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Mapper
+public interface CustomerChangeLogMapper extends BaseMapper<CustomerChangeLog> {
+
+    /**
+     * 批量标记客户为“脏”，已存在的标记只刷新原因和时间（INSERT ... ON DUPLICATE KEY UPDATE）
+     */
+    int markDirty(@Param("customerIds") Collection<Long> customerIds, @Param("reason") String reason,
+                  @Param("markedTime") LocalDateTime markedTime);
+
+    /**
+     * 清除指定客户在某个时间点之前打上的标记
+     */
+    int clearProcessed(@Param("customerIds") Collection<Long> customerIds, @Param("markedBefore") LocalDateTime markedBefore);
+}
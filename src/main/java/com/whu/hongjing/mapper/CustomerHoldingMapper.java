@@ -3,7 +3,44 @@ package com.whu.hongjing.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.whu.hongjing.pojo.entity.CustomerHolding;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface CustomerHoldingMapper extends BaseMapper<CustomerHolding> {
-}
\ No newline at end of file
+
+    /**
+     * 持有指定基金的客户（基金 -> 持有人的倒排查询，走 (fund_code, customer_id) 覆盖索引）
+     */
+    List<Long> selectHolderIdsByFunds(@Param("fundCodes") Collection<String> fundCodes);
+
+    /**
+     * 有持仓还没有市值、或者在 since 之后份额发生过变动的客户
+     * @param since 为空时只查市值为空的持仓
+     */
+    List<Long> selectStaleHolderIds(@Param("since") LocalDateTime since);
+
+    /**
+     * 按客户ID升序，取 lastCustomerId 之后的 limit 个有持仓的客户
+     */
+    List<Long> selectHolderIdsAfter(@Param("lastCustomerId") Long lastCustomerId, @Param("limit") int limit);
+
+    /**
+     * 在数据库内按最新净值重新计算一个客户ID区间内持仓的市值：UPDATE customer_holding JOIN fund_info
+     * @param onlyChanged 为 true 时只更新市值有变化（或为空）的行
+     */
+    int repriceRange(@Param("fromId") long fromId, @Param("toId") long toId, @Param("onlyChanged") boolean onlyChanged);
+
+    /**
+     * 一个客户ID区间内每个客户的总市值（total_market_value）和按风险评分加权的市值（weighted_risk），列名为下划线形式
+     */
+    List<Map<String, Object>> selectMarketValueTotals(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * 一条多行 INSERT 写入一批持仓（不回填自增ID），用于批量导入模拟数据
+     */
+    int insertValues(@Param("holdings") Collection<CustomerHolding> holdings);
+}
@@ -1,23 +1,17 @@
 package com.whu.hongjing.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.whu.hongjing.pojo.entity.Customer;
-import com.whu.hongjing.pojo.vo.ProfitLossVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import java.util.Collection;
 
 
 @Mapper
 public interface CustomerMapper extends BaseMapper<Customer> {
 
-
-    Page<ProfitLossVO> getProfitLossPage(
-            Page<ProfitLossVO> page, @Param("customerId") Long customerId, @Param("customerName") String customerName,
-            @Param("sortField") String sortField, @Param("sortOrder") String sortOrder);
-
-
-    ProfitLossVO getProfitLossVOByCustomerId(@Param("customerId") Long customerId);
-
-
+    /**
+     * 一条多行 INSERT 写入一批客户，主键ID由调用方指定（用于批量导入基准数据集）
+     */
+    int insertValuesWithId(@Param("customers") Collection<Customer> customers);
 }
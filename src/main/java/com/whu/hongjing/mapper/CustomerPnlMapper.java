@@ -0,0 +1,46 @@
+package com.whu.hongjing.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.whu.hongjing.pojo.entity.CustomerPnl;
+import com.whu.hongjing.pojo.vo.ProfitLossVO;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.math.BigDecimal;
+import java.util.Collection;
+
+@Mapper
+public interface CustomerPnlMapper extends BaseMapper<CustomerPnl> {
+
+    /**
+     * 一笔交易带来的净投入变化，直接累加到汇总行上
+     * @return 受影响的行数，为0说明该客户还没有汇总行
+     */
+    int addInvestment(@Param("customerId") Long customerId, @Param("delta") BigDecimal delta);
+
+    /**
+     * 从交易表和持仓表重新计算指定客户的汇总行（不存在则插入）
+     */
+    int recomputeCustomers(@Param("customerIds") Collection<Long> customerIds);
+
+    /**
+     * 从交易表和持仓表重新计算一段客户ID范围内所有客户的汇总行（不存在则插入），用于全量重建
+     */
+    int recomputeRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /**
+     * 用持仓表的最新市值，批量更新一段客户ID范围内的汇总行的总市值（每日市值任务之后调用，不涉及交易表）
+     */
+    int refreshMarketValueRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /**
+     * 盈亏分页查询，直接按汇总表上的索引列排序
+     * @param sortColumn 已经过白名单校验的列名
+     * @param sortOrder 已经过白名单校验的 ASC/DESC
+     */
+    Page<ProfitLossVO> selectProfitLossPage(
+            Page<ProfitLossVO> page, @Param("customerId") Long customerId, @Param("customerName") String customerName,
+            @Param("sortColumn") String sortColumn, @Param("sortOrder") String sortOrder);
+
+    ProfitLossVO selectProfitLossVO(@Param("customerId") Long customerId);
+}
@@ -3,7 +3,17 @@ package com.whu.hongjing.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.whu.hongjing.pojo.entity.CustomerProfile;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.time.LocalDate;
+import java.util.List;
 
 @Mapper
 public interface CustomerProfileMapper extends BaseMapper<CustomerProfile> {
-}
\ No newline at end of file
+
+    /**
+     * 查询今天需要因为“时间流逝”而重新计算标签的客户ID（到期的阈值边界 + 从未计算过画像的客户）
+     * @param today 今天的日期
+     * @return 客户ID列表
+     */
+    List<Long> selectDueCustomerIds(@Param("today") LocalDate today);
+}
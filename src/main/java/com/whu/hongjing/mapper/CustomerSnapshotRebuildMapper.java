@@ -0,0 +1,24 @@
+package com.whu.hongjing.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.whu.hongjing.pojo.entity.CustomerSnapshotRebuild;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Mapper
+public interface CustomerSnapshotRebuildMapper extends BaseMapper<CustomerSnapshotRebuild> {
+
+    /**
+     * 批量登记待重建的客户，已存在的登记保留更早的日期并刷新时间（INSERT ... ON DUPLICATE KEY UPDATE）
+     */
+    int mark(@Param("customerIds") Collection<Long> customerIds, @Param("fromDate") LocalDate fromDate,
+             @Param("markedTime") LocalDateTime markedTime);
+
+    /**
+     * 清除指定客户在某个时间点之前的登记
+     */
+    int clearProcessed(@Param("customerIds") Collection<Long> customerIds, @Param("markedBefore") LocalDateTime markedBefore);
+}
@@ -27,4 +27,11 @@ public interface CustomerTagRelationMapper extends BaseMapper<CustomerTagRelatio
     List<Long> findCustomerIdsByTags(@Param("tagNames") List<String> tagNames, @Param("tagCount") int tagCount);
 
 
+    /**
+     * 按主键顺序分页读取标签行（只取建索引需要的列），用于全量构建内存标签索引
+     * @param lastId 上一页最后一行的ID，第一页传0
+     */
+    List<CustomerTagRelation> selectTagsAfterId(@Param("lastId") Long lastId, @Param("limit") int limit);
+
+
 }
\ No newline at end of file
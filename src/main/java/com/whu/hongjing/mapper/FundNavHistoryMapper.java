@@ -0,0 +1,34 @@
+package com.whu.hongjing.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.whu.hongjing.pojo.entity.FundNavHistory;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface FundNavHistoryMapper extends BaseMapper<FundNavHistory> {
+
+    /**
+     * 批量写入某些基金某天的净值，同一天重复写入时以最后一次为准（INSERT ... ON DUPLICATE KEY UPDATE）
+     */
+    int upsertBatch(@Param("navs") Collection<FundNavHistory> navs);
+
+    /**
+     * 指定基金在 [from, to] 之间的全部净值，按基金、日期升序
+     */
+    List<FundNavHistory> selectRange(@Param("fundCodes") Collection<String> fundCodes,
+                                     @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * 某一天所有基金的净值
+     */
+    List<FundNavHistory> selectByDate(@Param("navDate") LocalDate navDate);
+
+    /**
+     * 有净值记录的所有日期，升序
+     */
+    List<LocalDate> selectNavDates();
+}
@@ -3,7 +3,14 @@ package com.whu.hongjing.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.whu.hongjing.pojo.entity.FundTransaction;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.util.Collection;
 
 @Mapper
 public interface FundTransactionMapper extends BaseMapper<FundTransaction> {
-}
\ No newline at end of file
+
+    /**
+     * 一条多行 INSERT 写入一批交易（不回填自增ID），用于批量导入模拟数据
+     */
+    int insertValues(@Param("transactions") Collection<FundTransaction> transactions);
+}
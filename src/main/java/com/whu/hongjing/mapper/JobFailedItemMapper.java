@@ -0,0 +1,19 @@
+package com.whu.hongjing.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.whu.hongjing.pojo.entity.JobFailedItem;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Mapper
+public interface JobFailedItemMapper extends BaseMapper<JobFailedItem> {
+
+    /**
+     * 批量登记失败条目，已在名单中的只更新运行记录ID、原因和时间（INSERT ... ON DUPLICATE KEY UPDATE）
+     * @param errorsByItemId 条目ID -> 失败原因
+     */
+    int upsertFailures(@Param("jobName") String jobName, @Param("jobRunId") Long jobRunId,
+                       @Param("errorsByItemId") Map<Long, String> errorsByItemId, @Param("failedTime") LocalDateTime failedTime);
+}
@@ -0,0 +1,9 @@
+package com.whu.hongjing.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.whu.hongjing.pojo.entity.JobRun;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface JobRunMapper extends BaseMapper<JobRun> {
+}
@@ -3,7 +3,14 @@ package com.whu.hongjing.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.whu.hongjing.pojo.entity.RiskAssessment;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.util.Collection;
 
 @Mapper
 public interface RiskAssessmentMapper extends BaseMapper<RiskAssessment> {
-}
\ No newline at end of file
+
+    /**
+     * 一条多行 INSERT 写入一批风险评估（不回填自增ID），用于批量导入基准数据集
+     */
+    int insertValues(@Param("assessments") Collection<RiskAssessment> assessments);
+}
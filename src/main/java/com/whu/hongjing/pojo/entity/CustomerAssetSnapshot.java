@@ -0,0 +1,36 @@
+package com.whu.hongjing.pojo.entity;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 客户资产走势快照表，每个客户每天最多一行
+ * 由交易和每日净值任务增量维护，客户详情页的历史走势图和月度资金流图直接读取，不再回放全部交易明细。
+ * 主键是 (customer_id, snapshot_date) 联合主键，写入都走 CustomerAssetSnapshotMapper.xml 中的 SQL。
+ *
+ * @author yufei
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("customer_asset_snapshot")
+public class CustomerAssetSnapshot {
+
+    private Long customerId;
+
+    private LocalDate snapshotDate;
+
+    // 当天的持仓总市值
+    private BigDecimal totalAssets;
+
+    // 截至当天的累计净投入
+    private BigDecimal netInvestment;
+
+    // 当天的资金净流入（申购为正、赎回为负），当天没有交易时为空
+    private BigDecimal dailyFlow;
+}
@@ -0,0 +1,31 @@
+package com.whu.hongjing.pojo.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * 客户变更日志表（“脏客户”标记表）
+ * 任何会影响客户画像标签的业务动作（交易、风险评估、客户信息修改、持仓市值变化）都会在这里给客户打上一个标记，
+ * 每日凌晨的标签刷新只处理被标记过的客户，以及时间型标签即将跨越阈值的客户，处理完成后再清除标记。
+ * 每个客户最多只有一行，重复标记只会更新原因和时间。
+ *
+ * @author yufei
+ */
+@Data
+@NoArgsConstructor
+@TableName("customer_change_log")
+public class CustomerChangeLog {
+
+    @TableId(type = IdType.INPUT) // 主键就是 customer_id
+    private Long customerId;
+
+    // 最近一次被标记的原因（交易、风险评估、客户信息变更、市值变动）
+    private String reason;
+
+    // 最近一次被标记的时间，清除标记时只清除刷新开始之前打上的标记，避免漏掉刷新过程中新产生的变更
+    private LocalDateTime markedTime;
+}
@@ -0,0 +1,43 @@
+package com.whu.hongjing.pojo.entity;
+
+import com.baomidou.mybatisplus.annotation.FieldStrategy;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 客户盈亏汇总表，每个客户一行
+ * 累计净投入随每笔交易增量更新，总市值由每日市值任务批量更新，
+ * 盈亏金额和盈亏率是数据库的生成列，带索引，盈亏页面可以直接按索引排序分页，不必每次扫描交易表和持仓表。
+ *
+ * @author yufei
+ */
+@Data
+@NoArgsConstructor
+@TableName("customer_pnl")
+public class CustomerPnl {
+
+    @TableId(type = IdType.INPUT) // 主键就是 customer_id
+    private Long customerId;
+
+    // 累计净投入 = 申购金额 - 赎回金额
+    private BigDecimal totalInvestment;
+
+    // 当前持仓总市值
+    private BigDecimal totalMarketValue;
+
+    // 总盈亏（生成列，只读）
+    @TableField(insertStrategy = FieldStrategy.NEVER, updateStrategy = FieldStrategy.NEVER)
+    private BigDecimal totalProfitLoss;
+
+    // 总盈亏率 %（生成列，只读）
+    @TableField(insertStrategy = FieldStrategy.NEVER, updateStrategy = FieldStrategy.NEVER)
+    private BigDecimal profitLossRate;
+
+    private LocalDateTime updateTime;
+}
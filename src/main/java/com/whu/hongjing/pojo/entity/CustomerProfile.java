@@ -6,6 +6,7 @@ import com.baomidou.mybatisplus.annotation.Version;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import com.baomidou.mybatisplus.annotation.TableField;
 
@@ -39,6 +40,9 @@ public class CustomerProfile {
     // 定投行为（F）
     private Boolean hasRegularInvestment;
 
+    // 时间型标签（R、F、持仓风格）下一次可能跨越阈值的日期，到期后即使客户没有任何变动也要重新计算；为空表示不会因时间流逝而变化
+    private LocalDate nextRefreshDate;
+
     private LocalDateTime updateTime;
 
     /**
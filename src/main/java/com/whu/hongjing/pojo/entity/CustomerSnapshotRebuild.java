@@ -0,0 +1,32 @@
+package com.whu.hongjing.pojo.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 待重建资产快照的客户表
+ * 补录了交易日期早于当天的交易（交易时只更新当天的一行快照）、或上线前就有交易的客户登记在这里，
+ * 由每日净值任务写完当天快照后按交易明细回放重建，客户详情页只读取快照。每个客户最多只有一行，重复登记取更早的日期。
+ *
+ * @author yufei
+ */
+@Data
+@NoArgsConstructor
+@TableName("customer_snapshot_rebuild")
+public class CustomerSnapshotRebuild {
+
+    @TableId(type = IdType.INPUT) // 主键就是 customer_id
+    private Long customerId;
+
+    // 已有快照从这一天起不再准确，重建时先删除这一天到昨天的快照；只需补齐缺失的历史时为登记当天
+    private LocalDate fromDate;
+
+    // 最近一次被登记的时间，重建完成后只清除重建开始之前的登记
+    private LocalDateTime markedTime;
+}
@@ -0,0 +1,28 @@
+package com.whu.hongjing.pojo.entity;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 基金净值历史表，每只基金每天一行，只追加不修改。
+ * 主键是 (fund_code, nav_date) 联合主键，写入和查询都走 FundNavHistoryMapper.xml 中的 SQL。
+ *
+ * @author yufei
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("fund_nav_history")
+public class FundNavHistory {
+
+    private String fundCode;
+
+    private LocalDate navDate;
+
+    private BigDecimal netValue;
+}
@@ -0,0 +1,36 @@
+package com.whu.hongjing.pojo.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * 批处理任务检查点表，每个任务最多一行
+ * 任务按ID升序分块处理，每块提交后推进水位；任务正常结束时删除该行。
+ * 任务中途失败或应用重启后，下一次运行发现检查点存在，就只处理水位之后的条目。
+ */
+@Data
+@NoArgsConstructor
+@TableName("job_checkpoint")
+public class JobCheckpoint {
+
+    @TableId(type = IdType.INPUT) // 主键就是任务名称
+    private String jobName;
+
+    // 最近一次推进检查点的运行记录ID
+    private Long jobRunId;
+
+    // 已连续提交到的最大ID：它和它之前的条目都已处理完
+    private Long watermark;
+
+    // 水位之前已处理的条目数
+    private Long processedCount;
+
+    // 这一轮最初开始的时间，续跑时沿用，保证清除变更标记的时间点与第一次运行一致
+    private LocalDateTime startedAt;
+
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,33 @@
+package com.whu.hongjing.pojo.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * 批处理任务的失败条目（重试名单），同一任务的同一条目只有一行，重复失败只更新原因和时间
+ */
+@Data
+@NoArgsConstructor
+@TableName("job_failed_item")
+public class JobFailedItem {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String jobName;
+
+    // 最近一次失败所在的运行记录ID
+    private Long jobRunId;
+
+    // 失败的条目ID（全量标签刷新中为客户ID）
+    private Long itemId;
+
+    // 最近一次失败的原因
+    private String error;
+
+    private LocalDateTime failedTime;
+}
@@ -0,0 +1,62 @@
+package com.whu.hongjing.pojo.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * 批处理任务运行记录表，每次提交一行
+ * 运行中的任务由 JobRunService 定期把内存中的进度写回，查询运行中的任务时直接返回内存中的实时进度。
+ */
+@Data
+@NoArgsConstructor
+@TableName("job_run")
+public class JobRun {
+
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_SUCCEEDED = "SUCCEEDED";
+    // 任务跑完了，但有部分客户或块失败
+    public static final String STATUS_PARTIAL = "PARTIAL";
+    public static final String STATUS_FAILED = "FAILED";
+    // 应用在任务运行期间重启
+    public static final String STATUS_INTERRUPTED = "INTERRUPTED";
+
+    public static final String TRIGGER_API = "api";
+    public static final String TRIGGER_SCHEDULED = "scheduled";
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    // 任务名称
+    private String jobName;
+
+    // 触发方式：api / scheduled
+    private String triggerType;
+
+    // 状态：QUEUED / RUNNING / SUCCEEDED / PARTIAL / FAILED / INTERRUPTED
+    private String status;
+
+    // 当前所处的阶段
+    private String phase;
+
+    // 已处理的行数
+    private Long rowsProcessed;
+
+    // 平均每秒处理的行数
+    private Long rowsPerSecond;
+
+    // 失败的客户数或块数
+    private Long failures;
+
+    // 结果摘要或错误信息
+    private String message;
+
+    // 提交、开始运行、结束的时间
+    private LocalDateTime submitTime;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+}
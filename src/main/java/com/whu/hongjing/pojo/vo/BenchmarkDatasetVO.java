@@ -0,0 +1,53 @@
+package com.whu.hongjing.pojo.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@Schema(description = "基准数据集生成结果")
+public class BenchmarkDatasetVO {
+
+    @Schema(description = "随机种子，相同的种子、规模参数和基金目录总是生成相同的数据集")
+    private Long seed;
+
+    @Schema(description = "客户数")
+    private Integer customerCount;
+
+    @Schema(description = "模拟交易的天数")
+    private Integer days;
+
+    @Schema(description = "每个客户每天发生交易的概率（%）")
+    private Integer tradePercent;
+
+    @Schema(description = "数据集的基准日期，所有交易都发生在这一天之前")
+    private LocalDate asOf;
+
+    @Schema(description = "写入目标：db 直接写入数据库，files 生成可用 LOAD DATA 导入的文件")
+    private String target;
+
+    @Schema(description = "files 模式下的输出目录")
+    private String outputDir;
+
+    @Schema(description = "第一个客户的ID，之后的客户ID连续递增")
+    private Long firstCustomerId;
+
+    @Schema(description = "生成的客户数")
+    private Long customers;
+
+    @Schema(description = "生成的风险评估数")
+    private Long assessments;
+
+    @Schema(description = "生成的交易数")
+    private Long transactions;
+
+    @Schema(description = "生成的持仓数")
+    private Long holdings;
+
+    @Schema(description = "总耗时（毫秒）")
+    private Long elapsedMillis;
+
+    @Schema(description = "写入速度（行/秒）")
+    private Long rowsPerSecond;
+}
@@ -0,0 +1,32 @@
+package com.whu.hongjing.pojo.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Schema(description = "持仓市值计价引擎基准对比结果")
+public class MarketValueBenchmarkVO {
+
+    @Schema(description = "当前配置使用的引擎（java / sql）")
+    private String configuredEngine;
+
+    @Schema(description = "对比轮数")
+    private Integer rounds;
+
+    @Schema(description = "持仓总行数")
+    private Long holdingCount;
+
+    @Schema(description = "Java 流水线每轮耗时（毫秒）")
+    private List<Long> javaMillis = new ArrayList<>();
+
+    @Schema(description = "SQL 分段 UPDATE 每轮耗时（毫秒）")
+    private List<Long> sqlMillis = new ArrayList<>();
+
+    @Schema(description = "Java 流水线平均耗时（毫秒）")
+    private Double javaAvgMillis;
+
+    @Schema(description = "SQL 分段 UPDATE 平均耗时（毫秒）")
+    private Double sqlAvgMillis;
+}
@@ -0,0 +1,33 @@
+package com.whu.hongjing.pojo.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "单条 MyBatis 语句的累计耗时统计")
+public class SqlStatementStatVO {
+
+    @Schema(description = "语句ID（Mapper 全限定名.方法名；分页插件的计数查询以 _mpCount 结尾，批量写入的实际执行以 [batch] 结尾）")
+    private String statementId;
+
+    @Schema(description = "语句类型：SELECT / INSERT / UPDATE / DELETE")
+    private String commandType;
+
+    @Schema(description = "执行次数")
+    private Long calls;
+
+    @Schema(description = "累计耗时（毫秒）")
+    private Double totalMillis;
+
+    @Schema(description = "平均耗时（毫秒）")
+    private Double avgMillis;
+
+    @Schema(description = "最大耗时（毫秒）")
+    private Double maxMillis;
+
+    @Schema(description = "累计返回（查询）或影响（写入）的行数")
+    private Long rows;
+
+    @Schema(description = "慢语句次数（超过 hongjing.sql.slow-threshold-ms）")
+    private Long slowCalls;
+}
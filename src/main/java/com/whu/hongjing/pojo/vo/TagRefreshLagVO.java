@@ -0,0 +1,35 @@
+package com.whu.hongjing.pojo.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Schema(description = "交易后画像异步刷新的延迟统计")
+public class TagRefreshLagVO {
+
+    @Schema(description = "当前排队等待刷新的客户数")
+    private Integer pendingCustomers;
+
+    @Schema(description = "排队最久的客户已等待的毫秒数")
+    private Long oldestPendingMillis;
+
+    @Schema(description = "最近一次刷新从交易提交到刷新完成的毫秒数")
+    private Long lastLagMillis;
+
+    @Schema(description = "启动以来的最大刷新延迟（毫秒）")
+    private Long maxLagMillis;
+
+    @Schema(description = "启动以来完成的刷新次数")
+    private Long refreshedCount;
+
+    @Schema(description = "被合并掉的重复刷新请求数（同一客户连续交易只刷新一次）")
+    private Long coalescedCount;
+
+    @Schema(description = "启动以来刷新失败的次数（失败的客户保留脏标记，由夜间增量刷新补上）")
+    private Long failedCount;
+
+    @Schema(description = "最近一次完成刷新的时间")
+    private LocalDateTime lastRefreshTime;
+}
@@ -0,0 +1,135 @@
+package com.whu.hongjing.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.whu.hongjing.event.CustomerTradeCommittedEvent;
+import com.whu.hongjing.pojo.vo.TagRefreshLagVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 交易后的画像异步刷新器。
+ * 交易事务提交后，只把客户ID登记到待刷新集合里就立即返回，由一个后台线程依次取出并刷新画像，
+ * 这样申购/赎回接口的耗时只取决于交易本身的写入。
+ * 同一个客户在排队期间的多笔交易会被合并成一次刷新；刷新失败的客户仍保留着交易时写入的脏标记，由夜间增量刷新兜底。
+ */
+@Component
+public class AsyncTagRefresher {
+
+    @Autowired
+    @Lazy
+    private TagRefreshService tagRefreshService;
+
+    // 客户进入队列后至少等待这么久再刷新，让短时间内的连续交易有机会合并
+    private static final long COALESCE_DELAY_MILLIS = 200;
+
+    // 待刷新的客户 -> 首次登记的时间戳；一个客户在被取出刷新之前只会登记一次
+    private final Map<Long, Long> pendingSince = new ConcurrentHashMap<>();
+    private final BlockingQueue<Long> queue = new LinkedBlockingQueue<>();
+
+    private final AtomicLong refreshedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private volatile LocalDateTime lastRefreshTime;
+
+    private volatile boolean running = true;
+    private Thread worker;
+
+    @PostConstruct
+    public void start() {
+        worker = new ThreadFactoryBuilder().setNameFormat("async-tag-refresher-%d").setDaemon(true).build()
+                .newThread(this::drainLoop);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    /**
+     * 交易事务提交之后才登记刷新；事务回滚时不会收到该事件
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onTradeCommitted(CustomerTradeCommittedEvent event) {
+        submit(event.getCustomerId());
+    }
+
+    /**
+     * 登记一个待刷新的客户。如果该客户已经在排队，本次请求直接合并进去。
+     */
+    public void submit(Long customerId) {
+        if (customerId == null) return;
+        if (pendingSince.putIfAbsent(customerId, System.currentTimeMillis()) == null) {
+            queue.offer(customerId);
+        } else {
+            coalescedCount.incrementAndGet();
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            try {
+                Long customerId = queue.take();
+                Long queuedAt = pendingSince.get(customerId);
+                long waitMillis = queuedAt == null ? 0 : queuedAt + COALESCE_DELAY_MILLIS - System.currentTimeMillis();
+                if (waitMillis > 0) {
+                    Thread.sleep(waitMillis);
+                }
+                // 先移出待刷新集合再刷新：刷新过程中到来的新交易会重新登记，不会被漏掉
+                queuedAt = pendingSince.remove(customerId);
+                refresh(customerId, queuedAt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void refresh(Long customerId, Long queuedAt) {
+        try {
+            tagRefreshService.refreshTagsForCustomer(customerId);
+            long lag = System.currentTimeMillis() - (queuedAt == null ? System.currentTimeMillis() : queuedAt);
+            lastLagMillis.set(lag);
+            maxLagMillis.accumulateAndGet(lag, Math::max);
+            refreshedCount.incrementAndGet();
+            lastRefreshTime = LocalDateTime.now();
+        } catch (Exception e) {
+            failedCount.incrementAndGet();
+            System.err.println("【异步刷新错误】客户 " + customerId + " 的画像刷新失败，等待夜间增量刷新补偿: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 当前的刷新延迟统计
+     */
+    public TagRefreshLagVO getLagStats() {
+        long now = System.currentTimeMillis();
+        long oldest = pendingSince.values().stream().mapToLong(Long::longValue).min().orElse(now);
+
+        TagRefreshLagVO vo = new TagRefreshLagVO();
+        vo.setPendingCustomers(pendingSince.size());
+        vo.setOldestPendingMillis(now - oldest);
+        vo.setLastLagMillis(lastLagMillis.get());
+        vo.setMaxLagMillis(maxLagMillis.get());
+        vo.setRefreshedCount(refreshedCount.get());
+        vo.setCoalescedCount(coalescedCount.get());
+        vo.setFailedCount(failedCount.get());
+        vo.setLastRefreshTime(lastRefreshTime);
+        return vo;
+    }
+}
@@ -0,0 +1,393 @@
+package com.whu.hongjing.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.whu.hongjing.enums.RiskLevelEnum;
+import com.whu.hongjing.mapper.CustomerMapper;
+import com.whu.hongjing.pojo.entity.*;
+import com.whu.hongjing.pojo.vo.BenchmarkDatasetVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 可复现的大规模基准数据集生成器，用于在相同的数据上比较不同版本的性能。
+ *
+ * 与【创世】【演绎】两个工具不同：
+ * 1. 每个客户的全部数据（基本信息、风险评估、交易、持仓）只由 (种子, 客户序号) 决定：每个客户使用独立的 SplittableRandom，
+ *    与线程数、执行顺序无关，相同的种子、规模参数和基金目录总是生成完全相同的数据集；
+ * 2. 所有时间都相对于固定的基准日期 asOf，而不是当前时间；
+ * 3. 证件号和手机号由客户ID直接构造：客户ID全库唯一，因此不论用哪个种子、追加生成多少次都不会触发唯一键冲突，也不需要冲突后重试；
+ * 4. 按块并发生成，写入数据库时使用多行 INSERT，也可以输出为制表符分隔的文件，配合生成的 load.sql 用 LOAD DATA LOCAL INFILE 导入。
+ */
+@Component
+public class BenchmarkDatasetGenerator {
+
+    @Autowired
+    private FundInfoService fundInfoService;
+    @Autowired
+    private CustomerMapper customerMapper;
+    @Autowired
+    private MockDataWriterService mockDataWriterService;
+    @Autowired
+    private ExecutorRegistry executorRegistry;
+
+    // 输出文件的根目录，接口传入的输出目录只能是其下的相对路径
+    @Value("${hongjing.benchmark-dataset.output-base-dir:data/benchmark}")
+    private String outputBaseDir;
+
+    public static final String TARGET_DB = "db";
+    public static final String TARGET_FILES = "files";
+
+    // 每块生成的客户数
+    private static final int CHUNK_CUSTOMERS = 1000;
+
+    // 手机号后9位 = (客户ID * 3^18) mod 10^9；3^18 与 10^9 互素，因此对小于 10^9 的客户ID是一一映射，证件号的表示范围更大
+    private static final long MAX_CUSTOMER_ID = 999_999_999L;
+    private static final long PHONE_SPACE = 1_000_000_000L;
+    private static final long PHONE_MULTIPLIER = 387_420_489L;
+
+    // 18位身份证号的校验位（ISO 7064 MOD 11-2）
+    private static final int[] ID_WEIGHTS = {7, 9, 10, 5, 8, 4, 2, 1, 6, 3, 7, 9, 10, 5, 8, 4, 2};
+    private static final char[] ID_CHECK_CODES = "10X98765432".toCharArray();
+
+    private static final String[] SURNAMES = {"王", "李", "张", "刘", "陈", "杨", "黄", "赵", "吴", "周",
+            "徐", "孙", "马", "朱", "胡", "郭", "何", "高", "林", "罗", "郑", "梁", "谢", "宋", "唐"};
+    private static final String[] GIVEN_NAME_CHARS = {"伟", "芳", "娜", "敏", "静", "丽", "强", "磊", "军", "洋",
+            "勇", "艳", "杰", "娟", "涛", "明", "超", "秀", "霞", "平", "刚", "桂", "英", "华", "玉", "文", "辉", "鑫", "宇", "晨"};
+    private static final String[] PROVINCES = {"湖北省", "广东省", "浙江省", "江苏省", "四川省", "山东省", "河南省", "湖南省", "福建省", "北京市", "上海市"};
+    private static final String[] CITIES = {"武汉市", "广州市", "杭州市", "南京市", "成都市", "济南市", "郑州市", "长沙市", "厦门市", "宜昌市", "苏州市", "深圳市"};
+    private static final String[] STREETS = {"中山路", "解放大道", "人民路", "建设大街", "光谷大道", "和平街", "长江路", "东湖路", "珞喻路", "八一路"};
+
+    private static final DateTimeFormatter FILE_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * 生成一个基准数据集
+     * @param seed 随机种子
+     * @param customerCount 客户数，如 10000 / 100000 / 1000000
+     * @param days 每个客户模拟交易的天数（asOf 之前的 days 天）
+     * @param tradePercent 每个客户每天发生交易的概率（%），即交易强度
+     * @param asOf 基准日期
+     * @param outputDir 为空时直接写入数据库；否则在根目录 hongjing.benchmark-dataset.output-base-dir 下的该相对目录中生成 .tsv 文件和 load.sql
+     */
+    public BenchmarkDatasetVO generate(long seed, int customerCount, int days, int tradePercent, LocalDate asOf, String outputDir) {
+        if (customerCount <= 0 || customerCount > MAX_CUSTOMER_ID) {
+            throw new IllegalArgumentException("客户数必须在 1 到 " + MAX_CUSTOMER_ID + " 之间");
+        }
+        if (days < 0 || tradePercent < 0 || tradePercent > 100) {
+            throw new IllegalArgumentException("天数不能为负数，交易概率必须在 0 到 100 之间");
+        }
+        FundInfoSnapshot fundSnapshot = fundInfoService.getSnapshot();
+        if (fundSnapshot.isEmpty()) {
+            throw new IllegalStateException("请先导入基金数据");
+        }
+        // 基金按代码排序，保证随机选择基金的结果只取决于种子
+        List<FundInfo> allFunds = new ArrayList<>(fundSnapshot.getAllFunds());
+        allFunds.sort(Comparator.comparing(FundInfo::getFundCode));
+        Map<String, FundInfo> fundInfoMap = fundSnapshot.getFundsByCode();
+
+        boolean toFiles = outputDir != null && !outputDir.isBlank();
+        Path outputPath = toFiles ? resolveOutputDir(outputDir) : null;
+        long firstCustomerId = toFiles ? 1L : nextCustomerId();
+        if (firstCustomerId + customerCount - 1 > MAX_CUSTOMER_ID) {
+            throw new IllegalArgumentException("客户ID将超出证件号和手机号的构造范围（最大 " + MAX_CUSTOMER_ID + "），当前起始ID " + firstCustomerId);
+        }
+        BenchmarkDatasetVO result = new BenchmarkDatasetVO();
+        result.setSeed(seed);
+        result.setCustomerCount(customerCount);
+        result.setDays(days);
+        result.setTradePercent(tradePercent);
+        result.setAsOf(asOf);
+        result.setTarget(toFiles ? TARGET_FILES : TARGET_DB);
+        result.setOutputDir(toFiles ? outputPath.toString() : null);
+        result.setFirstCustomerId(firstCustomerId);
+        System.out.println("【基准数据集】开始生成：种子 " + seed + "，" + customerCount + " 位客户，" + days + " 天，交易概率 "
+                + tradePercent + "%，基准日期 " + asOf + "，写入" + (toFiles ? "文件 " + outputPath : "数据库") + "。");
+
+        long startTime = System.currentTimeMillis();
+        long[] counts = new long[4];
+        JobProgress progress = JobProgress.current();
+        progress.phase(toFiles ? "generate-files" : "generate-db");
+        // 写数据库时每块的生成和写入都在共享的写入线程池中进行，只写文件时使用计算线程池
+        ExecutorRegistry.Workload workload = toFiles ? ExecutorRegistry.Workload.COMPUTE : ExecutorRegistry.Workload.DB_WRITER;
+        int workerCount = executorRegistry.parallelism(workload);
+        ExecutorService executor = executorRegistry.get(workload);
+        // 按顺序消费的生成窗口：最多 workerCount * 2 块在途，内存占用与客户总数无关；文件按客户顺序写出
+        Deque<Future<DatasetChunk>> window = new ArrayDeque<>();
+        try (DatasetFiles files = toFiles ? new DatasetFiles(outputPath) : null) {
+            for (long firstIndex = 0; firstIndex < customerCount; firstIndex += CHUNK_CUSTOMERS) {
+                final long chunkFirstIndex = firstIndex;
+                final int chunkSize = (int) Math.min(CHUNK_CUSTOMERS, customerCount - firstIndex);
+                window.add(executor.submit(() -> {
+                    DatasetChunk chunk = generateChunk(seed, chunkFirstIndex, chunkSize, firstCustomerId, days, tradePercent, asOf, fundInfoMap, allFunds);
+                    if (!toFiles) {
+                        mockDataWriterService.saveDatasetChunkInTransaction(chunk.customers, chunk.assessments, chunk.transactions, chunk.holdings);
+                    }
+                    return chunk;
+                }));
+                if (window.size() >= workerCount * 2) {
+                    consume(window.poll().get(), files, counts, progress);
+                }
+            }
+            while (!window.isEmpty()) {
+                consume(window.poll().get(), files, counts, progress);
+            }
+            if (files != null) {
+                files.writeLoadScript(result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("基准数据集生成被中断", e);
+        } catch (ExecutionException | IOException e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new IllegalStateException("基准数据集生成失败（已写入 " + counts[0] + " 位客户）: " + cause.getMessage(), cause);
+        } finally {
+            // 出错时取消窗口中还没完成的块；正常结束时窗口已经为空
+            window.forEach(future -> future.cancel(true));
+        }
+
+        long elapsedMillis = Math.max(1, System.currentTimeMillis() - startTime);
+        long totalRows = counts[0] + counts[1] + counts[2] + counts[3];
+        result.setCustomers(counts[0]);
+        result.setAssessments(counts[1]);
+        result.setTransactions(counts[2]);
+        result.setHoldings(counts[3]);
+        result.setElapsedMillis(elapsedMillis);
+        result.setRowsPerSecond(totalRows * 1000 / elapsedMillis);
+        System.out.println("【基准数据集】生成完成：客户 " + counts[0] + "，风险评估 " + counts[1] + "，交易 " + counts[2] + "，持仓 " + counts[3]
+                + "，共 " + totalRows + " 行，耗时 " + elapsedMillis + " ms，" + result.getRowsPerSecond() + " 行/秒。");
+        return result;
+    }
+
+    /**
+     * 把调用方传入的输出目录解析到配置的根目录之下：只接受相对路径且不能包含 ..，防止通过接口让服务器在任意位置写文件
+     */
+    private Path resolveOutputDir(String outputDir) {
+        Path relative;
+        try {
+            relative = Paths.get(outputDir);
+        } catch (InvalidPathException e) {
+            throw new IllegalArgumentException("输出目录不合法: " + outputDir);
+        }
+        if (relative.isAbsolute() || relative.getRoot() != null) {
+            throw new IllegalArgumentException("输出目录必须是相对路径: " + outputDir);
+        }
+        for (Path part : relative) {
+            if ("..".equals(part.toString())) {
+                throw new IllegalArgumentException("输出目录不能包含 ..: " + outputDir);
+            }
+        }
+        Path base = Paths.get(outputBaseDir).toAbsolutePath().normalize();
+        Path resolved = base.resolve(relative).normalize();
+        if (!resolved.startsWith(base) || resolved.equals(base)) {
+            throw new IllegalArgumentException("输出目录必须位于 " + base + " 之下: " + outputDir);
+        }
+        return resolved;
+    }
+
+    private void consume(DatasetChunk chunk, DatasetFiles files, long[] counts, JobProgress progress) throws IOException {
+        if (files != null) {
+            files.write(chunk);
+        }
+        counts[0] += chunk.customers.size();
+        counts[1] += chunk.assessments.size();
+        counts[2] += chunk.transactions.size();
+        counts[3] += chunk.holdings.size();
+        progress.addRows(chunk.customers.size() + chunk.assessments.size() + chunk.transactions.size() + chunk.holdings.size());
+    }
+
+    private long nextCustomerId() {
+        List<Map<String, Object>> rows = customerMapper.selectMaps(new QueryWrapper<Customer>().select("MAX(id) AS max_id"));
+        Object maxId = rows.isEmpty() || rows.get(0) == null ? null : rows.get(0).get("max_id");
+        return maxId == null ? 1L : ((Number) maxId).longValue() + 1;
+    }
+
+    /**
+     * 生成一块连续序号的客户及其全部数据
+     */
+    private DatasetChunk generateChunk(long seed, long firstIndex, int size, long firstCustomerId, int days, int tradePercent,
+                                       LocalDate asOf, Map<String, FundInfo> fundInfoMap, List<FundInfo> allFunds) {
+        DatasetChunk chunk = new DatasetChunk(size);
+        LocalDateTime asOfTime = asOf.atStartOfDay();
+        for (long index = firstIndex; index < firstIndex + size; index++) {
+            // 每个客户独立的随机数序列，只由种子和序号决定
+            SplittableRandom random = new SplittableRandom(seed ^ (index * 0x9E3779B97F4A7C15L));
+            long customerId = firstCustomerId + index;
+
+            Customer customer = new Customer();
+            customer.setId(customerId);
+            customer.setName(SURNAMES[random.nextInt(SURNAMES.length)] + GIVEN_NAME_CHARS[random.nextInt(GIVEN_NAME_CHARS.length)]
+                    + (random.nextBoolean() ? GIVEN_NAME_CHARS[random.nextInt(GIVEN_NAME_CHARS.length)] : ""));
+            customer.setGender(random.nextBoolean() ? "男" : "女");
+            customer.setIdType("身份证");
+            customer.setIdNumber(idNumber(customerId));
+            customer.setBirthDate(asOf.minusYears(18 + random.nextInt(48)).minusDays(random.nextInt(365)));
+            customer.setNationality("中国");
+            customer.setOccupation(MockDataSimulator.OCCUPATIONS[random.nextInt(MockDataSimulator.OCCUPATIONS.length)]);
+            customer.setPhone(phone(customerId));
+            customer.setAddress(PROVINCES[random.nextInt(PROVINCES.length)] + CITIES[random.nextInt(CITIES.length)]
+                    + STREETS[random.nextInt(STREETS.length)] + (1 + random.nextInt(999)) + "号");
+            customer.setCreateTime(asOfTime);
+            customer.setUpdateTime(asOfTime);
+            chunk.customers.add(customer);
+
+            RiskAssessment assessment = new RiskAssessment();
+            assessment.setCustomerId(customerId);
+            assessment.setRiskScore(random.nextInt(101));
+            assessment.setRiskLevel(RiskLevelEnum.getByScore(assessment.getRiskScore()).getLevelName());
+            assessment.setAssessmentDate(asOf.minusDays(random.nextInt(365)));
+            chunk.assessments.add(assessment);
+
+            MockDataSimulator.simulateCustomer(customerId, days, tradePercent, asOfTime, fundInfoMap, allFunds, random,
+                    chunk.transactions, chunk.holdings);
+        }
+        return chunk;
+    }
+
+    /**
+     * 18位证件号：前缀 99（不与任何真实地区码冲突）+ 15位客户ID + 校验位，与客户ID一一对应
+     */
+    static String idNumber(long customerId) {
+        if (customerId <= 0 || customerId > MAX_CUSTOMER_ID) {
+            throw new IllegalArgumentException("客户ID超出证件号的构造范围: " + customerId);
+        }
+        String body = String.format("99%015d", customerId);
+        int sum = 0;
+        for (int i = 0; i < 17; i++) {
+            sum += (body.charAt(i) - '0') * ID_WEIGHTS[i];
+        }
+        return body + ID_CHECK_CODES[sum % 11];
+    }
+
+    /**
+     * 11位手机号：19 + 客户ID经过一一映射得到的9位数字，与客户ID一一对应
+     */
+    static String phone(long customerId) {
+        if (customerId <= 0 || customerId > MAX_CUSTOMER_ID) {
+            throw new IllegalArgumentException("客户ID超出手机号的构造范围: " + customerId);
+        }
+        return String.format("19%09d", customerId * PHONE_MULTIPLIER % PHONE_SPACE);
+    }
+
+    private static final class DatasetChunk {
+        private final List<Customer> customers;
+        private final List<RiskAssessment> assessments;
+        private final List<FundTransaction> transactions = new ArrayList<>();
+        private final List<CustomerHolding> holdings = new ArrayList<>();
+
+        DatasetChunk(int size) {
+            this.customers = new ArrayList<>(size);
+            this.assessments = new ArrayList<>(size);
+        }
+    }
+
+    /**
+     * 按表输出的制表符分隔文件（空值写作 \N），列顺序与 load.sql 中的列清单一致
+     */
+    private static final class DatasetFiles implements AutoCloseable {
+        private static final String CUSTOMER_COLUMNS = "id, name, gender, id_type, id_number, birth_date, nationality, occupation, phone, address, create_time, update_time";
+        private static final String ASSESSMENT_COLUMNS = "customer_id, risk_score, risk_level, assessment_date, create_time, update_time";
+        private static final String TRANSACTION_COLUMNS = "customer_id, fund_code, transaction_type, transaction_amount, transaction_shares, share_price, transaction_time, status, create_time, update_time";
+        private static final String HOLDING_COLUMNS = "customer_id, fund_code, total_shares, market_value, average_cost, last_update_date, create_time, update_time";
+
+        private final Path dir;
+        private final BufferedWriter customerWriter;
+        private final BufferedWriter assessmentWriter;
+        private final BufferedWriter transactionWriter;
+        private final BufferedWriter holdingWriter;
+        private String createTime;
+
+        DatasetFiles(Path dir) throws IOException {
+            this.dir = dir;
+            Files.createDirectories(dir);
+            this.customerWriter = Files.newBufferedWriter(dir.resolve("customer.tsv"), StandardCharsets.UTF_8);
+            this.assessmentWriter = Files.newBufferedWriter(dir.resolve("risk_assessment.tsv"), StandardCharsets.UTF_8);
+            this.transactionWriter = Files.newBufferedWriter(dir.resolve("fund_transaction.tsv"), StandardCharsets.UTF_8);
+            this.holdingWriter = Files.newBufferedWriter(dir.resolve("customer_holding.tsv"), StandardCharsets.UTF_8);
+        }
+
+        void write(DatasetChunk chunk) throws IOException {
+            if (!chunk.customers.isEmpty() && createTime == null) {
+                createTime = value(chunk.customers.get(0).getCreateTime());
+            }
+            for (Customer c : chunk.customers) {
+                line(customerWriter, c.getId(), c.getName(), c.getGender(), c.getIdType(), c.getIdNumber(), c.getBirthDate(),
+                        c.getNationality(), c.getOccupation(), c.getPhone(), c.getAddress(), c.getCreateTime(), c.getUpdateTime());
+            }
+            for (RiskAssessment a : chunk.assessments) {
+                line(assessmentWriter, a.getCustomerId(), a.getRiskScore(), a.getRiskLevel(), a.getAssessmentDate(), createTime, createTime);
+            }
+            for (FundTransaction t : chunk.transactions) {
+                line(transactionWriter, t.getCustomerId(), t.getFundCode(), t.getTransactionType(), t.getTransactionAmount(),
+                        t.getTransactionShares(), t.getSharePrice(), t.getTransactionTime(), t.getStatus(), createTime, createTime);
+            }
+            for (CustomerHolding h : chunk.holdings) {
+                line(holdingWriter, h.getCustomerId(), h.getFundCode(), h.getTotalShares(), h.getMarketValue(), h.getAverageCost(),
+                        h.getLastUpdateDate(), createTime, createTime);
+            }
+        }
+
+        void writeLoadScript(BenchmarkDatasetVO dataset) throws IOException {
+            List<String> lines = new ArrayList<>();
+            lines.add("-- 基准数据集：种子 " + dataset.getSeed() + "，" + dataset.getCustomerCount() + " 位客户，" + dataset.getDays()
+                    + " 天，交易概率 " + dataset.getTradePercent() + "%，基准日期 " + dataset.getAsOf());
+            lines.add("-- 客户ID从 " + dataset.getFirstCustomerId() + " 开始，请导入到空库中；在本目录下执行：mysql --local-infile=1 hongjing < load.sql");
+            lines.add("-- 导入后请重建盈亏汇总（CustomerPnlService.rebuildAll），并执行一次全量画像刷新");
+            lines.add(loadStatement("customer.tsv", "customer", CUSTOMER_COLUMNS));
+            lines.add(loadStatement("risk_assessment.tsv", "risk_assessment", ASSESSMENT_COLUMNS));
+            lines.add(loadStatement("fund_transaction.tsv", "fund_transaction", TRANSACTION_COLUMNS));
+            lines.add(loadStatement("customer_holding.tsv", "customer_holding", HOLDING_COLUMNS));
+            Files.write(dir.resolve("load.sql"), lines, StandardCharsets.UTF_8);
+        }
+
+        private static String loadStatement(String file, String table, String columns) {
+            return "LOAD DATA LOCAL INFILE '" + file + "' INTO TABLE " + table
+                    + " CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' LINES TERMINATED BY '\\n' (" + columns + ");";
+        }
+
+        private static void line(BufferedWriter writer, Object... values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write('\t');
+                }
+                writer.write(value(values[i]));
+            }
+            writer.write('\n');
+        }
+
+        private static String value(Object value) {
+            if (value == null) {
+                return "\\N";
+            }
+            if (value instanceof LocalDateTime) {
+                return ((LocalDateTime) value).format(FILE_DATE_TIME);
+            }
+            if (value instanceof java.math.BigDecimal) {
+                return ((java.math.BigDecimal) value).toPlainString();
+            }
+            return value.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            customerWriter.close();
+            assessmentWriter.close();
+            transactionWriter.close();
+            holdingWriter.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.whu.hongjing.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.whu.hongjing.pojo.entity.CustomerAssetSnapshot;
+import com.whu.hongjing.pojo.entity.FundTransaction;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 客户资产走势快照服务
+ * 负责维护 customer_asset_snapshot 表，并为客户详情页提供现成的资产走势时间序列。
+ */
+public interface CustomerAssetSnapshotService extends IService<CustomerAssetSnapshot> {
+
+    /**
+     * 一笔交易保存、持仓和盈亏汇总更新之后调用（与交易在同一事务中）。
+     * 当天的交易直接写入当天的快照；交易日期不是当天的（补录的历史交易），只登记该客户待重建，由每日任务回放
+     */
+    void recordTrade(FundTransaction transaction);
+
+    /**
+     * 登记客户待重建快照
+     * @param fromDate 已有快照从这一天起不再准确；只需补齐缺失的历史时传当天
+     */
+    void markForRebuild(Collection<Long> customerIds, LocalDate fromDate);
+
+    /**
+     * 每日任务写完当天快照后调用：分批删除登记客户不再准确的快照，并按交易明细回放重建
+     * @return 重建的客户数
+     */
+    int rebuildPending();
+
+    /**
+     * 每日净值任务更新完盈亏汇总后，按客户ID分段为所有客户写入当天的快照
+     * @return 写入的行数
+     */
+    int snapshotAll(LocalDate snapshotDate);
+
+    /**
+     * 按交易明细和净值历史回放，重建指定客户在每个交易日的快照。用于批量导入了历史交易、或还没有快照的老客户
+     */
+    void rebuildCustomers(Collection<Long> customerIds);
+
+    /**
+     * 客户的全部快照，按日期升序。只读，缺失或待重建的历史由每日任务补齐
+     */
+    List<CustomerAssetSnapshot> getSnapshots(Long customerId);
+}
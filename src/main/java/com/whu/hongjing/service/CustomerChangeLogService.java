@@ -0,0 +1,42 @@
+package com.whu.hongjing.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.whu.hongjing.pojo.entity.CustomerChangeLog;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 客户变更日志服务
+ * 负责记录哪些客户的画像标签需要重新计算，供每日增量刷新使用。
+ */
+public interface CustomerChangeLogService extends IService<CustomerChangeLog> {
+
+    // 标记原因
+    String REASON_TRADE = "交易";
+    String REASON_RISK_ASSESSMENT = "风险评估";
+    String REASON_CUSTOMER_EDIT = "客户信息变更";
+    String REASON_MARKET_VALUE = "市值变动";
+
+    /**
+     * 将单个客户标记为需要刷新标签
+     */
+    void markDirty(Long customerId, String reason);
+
+    /**
+     * 批量将客户标记为需要刷新标签
+     */
+    void markDirty(Collection<Long> customerIds, String reason);
+
+    /**
+     * 获取当前所有被标记的客户ID
+     */
+    List<Long> listDirtyCustomerIds();
+
+    /**
+     * 刷新完成后清除标记。只清除在刷新开始之前打上的标记，刷新期间新产生的变更会保留到下一次。
+     * @param customerIds 已成功刷新的客户ID
+     * @param refreshStartedAt 本次刷新的开始时间
+     */
+    void clearProcessed(Collection<Long> customerIds, LocalDateTime refreshStartedAt);
+}
@@ -0,0 +1,50 @@
+package com.whu.hongjing.service;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.whu.hongjing.pojo.entity.CustomerPnl;
+import com.whu.hongjing.pojo.entity.FundTransaction;
+import com.whu.hongjing.pojo.vo.ProfitLossVO;
+import java.util.Collection;
+
+/**
+ * 客户盈亏汇总服务
+ * 负责维护 customer_pnl 汇总表，并基于它提供盈亏查询。
+ */
+public interface CustomerPnlService extends IService<CustomerPnl> {
+
+    /**
+     * 一笔交易保存后，增量更新该客户的累计净投入（与交易在同一事务中调用）
+     */
+    void applyTransaction(FundTransaction transaction);
+
+    /**
+     * 从交易表和持仓表重新计算指定客户的汇总行，用于持仓被整体重写等无法增量更新的场景，也用于新客户初始化
+     */
+    void recomputeCustomers(Collection<Long> customerIds);
+
+    /**
+     * 每日市值任务之后，按客户ID分段批量更新所有汇总行的总市值
+     * @return 更新的行数
+     */
+    int refreshAllMarketValues();
+
+    /**
+     * 按客户ID分段，从交易表和持仓表全量重建汇总表
+     * @return 处理的行数
+     */
+    int rebuildAll();
+
+    /**
+     * 盈亏分页查询
+     * @param sortField 排序字段（customerId / totalInvestment / totalMarketValue / totalProfitLoss / profitLossRate），其他值按总盈亏排序
+     * @param sortOrder asc / desc，其他值按 desc 处理
+     */
+    Page<ProfitLossVO> getProfitLossPage(Page<ProfitLossVO> page, Long customerId, String customerName,
+                                         String sortField, String sortOrder);
+
+    /**
+     * 单个客户的盈亏，汇总行缺失时先补算一次
+     */
+    ProfitLossVO getProfitLossVO(Long customerId);
+}
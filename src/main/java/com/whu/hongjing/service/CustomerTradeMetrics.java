@@ -0,0 +1,184 @@
+package com.whu.hongjing.service;
+
+import com.whu.hongjing.constants.TaggingConstants;
+import com.whu.hongjing.pojo.entity.FundTransaction;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个客户交易记录的单次遍历累加器。
+ * 只把客户的交易列表从头到尾走一遍，就同时得到画像和标签计算需要的所有交易类指标：
+ * 每只基金的首次申购时间、最近交易时间、近90天交易次数、近一年的逐月申购位图、近3/6个月的净流入。
+ * 所有时间窗口都以构造时传入的同一个“当前时间”为基准，计算口径与原先逐项扫描的写法保持一致。
+ */
+public class CustomerTradeMetrics {
+
+    private static final String TYPE_PURCHASE = "申购";
+    private static final String TYPE_REDEEM = "赎回";
+
+    // 定投判断：在最近12个月里（以当前月为第0个月），是否存在连续 REGULAR_MONTHS 个月都有申购
+    private static final int REGULAR_MONTHS = 3;
+    private static final int REGULAR_LOOKBACK_MONTHS = 12;
+
+    private final LocalDateTime now;
+    private final int transactionCount;
+
+    // 每只基金最早一次申购的时间
+    private final Map<String, LocalDateTime> firstPurchaseByFund = new HashMap<>();
+    private LocalDateTime lastTradeTime;
+
+    // 近90天（不含恰好90天前那一刻）的交易次数，以及其中最早一笔的时间
+    private int frequency90d;
+    private LocalDateTime earliestTradeWithin90d;
+
+    // 近一年内的申购月份位图：第 i 位表示“当前月往前数第 i 个月”有过申购
+    private int monthlyPurchaseBits;
+    private boolean hasPurchaseWithinYear;
+
+    // 近3个月、近6个月（含起点、不含当前时刻）的净流入 = 申购金额 - 赎回金额，以及窗口内最早一笔交易的时间
+    // 金额以分为单位累加，避免每笔交易都产生新的 BigDecimal
+    private long netFlow3mCents;
+    private long netFlow6mCents;
+    private LocalDateTime earliestTradeWithin3m;
+    private LocalDateTime earliestTradeWithin6m;
+
+    private CustomerTradeMetrics(LocalDateTime now, int transactionCount) {
+        this.now = now;
+        this.transactionCount = transactionCount;
+    }
+
+    /**
+     * 遍历一次交易列表，计算所有指标
+     * @param transactions 某一个客户的全部交易记录，顺序无要求
+     * @param now 统一的计算基准时间
+     */
+    public static CustomerTradeMetrics of(List<FundTransaction> transactions, LocalDateTime now) {
+        CustomerTradeMetrics metrics = new CustomerTradeMetrics(now, transactions.size());
+
+        LocalDateTime ninetyDaysAgo = now.minusDays(90);
+        LocalDateTime oneYearAgo = now.minusYears(1);
+        LocalDateTime threeMonthsAgo = now.minusMonths(TaggingConstants.RECENCY_STAGNANT_MONTHS);
+        LocalDateTime sixMonthsAgo = now.minusMonths(TaggingConstants.RECENCY_OUTFLOW_MONTHS);
+        int currentMonthIndex = monthIndex(YearMonth.from(now));
+
+        for (FundTransaction tx : transactions) {
+            LocalDateTime time = tx.getTransactionTime();
+            boolean isPurchase = TYPE_PURCHASE.equals(tx.getTransactionType());
+            boolean isRedeem = TYPE_REDEEM.equals(tx.getTransactionType());
+
+            // 最近交易时间 R
+            if (metrics.lastTradeTime == null || time.isAfter(metrics.lastTradeTime)) {
+                metrics.lastTradeTime = time;
+            }
+
+            // 近90天交易频率 F
+            if (time.isAfter(ninetyDaysAgo)) {
+                metrics.frequency90d++;
+                metrics.earliestTradeWithin90d = earlierOf(metrics.earliestTradeWithin90d, time);
+            }
+
+            if (isPurchase) {
+                // 每只基金的首次申购时间（用于平均持仓天数）
+                metrics.firstPurchaseByFund.merge(tx.getFundCode(), time, (a, b) -> b.isBefore(a) ? b : a);
+
+                // 近一年内的逐月申购情况（用于定投判断）
+                if (time.isAfter(oneYearAgo)) {
+                    metrics.hasPurchaseWithinYear = true;
+                    int monthsAgo = currentMonthIndex - monthIndex(YearMonth.from(time));
+                    if (monthsAgo >= 0 && monthsAgo < REGULAR_LOOKBACK_MONTHS) {
+                        metrics.monthlyPurchaseBits |= 1 << monthsAgo;
+                    }
+                }
+            }
+
+            // 近3个月 / 近6个月的净流入
+            if (!time.isBefore(sixMonthsAgo) && time.isBefore(now)) {
+                metrics.earliestTradeWithin6m = earlierOf(metrics.earliestTradeWithin6m, time);
+                if (!time.isBefore(threeMonthsAgo)) {
+                    metrics.earliestTradeWithin3m = earlierOf(metrics.earliestTradeWithin3m, time);
+                }
+                if (isPurchase || isRedeem) {
+                    long amountCents = TagKernel.toCents(tx.getTransactionAmount());
+                    long signedCents = isPurchase ? amountCents : -amountCents;
+                    metrics.netFlow6mCents += signedCents;
+                    if (!time.isBefore(threeMonthsAgo)) {
+                        metrics.netFlow3mCents += signedCents;
+                    }
+                }
+            }
+        }
+        return metrics;
+    }
+
+    private static int monthIndex(YearMonth yearMonth) {
+        return yearMonth.getYear() * 12 + yearMonth.getMonthValue() - 1;
+    }
+
+    private static LocalDateTime earlierOf(LocalDateTime current, LocalDateTime candidate) {
+        return current == null || candidate.isBefore(current) ? candidate : current;
+    }
+
+    public LocalDateTime getNow() {
+        return now;
+    }
+
+    public boolean hasTransactions() {
+        return transactionCount > 0;
+    }
+
+    /**
+     * 某只基金最早一次申购的时间，从未申购过则返回 null
+     */
+    public LocalDateTime getFirstPurchaseTime(String fundCode) {
+        return firstPurchaseByFund.get(fundCode);
+    }
+
+    public LocalDateTime getLastTradeTime() {
+        return lastTradeTime;
+    }
+
+    public int getFrequency90d() {
+        return frequency90d;
+    }
+
+    public LocalDateTime getEarliestTradeWithin90d() {
+        return earliestTradeWithin90d;
+    }
+
+    public boolean hasPurchaseWithinYear() {
+        return hasPurchaseWithinYear;
+    }
+
+    /**
+     * 是否有定投行为：最近12个月内（窗口起点为当前月往前0~9个月）存在连续3个月都有申购
+     */
+    public boolean hasRegularInvestment() {
+        int bits = monthlyPurchaseBits;
+        int consecutive = bits;
+        for (int i = 1; i < REGULAR_MONTHS; i++) {
+            consecutive &= bits >>> i;
+        }
+        int windowStarts = (1 << (REGULAR_LOOKBACK_MONTHS - REGULAR_MONTHS + 1)) - 1;
+        return (consecutive & windowStarts) != 0;
+    }
+
+    public long getNetFlow3mCents() {
+        return netFlow3mCents;
+    }
+
+    public long getNetFlow6mCents() {
+        return netFlow6mCents;
+    }
+
+    public LocalDateTime getEarliestTradeWithin3m() {
+        return earliestTradeWithin3m;
+    }
+
+    public LocalDateTime getEarliestTradeWithin6m() {
+        return earliestTradeWithin6m;
+    }
+}
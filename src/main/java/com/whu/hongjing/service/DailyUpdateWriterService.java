@@ -1,5 +1,6 @@
 package com.whu.hongjing.service;
 
+import com.whu.hongjing.mapper.CustomerHoldingMapper;
 import com.whu.hongjing.pojo.entity.CustomerHolding;
 import com.whu.hongjing.pojo.entity.FundInfo;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,6 +26,9 @@ public class DailyUpdateWriterService {
     @Autowired
     private CustomerHoldingService customerHoldingService;
 
+    @Autowired
+    private CustomerHoldingMapper customerHoldingMapper;
+
     /**
      * 在独立的、可重试的事务中，批量更新基金净值。
      */
@@ -57,4 +61,19 @@ public class DailyUpdateWriterService {
             customerHoldingService.updateBatchById(updatedHoldings, 1000);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 在独立的、可重试的事务中，用一条 UPDATE ... JOIN 在数据库内重新计算一个客户ID区间内所有持仓的市值。
+     * @param onlyChanged 为 true 时只更新市值有变化（或为空）的行
+     * @return 更新的行数
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    @Retryable(
+        value = { DeadlockLoserDataAccessException.class },
+        maxAttempts = 3,
+        backoff = @Backoff(delay = 100, multiplier = 2)
+    )
+    public int repriceHoldingsInRangeInTransaction(long fromCustomerId, long toCustomerId, boolean onlyChanged) {
+        return customerHoldingMapper.repriceRange(fromCustomerId, toCustomerId, onlyChanged);
+    }
+}
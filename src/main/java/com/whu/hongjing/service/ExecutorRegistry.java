@@ -0,0 +1,190 @@
+package com.whu.hongjing.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * 全局共享的线程池，按负载类型划分，取代各个批处理方法每次调用时临时创建、用完即销毁的线程池。
+ * 多个任务同时运行时共用同一组线程，CPU 和数据库连接的占用不会再按任务个数成倍叠加。
+ *
+ * - COMPUTE：纯内存计算（生成模拟数据等），线程数 = CPU 核数，基本不占数据库连接
+ * - DB_WRITER：以数据库写入为主的任务（市值写回、模拟交易和基准数据写入）
+ * - BACKGROUND_REFRESH：批量画像刷新
+ * - JOB：异步提交的批处理任务的调度线程（JobRunService），只负责切块、提交子任务和等待，线程数很少
+ * 写入和画像刷新线程都会占用连接，两者线程数之和不超过连接池大小减去预留的连接数，调度线程读数据时使用预留的连接。
+ *
+ * 所有线程池的队列都是有界的。前三类队列满时由提交任务的线程自己执行（形成背压）；
+ * JOB 队列满时直接拒绝，不能让接口线程自己去跑一个小时的任务。两种情况都计入拒绝次数。
+ * 每个线程池的活跃线程数、队列长度等通过 Micrometer 暴露（executor_* 指标，标签 name），拒绝次数为 hongjing_executor_rejected。
+ * 这些线程池不能被调用方关闭，调用方通过各自任务的 Future 等待完成。
+ */
+@Component
+public class ExecutorRegistry {
+
+    public enum Workload {
+        COMPUTE("hongjing-compute"),
+        DB_WRITER("hongjing-db-writer"),
+        BACKGROUND_REFRESH("hongjing-background-refresh"),
+        JOB("hongjing-job");
+
+        private final String poolName;
+
+        Workload(String poolName) {
+            this.poolName = poolName;
+        }
+
+        public String getPoolName() {
+            return poolName;
+        }
+    }
+
+    // 每个线程最多排队的任务数
+    private static final int QUEUE_CAPACITY_PER_THREAD = 64;
+    // 最多排队等待运行的批处理任务数
+    private static final int JOB_QUEUE_CAPACITY = 16;
+    // 空闲线程的存活时间，任务之间的空闲期线程会全部退出
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    // 不是 Hikari 连接池时按 Hikari 的默认大小估算
+    private static final int DEFAULT_CONNECTION_POOL_SIZE = 10;
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private HongjingMetrics metrics;
+
+    // 留给接口请求等非批处理场景的数据库连接数
+    @Value("${hongjing.executor.reserved-connections:2}")
+    private int reservedConnections;
+    // 同时运行的批处理任务数，超出的任务排队
+    @Value("${hongjing.executor.job-threads:2}")
+    private int jobThreads;
+
+    private final Map<Workload, ThreadPoolExecutor> executors = new EnumMap<>(Workload.class);
+
+    @PostConstruct
+    public void init() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int connectionPoolSize = dataSource instanceof HikariDataSource
+                ? ((HikariDataSource) dataSource).getMaximumPoolSize() : DEFAULT_CONNECTION_POOL_SIZE;
+        int connectionBudget = Math.max(2, connectionPoolSize - reservedConnections);
+        int refreshThreads = Math.max(1, Math.min(cores, connectionBudget / 2));
+        int writerThreads = Math.max(1, Math.min(cores * 2, connectionBudget - refreshThreads));
+
+        executors.put(Workload.COMPUTE, create(Workload.COMPUTE, cores));
+        executors.put(Workload.DB_WRITER, create(Workload.DB_WRITER, writerThreads));
+        executors.put(Workload.BACKGROUND_REFRESH, create(Workload.BACKGROUND_REFRESH, refreshThreads));
+        executors.put(Workload.JOB, create(Workload.JOB, jobThreads, JOB_QUEUE_CAPACITY, new CountingAbortPolicy(Workload.JOB.getPoolName())));
+        System.out.println("【线程池】连接池大小 " + connectionPoolSize + "，预留 " + reservedConnections + " 个连接；计算线程 " + cores
+                + "，写入线程 " + writerThreads + "，画像刷新线程 " + refreshThreads + "，任务调度线程 " + jobThreads + "。");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    public ExecutorService get(Workload workload) {
+        return executors.get(workload);
+    }
+
+    /**
+     * 该类负载的线程数，调用方用它决定同时在途的块数
+     */
+    public int parallelism(Workload workload) {
+        return executors.get(workload).getMaximumPoolSize();
+    }
+
+    /**
+     * 依次等待所有任务完成。即使有任务失败也会等到全部任务结束，再抛出第一个失败任务的 ExecutionException，
+     * 保证返回时这一批任务都已不再运行。
+     */
+    public static void awaitAll(List<? extends Future<?>> futures) throws InterruptedException, ExecutionException {
+        ExecutionException firstFailure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (firstFailure == null) {
+                    firstFailure = e;
+                }
+            }
+        }
+        if (firstFailure != null) {
+            throw firstFailure;
+        }
+    }
+
+    /**
+     * 等待所有任务结束，不响应中断，也不抛出任务的异常。用于调用方已被中断、但必须等正在运行的任务停下来再返回的场景；
+     * 等待期间收到的中断会在返回前恢复。
+     */
+    public static void awaitAllUninterruptibly(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                Uninterruptibles.getUninterruptibly(future);
+            } catch (ExecutionException | CancellationException e) {
+                // 只关心任务是否已经结束
+            }
+        }
+    }
+
+    private ThreadPoolExecutor create(Workload workload, int threads) {
+        return create(workload, threads, threads * QUEUE_CAPACITY_PER_THREAD, new CountingCallerRunsPolicy(workload.getPoolName()));
+    }
+
+    private ThreadPoolExecutor create(Workload workload, int threads, int queueCapacity, RejectedExecutionHandler rejectionPolicy) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat(workload.getPoolName() + "-%d").build(),
+                rejectionPolicy);
+        executor.allowCoreThreadTimeOut(true);
+        metrics.monitorExecutor(workload.getPoolName(), executor);
+        return executor;
+    }
+
+    /**
+     * 队列满时由提交线程自己执行，同时计数
+     */
+    private class CountingCallerRunsPolicy extends ThreadPoolExecutor.CallerRunsPolicy {
+        private final String poolName;
+
+        CountingCallerRunsPolicy(String poolName) {
+            this.poolName = poolName;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            metrics.countExecutorRejected(poolName);
+            super.rejectedExecution(task, executor);
+        }
+    }
+
+    /**
+     * 队列满时抛出 RejectedExecutionException，同时计数
+     */
+    private class CountingAbortPolicy extends ThreadPoolExecutor.AbortPolicy {
+        private final String poolName;
+
+        CountingAbortPolicy(String poolName) {
+            this.poolName = poolName;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            metrics.countExecutorRejected(poolName);
+            super.rejectedExecution(task, executor);
+        }
+    }
+}
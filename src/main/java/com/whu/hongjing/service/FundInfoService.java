@@ -21,4 +21,17 @@ public interface FundInfoService extends IService<FundInfo> {
              String fundName,
              String fundType,
              Integer riskScore);
-}
\ No newline at end of file
+
+    /**
+     * 获取当前的基金信息快照（首次调用时从数据库加载）。
+     * 高频的只读场景都应使用快照，而不是 list() 全表查询。
+     */
+    FundInfoSnapshot getSnapshot();
+
+    /**
+     * 从数据库重新加载基金信息，并原子地替换当前快照。
+     * 基金净值更新、基金数据导入等修改 fund_info 的操作提交后调用。
+     * @return 新的快照
+     */
+    FundInfoSnapshot reloadSnapshot();
+}
@@ -0,0 +1,108 @@
+package com.whu.hongjing.service;
+
+import com.whu.hongjing.pojo.entity.FundInfo;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 某一时刻全部基金信息的不可变快照，由 FundInfoService 统一加载和替换，各处共享同一份。
+ * 基金目录只在每日净值更新和外部数据导入时变化，画像刷新、AI建议、基金列表页等高频路径都直接读快照，不再逐次查询 fund_info 全表。
+ *
+ * 注意：快照中的 FundInfo 对象是共享的，调用方只能读取，不能修改。
+ */
+public final class FundInfoSnapshot {
+
+    private final long version;
+    private final LocalDateTime loadedAt;
+    private final Map<String, FundInfo> fundsByCode;
+    private final List<String> fundTypes;
+    private final Map<String, Integer> riskScores;
+    private final Map<String, BigDecimal> netValues;
+
+    private FundInfoSnapshot(long version, Map<String, FundInfo> fundsByCode) {
+        this.version = version;
+        this.loadedAt = LocalDateTime.now();
+        this.fundsByCode = Collections.unmodifiableMap(fundsByCode);
+
+        this.fundTypes = fundsByCode.values().stream()
+                .map(FundInfo::getFundType)
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+
+        Map<String, Integer> scores = new HashMap<>();
+        Map<String, BigDecimal> values = new HashMap<>();
+        for (FundInfo fund : fundsByCode.values()) {
+            if (fund.getRiskScore() != null) scores.put(fund.getFundCode(), fund.getRiskScore());
+            if (fund.getNetValue() != null) values.put(fund.getFundCode(), fund.getNetValue());
+        }
+        this.riskScores = Collections.unmodifiableMap(scores);
+        this.netValues = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * 由全量基金列表构建快照
+     * @param version 快照版本号，每次替换递增
+     */
+    public static FundInfoSnapshot of(long version, List<FundInfo> funds) {
+        return new FundInfoSnapshot(version, funds.stream()
+                .collect(Collectors.toMap(FundInfo::getFundCode, Function.identity(), (a, b) -> a)));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public LocalDateTime getLoadedAt() {
+        return loadedAt;
+    }
+
+    public boolean isEmpty() {
+        return fundsByCode.isEmpty();
+    }
+
+    public int size() {
+        return fundsByCode.size();
+    }
+
+    /**
+     * 基金代码 -> 基金信息（只读）
+     */
+    public Map<String, FundInfo> getFundsByCode() {
+        return fundsByCode;
+    }
+
+    public FundInfo getFund(String fundCode) {
+        return fundsByCode.get(fundCode);
+    }
+
+    public Collection<FundInfo> getAllFunds() {
+        return fundsByCode.values();
+    }
+
+    /**
+     * 去重并排序后的基金类型列表（只读）
+     */
+    public List<String> getFundTypes() {
+        return fundTypes;
+    }
+
+    /**
+     * 基金代码 -> 风险评分，只包含评分不为空的基金（只读）
+     */
+    public Map<String, Integer> getRiskScores() {
+        return riskScores;
+    }
+
+    /**
+     * 基金代码 -> 最新净值，只包含净值不为空的基金（只读）
+     */
+    public Map<String, BigDecimal> getNetValues() {
+        return netValues;
+    }
+}
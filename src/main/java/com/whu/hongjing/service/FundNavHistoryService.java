@@ -0,0 +1,42 @@
+package com.whu.hongjing.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.whu.hongjing.pojo.entity.FundNavHistory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * 基金净值历史服务
+ * 净值历史以 fund_nav_history 表为准，同时在本地维护一份内存映射的时间序列文件（FundNavStore）用于快速读取；
+ * 文件不可用或与数据库不同步时，所有查询自动退回数据库。
+ */
+public interface FundNavHistoryService extends IService<FundNavHistory> {
+
+    /**
+     * 记录某一天所有基金的净值：先写数据库，再追加到本地文件。由每日净值任务在净值提交后调用。
+     * @param navs 基金代码 -> 当天净值
+     */
+    void recordDailyNavs(LocalDate navDate, Map<String, BigDecimal> navs);
+
+    /**
+     * 某只基金某天的净值
+     * @return 当天没有净值记录时返回 null
+     */
+    BigDecimal getNav(String fundCode, LocalDate navDate);
+
+    /**
+     * 一批基金在 [from, to] 之间的净值走势
+     * @return 基金代码 -> (日期 -> 净值)，按日期升序，没有任何记录的基金不出现在结果中
+     */
+    Map<String, NavigableMap<LocalDate, BigDecimal>> getNavSeries(Collection<String> fundCodes, LocalDate from, LocalDate to);
+
+    /**
+     * 从数据库按日期顺序整体重建本地时间序列文件
+     * @return 重建的天数
+     */
+    int rebuildStore();
+}
@@ -0,0 +1,383 @@
+package com.whu.hongjing.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基金净值历史的本地时间序列文件，通过内存映射读取，是 fund_nav_history 表的一份只追加的紧凑副本。
+ *
+ * 文件布局（nav.dat）：按天排列的定长矩阵。
+ *   文件头 64 字节：魔数、每天的基金槽位数、第一天的 epochDay、已写入的天数；
+ *   之后每天一行，每行 slotCapacity 个 int，第 i 个 int 是槽位 i 的基金当天的净值 × 10000（0 表示当天没有净值）。
+ * 基金代码到槽位的映射保存在旁边的 funds.idx 中，每行一个基金代码，行号就是槽位号，只追加。
+ *
+ * 因此任意基金任意一天的净值都是一次偏移量计算加一次内存读取：HEADER + ((date - 第一天) * slotCapacity + slot) * 4；
+ * 一只基金一段时间的走势就是按固定步长向后读。每日任务每天追加一行，基金数量超过槽位容量时整体扩容重写一次。
+ *
+ * 这里只负责文件本身，是否与数据库同步、什么时候退回查库由 FundNavHistoryService 决定。
+ */
+@Component
+public class FundNavStore {
+
+    private static final int MAGIC = 0x4E415631; // "NAV1"
+    private static final int HEADER_BYTES = 64;
+    private static final int OFFSET_CAPACITY = 4;
+    private static final int OFFSET_BASE_DAY = 8;
+    private static final int OFFSET_DAY_COUNT = 16;
+    private static final int CELL_BYTES = 4;
+    private static final int NAV_SCALE = 4;
+    private static final int MIN_SLOT_CAPACITY = 256;
+    // 每次扩展映射区域时预留的天数，避免每天追加都重新映射
+    private static final int DAYS_PER_REMAP = 366;
+
+    @Value("${hongjing.nav-store.dir:data/nav}")
+    private String storeDir;
+
+    private Path dataFile;
+    private Path fundIndexFile;
+
+    // 基金代码 -> 槽位
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private final List<String> fundsBySlot = new ArrayList<>();
+
+    // 当前的映射，扩容或重新映射时整体替换，读取方拿到的始终是一个完整的映射
+    private volatile Mapping mapping;
+
+    @PostConstruct
+    public void open() {
+        if (storeDir == null || storeDir.isBlank()) {
+            System.out.println("【净值历史文件】未配置存储目录，只使用数据库。");
+            return;
+        }
+        try {
+            Path dir = Paths.get(storeDir);
+            Files.createDirectories(dir);
+            dataFile = dir.resolve("nav.dat");
+            fundIndexFile = dir.resolve("funds.idx");
+            if (Files.exists(fundIndexFile)) {
+                for (String line : Files.readAllLines(fundIndexFile, StandardCharsets.UTF_8)) {
+                    if (!line.isBlank()) {
+                        slots.put(line.trim(), fundsBySlot.size());
+                        fundsBySlot.add(line.trim());
+                    }
+                }
+            }
+            if (Files.exists(dataFile) && Files.size(dataFile) >= HEADER_BYTES) {
+                mapping = Mapping.open(dataFile, -1, -1, 0);
+                if (mapping.buffer.getInt(0) != MAGIC) {
+                    throw new IOException("文件格式不正确: " + dataFile);
+                }
+                System.out.println("【净值历史文件】已打开 " + dataFile + "：" + getDayCount() + " 天，" + fundsBySlot.size() + " 只基金。");
+            }
+        } catch (IOException e) {
+            mapping = null;
+            dataFile = null;
+            System.err.println("【净值历史文件】打开失败，只使用数据库: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        Mapping current = mapping;
+        if (current != null) {
+            current.buffer.force();
+            current.close();
+        }
+    }
+
+    /**
+     * 文件是否可用（配置了目录且打开成功）
+     */
+    public boolean isEnabled() {
+        return dataFile != null;
+    }
+
+    /**
+     * 已写入的天数，0 表示文件里还没有任何数据
+     */
+    public int getDayCount() {
+        Mapping current = mapping;
+        return current == null ? 0 : current.buffer.getInt(OFFSET_DAY_COUNT);
+    }
+
+    public LocalDate getFirstDate() {
+        Mapping current = mapping;
+        return current == null || getDayCount() == 0 ? null : LocalDate.ofEpochDay(current.baseDay());
+    }
+
+    public LocalDate getLastDate() {
+        Mapping current = mapping;
+        return current == null || getDayCount() == 0 ? null : LocalDate.ofEpochDay(current.baseDay() + getDayCount() - 1);
+    }
+
+    /**
+     * 文件中有净值的单元格总数（基金 × 天），用于与数据库的行数核对。需要扫描整个文件，只在启动核对时调用
+     */
+    public long countNavs() {
+        Mapping current = mapping;
+        if (current == null) {
+            return 0;
+        }
+        int dayCount = current.buffer.getInt(OFFSET_DAY_COUNT);
+        long count = 0;
+        for (long dayIndex = 0; dayIndex < dayCount; dayIndex++) {
+            for (int slot = 0; slot < current.capacity(); slot++) {
+                if (current.buffer.getInt(cellOffset(dayIndex, slot, current.capacity())) != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 某只基金某天的净值（O(1)）
+     * @return 文件中没有该基金或该日期的净值时返回 null
+     */
+    public BigDecimal getNav(String fundCode, LocalDate date) {
+        Mapping current = mapping;
+        Integer slot = slots.get(fundCode);
+        if (current == null || slot == null || slot >= current.capacity()) {
+            return null;
+        }
+        long dayIndex = date.toEpochDay() - current.baseDay();
+        if (dayIndex < 0 || dayIndex >= current.buffer.getInt(OFFSET_DAY_COUNT)) {
+            return null;
+        }
+        return toNav(current.buffer.getInt(cellOffset(dayIndex, slot, current.capacity())));
+    }
+
+    /**
+     * 某只基金在 [from, to] 之间的净值走势，没有净值的日期不出现在结果中
+     */
+    public NavigableMap<LocalDate, BigDecimal> getNavSeries(String fundCode, LocalDate from, LocalDate to) {
+        NavigableMap<LocalDate, BigDecimal> series = new TreeMap<>();
+        Mapping current = mapping;
+        Integer slot = slots.get(fundCode);
+        if (current == null || slot == null || slot >= current.capacity()) {
+            return series;
+        }
+        int dayCount = current.buffer.getInt(OFFSET_DAY_COUNT);
+        long firstIndex = Math.max(0, from.toEpochDay() - current.baseDay());
+        long lastIndex = Math.min(dayCount - 1L, to.toEpochDay() - current.baseDay());
+        for (long dayIndex = firstIndex; dayIndex <= lastIndex; dayIndex++) {
+            BigDecimal nav = toNav(current.buffer.getInt(cellOffset(dayIndex, slot, current.capacity())));
+            if (nav != null) {
+                series.put(LocalDate.ofEpochDay(current.baseDay() + dayIndex), nav);
+            }
+        }
+        return series;
+    }
+
+    /**
+     * 写入某一天的净值。日期可以跳过（中间的日期视为没有净值），也可以重写已有的日期，但不能早于文件的第一天。
+     * @throws IllegalArgumentException 日期早于文件的第一天，或净值超出定长格式的表示范围
+     */
+    public synchronized void append(LocalDate date, Map<String, BigDecimal> navs) throws IOException {
+        if (!isEnabled() || navs.isEmpty()) {
+            return;
+        }
+        // 先把所有净值转换好，格式不支持的数据在写入任何内容之前就失败
+        Map<String, Integer> cells = new HashMap<>();
+        for (Map.Entry<String, BigDecimal> entry : navs.entrySet()) {
+            if (entry.getValue() != null) {
+                cells.put(entry.getKey(), toCell(entry.getValue()));
+            }
+        }
+        Mapping current = mapping;
+        if (current != null && getDayCount() > 0 && date.toEpochDay() < current.baseDay()) {
+            throw new IllegalArgumentException("日期 " + date + " 早于净值文件的第一天 " + getFirstDate());
+        }
+
+        // 1. 为新基金分配槽位（先写 funds.idx，中途失败最多留下几个没有数据的槽位）
+        List<String> newFunds = new ArrayList<>();
+        for (String fundCode : cells.keySet()) {
+            if (!slots.containsKey(fundCode)) {
+                newFunds.add(fundCode);
+            }
+        }
+        if (!newFunds.isEmpty()) {
+            Collections.sort(newFunds);
+            Files.write(fundIndexFile, newFunds, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            for (String fundCode : newFunds) {
+                slots.put(fundCode, fundsBySlot.size());
+                fundsBySlot.add(fundCode);
+            }
+        }
+
+        // 2. 第一次写入时创建文件；槽位不够时按倍数扩容
+        if (current == null || getDayCount() == 0) {
+            close();
+            Files.deleteIfExists(dataFile);
+            current = Mapping.open(dataFile, Math.max(MIN_SLOT_CAPACITY, fundsBySlot.size() * 2), date.toEpochDay(), DAYS_PER_REMAP);
+            current.buffer.putInt(0, MAGIC);
+            current.buffer.putInt(OFFSET_CAPACITY, current.capacity());
+            current.buffer.putLong(OFFSET_BASE_DAY, date.toEpochDay());
+            current.buffer.putInt(OFFSET_DAY_COUNT, 0);
+            mapping = current;
+        } else if (fundsBySlot.size() > current.capacity()) {
+            current = resize(current, Math.max(current.capacity() * 2, fundsBySlot.size()));
+        }
+
+        // 3. 映射区域不够时向后扩展
+        long dayIndex = date.toEpochDay() - current.baseDay();
+        if (dayIndex >= current.mappedDays()) {
+            Mapping remapped = Mapping.open(dataFile, current.capacity(), current.baseDay(), (int) dayIndex + DAYS_PER_REMAP);
+            current.close();
+            current = remapped;
+            mapping = current;
+        }
+
+        // 4. 写入当天这一行，最后再更新天数，读取方不会看到写了一半的新日期
+        for (Map.Entry<String, Integer> cell : cells.entrySet()) {
+            current.buffer.putInt(cellOffset(dayIndex, slots.get(cell.getKey()), current.capacity()), cell.getValue());
+        }
+        if (dayIndex >= current.buffer.getInt(OFFSET_DAY_COUNT)) {
+            current.buffer.putInt(OFFSET_DAY_COUNT, (int) dayIndex + 1);
+        }
+        current.buffer.force();
+    }
+
+    /**
+     * 清空文件（包括基金槽位），用于从数据库整体重建之前
+     */
+    public synchronized void clear() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        close();
+        mapping = null;
+        Files.deleteIfExists(dataFile);
+        Files.deleteIfExists(fundIndexFile);
+        slots.clear();
+        fundsBySlot.clear();
+    }
+
+    /**
+     * 按新的槽位容量把整个文件重写一遍，写完后原子替换
+     */
+    private Mapping resize(Mapping current, int newCapacity) throws IOException {
+        int dayCount = current.buffer.getInt(OFFSET_DAY_COUNT);
+        Path tmpFile = dataFile.resolveSibling(dataFile.getFileName() + ".tmp");
+        Files.deleteIfExists(tmpFile);
+        Mapping resized = Mapping.open(tmpFile, newCapacity, current.baseDay(), dayCount + DAYS_PER_REMAP);
+        resized.buffer.putInt(0, MAGIC);
+        resized.buffer.putInt(OFFSET_CAPACITY, newCapacity);
+        resized.buffer.putLong(OFFSET_BASE_DAY, current.baseDay());
+        for (long day = 0; day < dayCount; day++) {
+            for (int slot = 0; slot < current.capacity(); slot++) {
+                resized.buffer.putInt(cellOffset(day, slot, newCapacity), current.buffer.getInt(cellOffset(day, slot, current.capacity())));
+            }
+        }
+        resized.buffer.putInt(OFFSET_DAY_COUNT, dayCount);
+        resized.buffer.force();
+        resized.close();
+        Files.move(tmpFile, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        current.close();
+
+        Mapping reopened = Mapping.open(dataFile, newCapacity, current.baseDay(), dayCount + DAYS_PER_REMAP);
+        mapping = reopened;
+        System.out.println("【净值历史文件】基金槽位扩容：" + current.capacity() + " -> " + newCapacity + "。");
+        return reopened;
+    }
+
+    private static int cellOffset(long dayIndex, int slot, int capacity) {
+        long offset = HEADER_BYTES + (dayIndex * capacity + slot) * CELL_BYTES;
+        if (offset > Integer.MAX_VALUE - CELL_BYTES) {
+            throw new IllegalStateException("净值文件超出单个映射区域的大小上限");
+        }
+        return (int) offset;
+    }
+
+    private static int toCell(BigDecimal nav) {
+        try {
+            int cell = nav.setScale(NAV_SCALE, RoundingMode.HALF_UP).unscaledValue().intValueExact();
+            if (cell <= 0) {
+                throw new IllegalArgumentException("净值必须为正数: " + nav);
+            }
+            return cell;
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("净值超出净值文件的表示范围: " + nav);
+        }
+    }
+
+    private static BigDecimal toNav(int cell) {
+        return cell == 0 ? null : BigDecimal.valueOf(cell, NAV_SCALE);
+    }
+
+    /**
+     * 一次内存映射：映射了文件的前 HEADER + mappedDays 行
+     */
+    private static final class Mapping {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private final long baseDay;
+        private final int mappedDays;
+
+        private Mapping(FileChannel channel, MappedByteBuffer buffer, int capacity, long baseDay, int mappedDays) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.capacity = capacity;
+            this.baseDay = baseDay;
+            this.mappedDays = mappedDays;
+        }
+
+        /**
+         * 打开并映射文件。capacity 为负数时从已有的文件头读取容量和第一天；映射区域超出文件大小时文件会自动变长
+         */
+        static Mapping open(Path file, int capacity, long baseDay, int mappedDays) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                if (capacity < 0) {
+                    MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+                    capacity = header.getInt(OFFSET_CAPACITY);
+                    baseDay = header.getLong(OFFSET_BASE_DAY);
+                    mappedDays = header.getInt(OFFSET_DAY_COUNT) + DAYS_PER_REMAP;
+                }
+                long size = HEADER_BYTES + (long) mappedDays * capacity * CELL_BYTES;
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("净值文件超出单个映射区域的大小上限");
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                return new Mapping(channel, buffer, capacity, baseDay, mappedDays);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        int capacity() {
+            return capacity;
+        }
+
+        long baseDay() {
+            return baseDay;
+        }
+
+        int mappedDays() {
+            return mappedDays;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 映射在通道关闭后仍然有效，关闭失败不影响读取
+            }
+        }
+    }
+}
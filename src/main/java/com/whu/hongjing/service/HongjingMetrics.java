@@ -0,0 +1,136 @@
+package com.whu.hongjing.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 批处理任务、交易和标签刷新热路径上的业务指标，统一在这里定义名称和标签，
+ * 通过 /actuator/prometheus 以 Prometheus 格式暴露（指标名中的点号会被转换成下划线）。
+ */
+@Component
+public class HongjingMetrics {
+
+    // 每个定时/批量任务整体的耗时，标签 job、outcome
+    public static final String JOB = "hongjing.job";
+    // 每日净值任务阶段一的计算与写入耗时，标签 phase = compute / write / history
+    public static final String NAV_PHASE = "hongjing.nav.phase";
+    // 每日市值计价的每个客户块（Java 引擎）或客户区间（SQL 引擎）的耗时，标签 engine、outcome
+    public static final String MARKET_VALUE_CHUNK = "hongjing.market_value.chunk";
+    // 市值计价写回的持仓行数，标签 engine
+    public static final String MARKET_VALUE_HOLDINGS = "hongjing.market_value.holdings.updated";
+    // 每个客户的标签刷新耗时（带直方图），标签 mode = block / single；整块刷新时按块耗时平摊到每个客户
+    public static final String TAG_REFRESH_CUSTOMER = "hongjing.tag.refresh.customer";
+    // 标签刷新失败的客户数
+    public static final String TAG_REFRESH_FAILURES = "hongjing.tag.refresh.failures";
+    // 申购/赎回从接口进入到事务提交的耗时（带直方图），标签 type = purchase / redeem、outcome
+    public static final String TRADE_LATENCY = "hongjing.trade.latency";
+    // @Retryable 方法每一次失败的尝试，标签 method、exception
+    public static final String RETRY_ATTEMPTS = "hongjing.retry.attempts";
+    // @Retryable 方法重试耗尽仍然失败的次数，标签 method
+    public static final String RETRY_EXHAUSTED = "hongjing.retry.exhausted";
+    // 模拟数据工具写入的行数，标签 tool
+    public static final String MOCK_ROWS = "hongjing.mock.rows";
+    // 共享线程池队列满、由提交线程自己执行的任务数，标签 pool
+    public static final String EXECUTOR_REJECTED = "hongjing.executor.rejected";
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_FAILURE = "failure";
+
+    @Autowired
+    private MeterRegistry registry;
+
+    /**
+     * 记录一次整体任务的耗时
+     */
+    public void recordJob(String job, boolean success, long nanos) {
+        Timer.builder(JOB).tag("job", job).tag("outcome", success ? OUTCOME_SUCCESS : OUTCOME_FAILURE).register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Timer navPhase(String phase) {
+        return Timer.builder(NAV_PHASE).tag("phase", phase).register(registry);
+    }
+
+    public void recordMarketValueChunk(String engine, boolean success, long nanos) {
+        Timer.builder(MARKET_VALUE_CHUNK).tag("engine", engine).tag("outcome", success ? OUTCOME_SUCCESS : OUTCOME_FAILURE)
+                .register(registry).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void countMarketValueHoldings(String engine, long holdings) {
+        Counter.builder(MARKET_VALUE_HOLDINGS).tag("engine", engine).register(registry).increment(holdings);
+    }
+
+    /**
+     * 记录 customerCount 个客户的标签刷新耗时，每个客户计 totalNanos / customerCount
+     */
+    public void recordTagRefresh(String mode, int customerCount, long totalNanos) {
+        if (customerCount <= 0) return;
+        Timer timer = Timer.builder(TAG_REFRESH_CUSTOMER).tag("mode", mode)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(registry);
+        long perCustomer = totalNanos / customerCount;
+        for (int i = 0; i < customerCount; i++) {
+            timer.record(perCustomer, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void countTagRefreshFailures(int customers) {
+        Counter.builder(TAG_REFRESH_FAILURES).register(registry).increment(customers);
+    }
+
+    /**
+     * 执行一笔交易并记录端到端耗时（包括事务提交）
+     */
+    public <T> T timeTrade(String type, Supplier<T> trade) {
+        long start = System.nanoTime();
+        String outcome = OUTCOME_FAILURE;
+        try {
+            T result = trade.get();
+            outcome = OUTCOME_SUCCESS;
+            return result;
+        } finally {
+            Timer.builder(TRADE_LATENCY).tag("type", type).tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(10))
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void countRetryAttempt(String method, Throwable error) {
+        Counter.builder(RETRY_ATTEMPTS).tag("method", method).tag("exception", error.getClass().getSimpleName())
+                .register(registry).increment();
+    }
+
+    public void countRetryExhausted(String method) {
+        Counter.builder(RETRY_EXHAUSTED).tag("method", method).register(registry).increment();
+    }
+
+    public void countMockRows(String tool, long rows) {
+        Counter.builder(MOCK_ROWS).tag("tool", tool).register(registry).increment(rows);
+    }
+
+    /**
+     * 暴露线程池的活跃线程数、队列长度、已完成任务数等（executor_* 指标，标签 name）
+     */
+    public void monitorExecutor(String pool, ExecutorService executor) {
+        new ExecutorServiceMetrics(executor, pool, Tags.empty()).bindTo(registry);
+    }
+
+    public void countExecutorRejected(String pool) {
+        Counter.builder(EXECUTOR_REJECTED).tag("pool", pool).register(registry).increment();
+    }
+}
@@ -0,0 +1,62 @@
+package com.whu.hongjing.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.whu.hongjing.pojo.entity.JobCheckpoint;
+import com.whu.hongjing.pojo.entity.JobFailedItem;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 可续跑批处理任务的检查点与重试名单
+ * 任务每提交一块推进一次检查点，正常结束后删除；逐条失败的条目记入重试名单，由重试任务单独处理，不阻塞检查点推进。
+ */
+public interface JobCheckpointService extends IService<JobCheckpoint> {
+
+    /**
+     * 任务未完成的检查点，没有时返回 null
+     */
+    JobCheckpoint getCheckpoint(String jobName);
+
+    /**
+     * 开始新的一轮：写入水位为 0 的检查点
+     */
+    void startCheckpoint(String jobName, Long jobRunId, LocalDateTime startedAt);
+
+    /**
+     * 推进检查点。水位只增不减。
+     */
+    void advanceCheckpoint(String jobName, Long jobRunId, long watermark, long processedCount);
+
+    /**
+     * 这一轮已全部处理完，删除检查点
+     */
+    void completeCheckpoint(String jobName);
+
+    /**
+     * 把失败的条目记入重试名单
+     * @param errorsByItemId 条目ID -> 失败原因
+     */
+    void recordFailures(String jobName, Long jobRunId, Map<Long, String> errorsByItemId);
+
+    /**
+     * 从重试名单中移除指定条目（重试成功后调用）
+     */
+    void clearFailures(String jobName, Collection<Long> itemIds);
+
+    /**
+     * 清空任务的整个重试名单（新的一轮全量处理开始时调用）
+     */
+    void clearAllFailures(String jobName);
+
+    /**
+     * 重试名单中的全部条目ID，按ID升序
+     */
+    List<Long> listFailedItemIds(String jobName);
+
+    /**
+     * 重试名单，按ID升序
+     */
+    List<JobFailedItem> listFailedItems(String jobName, int limit);
+}
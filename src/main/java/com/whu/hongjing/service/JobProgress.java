@@ -0,0 +1,74 @@
+package com.whu.hongjing.service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一次批处理任务运行中的实时进度，由任务代码累加，由 JobRunService 读取并定期写入 job_run 表。
+ *
+ * 任务的调度线程上通过 current() 取得当前任务的进度对象；提交到线程池的子任务不在调度线程上，
+ * 需要在调度线程上先取出进度对象再传进去。不是作为任务运行时（如直接调用、基准测试），current() 返回一个不会被记录的进度对象。
+ */
+public class JobProgress {
+
+    private static final ThreadLocal<JobProgress> CURRENT = new ThreadLocal<>();
+
+    private final Long jobId;
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile String phase;
+    // 任务没有抛出异常、但以失败结束时由任务自己设置
+    private volatile String failureMessage;
+
+    public JobProgress(Long jobId) {
+        this.jobId = jobId;
+    }
+
+    public static JobProgress current() {
+        JobProgress progress = CURRENT.get();
+        return progress != null ? progress : new JobProgress(null);
+    }
+
+    public static void bind(JobProgress progress) {
+        CURRENT.set(progress);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void phase(String phase) {
+        this.phase = phase;
+    }
+
+    public void addRows(long count) {
+        rows.add(count);
+    }
+
+    public void addFailures(long count) {
+        failures.add(count);
+    }
+
+    public void fail(String message) {
+        this.failureMessage = message;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public String getFailureMessage() {
+        return failureMessage;
+    }
+}
@@ -0,0 +1,49 @@
+package com.whu.hongjing.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.whu.hongjing.pojo.entity.JobRun;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 批处理任务的运行与记录服务
+ * 接口触发的任务异步执行、立即返回任务ID；定时触发的任务在调度线程上同步执行。两者都记录到 job_run 表，
+ * 任务代码通过 JobProgress.current() 上报阶段、处理行数和失败数，运行中的任务可以随时查询实时进度。
+ * 同名任务同一时间只允许一个在排队或运行；会改写持仓市值的任务（每日市值更新、市值引擎基准、基准数据集）之间也互斥。
+ */
+public interface JobRunService extends IService<JobRun> {
+
+    // 任务名称，与 hongjing.job 指标的 job 标签一致
+    String JOB_DAILY_UPDATE = "daily-nav-market-value";
+    String JOB_TAG_REFRESH_FULL = "tag-refresh-full";
+    String JOB_TAG_REFRESH_DIRTY = "tag-refresh-dirty";
+    String JOB_TAG_REFRESH_RETRY = "tag-refresh-retry";
+    String JOB_CREATE_CUSTOMERS = "create-customers";
+    String JOB_SIMULATE_TRADING = "simulate-trading-days";
+    String JOB_BENCHMARK_MARKET_VALUE = "benchmark-market-value";
+    String JOB_BENCHMARK_DATASET = "benchmark-dataset";
+
+    /**
+     * 异步提交一个任务，立即返回任务ID
+     * @param job 任务本体，返回值作为结果摘要记录下来
+     * @throws IllegalStateException 同名或互斥的任务正在排队或运行，或者排队的任务过多
+     */
+    Long submit(String jobName, Supplier<String> job);
+
+    /**
+     * 在当前线程同步运行一个定时任务并记录。同名或互斥的任务正在运行时跳过本次执行。
+     * @return 任务ID；跳过时返回 null
+     */
+    Long runScheduled(String jobName, Supplier<String> job);
+
+    /**
+     * 查询一个任务，运行中的任务返回实时进度
+     */
+    JobRun getRun(Long id);
+
+    /**
+     * 最近提交的任务，按提交时间倒序
+     * @param jobName 为空时不限任务名称
+     */
+    List<JobRun> listRecent(String jobName, int limit);
+}
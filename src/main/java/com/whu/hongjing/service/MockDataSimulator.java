@@ -0,0 +1,133 @@
+package com.whu.hongjing.service;
+
+import com.whu.hongjing.pojo.entity.CustomerHolding;
+import com.whu.hongjing.pojo.entity.FundInfo;
+import com.whu.hongjing.pojo.entity.FundTransaction;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * 模拟数据的纯内存生成逻辑，不接触数据库。
+ * 交易模拟（MockDataServiceImpl）和可复现的基准数据集生成（BenchmarkDatasetGenerator）共用同一套规则，
+ * 随机数来源由调用方传入，因此既可以用 ThreadLocalRandom，也可以用固定种子的 SplittableRandom。
+ */
+public final class MockDataSimulator {
+
+    public static final String[] OCCUPATIONS = {
+            "软件工程师", "项目经理", "产品经理", "数据分析师", "教师",
+            "医生", "护士", "律师", "会计师", "设计师",
+            "公务员", "销售经理", "市场专员", "运营专员", "自由职业者"
+    };
+
+    private MockDataSimulator() {
+    }
+
+    /**
+     * 完全在内存中模拟一个客户在 endTime 之前 days 天的交易，不接触数据库，生成的交易和最终持仓追加到 transactionsOut / holdingsOut
+     * @param tradePercent 每天发生交易的概率（%）
+     * @param random 随机数来源：传入固定种子的生成器时，同样的输入总是得到同样的交易
+     */
+    public static void simulateCustomer(Long customerId, int days, int tradePercent, LocalDateTime endTime,
+                                        Map<String, FundInfo> fundInfoMap, List<FundInfo> allFunds, RandomGenerator random,
+                                        List<FundTransaction> transactionsOut, List<CustomerHolding> holdingsOut) {
+        List<FundTransaction> customerTransactions = transactionsOut;  // 交易数据直接追加到这一块客户共用的交易表
+        Map<String, CustomerHolding> customerHoldings = new HashMap<>(); // （为每一个客户）创建一个保存客户持仓数据的MAP
+
+        // ... 开始模拟数据生成 ...
+        for (int i = 0; i < days; i++) {
+            // 每天有 tradePercent% 的概率发生交易
+             if (random.nextInt(100) >= tradePercent) continue;
+             // 获取当天的持仓数据 要根据customerHoldings.values()来创建这个持仓列表是因为之前的天数可能已经发生过了交易 已经有持仓数据了
+             List<CustomerHolding> currentHoldingsList = new ArrayList<>(customerHoldings.values());
+             currentHoldingsList.removeIf(h -> h.getTotalShares() == null || h.getTotalShares().compareTo(BigDecimal.ZERO) <= 0);
+
+             FundInfo targetFund;  // 目标交易的基金
+             boolean isPurchase;   // 记录是申购还是赎回操作
+
+            // 70%概率对已经持有的基金进行操作
+             if (!currentHoldingsList.isEmpty() && random.nextInt(100) < 70) {
+                 CustomerHolding targetHolding = currentHoldingsList.get(random.nextInt(currentHoldingsList.size()));
+                 targetFund = fundInfoMap.get(targetHolding.getFundCode());
+                 // 70%是申购操作
+                 isPurchase = random.nextInt(100) < 70;
+             // 30%概率在所有基金里随机操作（只能申购 因为新基金）
+             } else {
+                 targetFund = allFunds.get(random.nextInt(allFunds.size()));
+                 isPurchase = true;
+             }
+             if (targetFund == null || (targetFund.getNetValue() != null && targetFund.getNetValue().compareTo(BigDecimal.ZERO) <= 0)) continue;
+
+             // 获取基金净值
+             BigDecimal netValue = (targetFund.getNetValue() != null) ? targetFund.getNetValue() : new BigDecimal("1.0");
+             // 记录交易时间
+             LocalDateTime transactionTime = endTime.minusDays(days - i).withHour(10).withMinute(0).withSecond(0);
+             // 获取当前客户对当前要操作的基金的持仓情况holding 以便最后更新完了以后更新到（当前客户的持仓）总表customerHoldings里去
+             CustomerHolding holding = customerHoldings.get(targetFund.getFundCode());
+
+             // 开始进行申购操作
+             if (isPurchase) {
+                 BigDecimal purchaseAmount = new BigDecimal(500 + random.nextInt(20000)); // 随机购买金额
+                 BigDecimal purchaseShares = purchaseAmount.divide(netValue, 2, RoundingMode.DOWN); // 确认购买份额（模拟 采用前一天的收盘价）
+                 // 保存交易据
+                 customerTransactions.add(createTransaction(customerId, targetFund, "申购", purchaseAmount, purchaseShares, netValue, transactionTime));
+                 // 开始更新持仓数据（针对当前基金是第一次购买的新建持仓）
+                 if (holding == null) {
+                     holding = new CustomerHolding();
+                     holding.setCustomerId(customerId);
+                     holding.setFundCode(targetFund.getFundCode());
+                     holding.setTotalShares(purchaseShares);
+                     holding.setAverageCost(netValue);
+                 // 开始更新持仓数据（针对当前基金已有持仓 累加老持仓数据）
+                 } else {
+                     BigDecimal oldTotalCost = holding.getAverageCost().multiply(holding.getTotalShares());
+                     BigDecimal newTotalCost = oldTotalCost.add(purchaseAmount);
+                     BigDecimal newTotalShares = holding.getTotalShares().add(purchaseShares);
+                     holding.setTotalShares(newTotalShares);
+                     holding.setAverageCost(newTotalCost.divide(newTotalShares, 4, RoundingMode.HALF_UP));
+                 }
+             // 如果是赎回操作
+             } else {
+                 if (holding == null || holding.getTotalShares().compareTo(BigDecimal.ONE) < 0) continue;
+                 // 按0.1-0.6的随机比例赎回的份额
+                 BigDecimal redeemShares = holding.getTotalShares().multiply(BigDecimal.valueOf(random.nextDouble() * 0.5 + 0.1)).setScale(2, RoundingMode.DOWN);
+                 if (redeemShares.compareTo(BigDecimal.ZERO) <= 0) continue;
+                 // 根据份额*净值（昨天的收盘价模拟）确定赎回的金额
+                 BigDecimal redeemAmount = redeemShares.multiply(netValue).setScale(2, RoundingMode.HALF_UP);
+                 // 保存交易数据
+                 customerTransactions.add(createTransaction(customerId, targetFund, "赎回", redeemAmount, redeemShares, netValue, transactionTime));
+                 // 赎回一定是已有持仓的数据 且只影响总份额 不影响平均成本 因此只用修改总份额
+                 holding.setTotalShares(holding.getTotalShares().subtract(redeemShares));
+             }
+
+             // 更新最近交易时间 和 当前客户对当前操作的基金的持仓数据（holding）
+             holding.setLastUpdateDate(transactionTime);
+             // 将当前客户当天更新过的目标基金的持仓数据put进当前用户的总持仓表（key是基金code）
+             customerHoldings.put(targetFund.getFundCode(), holding);
+                // （交易数据已经在申购和赎回方法内部提前添加到了当前用户的交易数据表）
+
+        } // 到这里单个客户一年内的交易行为模拟循环执行完毕
+
+        // 当前客户所有天更新过的持仓表追加到这一块客户共用的持仓表
+        holdingsOut.addAll(customerHoldings.values());
+    }
+
+    private static FundTransaction createTransaction(Long customerId, FundInfo fund, String type, BigDecimal amount, BigDecimal shares, BigDecimal price, LocalDateTime transactionTime) {
+        FundTransaction tx = new FundTransaction();
+        tx.setCustomerId(customerId);
+        tx.setFundCode(fund.getFundCode());
+        tx.setTransactionType(type);
+        tx.setTransactionAmount(amount);
+        tx.setTransactionShares(shares);
+        tx.setSharePrice(price);
+        tx.setStatus("成功");
+        tx.setTransactionTime(transactionTime);
+        return tx;
+    }
+}
@@ -1,8 +1,14 @@
 package com.whu.hongjing.service;
 import java.time.LocalDate;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.google.common.collect.Iterables;
+import com.whu.hongjing.mapper.CustomerHoldingMapper;
+import com.whu.hongjing.mapper.CustomerMapper;
+import com.whu.hongjing.mapper.FundTransactionMapper;
+import com.whu.hongjing.mapper.RiskAssessmentMapper;
 import com.whu.hongjing.pojo.entity.CustomerHolding;
 import com.whu.hongjing.pojo.entity.FundTransaction;
+import com.whu.hongjing.pojo.entity.RiskAssessment;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
@@ -11,6 +17,9 @@ import org.springframework.dao.DeadlockLoserDataAccessException; // 【1. 新增
 import org.springframework.retry.annotation.Backoff; // 【1. 新增】导入Backoff
 import org.springframework.retry.annotation.Retryable; // 【1. 新增】导入Retryable
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 import java.util.concurrent.ThreadLocalRandom;
 import com.whu.hongjing.pojo.dto.RiskAssessmentSubmitDTO;
 import com.whu.hongjing.pojo.entity.Customer;
@@ -22,25 +31,80 @@ import com.whu.hongjing.pojo.entity.Customer;
 @Service
 public class MockDataWriterService {
 
+    // 多行 INSERT 每条语句携带的行数，控制单条 SQL 的大小不超过 max_allowed_packet
+    private static final int BULK_INSERT_ROWS = 1000;
+
+    @Autowired
+    private FundTransactionMapper fundTransactionMapper;
+    @Autowired
+    private CustomerHoldingMapper customerHoldingMapper;
     @Autowired
-    private FundTransactionService fundTransactionService;
+    private CustomerMapper customerMapper;
     @Autowired
-    private CustomerHoldingService customerHoldingService;
+    private RiskAssessmentMapper riskAssessmentMapper;
 
     @Autowired
     private CustomerService customerService;
     @Autowired
     private RiskAssessmentService riskAssessmentService;
+    @Autowired
+    private CustomerChangeLogService customerChangeLogService;
+    @Autowired
+    private CustomerPnlService customerPnlService;
+    @Autowired
+    private CustomerAssetSnapshotService customerAssetSnapshotService;
 
     /**
-     * 并发写入交易数据的核心事务方法
-     * 1. @Transactional: 保证每个客户的数据写入是原子性的。
+     * 并发写入交易数据的核心事务方法：一个事务写入一块客户的全部模拟数据
+     * 1. @Transactional: 保证一块客户的数据写入是原子性的。
      * 2. @Retryable: 赋予此方法自动重试的能力。
      * - value: 指定只有在发生“死锁”这类异常时，才进行重试。
      * - maxAttempts: 最多尝试3次（第一次失败后，再重试2次）。
      * - backoff: 指定重试的退避策略。
      * - delay: 第一次重试前，延迟50毫秒。
      * - multiplier: 后续每次重试的延迟时间，是前一次的2倍（50ms, 100ms）。
+     * 交易和持仓都用多行 INSERT 写入（每条语句 BULK_INSERT_ROWS 行），而不是 saveBatch 的逐行 INSERT。
+     * @return 写入的交易和持仓总行数
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    @Retryable(
+        value = { DeadlockLoserDataAccessException.class },
+        maxAttempts = 3,
+        backoff = @Backoff(delay = 50, multiplier = 2)
+    )
+    public int saveCustomerChunkInTransaction(List<FundTransaction> transactions, List<CustomerHolding> holdings) {
+        // 因为是并发写入，我们不能再全局清空表，而是只处理当前这块客户的数据
+        for (List<FundTransaction> batch : Iterables.partition(transactions, BULK_INSERT_ROWS)) {
+            fundTransactionMapper.insertValues(batch);
+        }
+        Set<Long> holdingCustomerIds = holdings.stream().map(CustomerHolding::getCustomerId).collect(Collectors.toCollection(TreeSet::new));
+        if (!holdingCustomerIds.isEmpty()) {
+            // 先删除这些客户旧的持仓，再插入新的
+            customerHoldingMapper.delete(new QueryWrapper<CustomerHolding>().in("customer_id", holdingCustomerIds));
+            for (List<CustomerHolding> batch : Iterables.partition(holdings, BULK_INSERT_ROWS)) {
+                customerHoldingMapper.insertValues(batch);
+            }
+        }
+        Set<Long> tradedCustomerIds = transactions.stream().map(FundTransaction::getCustomerId).collect(Collectors.toCollection(TreeSet::new));
+        Set<Long> touchedCustomerIds = new TreeSet<>(tradedCustomerIds);
+        touchedCustomerIds.addAll(holdingCustomerIds);
+        if (!touchedCustomerIds.isEmpty()) {
+            customerChangeLogService.markDirty(touchedCustomerIds, CustomerChangeLogService.REASON_TRADE);
+            // 交易是批量插入、持仓是整体替换的，直接按明细重新计算这些客户的盈亏汇总
+            customerPnlService.recomputeCustomers(touchedCustomerIds);
+        }
+        if (!tradedCustomerIds.isEmpty()) {
+            // 模拟交易分布在过去的多天里，按明细回放重建这些客户每个交易日的资产快照
+            customerAssetSnapshotService.rebuildCustomers(tradedCustomerIds);
+        }
+        return transactions.size() + holdings.size();
+    }
+
+
+    /**
+     * 在一个事务中写入基准数据集的一块全新客户：客户（主键由生成器指定）、风险评估、交易和持仓，全部使用多行 INSERT。
+     * 写入后标记这些客户待刷新画像，并生成盈亏汇总；这些客户登记为待重建资产快照，由下一次每日任务按交易回放生成。
+     * @return 写入的总行数
      */
     @Transactional(isolation = Isolation.READ_COMMITTED)
     @Retryable(
@@ -48,16 +112,27 @@ public class MockDataWriterService {
         maxAttempts = 3,
         backoff = @Backoff(delay = 50, multiplier = 2)
     )
-    public void saveCustomerDataInTransaction(Long customerId, List<FundTransaction> transactions, List<CustomerHolding> holdings) {
-        // 因为是并发写入，我们不能再全局清空表，而是只处理当前客户的数据
-        if (!transactions.isEmpty()) {
-            fundTransactionService.saveBatch(transactions);
+    public int saveDatasetChunkInTransaction(List<Customer> customers, List<RiskAssessment> assessments,
+                                             List<FundTransaction> transactions, List<CustomerHolding> holdings) {
+        for (List<Customer> batch : Iterables.partition(customers, BULK_INSERT_ROWS)) {
+            customerMapper.insertValuesWithId(batch);
+        }
+        for (List<RiskAssessment> batch : Iterables.partition(assessments, BULK_INSERT_ROWS)) {
+            riskAssessmentMapper.insertValues(batch);
+        }
+        for (List<FundTransaction> batch : Iterables.partition(transactions, BULK_INSERT_ROWS)) {
+            fundTransactionMapper.insertValues(batch);
+        }
+        for (List<CustomerHolding> batch : Iterables.partition(holdings, BULK_INSERT_ROWS)) {
+            customerHoldingMapper.insertValues(batch);
         }
-        if (!holdings.isEmpty()) {
-            // 先删除这个客户旧的持仓，再插入新的
-            customerHoldingService.remove(new QueryWrapper<CustomerHolding>().eq("customer_id", customerId));
-            customerHoldingService.saveBatch(holdings);
+        List<Long> customerIds = customers.stream().map(Customer::getId).collect(Collectors.toList());
+        if (!customerIds.isEmpty()) {
+            customerChangeLogService.markDirty(customerIds, CustomerChangeLogService.REASON_CUSTOMER_EDIT);
+            customerPnlService.recomputeCustomers(customerIds);
+            customerAssetSnapshotService.markForRebuild(customerIds, LocalDate.now());
         }
+        return customers.size() + assessments.size() + transactions.size() + holdings.size();
     }
 
 
@@ -1,25 +1,38 @@
 package com.whu.hongjing.service;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.google.common.collect.Iterables;
+import com.whu.hongjing.mapper.CustomerHoldingMapper;
 import com.whu.hongjing.pojo.entity.CustomerHolding;
 import com.whu.hongjing.pojo.entity.FundInfo;
+import com.whu.hongjing.pojo.vo.MarketValueBenchmarkVO;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * 后台定时任务服务
- * V3 最终性能版：采用手动管理的线程池实现“计算并行+写入并行+自动重试”模型。
+ * V3 最终性能版：在共享的写入线程池上实现“计算并行+写入并行+自动重试”模型。
  */
 @Service
 public class ScheduledTasksService {
@@ -28,42 +41,149 @@ public class ScheduledTasksService {
     private FundInfoService fundInfoService;
     @Autowired
     private CustomerHoldingService customerHoldingService;
+    @Autowired
+    private CustomerHoldingMapper customerHoldingMapper;
+
+    @Autowired
+    private FundNavHistoryService fundNavHistoryService;
+
+    @Autowired
+    private CustomerAssetSnapshotService customerAssetSnapshotService;
 
     // 注入事务写入服务
     @Autowired
     private DailyUpdateWriterService dailyUpdateWriterService;
     @Autowired
     private TagRefreshService tagRefreshService;
+    @Autowired
+    private CustomerChangeLogService customerChangeLogService;
+    @Autowired
+    private CustomerPnlService customerPnlService;
+    @Autowired
+    private HongjingMetrics metrics;
+    @Autowired
+    private ExecutorRegistry executorRegistry;
+    @Autowired
+    private JobRunService jobRunService;
+
+    // 市值流水线：每块包含的客户数、每个写入线程之外最多再缓存的块数（写入线程数由共享线程池按连接池大小决定）
+    private static final int MARKET_VALUE_CHUNK_CUSTOMERS = 500;
+    private static final int MARKET_VALUE_QUEUED_CHUNKS_PER_WRITER = 2;
+    // 按基金代码查询持有人时每条SQL最多携带的基金数
+    private static final int FUND_CODE_BATCH_SIZE = 1000;
+
+    // SQL 引擎每段覆盖的客户ID跨度，每段一条 UPDATE ... JOIN、一个短事务
+    private static final long MARKET_VALUE_SQL_RANGE = 2000;
+
+    public static final String ENGINE_JAVA = "java";
+    public static final String ENGINE_SQL = "sql";
+
+    // 持仓市值计价引擎：java 为 JVM 内的读取-计算-写入流水线，sql 为数据库内按客户ID分段的 UPDATE ... JOIN
+    @Value("${hongjing.market-value.engine:java}")
+    private String marketValueEngine;
+
+    // 上一次成功完成市值计价的开始时间；之后份额有变动的持仓需要重新计价。
+    // 为空（刚启动，或上次的净值更新、市值计价没有完整完成）时做一次全量计价：失败那次净值变化的基金没有保存下来，只能全量补上
+    private volatile LocalDateTime lastMarketValueRunStartedAt;
 
     /**
-     * 【任务一】每日下午收盘后，更新基金净值与客户持仓市值。
-     * 总调度方法，自身不带事务。负责协调两个并发的更新阶段。
+     * 【任务一】每日下午收盘后，更新基金净值与客户持仓市值，运行情况记录到 job_run 表
      */
     @Scheduled(cron = "0 00 16 * * ?")
+    public void scheduledDailyUpdate() {
+        jobRunService.runScheduled(JobRunService.JOB_DAILY_UPDATE, () -> {
+            updateNetValueAndMarketValueDaily();
+            return null;
+        });
+    }
+
+    /**
+     * 更新基金净值与客户持仓市值。
+     * 总调度方法，自身不带事务。负责协调两个并发的更新阶段。
+     * 某个阶段整体失败时继续执行后面的阶段，任务最终记为失败并列出失败的阶段；只有部分客户块失败时记为部分成功。
+     */
     public void updateNetValueAndMarketValueDaily() {
         System.out.println("【定时任务】开始执行每日净值与市值更新...");
+        long jobStart = System.nanoTime();
+        JobProgress progress = JobProgress.current();
+        long failuresBefore = progress.getFailures();
+        List<String> failedPhases = new ArrayList<>();
 
-        // --- 第一阶段：并发更新所有基金的净值 ---
-        this.updateFundPricesConcurrently();
+        // --- 第一阶段：并发更新所有基金的净值，得到净值实际发生变化的基金 ---
+        progress.phase("nav");
+        Set<String> changedFundCodes;
+        try {
+            changedFundCodes = this.updateFundPricesConcurrently(progress);
+        } catch (Exception e) {
+            // 写入失败时净值没有变化
+            System.err.println("【定时任务-阶段1】更新基金净值时发生严重错误！");
+            e.printStackTrace();
+            failedPhases.add("nav");
+            progress.addFailures(1);
+            changedFundCodes = Collections.emptySet();
+        }
+
+        // --- 第二阶段：只对净值变化的基金、以及份额有变动的持仓重新计价（按配置选择计价引擎） ---
+        progress.phase("market-value");
+        if (ENGINE_SQL.equalsIgnoreCase(marketValueEngine)) {
+            this.updateMarketValuesInDatabase(false, progress);
+        } else {
+            this.updateMarketValuesConcurrently(changedFundCodes, false, progress);
+        }
+        if (failedPhases.contains("nav")) {
+            // 净值可能已经提交、只是之后的步骤（如刷新基金快照）失败，哪些基金的净值变了无从得知：下次改为全量计价
+            lastMarketValueRunStartedAt = null;
+        }
+
+        // --- 第三阶段：按客户ID分段，批量把最新市值同步到盈亏汇总表 ---
+        progress.phase("pnl");
+        try {
+            customerPnlService.refreshAllMarketValues();
+        } catch (Exception e) {
+            System.err.println("【定时任务-阶段3】更新盈亏汇总时发生错误！");
+            e.printStackTrace();
+            failedPhases.add("pnl");
+            progress.addFailures(1);
+        }
 
-        // --- 第二阶段：并发更新所有持仓的市值 ---
-        this.updateMarketValuesConcurrently();
+        // --- 第四阶段：基于最新的盈亏汇总，为所有客户写入当天的资产走势快照，再重建补录过历史交易的客户的历史快照 ---
+        progress.phase("snapshot");
+        try {
+            customerAssetSnapshotService.snapshotAll(LocalDate.now());
+            customerAssetSnapshotService.rebuildPending();
+        } catch (Exception e) {
+            System.err.println("【定时任务-阶段4】写入客户资产快照时发生错误！");
+            e.printStackTrace();
+            failedPhases.add("snapshot");
+            progress.addFailures(1);
+        }
 
-        System.out.println("【定时任务】每日净值与市值更新任务圆满完成！且已成功更新用户持仓表！");
+        long failures = progress.getFailures() - failuresBefore;
+        metrics.recordJob("daily-nav-market-value", failures == 0, System.nanoTime() - jobStart);
+        if (!failedPhases.isEmpty()) {
+            progress.fail("每日净值与市值更新失败的阶段: " + String.join(", ", failedPhases));
+            System.err.println("【定时任务】每日净值与市值更新任务结束，失败的阶段: " + String.join(", ", failedPhases) + "。");
+        } else if (failures > 0) {
+            System.err.println("【定时任务】每日净值与市值更新任务结束，" + failures + " 处部分失败（见上方日志）。");
+        } else {
+            System.out.println("【定时任务】每日净值与市值更新任务圆满完成！且已成功更新用户持仓表！");
+        }
     }
 
     /**
      * 阶段一：并发更新基金净值
+     * @return 净值实际发生变化的基金代码
+     * @throws RuntimeException 净值写入失败（此时净值没有变化）
      */
-    private void updateFundPricesConcurrently() {
-        List<FundInfo> allFunds = fundInfoService.list();
+    private Set<String> updateFundPricesConcurrently(JobProgress progress) {
+        List<FundInfo> allFunds = new ArrayList<>(fundInfoService.getSnapshot().getAllFunds());
         if (allFunds.isEmpty()) {
             System.out.println("【定时任务-阶段1】没有基金信息，净值更新跳过。");
-            return;
+            return Collections.emptySet();
         }
 
         // 1. 并发计算出所有基金的新净值（这部分计算很快，直接用并行流即可）
-        List<FundInfo> updatedFunds = allFunds.parallelStream().map(fund -> {
+        List<FundInfo> updatedFunds = metrics.navPhase("compute").record(() -> allFunds.parallelStream().map(fund -> {
             Random random = ThreadLocalRandom.current();
             BigDecimal currentNetValue = fund.getNetValue();
             // 如果为空则初始化随机值
@@ -79,120 +199,416 @@ public class ScheduledTasksService {
             fundForUpdate.setFundCode(fund.getFundCode());
             fundForUpdate.setNetValue(newNetValue);
             return fundForUpdate;
-        }).collect(Collectors.toList());
+        }).collect(Collectors.toList()));
+
+        // 2. 与旧净值比较，只保留实际发生变化的基金（即净值增量集合）
+        Map<String, BigDecimal> oldNetValues = fundInfoService.getSnapshot().getNetValues();
+        List<FundInfo> changedFunds = updatedFunds.stream()
+                .filter(f -> {
+                    BigDecimal oldNetValue = oldNetValues.get(f.getFundCode());
+                    return oldNetValue == null || oldNetValue.compareTo(f.getNetValue()) != 0;
+                })
+                .collect(Collectors.toList());
+
+        // 3. 将变化的净值在一个独立的、可重试的事务中，批量写入数据库
+        metrics.navPhase("write").record(() -> {
+            dailyUpdateWriterService.saveUpdatedPricesInTransaction(changedFunds);
+            // 净值已提交，替换基金快照，后续的市值计算和画像刷新都基于最新净值
+            fundInfoService.reloadSnapshot();
+        });
+        System.out.println("【定时任务-阶段1】成功更新了 " + changedFunds.size() + " 只基金的最新净值，"
+                + (updatedFunds.size() - changedFunds.size()) + " 只基金净值未变化。");
+        metrics.navPhase("history").record(() -> recordNavHistory(updatedFunds, progress));
+        return changedFunds.stream().map(FundInfo::getFundCode).collect(Collectors.toSet());
+    }
 
-        // 2. 将计算结果在一个独立的、可重试的事务中，批量写入数据库
+    /**
+     * 把当天所有基金的净值（包括未变化的）追加到净值历史。历史写入失败不影响当天的市值计算。
+     */
+    private void recordNavHistory(List<FundInfo> funds, JobProgress progress) {
         try {
-            dailyUpdateWriterService.saveUpdatedPricesInTransaction(updatedFunds);
-            System.out.println("【定时任务-阶段1】成功更新了 " + updatedFunds.size() + " 只基金的最新净值。");
+            Map<String, BigDecimal> navs = new HashMap<>();
+            for (FundInfo fund : funds) {
+                navs.put(fund.getFundCode(), fund.getNetValue());
+            }
+            fundNavHistoryService.recordDailyNavs(LocalDate.now(), navs);
         } catch (Exception e) {
-            System.err.println("【定时任务-阶段1】更新基金净值时发生严重错误！");
-            e.printStackTrace();
+            System.err.println("【定时任务-阶段1】记录基金净值历史失败: " + e.getMessage());
+            progress.addFailures(1);
         }
     }
 
     /**
-     * 阶段二：手动创建线程池，并发计算并写入持仓市值
+     * 阶段二：有界的“读取-计算-写入”流水线，并发更新持仓市值。
+     * 先通过“基金 -> 持有人”倒排索引找出需要重新计价的客户：持有净值变化基金的客户，以及上次计价后份额有变动或还没有市值的客户。
+     * 主线程把这些客户按ID顺序分块读取持仓（每块最多 MARKET_VALUE_CHUNK_CUSTOMERS 个客户的全部持仓），每块提交给共享的写入线程池，
+     * 只对需要重新计价的持仓计算新市值并分批写库。在途块数达到上限时读取自动等待，
+     * 因此无论持仓总数多少，内存中的块数固定，占用的数据库连接也不超过写入线程池的线程数。
+     * @param changedFundCodes 净值发生变化的基金
+     * @param forceFullReprice 为 true 时对所有持仓重新计价并全部写回（用于与 SQL 引擎做基准对比）
+     * @param progress 写入失败的块计入其失败数
+     * @return 写入的持仓行数
      */
-    private void updateMarketValuesConcurrently() {
-        List<CustomerHolding> allHoldings = customerHoldingService.list();
-        if (allHoldings.isEmpty()) {
-            System.out.println("【定时任务-阶段2】没有任何持仓记录，市值更新结束。");
-            return;
-        }
-        Map<String, BigDecimal> latestPrices = fundInfoService.list().stream()
-                .filter(f -> f.getNetValue() != null)
-                .collect(Collectors.toMap(FundInfo::getFundCode, FundInfo::getNetValue));
-
-        // 用于并发写入的线程池
-        int corePoolSize = Runtime.getRuntime().availableProcessors();
-        int maximumPoolSize = corePoolSize * 10;
-        long keepAliveTime = 60L;
-        TimeUnit unit = TimeUnit.SECONDS;
-        BlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<>(allHoldings.size());
-        ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("market-value-writer-thread-%d").build();
-        RejectedExecutionHandler handler = new ThreadPoolExecutor.CallerRunsPolicy();
-
-        ExecutorService writerExecutor = new ThreadPoolExecutor(
-            corePoolSize,
-            maximumPoolSize,
-            keepAliveTime,
-            unit,
-            workQueue,
-            threadFactory,
-            handler
-        );
-
-        // 创建一个列表来收集所有写入任务的Future，以便后续检查是否全部成功
-        List<Future<Void>> writerFutures = new ArrayList<>();
-
-        // 按客户ID对所有持仓进行分组，为每个客户创建一个写入任务
-        Map<Long, List<CustomerHolding>> holdingsByCustomer = allHoldings.stream()
-                .collect(Collectors.groupingBy(CustomerHolding::getCustomerId));
+    private long updateMarketValuesConcurrently(Set<String> changedFundCodes, boolean forceFullReprice, JobProgress progress) {
+        long startTime = System.currentTimeMillis();
+        LocalDateTime runStartedAt = LocalDateTime.now();
+        // 从未成功计价过（如应用刚启动）时，无法知道哪些持仓的份额变过，做一次全量计价
+        LocalDateTime since = forceFullReprice ? null : lastMarketValueRunStartedAt;
+        boolean fullReprice = since == null;
+        Predicate<CustomerHolding> needsReprice = holding -> fullReprice
+                || changedFundCodes.contains(holding.getFundCode())
+                || holding.getMarketValue() == null
+                || (holding.getLastUpdateDate() != null && !holding.getLastUpdateDate().isBefore(since));
 
-        System.out.println("【定时任务-阶段2】开始向写入线程池提交 " + holdingsByCustomer.size() + " 个客户的市值并发更新任务...");
+        Roaring64NavigableMap affectedCustomers = collectAffectedCustomers(changedFundCodes, since);
+        long totalHoldings = customerHoldingService.count();
+        System.out.println("【定时任务-阶段2】" + (fullReprice ? "全量计价" : "增量计价") + "：净值变化基金 " + changedFundCodes.size()
+                + " 只，需要处理的客户 " + affectedCustomers.getLongCardinality() + " 位。");
 
-        for (Map.Entry<Long, List<CustomerHolding>> entry : holdingsByCustomer.entrySet()) {
-            List<CustomerHolding> customerHoldings = entry.getValue();
-
-            // 为每个客户创建一个独立的、可被调用的写入任务
-            Callable<Void> writeTask = () -> {
-                // a. 在子线程内部，先计算出这个客户所有需要更新的持仓对象
-                List<CustomerHolding> updatedHoldingsForCustomer = customerHoldings.stream().map(holding -> {
-                    BigDecimal latestNetValue = latestPrices.get(holding.getFundCode());
-                    if (latestNetValue != null && holding.getTotalShares() != null) {
-                        BigDecimal newMarketValue = holding.getTotalShares().multiply(latestNetValue)
-                                .setScale(2, RoundingMode.HALF_UP);
-                        CustomerHolding holdingForUpdate = new CustomerHolding();
-                        holdingForUpdate.setId(holding.getId());
-                      holdingForUpdate.setMarketValue(newMarketValue);
-                        return holdingForUpdate;
-                    }
-                    return null;
-                }).filter(Objects::nonNull).collect(Collectors.toList());
+        FundInfoSnapshot fundSnapshot = fundInfoService.getSnapshot();
+        Map<String, BigDecimal> latestPrices = fundSnapshot.getNetValues();
+        Map<String, Integer> fundRiskScores = fundSnapshot.getRiskScores();
 
-                // b. 调用我们新的、带有@Retryable注解的写入服务来执行数据库操作
-                if (!updatedHoldingsForCustomer.isEmpty()) {
-                    dailyUpdateWriterService.saveUpdatedHoldingsInTransaction(updatedHoldingsForCustomer);
+        AtomicLong updatedHoldings = new AtomicLong();
+        AtomicLong unchangedHoldings = new AtomicLong();
+        AtomicLong markedCustomers = new AtomicLong();
+        AtomicInteger failedChunks = new AtomicInteger();
+
+        // 1. 主线程按客户ID顺序分块读取需要处理的客户的持仓，每块作为一个任务交给共享的写入线程池；
+        //    在途的块数由信号量限制，写入跟不上时读取在这里等待
+        ExecutorService writerExecutor = executorRegistry.get(ExecutorRegistry.Workload.DB_WRITER);
+        int writers = executorRegistry.parallelism(ExecutorRegistry.Workload.DB_WRITER);
+        Semaphore inFlightChunks = new Semaphore(writers + writers * MARKET_VALUE_QUEUED_CHUNKS_PER_WRITER);
+        List<Future<?>> futures = new ArrayList<>();
+        long chunkCount = 0;
+        // 读取中断或出错时，后面的客户没有被处理
+        boolean complete = true;
+        try {
+            LongIterator customerIterator = affectedCustomers.getLongIterator();
+            List<Long> customerIds = new ArrayList<>(MARKET_VALUE_CHUNK_CUSTOMERS);
+            while (customerIterator.hasNext()) {
+                customerIds.add(customerIterator.next());
+                if (customerIds.size() == MARKET_VALUE_CHUNK_CUSTOMERS || !customerIterator.hasNext()) {
+                    List<CustomerHolding> chunk = customerHoldingService.list(new QueryWrapper<CustomerHolding>()
+                            .in("customer_id", customerIds)
+                            .orderByAsc("customer_id"));
+                    customerIds = new ArrayList<>(MARKET_VALUE_CHUNK_CUSTOMERS);
+                    if (chunk.isEmpty()) {
+                        continue;
+                    }
+                    inFlightChunks.acquire();
+                    chunkCount++;
+                    futures.add(writerExecutor.submit(() -> {
+                        long chunkStart = System.nanoTime();
+                        try {
+                            writeMarketValueChunk(chunk, needsReprice, !forceFullReprice, latestPrices, fundRiskScores, updatedHoldings, unchangedHoldings, markedCustomers);
+                            metrics.recordMarketValueChunk(ENGINE_JAVA, true, System.nanoTime() - chunkStart);
+                            progress.addRows(chunk.size());
+                        } catch (Exception e) {
+                            // 单块失败（重试耗尽）不影响其他块，记录后继续处理
+                            metrics.recordMarketValueChunk(ENGINE_JAVA, false, System.nanoTime() - chunkStart);
+                            failedChunks.incrementAndGet();
+                            progress.addFailures(1);
+                            System.err.println("【定时任务-阶段2】客户块 [" + chunk.get(0).getCustomerId() + " - "
+                                    + chunk.get(chunk.size() - 1).getCustomerId() + "] 市值写入失败: " + e.getMessage());
+                        } finally {
+                            inFlightChunks.release();
+                        }
+                    }));
                 }
-                return null; // Callable需要一个返回值，成功时返回null
-            };
-            writerFutures.add(writerExecutor.submit(writeTask));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            complete = false;
+            System.err.println("【定时任务-阶段2】读取持仓时被中断。");
+        } catch (Exception e) {
+            System.err.println("【定时任务-阶段2】读取持仓时发生严重错误，已读取的块会继续写完！");
+            e.printStackTrace();
+            complete = false;
+            progress.addFailures(1);
+        }
+
+        // 2. 等待已提交的块全部写完
+        try {
+            ExecutorRegistry.awaitAll(futures);
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            complete = false;
+        } catch (ExecutionException e) {
+            System.err.println("【定时任务-阶段2】写入任务异常结束: " + e.getCause().getMessage());
+            complete = false;
+            progress.addFailures(1);
+        }
+
+        metrics.countMarketValueHoldings(ENGINE_JAVA, updatedHoldings.get());
+        // 与原先“每天重写全部持仓”相比，跳过的行数 = 持仓总数 - 实际写入的行数
+        String summary = "更新持仓 " + updatedHoldings.get() + " 条，跳过 " + (totalHoldings - updatedHoldings.get()) + " 条（其中 "
+                + unchangedHoldings.get() + " 条重新计算后市值未变），标记客户 " + markedCustomers.get() + " 位，耗时 "
+                + (System.currentTimeMillis() - startTime) + " ms。";
+        if (failedChunks.get() > 0 || !complete) {
+            // 有客户没有处理完时清空计价时间点，下次全量计价：只因今天净值变化而需要重新计价的持仓，增量计价找不回来
+            lastMarketValueRunStartedAt = null;
+            System.err.println("【定时任务-阶段2】并发更新市值时发生严重错误！" + failedChunks.get() + " / " + chunkCount + " 个客户块最终写入失败"
+                    + (complete ? "" : "，且有客户未被处理") + "，下次将全量计价。" + summary);
+        } else if (chunkCount == 0) {
+            lastMarketValueRunStartedAt = runStartedAt;
+            System.out.println("【定时任务-阶段2】没有需要重新计价的持仓，市值更新结束。" + summary);
+        } else {
+            lastMarketValueRunStartedAt = runStartedAt;
+            System.out.println("【定时任务-阶段2】所有客户的市值并发更新任务均已成功完成！共 " + chunkCount + " 个客户块，" + summary);
+        }
+        return updatedHoldings.get();
+    }
+
+    /**
+     * 阶段二的 SQL 引擎：整个计价在数据库内完成，持仓不再经过 JVM。
+     * 按客户ID把持仓表切成固定跨度的区间，由固定数量的线程并发执行，每个区间：
+     * 先汇总计价前每个客户的总市值和加权风险，再执行一条 UPDATE customer_holding JOIN fund_info，最后再汇总一次，
+     * 在 Java 中比较两次汇总落入的标签区间，只标记区间发生变化的客户（与 Java 引擎的判断完全一致）。
+     * @param forceFullReprice 为 true 时不跳过市值未变的行（用于基准对比）
+     * @param progress 写入失败的块计入其失败数
+     * @return 写入的持仓行数（MySQL 默认返回匹配行数，跳过未变行时即为实际变化的行数）
+     */
+    private long updateMarketValuesInDatabase(boolean forceFullReprice, JobProgress progress) {
+        long startTime = System.currentTimeMillis();
+        LocalDateTime runStartedAt = LocalDateTime.now();
+        List<Map<String, Object>> bounds = customerHoldingService.listMaps(new QueryWrapper<CustomerHolding>()
+                .select("MIN(customer_id) AS min_id", "MAX(customer_id) AS max_id"));
+        if (bounds.isEmpty() || bounds.get(0) == null || bounds.get(0).get("min_id") == null) {
+            System.out.println("【定时任务-阶段2(SQL)】没有任何持仓记录，市值更新结束。");
+            return 0;
         }
+        long minId = ((Number) bounds.get(0).get("min_id")).longValue();
+        long maxId = ((Number) bounds.get(0).get("max_id")).longValue();
+        boolean onlyChanged = !forceFullReprice;
 
-        // 等待并检查所有并发写入任务的结果
-        writerExecutor.shutdown();
+        AtomicLong updatedHoldings = new AtomicLong();
+        AtomicLong markedCustomers = new AtomicLong();
+        AtomicInteger failedRanges = new AtomicInteger();
+        ExecutorService rangeExecutor = executorRegistry.get(ExecutorRegistry.Workload.DB_WRITER);
+        int writers = executorRegistry.parallelism(ExecutorRegistry.Workload.DB_WRITER);
+        Semaphore inFlightRanges = new Semaphore(writers + writers * MARKET_VALUE_QUEUED_CHUNKS_PER_WRITER);
+        List<Future<?>> futures = new ArrayList<>();
+        boolean complete = true;
         try {
-            for (Future<Void> future : writerFutures) {
-                future.get(); // 如果任何一个子任务因为重试耗尽而最终失败，这里会抛出异常
+            for (long from = minId; from <= maxId; from += MARKET_VALUE_SQL_RANGE) {
+                final long fromId = from;
+                final long toId = Math.min(from + MARKET_VALUE_SQL_RANGE - 1, maxId);
+                inFlightRanges.acquire();
+                futures.add(rangeExecutor.submit(() -> {
+                    long rangeStart = System.nanoTime();
+                    try {
+                        Map<Long, String> oldBuckets = bucketsOfRange(fromId, toId);
+                        int updated = dailyUpdateWriterService.repriceHoldingsInRangeInTransaction(fromId, toId, onlyChanged);
+                        updatedHoldings.addAndGet(updated);
+                        progress.addRows(updated);
+                        Map<Long, String> newBuckets = bucketsOfRange(fromId, toId);
+                        List<Long> customersToMark = newBuckets.entrySet().stream()
+                                .filter(e -> !e.getValue().equals(oldBuckets.get(e.getKey())))
+                                .map(Map.Entry::getKey)
+                                .collect(Collectors.toList());
+                        customerChangeLogService.markDirty(customersToMark, CustomerChangeLogService.REASON_MARKET_VALUE);
+                        markedCustomers.addAndGet(customersToMark.size());
+                        metrics.recordMarketValueChunk(ENGINE_SQL, true, System.nanoTime() - rangeStart);
+                    } catch (Exception e) {
+                        metrics.recordMarketValueChunk(ENGINE_SQL, false, System.nanoTime() - rangeStart);
+                        failedRanges.incrementAndGet();
+                        progress.addFailures(1);
+                        System.err.println("【定时任务-阶段2(SQL)】客户区间 [" + fromId + " - " + toId + "] 市值更新失败: " + e.getMessage());
+                    } finally {
+                        inFlightRanges.release();
+                    }
+                }));
             }
-            System.out.println("【定时任务-阶段2】所有客户的市值并发更新任务均已成功完成！");
-        } catch (InterruptedException | ExecutionException e) {
-            System.err.println("【定时任务-阶段2】并发更新市值时发生严重错误！一个或多个写入任务最终失败。");
-            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            complete = false;
+            progress.addFailures(1);
+            System.err.println("【定时任务-阶段2(SQL)】提交客户区间时被中断。");
+        }
+        try {
+            ExecutorRegistry.awaitAll(futures);
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
             Thread.currentThread().interrupt();
-        } finally {
-            if (!writerExecutor.isTerminated()) writerExecutor.shutdownNow();
+            complete = false;
+        } catch (ExecutionException e) {
+            // 每个区间的异常都已在任务内部捕获，这里只是兜底
+            System.err.println("【定时任务-阶段2(SQL)】区间任务异常结束: " + e.getCause().getMessage());
+            complete = false;
+            progress.addFailures(1);
+        }
+
+        metrics.countMarketValueHoldings(ENGINE_SQL, updatedHoldings.get());
+        String summary = "更新持仓 " + updatedHoldings.get() + " 条，标记客户 " + markedCustomers.get() + " 位，耗时 "
+                + (System.currentTimeMillis() - startTime) + " ms。";
+        if (failedRanges.get() > 0 || !complete) {
+            // 与 Java 引擎一致：没有全部完成时，切换回 Java 引擎后的下一次计价为全量计价
+            lastMarketValueRunStartedAt = null;
+            System.err.println("【定时任务-阶段2(SQL)】并发更新市值时发生严重错误！" + failedRanges.get() + " / " + futures.size() + " 个客户区间最终失败"
+                    + (complete ? "" : "，且有区间未被处理") + "。" + summary);
+        } else {
+            lastMarketValueRunStartedAt = runStartedAt;
+            System.out.println("【定时任务-阶段2(SQL)】共 " + futures.size() + " 个客户区间全部完成，" + summary);
+        }
+        return updatedHoldings.get();
+    }
+
+    /**
+     * 在数据库中汇总一个客户ID区间内每个客户的“资产等级|实盘风险等级”区间
+     */
+    private Map<Long, String> bucketsOfRange(long fromId, long toId) {
+        Map<Long, String> buckets = new HashMap<>();
+        for (Map<String, Object> row : customerHoldingMapper.selectMarketValueTotals(fromId, toId)) {
+            long totalCents = TagKernel.toCents((BigDecimal) row.get("total_market_value"));
+            long weightedRiskCents = TagKernel.toCents((BigDecimal) row.get("weighted_risk"));
+            buckets.put(((Number) row.get("customer_id")).longValue(), marketValueTagBuckets(totalCents, weightedRiskCents));
+        }
+        return buckets;
+    }
+
+    /**
+     * 基准对比：两种计价引擎交替各执行 rounds 轮全量计价（对所有持仓重新计算并写回），记录每轮耗时。
+     * 基金净值不变，因此写回的都是相同的市值，不会改变任何业务数据。
+     */
+    public MarketValueBenchmarkVO benchmarkMarketValueEngines(int rounds) {
+        MarketValueBenchmarkVO result = new MarketValueBenchmarkVO();
+        result.setConfiguredEngine(marketValueEngine);
+        result.setRounds(rounds);
+        result.setHoldingCount(customerHoldingService.count());
+        JobProgress progress = JobProgress.current();
+        for (int i = 0; i < rounds; i++) {
+            progress.phase("java-round-" + (i + 1));
+            long startTime = System.currentTimeMillis();
+            updateMarketValuesConcurrently(Collections.emptySet(), true, progress);
+            result.getJavaMillis().add(System.currentTimeMillis() - startTime);
+
+            progress.phase("sql-round-" + (i + 1));
+            startTime = System.currentTimeMillis();
+            updateMarketValuesInDatabase(true, progress);
+            result.getSqlMillis().add(System.currentTimeMillis() - startTime);
+        }
+        result.setJavaAvgMillis(result.getJavaMillis().stream().mapToLong(Long::longValue).average().orElse(0));
+        result.setSqlAvgMillis(result.getSqlMillis().stream().mapToLong(Long::longValue).average().orElse(0));
+        System.out.println("【市值引擎基准】" + rounds + " 轮，Java 平均 " + result.getJavaAvgMillis() + " ms，SQL 平均 " + result.getSqlAvgMillis() + " ms。");
+        return result;
+    }
+
+    /**
+     * 通过“基金 -> 持有人”倒排索引收集需要重新计价的客户，用压缩位图保存，内存占用远小于客户ID列表
+     * @param since 为空时返回所有有持仓的客户
+     */
+    private Roaring64NavigableMap collectAffectedCustomers(Set<String> changedFundCodes, LocalDateTime since) {
+        Roaring64NavigableMap customers = new Roaring64NavigableMap();
+        if (since == null) {
+            Long lastCustomerId = 0L;
+            while (true) {
+                List<Long> page = customerHoldingMapper.selectHolderIdsAfter(lastCustomerId, 10000);
+                if (page.isEmpty()) break;
+                page.forEach(customers::addLong);
+                lastCustomerId = page.get(page.size() - 1);
+            }
+            return customers;
         }
+        for (List<String> fundBatch : Iterables.partition(changedFundCodes, FUND_CODE_BATCH_SIZE)) {
+            customerHoldingMapper.selectHolderIdsByFunds(fundBatch).forEach(customers::addLong);
+        }
+        customerHoldingMapper.selectStaleHolderIds(since).forEach(customers::addLong);
+        return customers;
     }
 
+    /**
+     * 计算并写入一块客户的持仓市值，同时标记标签区间发生变化的客户
+     */
+    private void writeMarketValueChunk(List<CustomerHolding> chunk, Predicate<CustomerHolding> needsReprice, boolean skipUnchanged,
+                                       Map<String, BigDecimal> latestPrices, Map<String, Integer> fundRiskScores,
+                                       AtomicLong updatedHoldings, AtomicLong unchangedHoldings, AtomicLong markedCustomers) {
+        // a. 只对需要重新计价的持仓计算新市值，市值没有变化的不写库
+        Map<Long, BigDecimal> newValues = new HashMap<>();
+        List<CustomerHolding> holdingsForUpdate = new ArrayList<>();
+        for (CustomerHolding holding : chunk) {
+            if (!needsReprice.test(holding)) continue;
+            BigDecimal latestNetValue = latestPrices.get(holding.getFundCode());
+            if (latestNetValue != null && holding.getTotalShares() != null) {
+                BigDecimal newMarketValue = holding.getTotalShares().multiply(latestNetValue)
+                        .setScale(2, RoundingMode.HALF_UP);
+                if (skipUnchanged && holding.getMarketValue() != null && holding.getMarketValue().compareTo(newMarketValue) == 0) {
+                    unchangedHoldings.incrementAndGet();
+                    continue;
+                }
+                CustomerHolding holdingForUpdate = new CustomerHolding();
+                holdingForUpdate.setId(holding.getId());
+                holdingForUpdate.setMarketValue(newMarketValue);
+                holdingsForUpdate.add(holdingForUpdate);
+                newValues.put(holding.getId(), newMarketValue);
+            }
+        }
+        if (holdingsForUpdate.isEmpty()) {
+            return;
+        }
+
+        // b. 在带重试的事务中分批写入
+        dailyUpdateWriterService.saveUpdatedHoldingsInTransaction(holdingsForUpdate);
+        updatedHoldings.addAndGet(holdingsForUpdate.size());
+
+        // c. 市值变动只有让资产等级或实盘风险跨越阈值时才会改变标签，只标记这些客户
+        List<Long> customersToMark = new ArrayList<>();
+        Map<Long, List<CustomerHolding>> holdingsByCustomer = chunk.stream()
+                .collect(Collectors.groupingBy(CustomerHolding::getCustomerId));
+        for (Map.Entry<Long, List<CustomerHolding>> entry : holdingsByCustomer.entrySet()) {
+            String oldBuckets = marketValueTagBuckets(entry.getValue(), Collections.emptyMap(), fundRiskScores);
+            String newBuckets = marketValueTagBuckets(entry.getValue(), newValues, fundRiskScores);
+            if (!oldBuckets.equals(newBuckets)) {
+                customersToMark.add(entry.getKey());
+            }
+        }
+        customerChangeLogService.markDirty(customersToMark, CustomerChangeLogService.REASON_MARKET_VALUE);
+        markedCustomers.addAndGet(customersToMark.size());
+    }
 
 
     /**
-     * 【任务二】每日凌晨，批量刷新所有客户的画像标签。
-     * 这是一个计算和IO密集型任务，安排在系统负载最低的凌晨执行。
+     * 计算一个客户的持仓在给定市值下落入的“资产等级|实盘风险等级”区间，算法与画像计算保持一致。
+     * @param overrideValues 按持仓ID覆盖的新市值，未覆盖的沿用持仓上原有的市值
+     */
+    private String marketValueTagBuckets(List<CustomerHolding> holdings, Map<Long, BigDecimal> overrideValues, Map<String, Integer> fundRiskScores) {
+        long totalCents = 0L;
+        long weightedRiskCents = 0L;
+        for (CustomerHolding holding : holdings) {
+            BigDecimal value = overrideValues.getOrDefault(holding.getId(), holding.getMarketValue());
+            if (value == null) continue;
+            long cents = TagKernel.toCents(value);
+            totalCents += cents;
+            Integer riskScore = fundRiskScores.get(holding.getFundCode());
+            if (riskScore != null) {
+                weightedRiskCents += cents * riskScore;
+            }
+        }
+
+        return marketValueTagBuckets(totalCents, weightedRiskCents);
+    }
+
+    private String marketValueTagBuckets(long totalCents, long weightedRiskCents) {
+        int riskLevel = totalCents > 0
+                ? TagKernel.actualRiskLevel(TagKernel.actualRiskScoreHundredths(weightedRiskCents, totalCents))
+                : TagKernel.RISK_LEVEL_UNKNOWN;
+        return TagKernel.assetLabel(totalCents) + "|" + riskLevel;
+    }
+
+
+    /**
+     * 【任务二】每日凌晨，增量刷新客户的画像标签。
+     * 只处理当天被标记为“脏”的客户，以及时间型标签到达阈值边界的客户，安排在系统负载最低的凌晨执行。
      */
     @Scheduled(cron = "0 0 2 * * ?") // 每天 02:00 执行
     public void refreshAllCustomerTagsDaily() {
-        System.out.println("【定时任务】开始执行每日全量客户画像刷新...");
-        try {
-            // 直接调用已经写好的并发刷新服务
-            tagRefreshService.refreshAllTagsAtomically();
-            System.out.println("【定时任务】每日全量客户画像刷新任务圆满完成！");
-        } catch (Exception e) {
-            System.err.println("【定时任务】在执行每日全量客户画像刷新时发生严重错误！");
-            e.printStackTrace();
-        }
+        System.out.println("【定时任务】开始执行每日增量客户画像刷新...");
+        // 执行中的异常由 JobRunService 捕获、打印并记录为失败
+        jobRunService.runScheduled(JobRunService.JOB_TAG_REFRESH_DIRTY, () -> {
+            tagRefreshService.refreshDirtyTags();
+            return null;
+        });
     }
 
 
@@ -0,0 +1,164 @@
+package com.whu.hongjing.service;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.whu.hongjing.pojo.vo.SqlStatementStatVO;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 按 MyBatis 语句ID累计的执行次数、耗时和行数，由 SqlTimingInterceptor 在每次执行后记录。
+ * 同时以 hongjing_sql_statement_seconds（带固定分桶的直方图）和 hongjing_sql_rows 两个指标暴露给 Prometheus，
+ * 超过阈值的语句输出慢 SQL 日志（只输出参数的类型和集合大小，不输出参数值）。
+ */
+@Component
+public class SqlStatementStats {
+
+    public static final String SQL_STATEMENT = "hongjing.sql.statement";
+    public static final String SQL_ROWS = "hongjing.sql.rows";
+
+    // 参数形态描述的最大长度，避免上千个元素的 IN 条件刷屏
+    private static final int MAX_SHAPE_LENGTH = 300;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Value("${hongjing.sql.slow-threshold-ms:200}")
+    private long slowThresholdMillis;
+
+    private final Map<String, StatementStat> stats = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次语句执行
+     * @param rows 返回或影响的行数，未知时传负数
+     */
+    public void record(MappedStatement statement, String statementId, long elapsedNanos, long rows, Object parameter) {
+        String commandType = statement.getSqlCommandType().name();
+        StatementStat stat = stats.computeIfAbsent(statementId, id -> new StatementStat(id, commandType));
+        stat.calls.increment();
+        stat.totalNanos.add(elapsedNanos);
+        stat.maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+        if (rows > 0) {
+            stat.rows.add(rows);
+        }
+        stat.timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (rows >= 0) {
+            stat.rowSummary.record(rows);
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (elapsedMillis >= slowThresholdMillis) {
+            stat.slowCalls.increment();
+            System.err.println("【慢SQL】" + statementId + " 耗时 " + elapsedMillis + " ms，" + (rows >= 0 ? "行数 " + rows + "，" : "")
+                    + "参数形态 " + describeShape(parameter));
+        }
+    }
+
+    /**
+     * 按累计耗时从高到低取前 n 条语句
+     */
+    public List<SqlStatementStatVO> topByTotalTime(int n) {
+        return stats.values().stream()
+                .sorted(Comparator.comparingLong((StatementStat s) -> s.totalNanos.sum()).reversed())
+                .limit(Math.max(0, n))
+                .map(StatementStat::toVO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 清空累计统计（Prometheus 指标是单调累计的，不受影响）
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * 描述参数的“形态”：类型、集合大小和 Map 的键，不包含任何参数值
+     */
+    static String describeShape(Object parameter) {
+        String shape = shapeOf(parameter, 0);
+        return shape.length() > MAX_SHAPE_LENGTH ? shape.substring(0, MAX_SHAPE_LENGTH) + "..." : shape;
+    }
+
+    private static String shapeOf(Object value, int depth) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            Object first = collection.isEmpty() ? null : collection.iterator().next();
+            return value.getClass().getSimpleName() + "[" + collection.size() + "]"
+                    + (first == null ? "" : "<" + first.getClass().getSimpleName() + ">");
+        }
+        if (value.getClass().isArray()) {
+            return value.getClass().getComponentType().getSimpleName() + "[" + java.lang.reflect.Array.getLength(value) + "]";
+        }
+        if (value instanceof Wrapper) {
+            // 条件构造器只输出带占位符的条件片段
+            String segment = ((Wrapper<?>) value).getCustomSqlSegment();
+            return value.getClass().getSimpleName() + "(" + (segment == null ? "" : segment) + ")";
+        }
+        if (value instanceof Map && depth == 0) {
+            // Mapper 多参数时的 ParamMap 里同一个参数会以 param1、param2 重复出现一次，只保留命名参数
+            Map<?, ?> map = (Map<?, ?>) value;
+            StringJoiner joiner = new StringJoiner(", ", "{", "}");
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                String key = String.valueOf(entry.getKey());
+                if (key.startsWith("param") && map.size() > 1) continue;
+                joiner.add(key + "=" + shapeOf(entry.getValue(), depth + 1));
+            }
+            return joiner.toString();
+        }
+        return value.getClass().getSimpleName();
+    }
+
+    private class StatementStat {
+        private final String statementId;
+        private final String commandType;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder slowCalls = new LongAdder();
+        private final Timer timer;
+        private final DistributionSummary rowSummary;
+
+        StatementStat(String statementId, String commandType) {
+            this.statementId = statementId;
+            this.commandType = commandType;
+            // 语句数量有限（每个 Mapper 方法一个），用固定分桶代替百分位直方图，控制时间序列的数量
+            this.timer = Timer.builder(SQL_STATEMENT).tag("statement", statementId).tag("type", commandType)
+                    .serviceLevelObjectives(Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofMillis(20), Duration.ofMillis(100),
+                            Duration.ofMillis(500), Duration.ofSeconds(2), Duration.ofSeconds(10))
+                    .register(registry);
+            this.rowSummary = DistributionSummary.builder(SQL_ROWS).tag("statement", statementId).tag("type", commandType)
+                    .register(registry);
+        }
+
+        SqlStatementStatVO toVO() {
+            long callCount = calls.sum();
+            SqlStatementStatVO vo = new SqlStatementStatVO();
+            vo.setStatementId(statementId);
+            vo.setCommandType(commandType);
+            vo.setCalls(callCount);
+            vo.setTotalMillis(totalNanos.sum() / 1_000_000.0);
+            vo.setAvgMillis(callCount == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / callCount);
+            vo.setMaxMillis(maxNanos.get() / 1_000_000.0);
+            vo.setRows(rows.sum());
+            vo.setSlowCalls(slowCalls.sum());
+            return vo;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.whu.hongjing.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.whu.hongjing.event.CustomerTagsChangedEvent;
+import com.whu.hongjing.mapper.CustomerTagRelationMapper;
+import com.whu.hongjing.pojo.entity.CustomerTagRelation;
+import com.whu.hongjing.pojo.vo.TagVO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 内存中的标签位图索引：每个标签对应一个压缩位图，记录拥有该标签的全部客户ID。
+ * 多标签组合筛选只需对几个位图求交集，标签分布统计只需对位图求交集基数，不再需要对整张标签表做 GROUP BY。
+ *
+ * 索引在应用启动后异步全量构建，之后由画像刷新提交的标签变化增量维护。
+ * 索引未就绪（构建中、构建失败、客户ID超出 int 范围）时，查询方法返回 null，调用方应退回到数据库查询。
+ */
+@Component
+public class TagBitmapIndex {
+
+    @Autowired
+    private CustomerTagRelationMapper customerTagRelationMapper;
+
+    // 全量构建时每次从数据库读取的行数
+    private static final int BUILD_PAGE_SIZE = 10000;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, RoaringBitmap> bitmapsByTag = new HashMap<>();
+    private Map<String, String> categoryByTag = new HashMap<>();
+
+    // 每次索引内容发生变化（增量更新或重建）都会递增，供依赖索引的缓存判断是否过期
+    private final AtomicLong version = new AtomicLong();
+    private volatile boolean ready = false;
+
+    // 构建期间提交的标签变化先暂存，构建完成后按顺序重放，避免丢失
+    private boolean building = false;
+    private final List<CustomerTagsChangedEvent> pendingDuringBuild = new ArrayList<>();
+
+    /**
+     * 应用启动完成后在后台线程构建索引，不阻塞启动；数据库不可用时仅打印日志，查询会退回数据库
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        new ThreadFactoryBuilder().setNameFormat("tag-bitmap-index-builder-%d").setDaemon(true).build()
+                .newThread(() -> {
+                    try {
+                        rebuild();
+                    } catch (Exception e) {
+                        System.err.println("【标签索引】启动时构建失败，筛选查询将退回数据库: " + e.getMessage());
+                    }
+                }).start();
+    }
+
+    /**
+     * 从数据库全量重建索引。构建过程不持有写锁，只在最后替换时短暂加锁。
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            building = true;
+            pendingDuringBuild.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long startTime = System.currentTimeMillis();
+        Map<String, RoaringBitmap> newBitmaps = new HashMap<>();
+        Map<String, String> newCategories = new HashMap<>();
+        long rowCount = 0;
+        boolean idOutOfRange = false;
+        try {
+            long lastId = 0L;
+            while (true) {
+                List<CustomerTagRelation> page = customerTagRelationMapper.selectTagsAfterId(lastId, BUILD_PAGE_SIZE);
+                if (page.isEmpty()) break;
+                for (CustomerTagRelation tag : page) {
+                    if (!fitsInIndex(tag.getCustomerId())) {
+                        idOutOfRange = true;
+                        continue;
+                    }
+                    newBitmaps.computeIfAbsent(tag.getTagName(), k -> new RoaringBitmap()).add(tag.getCustomerId().intValue());
+                    newCategories.putIfAbsent(tag.getTagName(), tag.getTagCategory());
+                }
+                rowCount += page.size();
+                lastId = page.get(page.size() - 1).getId();
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                building = false;
+                pendingDuringBuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        newBitmaps.values().forEach(RoaringBitmap::runOptimize);
+
+        lock.writeLock().lock();
+        try {
+            bitmapsByTag = newBitmaps;
+            categoryByTag = newCategories;
+            for (CustomerTagsChangedEvent event : pendingDuringBuild) {
+                applyLocked(event);
+            }
+            pendingDuringBuild.clear();
+            building = false;
+            ready = !idOutOfRange;
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (idOutOfRange) {
+            System.err.println("【标签索引】存在超出 int 范围的客户ID，索引停用，筛选查询将退回数据库。");
+        } else {
+            System.out.println("【标签索引】构建完成：" + rowCount + " 行标签，" + newBitmaps.size() + " 个标签，耗时 "
+                    + (System.currentTimeMillis() - startTime) + " ms。");
+        }
+    }
+
+    /**
+     * 画像刷新事务提交后，增量更新索引
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onTagsChanged(CustomerTagsChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (building) {
+                pendingDuringBuild.add(event);
+            }
+            applyLocked(event);
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyLocked(CustomerTagsChangedEvent event) {
+        for (CustomerTagRelation tag : event.getRemoved()) {
+            RoaringBitmap bitmap = bitmapsByTag.get(tag.getTagName());
+            if (bitmap != null && fitsInIndex(tag.getCustomerId())) {
+                bitmap.remove(tag.getCustomerId().intValue());
+            }
+        }
+        for (CustomerTagRelation tag : event.getAdded()) {
+            if (!fitsInIndex(tag.getCustomerId())) {
+                ready = false;
+                continue;
+            }
+            bitmapsByTag.computeIfAbsent(tag.getTagName(), k -> new RoaringBitmap()).add(tag.getCustomerId().intValue());
+            categoryByTag.putIfAbsent(tag.getTagName(), tag.getTagCategory());
+        }
+    }
+
+    private boolean fitsInIndex(Long customerId) {
+        return customerId != null && customerId >= 0 && customerId <= Integer.MAX_VALUE;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * 复制一份当前索引的快照（位图为独立副本），供预计算聚合等耗时的只读计算使用，计算过程不占用索引的锁
+     * @return 索引未就绪时返回 null
+     */
+    public Snapshot snapshot() {
+        if (!ready) return null;
+        lock.readLock().lock();
+        try {
+            Map<String, RoaringBitmap> bitmaps = new HashMap<>();
+            bitmapsByTag.forEach((tagName, bitmap) -> bitmaps.put(tagName, bitmap.clone()));
+            return new Snapshot(version.get(), bitmaps, new HashMap<>(categoryByTag));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 同时拥有所有指定标签的客户
+     * @return 调用方独占的新位图；索引未就绪时返回 null
+     */
+    public RoaringBitmap findCustomersWithAllTags(Collection<String> tagNames) {
+        if (!ready) return null;
+        lock.readLock().lock();
+        try {
+            List<RoaringBitmap> bitmaps = new ArrayList<>();
+            for (String tagName : new LinkedHashSet<>(tagNames)) {
+                RoaringBitmap bitmap = bitmapsByTag.get(tagName);
+                if (bitmap == null) {
+                    return new RoaringBitmap();
+                }
+                bitmaps.add(bitmap);
+            }
+            if (bitmaps.isEmpty()) {
+                return new RoaringBitmap();
+            }
+            // 从最小的位图开始求交集，中间结果最小
+            bitmaps.sort(Comparator.comparingInt(RoaringBitmap::getCardinality));
+            RoaringBitmap result = bitmaps.get(0).clone();
+            for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++) {
+                result.and(bitmaps.get(i));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 统计每个标签的客户数
+     * @param customerFilter 只统计这些客户；传 null 表示统计全部客户
+     * @return 客户数大于0的标签统计；索引未就绪时返回 null
+     */
+    public List<TagVO> getTagStats(RoaringBitmap customerFilter) {
+        if (!ready) return null;
+        lock.readLock().lock();
+        try {
+            List<TagVO> stats = new ArrayList<>(bitmapsByTag.size());
+            for (Map.Entry<String, RoaringBitmap> entry : bitmapsByTag.entrySet()) {
+                int count = customerFilter == null
+                        ? entry.getValue().getCardinality()
+                        : RoaringBitmap.andCardinality(entry.getValue(), customerFilter);
+                if (count > 0) {
+                    TagVO vo = new TagVO();
+                    vo.setTagName(entry.getKey());
+                    vo.setTagCategory(categoryByTag.get(entry.getKey()));
+                    vo.setCustomerCount(count);
+                    stats.add(vo);
+                }
+            }
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 某一版本索引的只读快照
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+        private final long version;
+        private final Map<String, RoaringBitmap> bitmapsByTag;
+        private final Map<String, String> categoryByTag;
+    }
+
+    /**
+     * 位图转换为升序的客户ID列表
+     */
+    public static List<Long> toCustomerIds(RoaringBitmap bitmap) {
+        List<Long> ids = new ArrayList<>(bitmap.getCardinality());
+        bitmap.forEach((int id) -> ids.add((long) id));
+        return ids;
+    }
+
+    /**
+     * 按客户ID升序，取位图中第 offset 个开始的 limit 个客户ID（用于直接在位图上分页）
+     */
+    public static List<Long> pageOf(RoaringBitmap bitmap, long offset, long limit) {
+        List<Long> ids = new ArrayList<>();
+        if (offset >= bitmap.getCardinality() || limit <= 0) {
+            return ids;
+        }
+        // 先用 select 直接定位到第 offset 个元素，再顺序取 limit 个
+        PeekableIntIterator iterator = bitmap.getIntIterator();
+        iterator.advanceIfNeeded(bitmap.select((int) offset));
+        while (iterator.hasNext() && ids.size() < limit) {
+            ids.add((long) iterator.next());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,169 @@
+package com.whu.hongjing.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.whu.hongjing.event.TagRefreshCompletedEvent;
+import com.whu.hongjing.pojo.vo.TagVO;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 仪表盘的标签共现统计（一个小型的预计算立方体）。
+ * 对“不筛选”“筛选1个标签”“筛选2个不同类别的标签”这三种最常见的仪表盘视图，
+ * 预先算好在该筛选条件下每个标签的客户数，查询时直接按筛选组合取出结果，与客户总数无关。
+ *
+ * 立方体基于某一版本的标签位图索引构建，只在批量画像刷新完成（TagRefreshCompletedEvent）后重建。
+ * 白天每笔交易触发的单客户刷新都会更新索引版本，但不会触发重建：重建的代价与筛选组合数 × 标签数成正比，
+ * 交易时段索引几乎一直在变化，按版本判断过期会让重建持续不断。期间继续使用上一次构建的立方体，
+ * 只有还没有构建过时（如刚启动）才返回 null，由调用方退回到实时的位图计算，并在后台节流地触发第一次构建。
+ */
+@Component
+public class TagCooccurrenceCube {
+
+    @Autowired
+    private TagBitmapIndex tagBitmapIndex;
+
+    // 还没有立方体时，两次构建请求之间的最小间隔
+    private static final long INITIAL_BUILD_INTERVAL_MILLIS = 60_000;
+
+    private static final String KEY_SEPARATOR = "\u0001";
+
+    // 单线程重建；队列长度为1，重建进行中再来的请求最多排队一个，其余直接丢弃（反正下一次重建会用到最新的数据）
+    private final ThreadPoolExecutor rebuildExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1),
+            new ThreadFactoryBuilder().setNameFormat("tag-cube-builder-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.DiscardPolicy());
+
+    private volatile Cube cube;
+    private volatile long lastRebuildRequestMillis = 0;
+
+    /**
+     * 批量画像刷新完成后重建
+     */
+    @EventListener
+    public void onTagRefreshCompleted(TagRefreshCompletedEvent event) {
+        requestRebuild();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 异步重建立方体
+     */
+    public void requestRebuild() {
+        lastRebuildRequestMillis = System.currentTimeMillis();
+        rebuildExecutor.execute(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                System.err.println("【标签共现统计】重建失败: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 按给定的筛选标签取出预计算好的标签统计
+     * @param filterTags 0~2 个筛选标签
+     * @return 命中时返回上一次批量刷新完成后的统计结果（副本，可以修改）；筛选组合不在立方体覆盖范围内、或立方体还没有构建时返回 null
+     */
+    public List<TagVO> lookup(Collection<String> filterTags) {
+        Set<String> distinctTags = new TreeSet<>(filterTags);
+        if (distinctTags.size() > 2) {
+            return null;
+        }
+        Cube current = cube;
+        if (current == null) {
+            // 还没构建过：本次不使用，节流地在后台构建
+            if (tagBitmapIndex.isReady() && System.currentTimeMillis() - lastRebuildRequestMillis > INITIAL_BUILD_INTERVAL_MILLIS) {
+                requestRebuild();
+            }
+            return null;
+        }
+        // 不在立方体里的组合说明满足条件的客户为0（包括两个标签属于同一类别、或某个标签不存在的情况）
+        // 返回副本，调用方修改 TagVO 不会影响立方体
+        List<TagVO> stats = current.statsByFilter.getOrDefault(String.join(KEY_SEPARATOR, distinctTags), Collections.emptyList());
+        List<TagVO> copies = new ArrayList<>(stats.size());
+        for (TagVO source : stats) {
+            TagVO copy = new TagVO();
+            copy.setTagName(source.getTagName());
+            copy.setTagCategory(source.getTagCategory());
+            copy.setCustomerCount(source.getCustomerCount());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * 基于当前的标签位图索引快照，同步重建立方体
+     */
+    public void rebuild() {
+        TagBitmapIndex.Snapshot snapshot = tagBitmapIndex.snapshot();
+        if (snapshot == null) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        Map<String, RoaringBitmap> bitmaps = snapshot.getBitmapsByTag();
+        Map<String, String> categories = snapshot.getCategoryByTag();
+        List<String> tagNames = new ArrayList<>(new TreeSet<>(bitmaps.keySet()));
+
+        Map<String, List<TagVO>> statsByFilter = new HashMap<>();
+        // 不筛选
+        statsByFilter.put("", countAll(bitmaps, categories, null));
+        for (int i = 0; i < tagNames.size(); i++) {
+            String first = tagNames.get(i);
+            RoaringBitmap firstBitmap = bitmaps.get(first);
+            if (firstBitmap.isEmpty()) continue;
+            // 筛选1个标签
+            statsByFilter.put(first, countAll(bitmaps, categories, firstBitmap));
+
+            // 筛选2个标签：同一类别的两个标签不会同时出现在一个客户身上，跳过
+            for (int j = i + 1; j < tagNames.size(); j++) {
+                String second = tagNames.get(j);
+                if (Objects.equals(categories.get(first), categories.get(second))) continue;
+                RoaringBitmap both = RoaringBitmap.and(firstBitmap, bitmaps.get(second));
+                if (both.isEmpty()) continue;
+                statsByFilter.put(first + KEY_SEPARATOR + second, countAll(bitmaps, categories, both));
+            }
+        }
+
+        cube = new Cube(statsByFilter);
+        System.out.println("【标签共现统计】重建完成：" + statsByFilter.size() + " 种筛选组合，基于索引版本 "
+                + snapshot.getVersion() + "，耗时 " + (System.currentTimeMillis() - startTime) + " ms。");
+    }
+
+    private List<TagVO> countAll(Map<String, RoaringBitmap> bitmaps, Map<String, String> categories, RoaringBitmap filter) {
+        List<TagVO> stats = new ArrayList<>();
+        for (Map.Entry<String, RoaringBitmap> entry : bitmaps.entrySet()) {
+            int count = filter == null ? entry.getValue().getCardinality() : RoaringBitmap.andCardinality(entry.getValue(), filter);
+            if (count > 0) {
+                TagVO vo = new TagVO();
+                vo.setTagName(entry.getKey());
+                vo.setTagCategory(categories.get(entry.getKey()));
+                vo.setCustomerCount(count);
+                stats.add(vo);
+            }
+        }
+        return Collections.unmodifiableList(stats);
+    }
+
+    /**
+     * 某一版本索引上算出的全部预计算结果：筛选组合（排序后的标签名拼接）-> 该组合下的标签统计
+     */
+    private static class Cube {
+        private final Map<String, List<TagVO>> statsByFilter;
+
+        Cube(Map<String, List<TagVO>> statsByFilter) {
+            this.statsByFilter = statsByFilter;
+        }
+    }
+}
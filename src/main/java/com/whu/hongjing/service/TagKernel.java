@@ -0,0 +1,133 @@
+package com.whu.hongjing.service;
+
+import com.whu.hongjing.constants.TaggingConstants;
+import com.whu.hongjing.pojo.entity.CustomerHolding;
+import com.whu.hongjing.pojo.entity.FundInfo;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 标签计算的定点数内核。
+ * 金额统一换算成以“分”为单位的 long，实盘风险分数换算成以“0.01分”为单位的 int，
+ * 所有累加、加权、阈值判断都在基本类型上完成，只在读入实体和写回画像时才与 BigDecimal 互相转换。
+ * 金额在库中都是两位小数，风险阈值也都是两位小数以内，因此定点计算的分类结果与原先 BigDecimal 的写法完全一致。
+ */
+public final class TagKernel {
+
+    // 资产规模阈值（分）
+    public static final long ASSET_THRESHOLD_HIGH_CENTS = toCents(TaggingConstants.ASSET_THRESHOLD_HIGH);
+    public static final long ASSET_THRESHOLD_LOW_CENTS = toCents(TaggingConstants.ASSET_THRESHOLD_LOW);
+
+    // 实盘风险分数阈值（0.01分）
+    public static final int ACTUAL_RISK_AGGRESSIVE_HUNDREDTHS = toHundredths(TaggingConstants.ACTUAL_RISK_THRESHOLD_AGGRESSIVE);
+    public static final int ACTUAL_RISK_GROWTH_HUNDREDTHS = toHundredths(TaggingConstants.ACTUAL_RISK_THRESHOLD_GROWTH);
+    public static final int ACTUAL_RISK_BALANCED_HUNDREDTHS = toHundredths(TaggingConstants.ACTUAL_RISK_THRESHOLD_BALANCED);
+    public static final int ACTUAL_RISK_STEADY_HUNDREDTHS = toHundredths(TaggingConstants.ACTUAL_RISK_THRESHOLD_STEADY);
+
+    // 实盘风险等级，与 RiskLevelEnum 的 1~5 级一一对应；0 表示无法评估
+    public static final int RISK_LEVEL_UNKNOWN = 0;
+
+    private TagKernel() {
+    }
+
+    /**
+     * 金额换算成分，超过两位的小数按四舍五入处理；null 视为 0
+     */
+    public static long toCents(BigDecimal amount) {
+        if (amount == null) return 0L;
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * 分换算回两位小数的金额，只在写回数据库时使用
+     */
+    public static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static int toHundredths(double score) {
+        return (int) Math.round(score * 100);
+    }
+
+    /**
+     * 一个客户所有持仓的总市值（分），市值为空的持仓不计入
+     */
+    public static long totalMarketValueCents(List<CustomerHolding> holdings) {
+        long total = 0L;
+        for (CustomerHolding holding : holdings) {
+            if (holding.getMarketValue() != null) {
+                total += toCents(holding.getMarketValue());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 按市值加权的风险分数之和（分 × 风险分数），只统计基金信息和风险分数齐全的持仓
+     */
+    public static long weightedRiskCents(List<CustomerHolding> holdings, Map<String, FundInfo> fundInfoMap) {
+        long weighted = 0L;
+        for (CustomerHolding holding : holdings) {
+            FundInfo fund = fundInfoMap.get(holding.getFundCode());
+            if (fund != null && fund.getRiskScore() != null && holding.getMarketValue() != null) {
+                weighted += toCents(holding.getMarketValue()) * fund.getRiskScore();
+            }
+        }
+        return weighted;
+    }
+
+    /**
+     * 平均实盘风险分数（0.01分）= 加权风险之和 / 总市值，四舍五入到两位小数
+     * @param totalCents 必须大于0
+     */
+    public static int actualRiskScoreHundredths(long weightedRiskCents, long totalCents) {
+        // round(w * 100 / t) 的四舍五入（远离零）写法：先放大2倍再加减一个 t，最后整除 2t
+        long doubled = weightedRiskCents * 200;
+        long rounded = doubled >= 0 ? (doubled + totalCents) / (2 * totalCents) : -((-doubled + totalCents) / (2 * totalCents));
+        return (int) rounded;
+    }
+
+    /**
+     * 实盘风险分数对应的风险等级（1 保守 ~ 5 激进）
+     */
+    public static int actualRiskLevel(int scoreHundredths) {
+        if (scoreHundredths >= ACTUAL_RISK_AGGRESSIVE_HUNDREDTHS) return 5;
+        if (scoreHundredths >= ACTUAL_RISK_GROWTH_HUNDREDTHS) return 4;
+        if (scoreHundredths >= ACTUAL_RISK_BALANCED_HUNDREDTHS) return 3;
+        if (scoreHundredths >= ACTUAL_RISK_STEADY_HUNDREDTHS) return 2;
+        return 1;
+    }
+
+    /**
+     * 一组持仓的实盘风险等级；没有持仓或总市值不为正时无法评估
+     */
+    public static int actualRiskLevel(List<CustomerHolding> holdings, Map<String, FundInfo> fundInfoMap) {
+        if (holdings == null || holdings.isEmpty()) return RISK_LEVEL_UNKNOWN;
+        long totalCents = totalMarketValueCents(holdings);
+        if (totalCents <= 0) return RISK_LEVEL_UNKNOWN;
+        return actualRiskLevel(actualRiskScoreHundredths(weightedRiskCents(holdings, fundInfoMap), totalCents));
+    }
+
+    public static String actualRiskLabel(int riskLevel) {
+        switch (riskLevel) {
+            case 5: return TaggingConstants.LABEL_ACTUAL_RISK_AGGRESSIVE;
+            case 4: return TaggingConstants.LABEL_ACTUAL_RISK_GROWTH;
+            case 3: return TaggingConstants.LABEL_ACTUAL_RISK_BALANCED;
+            case 2: return TaggingConstants.LABEL_ACTUAL_RISK_STEADY;
+            case 1: return TaggingConstants.LABEL_ACTUAL_RISK_CONSERVATIVE;
+            default: return TaggingConstants.LABEL_ACTUAL_RISK_UNKNOWN;
+        }
+    }
+
+    /**
+     * 资产规模标签
+     */
+    public static String assetLabel(long totalCents) {
+        if (totalCents >= ASSET_THRESHOLD_HIGH_CENTS) return TaggingConstants.LABEL_ASSET_HIGH;
+        if (totalCents >= ASSET_THRESHOLD_LOW_CENTS) return TaggingConstants.LABEL_ASSET_MEDIUM;
+        return TaggingConstants.LABEL_ASSET_LOW;
+    }
+}
@@ -11,6 +11,25 @@ public interface TagRefreshService {
     /**
      * 【批量方法】刷新所有客户的画像数据（并行处理）。
      * 这是所有批量、定时任务的入口。
+     * 分块提交并记录检查点，上一轮没有跑完时从检查点继续。
      */
     void refreshAllTagsAtomically();
+
+    /**
+     * 【批量方法】刷新所有客户的画像数据，由调用方决定是否从检查点继续。
+     * @param resume true 时从未过期的检查点继续；false 时丢弃检查点，从头开始新的一轮
+     */
+    void refreshAllTagsAtomically(boolean resume);
+
+    /**
+     * 【增量方法】只刷新被标记为“脏”的客户，以及时间型标签即将跨越阈值的客户。
+     * 这是每日定时任务的入口。
+     */
+    void refreshDirtyTags();
+
+    /**
+     * 【重试方法】重新刷新全量刷新重试名单中的客户，成功的移出名单。
+     * @return 结果摘要
+     */
+    String retryFailedCustomers();
 }
\ No newline at end of file
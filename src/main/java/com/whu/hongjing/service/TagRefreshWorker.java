@@ -4,7 +4,9 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.whu.hongjing.constants.TaggingConstants;
 import com.whu.hongjing.enums.RiskLevelEnum;
 import com.whu.hongjing.pojo.entity.*;
+import com.whu.hongjing.event.CustomerTagsChangedEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,6 +17,7 @@ import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
@@ -29,6 +32,7 @@ public class TagRefreshWorker {
     @Autowired private CustomerProfileService customerProfileService;
     @Autowired private CustomerTagRelationService customerTagRelationService;
     @Autowired private RiskAssessmentService riskAssessmentService;
+    @Autowired private ApplicationEventPublisher eventPublisher;
 
     /**
      * 执行数据库操作的核心方法。 刷新单个客户的所有标签数据。
@@ -36,9 +40,10 @@ public class TagRefreshWorker {
      * 接收已经查询好的 Customer 和 FundInfo 数据，专注于计算和写入。
      * @param customer 待刷新画像的客户对象
      * @param fundInfoMap 全量的基金信息，用于提高性能
+     * @return 本次实际发生变化的标签
      */
     @Transactional(isolation = Isolation.READ_COMMITTED)
-    public void refreshSingleCustomer(Customer customer, Map<String, FundInfo> fundInfoMap) {
+    public TagDiff refreshSingleCustomer(Customer customer, Map<String, FundInfo> fundInfoMap) {
         Long customerId = customer.getId();
 
         // --- 准备阶段：获取当前客户的其他关联数据 ---
@@ -48,27 +53,197 @@ public class TagRefreshWorker {
                 new QueryWrapper<RiskAssessment>().eq("customer_id", customerId).orderByDesc("assessment_date").last("LIMIT 1"));
 
         // --- 计算阶段1：计算核心量化指标 (CustomerProfile) ---
-        CustomerProfile profile = calculateAndSaveProfile(customer, holdings, transactions);
+        CustomerTradeMetrics tradeMetrics = CustomerTradeMetrics.of(transactions, LocalDateTime.now());
+        CustomerProfile profile = calculateProfile(customer, customerProfileService.getById(customerId), holdings, tradeMetrics);
+        customerProfileService.saveOrUpdate(profile);
 
         // --- 计算阶段2：生成所有标签 ---
-        List<CustomerTagRelation> newTags = generateAllTags(customer, profile, latestAssessment, transactions, holdings, fundInfoMap);
+        List<CustomerTagRelation> newTags = generateAllTags(customer, profile, latestAssessment, tradeMetrics, holdings, fundInfoMap);
+
+        // --- 持久化阶段：与已有标签对比，只删除、新增真正变化的行 ---
+        List<CustomerTagRelation> existingTags = customerTagRelationService.list(
+                new QueryWrapper<CustomerTagRelation>().eq("customer_id", customerId));
+        TagDiff diff = new TagDiff();
+        diff.compare(existingTags, newTags);
+        persistTagDiff(diff);
+        return diff;
+    }
+
+
+    /**
+     * 【批量模式】在一个事务内刷新一整块客户的标签数据。
+     * 与逐个客户刷新不同，这里对整块客户只发起固定的几次范围查询（持仓、交易、风险评估、画像各一次），
+     * 在内存中按客户ID分组后，再逐个复用同一套画像与标签计算逻辑，最后统一批量写回。
+     * 这样数据库往返次数只与“块数”有关，而与客户总数无关。
+     * @param block 按ID升序排列的一块客户
+     * @param fundInfoMap 全量的基金信息
+     * @return 整块客户实际发生变化的标签
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public TagDiff refreshCustomerBlock(List<Customer> block, Map<String, FundInfo> fundInfoMap) {
+        TagDiff diff = new TagDiff();
+        if (block == null || block.isEmpty()) {
+            return diff;
+        }
+        List<Long> customerIds = block.stream().map(Customer::getId).collect(Collectors.toList());
+
+        // --- 准备阶段：对整块客户一次性做范围查询，并在内存中按客户分组 ---
+        Map<Long, List<CustomerHolding>> holdingsByCustomer = customerHoldingService.list(
+                scopeToCustomers(new QueryWrapper<CustomerHolding>(), customerIds)).stream()
+                .collect(Collectors.groupingBy(CustomerHolding::getCustomerId));
+        Map<Long, List<FundTransaction>> transactionsByCustomer = fundTransactionService.list(
+                scopeToCustomers(new QueryWrapper<FundTransaction>(), customerIds)).stream()
+                .collect(Collectors.groupingBy(FundTransaction::getCustomerId));
+        // 每个客户只保留评估日期最新的一条风险评估（等价于单客户模式下的 ORDER BY assessment_date DESC LIMIT 1）
+        Map<Long, RiskAssessment> latestAssessmentByCustomer = riskAssessmentService.list(
+                scopeToCustomers(new QueryWrapper<RiskAssessment>(), customerIds)).stream()
+                .filter(a -> a.getAssessmentDate() != null)
+                .collect(Collectors.toMap(RiskAssessment::getCustomerId, Function.identity(),
+                        (a, b) -> b.getAssessmentDate().isAfter(a.getAssessmentDate()) ? b : a));
+        Map<Long, CustomerProfile> existingProfiles = customerProfileService.list(
+                scopeToCustomers(new QueryWrapper<CustomerProfile>(), customerIds)).stream()
+                .collect(Collectors.toMap(CustomerProfile::getCustomerId, Function.identity()));
+        Map<Long, List<CustomerTagRelation>> existingTagsByCustomer = customerTagRelationService.list(
+                scopeToCustomers(new QueryWrapper<CustomerTagRelation>(), customerIds)).stream()
+                .collect(Collectors.groupingBy(CustomerTagRelation::getCustomerId));
+
+        // --- 计算阶段：逐个客户复用单客户的画像与标签计算逻辑 ---
+        LocalDateTime now = LocalDateTime.now();
+        List<CustomerProfile> profilesToInsert = new ArrayList<>();
+        List<CustomerProfile> profilesToUpdate = new ArrayList<>();
+        for (Customer customer : block) {
+            Long customerId = customer.getId();
+            List<CustomerHolding> holdings = holdingsByCustomer.getOrDefault(customerId, Collections.emptyList());
+            List<FundTransaction> transactions = transactionsByCustomer.getOrDefault(customerId, Collections.emptyList());
+            CustomerProfile existingProfile = existingProfiles.get(customerId);
+
+            CustomerTradeMetrics tradeMetrics = CustomerTradeMetrics.of(transactions, now);
+            CustomerProfile profile = calculateProfile(customer, existingProfile, holdings, tradeMetrics);
+            if (existingProfile == null) {
+                profilesToInsert.add(profile);
+            } else {
+                profilesToUpdate.add(profile);
+            }
+            List<CustomerTagRelation> newTags = generateAllTags(customer, profile, latestAssessmentByCustomer.get(customerId), tradeMetrics, holdings, fundInfoMap);
+            // 只与本客户自己的已有标签对比（BETWEEN 范围内顺带读出的其他客户标签不会被触碰）
+            diff.compare(existingTagsByCustomer.getOrDefault(customerId, Collections.emptyList()), newTags);
+        }
+
+        // --- 持久化阶段：整块批量写入（已知哪些画像已存在，避免 saveOrUpdate 逐条先查后写） ---
+        if (!profilesToInsert.isEmpty()) {
+            customerProfileService.saveBatch(profilesToInsert);
+        }
+        if (!profilesToUpdate.isEmpty()) {
+            customerProfileService.updateBatchById(profilesToUpdate);
+        }
+        persistTagDiff(diff);
+        return diff;
+    }
+
+
+    /**
+     * 把标签差异写回数据库：只按主键删除失效的行、插入新出现的行，没变化的行原样保留（ID和创建时间都不变）。
+     * 有变化时发布标签变化事件，事务提交后内存标签索引据此增量更新。
+     */
+    private void persistTagDiff(TagDiff diff) {
+        List<Long> idsToDelete = new ArrayList<>();
+        diff.getRemoved().forEach(tag -> idsToDelete.add(tag.getId()));
+        diff.getDuplicates().forEach(tag -> idsToDelete.add(tag.getId()));
+        if (!idsToDelete.isEmpty()) {
+            customerTagRelationService.removeByIds(idsToDelete);
+        }
+        if (!diff.getAdded().isEmpty()) {
+            customerTagRelationService.saveBatch(diff.getAdded());
+        }
+        // 事件只带净变化：清理掉的重复行对应的标签客户仍然拥有，索引不能把客户移除
+        if (!diff.getAdded().isEmpty() || !diff.getRemoved().isEmpty()) {
+            eventPublisher.publishEvent(new CustomerTagsChangedEvent(diff.getAdded(), diff.getRemoved()));
+        }
+    }
+
+
+    /**
+     * 一次刷新中实际发生变化的标签。
+     * 标签以“客户ID + 标签类别 + 标签名”作为身份，新旧两边都有的视为未变化。
+     * 客户仍然拥有的标签若在库中有重复行（历史数据中可能存在），多余的行单独记在 duplicates 中，只需从数据库删除，不算标签变化。
+     */
+    public static class TagDiff {
+        private final List<CustomerTagRelation> added = new ArrayList<>();
+        private final List<CustomerTagRelation> removed = new ArrayList<>();
+        private final List<CustomerTagRelation> duplicates = new ArrayList<>();
+
+        /**
+         * 对比同一个客户的已有标签和新计算出的标签，把差异累加进来
+         */
+        void compare(List<CustomerTagRelation> existingTags, List<CustomerTagRelation> newTags) {
+            Set<String> newKeys = newTags.stream().map(TagDiff::keyOf).collect(Collectors.toSet());
+            Set<String> keptKeys = new HashSet<>();
+            Set<String> removedKeys = new HashSet<>();
+            for (CustomerTagRelation existing : existingTags) {
+                String key = keyOf(existing);
+                boolean firstRow = newKeys.contains(key) ? keptKeys.add(key) : removedKeys.add(key);
+                if (!firstRow) {
+                    duplicates.add(existing);
+                } else if (!newKeys.contains(key)) {
+                    removed.add(existing);
+                }
+            }
+            for (CustomerTagRelation tag : newTags) {
+                if (!keptKeys.contains(keyOf(tag))) {
+                    added.add(tag);
+                    keptKeys.add(keyOf(tag));
+                }
+            }
+        }
+
+        private static String keyOf(CustomerTagRelation tag) {
+            return tag.getCustomerId() + "|" + tag.getTagCategory() + "|" + tag.getTagName();
+        }
+
+        public List<CustomerTagRelation> getAdded() {
+            return added;
+        }
+
+        public List<CustomerTagRelation> getRemoved() {
+            return removed;
+        }
+
+        public List<CustomerTagRelation> getDuplicates() {
+            return duplicates;
+        }
+
+        public int changedCount() {
+            return added.size() + removed.size() + duplicates.size();
+        }
+    }
+
 
-        // --- 持久化阶段：覆盖式写入数据库 (先删后增) ---
-        customerTagRelationService.remove(new QueryWrapper<CustomerTagRelation>().eq("customer_id", customerId));
-        if (!newTags.isEmpty()) {
-            customerTagRelationService.saveBatch(newTags);
+    /**
+     * 为批量查询加上客户范围条件。
+     * ID连续（或足够稠密）时使用 BETWEEN 走主键/索引范围扫描，区间内多出来的其他客户数据在内存分组后自然被忽略；
+     * ID过于稀疏时退化为 IN 列表，避免把大量无关客户的数据也读出来。
+     */
+    private <T> QueryWrapper<T> scopeToCustomers(QueryWrapper<T> wrapper, List<Long> sortedCustomerIds) {
+        Long minId = sortedCustomerIds.get(0);
+        Long maxId = sortedCustomerIds.get(sortedCustomerIds.size() - 1);
+        if (maxId - minId + 1 <= 2L * sortedCustomerIds.size()) {
+            return wrapper.between("customer_id", minId, maxId);
         }
+        return wrapper.in("customer_id", sortedCustomerIds);
     }
 
 
 
     /**
-     * 负责计算并保存一个客户的所有核心“量化”数据到 customer_profile 表。
+     * 负责计算一个客户的所有核心“量化”数据（对应 customer_profile 表），由调用方负责写回数据库。
+     * 交易类指标由 CustomerTradeMetrics 对交易记录单次遍历得到，这里只做组装。
+     * 不访问数据库，包内可见以便基准测试直接调用。
+     * @param existingProfile 数据库中已有的画像，没有则传 null
      * @return 更新后的 CustomerProfile 对象
      */
-    private CustomerProfile calculateAndSaveProfile(Customer customer, List<CustomerHolding> holdings, List<FundTransaction> transactions) {
+    CustomerProfile calculateProfile(Customer customer, CustomerProfile existingProfile, List<CustomerHolding> holdings, CustomerTradeMetrics tradeMetrics) {
         // 存储了当前客户的量化指标的profile
-        CustomerProfile profile = customerProfileService.getById(customer.getId());
+        CustomerProfile profile = existingProfile;
 
         if (profile == null) {
             profile = new CustomerProfile(customer.getId());
@@ -78,18 +253,15 @@ public class TagRefreshWorker {
         if (!holdings.isEmpty()) {
             long totalDaysSum = 0;  // 所有基金的总持仓天数
             int validHoldingsCount = 0;  // 持仓的基金数量
+            LocalDate today = tradeMetrics.getNow().toLocalDate();
 
-            // 遍历每只持仓的基金
+            // 遍历每只持仓的基金，取出它【第一次】被申购的时间（已在累加器中按基金预先求好）
             for (CustomerHolding holding : holdings) {
-                // 对于当前这只基金(holding)，从【所有】历史交易记录(transactions)中， 找到它【第一次】被申购的那条记录。
-                // Optional 是一个容器，它可能包含一个FundTransaction，也可能为空。
-                Optional<FundTransaction> firstPurchaseOpt = transactions.stream()
-                        .filter(tx -> tx.getFundCode().equals(holding.getFundCode()) && "申购".equals(tx.getTransactionType()))
-                        .min(Comparator.comparing(FundTransaction::getTransactionTime));
+                LocalDateTime firstPurchaseTime = tradeMetrics.getFirstPurchaseTime(holding.getFundCode());
 
                 // 计算从第一次购买那天，到今天总共过去了多少天
-                if (firstPurchaseOpt.isPresent()) {
-                    totalDaysSum += ChronoUnit.DAYS.between(firstPurchaseOpt.get().getTransactionTime().toLocalDate(), LocalDate.now());
+                if (firstPurchaseTime != null) {
+                    totalDaysSum += ChronoUnit.DAYS.between(firstPurchaseTime.toLocalDate(), today);
                     validHoldingsCount++;   // 记录持仓过的基金数+1
                 }
             }
@@ -101,29 +273,17 @@ public class TagRefreshWorker {
             profile.setAvgHoldingDays(0);
         }
 
-        // 2. 计算总市值 (M)
-        profile.setTotalMarketValue(
-            holdings.stream()
-            .map(CustomerHolding::getMarketValue)
-            .filter(Objects::nonNull)
-            .reduce(BigDecimal.ZERO, BigDecimal::add)   // 按照add的方式从0开始累加
-        );
+        // 2. 计算总市值 (M)：内部按分累加，写回画像时再转换成金额
+        profile.setTotalMarketValue(TagKernel.fromCents(TagKernel.totalMarketValueCents(holdings)));
 
         // 3. 计算 R, F 和定投行为
-        if (!transactions.isEmpty()) {
-            // 找到最近交易的交易
-            Optional<LocalDateTime> lastTxTimeOpt = transactions.stream()
-                .map(FundTransaction::getTransactionTime).max(LocalDateTime::compareTo);
-
+        if (tradeMetrics.hasTransactions()) {
             // 计算最近交易的交易日期到今天的总天数 R
-            profile.setRecencyDays(lastTxTimeOpt.map(localDateTime -> (int) ChronoUnit.DAYS.between(localDateTime, LocalDateTime.now())).orElse(null));
-
+            profile.setRecencyDays((int) ChronoUnit.DAYS.between(tradeMetrics.getLastTradeTime(), tradeMetrics.getNow()));
             // 计算90天内的交易频率 F
-            profile.setFrequency90d((int) transactions.stream()
-                // 取出当前时间点90天前 之后发生的交易
-                .filter(tx -> tx.getTransactionTime().isAfter(LocalDateTime.now().minusDays(90))).count());
+            profile.setFrequency90d(tradeMetrics.getFrequency90d());
             // 计算长持型的定投行为
-            profile.setHasRegularInvestment(checkForRegularInvestment(transactions));
+            profile.setHasRegularInvestment(tradeMetrics.hasRegularInvestment());
         // 没有交易行为 设置为空
         } else {
             profile.setRecencyDays(null);
@@ -131,15 +291,71 @@ public class TagRefreshWorker {
             profile.setHasRegularInvestment(false);
         }
 
-        customerProfileService.saveOrUpdate(profile);
+        // 4. 计算时间型标签下一次可能跨越阈值的日期，供每日增量刷新判断是否到期
+        profile.setNextRefreshDate(calculateNextRefreshDate(profile, tradeMetrics));
+
         return profile;
     }
 
 
     /**
-     * 生成所有标签（包括计算好的profile数据 和其他的基础标签数据）
+     * 计算在客户没有任何新变动的情况下，其时间型标签（持仓风格、R、F）最早可能发生变化的日期。
+     * 只要到了这个日期，每日增量刷新就会重新计算该客户；宁可提前，不可错过。年龄分代只取决于出生年份，不随时间变化。
+     * @return 下一次需要重新计算的日期；返回 null 表示标签不会单纯因为时间流逝而变化
+     */
+    private LocalDate calculateNextRefreshDate(CustomerProfile profile, CustomerTradeMetrics tradeMetrics) {
+        LocalDate today = tradeMetrics.getNow().toLocalDate();
+        List<LocalDate> candidates = new ArrayList<>();
+
+        boolean isLongTermHolder = profile.getAvgHoldingDays() != null && profile.getAvgHoldingDays() > TaggingConstants.HOLDING_STYLE_THRESHOLD_DAYS;
+
+        // 1. 持仓风格：没有新交易时，平均持仓天数每天恰好增加1天，可以直接算出何时越过“长持型”阈值
+        if (!isLongTermHolder && profile.getAvgHoldingDays() != null && profile.getAvgHoldingDays() > 0) {
+            candidates.add(today.plusDays(TaggingConstants.HOLDING_STYLE_THRESHOLD_DAYS + 1 - profile.getAvgHoldingDays()));
+        }
+
+        if (tradeMetrics.hasTransactions()) {
+            if (isLongTermHolder) {
+                // 2. 长持型的R：近3个月/近6个月的净流入，会在窗口内最早的一笔交易滑出窗口时发生变化
+                if (tradeMetrics.getEarliestTradeWithin3m() != null) {
+                    candidates.add(tradeMetrics.getEarliestTradeWithin3m().plusMonths(TaggingConstants.RECENCY_STAGNANT_MONTHS).toLocalDate());
+                }
+                if (tradeMetrics.getEarliestTradeWithin6m() != null) {
+                    candidates.add(tradeMetrics.getEarliestTradeWithin6m().plusMonths(TaggingConstants.RECENCY_OUTFLOW_MONTHS).toLocalDate());
+                }
+                // 3. 长持型的F：定投判断按自然月统计，只要一年内有过申购，跨月时就可能变化
+                if (tradeMetrics.hasPurchaseWithinYear()) {
+                    candidates.add(YearMonth.from(today).plusMonths(1).atDay(1));
+                }
+            } else {
+                // 4. 交易型的R：距最近一次交易的天数越过“近期活跃”“近期沉睡”阈值的日期
+                if (profile.getRecencyDays() != null) {
+                    LocalDateTime lastTradeTime = tradeMetrics.getLastTradeTime();
+                    if (profile.getRecencyDays() <= TaggingConstants.RECENCY_ACTIVE_DAYS) {
+                        candidates.add(lastTradeTime.plusDays(TaggingConstants.RECENCY_ACTIVE_DAYS + 1).toLocalDate());
+                    } else if (profile.getRecencyDays() <= TaggingConstants.RECENCY_SLEEP_DAYS) {
+                        candidates.add(lastTradeTime.plusDays(TaggingConstants.RECENCY_SLEEP_DAYS + 1).toLocalDate());
+                    }
+                }
+                // 5. 交易型的F：90天窗口内最早的一笔交易滑出窗口时，交易次数就会减少
+                if (tradeMetrics.getEarliestTradeWithin90d() != null) {
+                    candidates.add(tradeMetrics.getEarliestTradeWithin90d().plusDays(90).toLocalDate());
+                }
+            }
+        }
+
+        // 取最早的边界；已经到期但还未真正越过阈值的（比如同一天内的时间差），推迟到明天再看
+        return candidates.stream()
+                .min(LocalDate::compareTo)
+                .map(date -> date.isAfter(today) ? date : today.plusDays(1))
+                .orElse(null);
+    }
+
+
+    /**
+     * 生成所有标签（包括计算好的profile数据 和其他的基础标签数据），同样不访问数据库
      */
-    private List<CustomerTagRelation> generateAllTags(Customer customer, CustomerProfile profile, RiskAssessment assessment, List<FundTransaction> transactions, List<CustomerHolding> holdings, Map<String, FundInfo> fundInfoMap) {
+    List<CustomerTagRelation> generateAllTags(Customer customer, CustomerProfile profile, RiskAssessment assessment, CustomerTradeMetrics tradeMetrics, List<CustomerHolding> holdings, Map<String, FundInfo> fundInfoMap) {
 
         List<CustomerTagRelation> tags = new ArrayList<>();  // 初始化保存客户所有标签对象 的列表（一个标签对应一行数据 对应一个CustomerTagRelation对象）
 
@@ -158,14 +374,7 @@ public class TagRefreshWorker {
 
         // 开始计算 总资产标签M
         if (profile.getTotalMarketValue() != null) {
-            BigDecimal mValue = profile.getTotalMarketValue();
-            if (mValue.compareTo(TaggingConstants.ASSET_THRESHOLD_HIGH) >= 0) {
-                tags.add(new CustomerTagRelation(customerId, TaggingConstants.LABEL_ASSET_HIGH, TaggingConstants.CATEGORY_ASSET));
-            } else if (mValue.compareTo(TaggingConstants.ASSET_THRESHOLD_LOW) >= 0) {
-                tags.add(new CustomerTagRelation(customerId, TaggingConstants.LABEL_ASSET_MEDIUM, TaggingConstants.CATEGORY_ASSET));
-            } else {
-                tags.add(new CustomerTagRelation(customerId, TaggingConstants.LABEL_ASSET_LOW, TaggingConstants.CATEGORY_ASSET));
-            }
+            tags.add(new CustomerTagRelation(customerId, TagKernel.assetLabel(TagKernel.toCents(profile.getTotalMarketValue())), TaggingConstants.CATEGORY_ASSET));
         }
 
         // 开始计算 持仓风格标签 （平均持仓天数作为核心量化指标，已经在上面第一阶段的方法里先计算好了 此处只用直接调用判断即可）
@@ -181,7 +390,7 @@ public class TagRefreshWorker {
         // 开始为长持型计算90天、180天净资产流入/流出 （R标签），以及是否有定投行为（F标签）
         if (isLongTermHolder) {
             // 计算R
-            tags.add(generateLongTermRecencyTag(customerId, transactions));
+            tags.add(generateLongTermRecencyTag(customerId, tradeMetrics));
             // 计算F
             String freqTag = profile.getHasRegularInvestment() ? TaggingConstants.LABEL_FREQUENCY_LONG_REGULAR : TaggingConstants.LABEL_FREQUENCY_LONG_IRREGULAR;
             tags.add(new CustomerTagRelation(customerId, freqTag, TaggingConstants.CATEGORY_FREQUENCY));
@@ -214,30 +423,6 @@ public class TagRefreshWorker {
 
 
 
-    // 计算并判断定投行为的方法的辅助方法（提供给计算客户核心指标的方法使用）
-    private boolean checkForRegularInvestment(List<FundTransaction> transactions) {
-        Map<YearMonth, Boolean> monthlyPurchaseMap = transactions.stream()
-            // 筛选一年内的申购交易
-            .filter(tx -> "申购".equals(tx.getTransactionType()) && tx.getTransactionTime().isAfter(LocalDateTime.now().minusYears(1)))
-            .collect(Collectors.toMap(
-                tx -> YearMonth.from(tx.getTransactionTime()),  // 取出key（年+月份的时间），不管一个月内有多少条交易记录都合并成一个月的key
-                v -> true,    // 只要这个月买过了 有记录 value就设置为true
-                (existing, replacement) -> existing)  // 如果一个月内有多条记录 只保留已经存在的记录 不用新的记录
-            );
-        YearMonth currentMonth = YearMonth.now();
-        // 判断在12个月内（i=9时也分别是往前倒1个月，2个月）是否有过定投行为（连续3个月都有购入）
-        for (int i = 0; i <= 9; i++) {
-            YearMonth start = currentMonth.minusMonths(i);
-            if (monthlyPurchaseMap.getOrDefault(start, false) &&
-                monthlyPurchaseMap.getOrDefault(start.minusMonths(1), false) &&
-                monthlyPurchaseMap.getOrDefault(start.minusMonths(2), false)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-
     // 计算实盘风险+风险诊断结果的辅助方法（提供给生成所有标签的方法使用）
     private List<CustomerTagRelation> calculateAndGenerateRiskTags(Long customerId, List<CustomerHolding> holdings, Map<String, FundInfo> fundInfoMap, String declaredRiskLevel) {
 
@@ -250,31 +435,18 @@ public class TagRefreshWorker {
             return riskTags;
         }
 
-        // 累加总持仓市值<0赋默认unknown值
-        BigDecimal totalMarketValue = holdings.stream().map(CustomerHolding::getMarketValue).filter(Objects::nonNull).reduce(BigDecimal.ZERO, BigDecimal::add);
-        if (totalMarketValue.compareTo(BigDecimal.ZERO) <= 0) {
+        // 累加总持仓市值<0赋默认unknown值（金额按分、风险分数按0.01分，全程基本类型计算）
+        long totalMarketValueCents = TagKernel.totalMarketValueCents(holdings);
+        if (totalMarketValueCents <= 0) {
             riskTags.add(new CustomerTagRelation(customerId, TaggingConstants.LABEL_ACTUAL_RISK_UNKNOWN, TaggingConstants.CATEGORY_RISK_ACTUAL));
             riskTags.add(new CustomerTagRelation(customerId, TaggingConstants.LABEL_DIAGNOSIS_UNKNOWN, TaggingConstants.CATEGORY_RISK_DIAGNOSIS));
             return riskTags;
         }
 
         // 【开始计算和保存实盘风险】
-        BigDecimal weightedRiskSum = BigDecimal.ZERO;  // 累计所有持仓的风险分数 = 风险等级*市值
-        for (CustomerHolding holding : holdings) {
-            FundInfo fund = fundInfoMap.get(holding.getFundCode());
-            if (fund != null && fund.getRiskScore() != null && holding.getMarketValue() != null) {
-                weightedRiskSum = weightedRiskSum.add(holding.getMarketValue().multiply(new BigDecimal(fund.getRiskScore())));
-            }
-        }
-        // 平均实盘风险分数 = 总风险分数 / 总市值
-        double actualRiskScore = weightedRiskSum.divide(totalMarketValue, 2, RoundingMode.HALF_UP).doubleValue();
-        String actualRiskLabel;
-        // 根据分数打上实盘风险标签 并保存到列表
-        if (actualRiskScore >= TaggingConstants.ACTUAL_RISK_THRESHOLD_AGGRESSIVE) actualRiskLabel = TaggingConstants.LABEL_ACTUAL_RISK_AGGRESSIVE;
-        else if (actualRiskScore >= TaggingConstants.ACTUAL_RISK_THRESHOLD_GROWTH) actualRiskLabel = TaggingConstants.LABEL_ACTUAL_RISK_GROWTH;
-        else if (actualRiskScore >= TaggingConstants.ACTUAL_RISK_THRESHOLD_BALANCED) actualRiskLabel = TaggingConstants.LABEL_ACTUAL_RISK_BALANCED;
-        else if (actualRiskScore >= TaggingConstants.ACTUAL_RISK_THRESHOLD_STEADY) actualRiskLabel = TaggingConstants.LABEL_ACTUAL_RISK_STEADY;
-        else actualRiskLabel = TaggingConstants.LABEL_ACTUAL_RISK_CONSERVATIVE;
+        // 平均实盘风险分数 = 按市值加权的风险分数之和 / 总市值
+        int actualRiskScore = TagKernel.actualRiskScoreHundredths(TagKernel.weightedRiskCents(holdings, fundInfoMap), totalMarketValueCents);
+        String actualRiskLabel = TagKernel.actualRiskLabel(TagKernel.actualRiskLevel(actualRiskScore));
         riskTags.add(new CustomerTagRelation(customerId, actualRiskLabel, TaggingConstants.CATEGORY_RISK_ACTUAL));
 
         // 【开始计算和保存风险诊断】
@@ -311,37 +483,20 @@ public class TagRefreshWorker {
 
 
     // 为长持型计算 近期净资产流入/流出标签的辅助方法（提供给生成所有标签的方法使用）
-    private CustomerTagRelation generateLongTermRecencyTag(Long customerId, List<FundTransaction> transactions) {
-        LocalDateTime now = LocalDateTime.now();
-
-        // 计算近3个月的净资产流入情况
-        BigDecimal netPurchaseLast3Months = calculateNetPurchase(transactions, now.minusMonths(TaggingConstants.RECENCY_STAGNANT_MONTHS), now);
-        if (netPurchaseLast3Months.compareTo(BigDecimal.ZERO) > 0) {
+    private CustomerTagRelation generateLongTermRecencyTag(Long customerId, CustomerTradeMetrics tradeMetrics) {
+        // 近3个月的净资产流入情况
+        if (tradeMetrics.getNetFlow3mCents() > 0) {
             return new CustomerTagRelation(customerId, TaggingConstants.LABEL_RECENCY_LONG_INVEST, TaggingConstants.CATEGORY_RECENCY); // 净资产流入
         }
 
-        // 计算近6个月的净资产流入情况
-        BigDecimal netPurchaseLast6Months = calculateNetPurchase(transactions, now.minusMonths(TaggingConstants.RECENCY_OUTFLOW_MONTHS), now);
-        if (netPurchaseLast6Months.compareTo(BigDecimal.ZERO) >= 0) {
+        // 近6个月的净资产流入情况
+        if (tradeMetrics.getNetFlow6mCents() >= 0) {
             return new CustomerTagRelation(customerId, TaggingConstants.LABEL_RECENCY_LONG_STAGNANT, TaggingConstants.CATEGORY_RECENCY); // 投入停滞
         } else {
             return new CustomerTagRelation(customerId, TaggingConstants.LABEL_RECENCY_LONG_OUTFLOW, TaggingConstants.CATEGORY_RECENCY);  // 资产流出
         }
     }
 
-    // 计算n个月内 净资产累计情况的辅助方法
-    private BigDecimal calculateNetPurchase(List<FundTransaction> transactions, LocalDateTime start, LocalDateTime end) {
-        BigDecimal totalPurchase = transactions.stream()
-                .filter(t -> "申购".equals(t.getTransactionType()) && !t.getTransactionTime().isBefore(start) && t.getTransactionTime().isBefore(end))
-                .map(FundTransaction::getTransactionAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        BigDecimal totalRedeem = transactions.stream()
-                .filter(t -> "赎回".equals(t.getTransactionType()) && !t.getTransactionTime().isBefore(start) && t.getTransactionTime().isBefore(end))
-                .map(FundTransaction::getTransactionAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        return totalPurchase.subtract(totalRedeem);
-    }
-
 
 
 
@@ -0,0 +1,88 @@
+package com.whu.hongjing.service;
+
+import com.whu.hongjing.event.CustomerTagsChangedEvent;
+import com.whu.hongjing.event.TagRefreshCompletedEvent;
+import com.whu.hongjing.pojo.vo.TagVO;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 全量标签统计的读穿透缓存，带一个“代数”版本号。
+ * 标签数据只会在画像刷新时变化：任何一次刷新（单客户或批量）提交了标签变化，代数就加一，缓存随之失效。
+ * 代数同时作为仪表盘、标签列表等接口的 ETag，浏览器带着上次的 ETag 轮询时，两次刷新之间直接返回 304。
+ */
+@Component
+public class TagStatsCache {
+
+    // 以启动时间作为初始代数，保证应用重启后旧的 ETag 不会被误判为仍然有效
+    private final AtomicLong generation = new AtomicLong(System.currentTimeMillis());
+
+    private volatile Entry entry;
+
+    /**
+     * 标签变化提交后使缓存失效（单客户刷新、批量刷新的每一块、删除客户都会发布该事件）
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onTagsChanged(CustomerTagsChangedEvent event) {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * 批量刷新结束时再失效一次，兜底
+     */
+    @EventListener
+    public void onTagRefreshCompleted(TagRefreshCompletedEvent event) {
+        generation.incrementAndGet();
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * 当前代数对应的 ETag
+     */
+    public String getETag() {
+        return "\"tags-" + generation.get() + "\"";
+    }
+
+    /**
+     * 取全量标签统计：当前代数已缓存则直接返回，否则调用 loader 计算并缓存
+     * @return 不可修改的列表，其中的 TagVO 是缓存内容的副本，调用方修改它们不会影响缓存
+     */
+    public List<TagVO> getAllTagStats(Supplier<List<TagVO>> loader) {
+        // 先取代数再计算：计算期间如果又发生了刷新，结果只会记在旧代数下，不会被当作最新数据
+        long currentGeneration = generation.get();
+        Entry current = entry;
+        if (current == null || current.generation != currentGeneration) {
+            current = new Entry(currentGeneration, loader.get());
+            entry = current;
+        }
+        return current.tagStats.stream().map(TagStatsCache::copyOf).collect(Collectors.toUnmodifiableList());
+    }
+
+    private static TagVO copyOf(TagVO source) {
+        TagVO copy = new TagVO();
+        copy.setTagName(source.getTagName());
+        copy.setTagCategory(source.getTagCategory());
+        copy.setCustomerCount(source.getCustomerCount());
+        return copy;
+    }
+
+    private static class Entry {
+        private final long generation;
+        private final List<TagVO> tagStats;
+
+        Entry(long generation, List<TagVO> tagStats) {
+            this.generation = generation;
+            this.tagStats = tagStats;
+        }
+    }
+}
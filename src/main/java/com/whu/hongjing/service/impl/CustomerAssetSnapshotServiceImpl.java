@@ -0,0 +1,228 @@
+package com.whu.hongjing.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.google.common.collect.Iterables;
+import com.whu.hongjing.mapper.CustomerAssetSnapshotMapper;
+import com.whu.hongjing.mapper.CustomerHoldingMapper;
+import com.whu.hongjing.mapper.CustomerPnlMapper;
+import com.whu.hongjing.mapper.CustomerSnapshotRebuildMapper;
+import com.whu.hongjing.mapper.FundTransactionMapper;
+import com.whu.hongjing.pojo.entity.CustomerAssetSnapshot;
+import com.whu.hongjing.pojo.entity.CustomerHolding;
+import com.whu.hongjing.pojo.entity.CustomerPnl;
+import com.whu.hongjing.pojo.entity.CustomerSnapshotRebuild;
+import com.whu.hongjing.pojo.entity.FundTransaction;
+import com.whu.hongjing.service.CustomerAssetSnapshotService;
+import com.whu.hongjing.service.FundInfoService;
+import com.whu.hongjing.service.FundNavHistoryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+public class CustomerAssetSnapshotServiceImpl extends ServiceImpl<CustomerAssetSnapshotMapper, CustomerAssetSnapshot> implements CustomerAssetSnapshotService {
+
+    // 这里直接使用 Mapper，避免与 FundTransactionService 之间的循环依赖
+    @Autowired
+    private FundTransactionMapper fundTransactionMapper;
+    @Autowired
+    private CustomerPnlMapper customerPnlMapper;
+    @Autowired
+    private FundNavHistoryService fundNavHistoryService;
+    @Autowired
+    private CustomerHoldingMapper customerHoldingMapper;
+    @Autowired
+    private FundInfoService fundInfoService;
+    @Autowired
+    private CustomerSnapshotRebuildMapper customerSnapshotRebuildMapper;
+
+    // 分段写入当天快照时每段覆盖的客户ID跨度
+    private static final long RANGE_CHUNK_SIZE = 5000;
+
+    // 回放时每批一起查询交易和净值的客户数
+    private static final int REBUILD_BATCH_CUSTOMERS = 500;
+
+    // 回放结果每条 INSERT 语句写入的行数
+    private static final int UPSERT_BATCH_SIZE = 1000;
+
+    /**
+     * 交易日期来自请求方，可能早于当天：这时当天的持仓和净投入不代表交易那天的状态，而且之后各天的快照都受影响，
+     * 因此不在交易中改写历史快照，只登记该客户从交易日期起重建。
+     * 总资产按交易后的持仓份额重新计价，而不是直接累加持仓表中的市值：交易只更新份额，市值要到当天的净值任务才会重算，
+     * 直接求和会少算（或多算）本笔交易的金额，而 16:00 之后的交易当天不会再被修正。
+     * 每只基金的净值与 replayTransactions 一致：优先取净值历史中当天的净值，其次取基金快照中的最新净值，再退回本笔交易的成交净值。
+     */
+    @Override
+    public void recordTrade(FundTransaction transaction) {
+        BigDecimal amount = transaction.getTransactionAmount();
+        BigDecimal flow = "申购".equals(transaction.getTransactionType()) ? amount : amount.negate();
+        LocalDate tradeDate = transaction.getTransactionTime().toLocalDate();
+        if (!tradeDate.equals(LocalDate.now())) {
+            markForRebuild(List.of(transaction.getCustomerId()), tradeDate);
+            return;
+        }
+
+        List<CustomerHolding> holdings = customerHoldingMapper.selectList(new QueryWrapper<CustomerHolding>()
+                .select("fund_code", "total_shares", "market_value").eq("customer_id", transaction.getCustomerId()));
+        Map<String, NavigableMap<LocalDate, BigDecimal>> navSeries = holdings.isEmpty() ? Collections.emptyMap()
+                : fundNavHistoryService.getNavSeries(holdings.stream().map(CustomerHolding::getFundCode).collect(Collectors.toSet()),
+                tradeDate, tradeDate);
+        Map<String, BigDecimal> latestNavs = fundInfoService.getSnapshot().getNetValues();
+
+        BigDecimal totalAssets = BigDecimal.ZERO;
+        for (CustomerHolding holding : holdings) {
+            NavigableMap<LocalDate, BigDecimal> series = navSeries.get(holding.getFundCode());
+            BigDecimal price = series != null && !series.isEmpty() ? series.lastEntry().getValue() : latestNavs.get(holding.getFundCode());
+            if (price == null && holding.getFundCode().equals(transaction.getFundCode())) {
+                price = transaction.getSharePrice();
+            }
+            if (price == null || holding.getTotalShares() == null) {
+                // 完全没有可用的净值时，只能沿用持仓表中的市值
+                totalAssets = totalAssets.add(holding.getMarketValue() != null ? holding.getMarketValue() : BigDecimal.ZERO);
+            } else {
+                totalAssets = totalAssets.add(holding.getTotalShares().multiply(price));
+            }
+        }
+        baseMapper.upsertAfterTrade(transaction.getCustomerId(), tradeDate, totalAssets.setScale(2, RoundingMode.HALF_UP), flow);
+    }
+
+    @Override
+    public int snapshotAll(LocalDate snapshotDate) {
+        long startTime = System.currentTimeMillis();
+        List<Map<String, Object>> bounds = customerPnlMapper.selectMaps(
+                new QueryWrapper<CustomerPnl>().select("MIN(customer_id) AS min_id", "MAX(customer_id) AS max_id"));
+        if (bounds.isEmpty() || bounds.get(0) == null || bounds.get(0).get("min_id") == null) {
+            return 0;
+        }
+        long minId = ((Number) bounds.get(0).get("min_id")).longValue();
+        long maxId = ((Number) bounds.get(0).get("max_id")).longValue();
+        int written = 0;
+        for (long from = minId; from <= maxId; from += RANGE_CHUNK_SIZE) {
+            written += baseMapper.snapshotRange(from, Math.min(from + RANGE_CHUNK_SIZE - 1, maxId), snapshotDate);
+        }
+        System.out.println("【资产快照】" + snapshotDate + " 的客户资产快照写入完成，影响 " + written + " 行，耗时 "
+                + (System.currentTimeMillis() - startTime) + " ms。");
+        return written;
+    }
+
+    @Override
+    public void rebuildCustomers(Collection<Long> customerIds) {
+        if (customerIds == null || customerIds.isEmpty()) {
+            return;
+        }
+        for (List<Long> idBatch : Iterables.partition(new ArrayList<>(new TreeSet<>(customerIds)), REBUILD_BATCH_CUSTOMERS)) {
+            // 一次取出这批客户的全部交易，以及涉及的所有基金在整个交易区间内的历史净值
+            List<FundTransaction> transactions = fundTransactionMapper.selectList(new QueryWrapper<FundTransaction>()
+                    .in("customer_id", idBatch).orderByAsc("customer_id", "transaction_time"));
+            if (transactions.isEmpty()) {
+                continue;
+            }
+            Map<Long, List<FundTransaction>> transactionsByCustomer = transactions.stream()
+                    .collect(Collectors.groupingBy(FundTransaction::getCustomerId, LinkedHashMap::new, Collectors.toList()));
+            Map<String, NavigableMap<LocalDate, BigDecimal>> navSeries = fundNavHistoryService.getNavSeries(
+                    transactions.stream().map(FundTransaction::getFundCode).collect(Collectors.toSet()),
+                    transactions.stream().map(tx -> tx.getTransactionTime().toLocalDate()).min(Comparator.naturalOrder()).get(),
+                    transactions.stream().map(tx -> tx.getTransactionTime().toLocalDate()).max(Comparator.naturalOrder()).get());
+
+            List<CustomerAssetSnapshot> snapshots = new ArrayList<>();
+            transactionsByCustomer.forEach((customerId, customerTransactions) ->
+                    snapshots.addAll(replayTransactions(customerId, customerTransactions, navSeries)));
+            for (List<CustomerAssetSnapshot> batch : Iterables.partition(snapshots, UPSERT_BATCH_SIZE)) {
+                baseMapper.upsertBatch(batch);
+            }
+        }
+    }
+
+    @Override
+    public void markForRebuild(Collection<Long> customerIds, LocalDate fromDate) {
+        if (customerIds == null || customerIds.isEmpty()) {
+            return;
+        }
+        // 去重并排序，保证并发登记时按相同顺序加锁
+        LocalDateTime now = LocalDateTime.now();
+        for (List<Long> batch : Iterables.partition(new ArrayList<>(new TreeSet<>(customerIds)), UPSERT_BATCH_SIZE)) {
+            customerSnapshotRebuildMapper.mark(batch, fromDate, now);
+        }
+    }
+
+    @Override
+    public int rebuildPending() {
+        long startTime = System.currentTimeMillis();
+        LocalDateTime startedAt = LocalDateTime.now();
+        // 当天的快照由交易和每日任务按最新的盈亏汇总写入，不需要删除
+        LocalDate today = startedAt.toLocalDate();
+        int rebuilt = 0;
+        long lastCustomerId = 0L;
+        while (true) {
+            List<Long> idBatch = customerSnapshotRebuildMapper.selectList(new QueryWrapper<CustomerSnapshotRebuild>()
+                            .select("customer_id").gt("customer_id", lastCustomerId).orderByAsc("customer_id")
+                            .last("LIMIT " + REBUILD_BATCH_CUSTOMERS))
+                    .stream().map(CustomerSnapshotRebuild::getCustomerId).collect(Collectors.toList());
+            if (idBatch.isEmpty()) break;
+            baseMapper.deleteStaleForRebuild(idBatch, today);
+            rebuildCustomers(idBatch);
+            // 重建期间新登记的客户保留到下一次
+            customerSnapshotRebuildMapper.clearProcessed(idBatch, startedAt);
+            rebuilt += idBatch.size();
+            lastCustomerId = idBatch.get(idBatch.size() - 1);
+        }
+        if (rebuilt > 0) {
+            System.out.println("【资产快照】按交易明细重建了 " + rebuilt + " 位客户的历史快照，耗时 "
+                    + (System.currentTimeMillis() - startTime) + " ms。");
+        }
+        return rebuilt;
+    }
+
+    @Override
+    public List<CustomerAssetSnapshot> getSnapshots(Long customerId) {
+        return this.list(new QueryWrapper<CustomerAssetSnapshot>().eq("customer_id", customerId).orderByAsc("snapshot_date"));
+    }
+
+    /**
+     * 按时间顺序回放一个客户的全部交易，得到每个交易日结束时的资产总额、累计净投入和当天的资金净流入。
+     * 每只基金优先取净值历史中当天（或之前最近一天）的净值；净值历史覆盖不到的日期，退回该基金最近一次的成交净值，再退回当前这笔交易的成交净值。
+     * @param transactions 该客户的全部交易，按交易时间升序
+     */
+    private List<CustomerAssetSnapshot> replayTransactions(Long customerId, List<FundTransaction> transactions,
+                                                           Map<String, NavigableMap<LocalDate, BigDecimal>> navSeries) {
+        Map<LocalDate, CustomerAssetSnapshot> snapshotsByDate = new LinkedHashMap<>();
+        BigDecimal cumulativeInvestment = BigDecimal.ZERO;
+        Map<String, BigDecimal> currentShares = new HashMap<>();
+        Map<String, BigDecimal> lastTradePrices = new HashMap<>();
+        for (FundTransaction tx : transactions) {
+            LocalDate txDate = tx.getTransactionTime().toLocalDate();
+            boolean isPurchase = "申购".equals(tx.getTransactionType());
+            BigDecimal flow = isPurchase ? tx.getTransactionAmount() : tx.getTransactionAmount().negate();
+            cumulativeInvestment = cumulativeInvestment.add(flow);
+            BigDecimal shares = currentShares.getOrDefault(tx.getFundCode(), BigDecimal.ZERO);
+            currentShares.put(tx.getFundCode(), isPurchase ? shares.add(tx.getTransactionShares()) : shares.subtract(tx.getTransactionShares()));
+            if (tx.getSharePrice() != null) {
+                lastTradePrices.put(tx.getFundCode(), tx.getSharePrice());
+            }
+
+            BigDecimal fallbackPrice = tx.getSharePrice() != null ? tx.getSharePrice() : BigDecimal.ONE;
+            BigDecimal totalAssets = BigDecimal.ZERO;
+            for (Map.Entry<String, BigDecimal> entry : currentShares.entrySet()) {
+                NavigableMap<LocalDate, BigDecimal> series = navSeries.get(entry.getKey());
+                Map.Entry<LocalDate, BigDecimal> nav = series != null ? series.floorEntry(txDate) : null;
+                BigDecimal price = nav != null ? nav.getValue() : lastTradePrices.getOrDefault(entry.getKey(), fallbackPrice);
+                totalAssets = totalAssets.add(entry.getValue().multiply(price));
+            }
+
+            // 同一天的多笔交易合并成一行：资产和净投入取当天最后一笔之后的值，资金流累加
+            CustomerAssetSnapshot snapshot = snapshotsByDate.computeIfAbsent(txDate,
+                    d -> new CustomerAssetSnapshot(customerId, d, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO));
+            snapshot.setTotalAssets(totalAssets.setScale(2, RoundingMode.HALF_UP));
+            snapshot.setNetInvestment(cumulativeInvestment.setScale(2, RoundingMode.HALF_UP));
+            snapshot.setDailyFlow(snapshot.getDailyFlow().add(flow));
+        }
+        return new ArrayList<>(snapshotsByDate.values());
+    }
+}
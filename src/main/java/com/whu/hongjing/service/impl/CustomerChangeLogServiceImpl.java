@@ -0,0 +1,60 @@
+package com.whu.hongjing.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.google.common.collect.Iterables;
+import com.whu.hongjing.mapper.CustomerChangeLogMapper;
+import com.whu.hongjing.pojo.entity.CustomerChangeLog;
+import com.whu.hongjing.service.CustomerChangeLogService;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+@Service
+public class CustomerChangeLogServiceImpl extends ServiceImpl<CustomerChangeLogMapper, CustomerChangeLog> implements CustomerChangeLogService {
+
+    // 批量标记/清除时每条SQL最多携带的客户数，避免SQL过长
+    private static final int SQL_BATCH_SIZE = 1000;
+
+    @Override
+    public void markDirty(Long customerId, String reason) {
+        if (customerId != null) {
+            markDirty(List.of(customerId), reason);
+        }
+    }
+
+    @Override
+    public void markDirty(Collection<Long> customerIds, String reason) {
+        if (customerIds == null || customerIds.isEmpty()) {
+            return;
+        }
+        // 去重并排序，保证并发标记时按相同顺序加锁，降低死锁概率
+        Set<Long> sortedIds = new TreeSet<>(customerIds);
+        LocalDateTime now = LocalDateTime.now();
+        for (List<Long> batch : Iterables.partition(sortedIds, SQL_BATCH_SIZE)) {
+            baseMapper.markDirty(batch, reason, now);
+        }
+    }
+
+    @Override
+    public List<Long> listDirtyCustomerIds() {
+        return this.list(new QueryWrapper<CustomerChangeLog>().select("customer_id")).stream()
+                .map(CustomerChangeLog::getCustomerId)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void clearProcessed(Collection<Long> customerIds, LocalDateTime refreshStartedAt) {
+        if (customerIds == null || customerIds.isEmpty()) {
+            return;
+        }
+        for (List<Long> batch : Iterables.partition(customerIds, SQL_BATCH_SIZE)) {
+            baseMapper.clearProcessed(batch, refreshStartedAt);
+        }
+    }
+}
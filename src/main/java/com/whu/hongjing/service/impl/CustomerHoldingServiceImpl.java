@@ -10,8 +10,10 @@ import com.whu.hongjing.pojo.entity.FundInfo;
 import com.whu.hongjing.pojo.entity.FundTransaction;
 import com.whu.hongjing.pojo.vo.CustomerHoldingVO;
 import com.whu.hongjing.service.CustomerHoldingService;
+import com.whu.hongjing.service.CustomerPnlService;
 import com.whu.hongjing.service.CustomerService;
 import com.whu.hongjing.service.FundTransactionService;
+import com.whu.hongjing.service.HoldingCostReplay;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -35,6 +37,8 @@ public class CustomerHoldingServiceImpl extends ServiceImpl<CustomerHoldingMappe
     private CustomerService customerService;
     @Autowired
     private FundInfoService fundInfoService;
+    @Autowired
+    private CustomerPnlService customerPnlService;
 
     /**
      * 根据ID查询持仓情况
@@ -72,66 +76,21 @@ public class CustomerHoldingServiceImpl extends ServiceImpl<CustomerHoldingMappe
             QueryWrapper<CustomerHolding> holdingDeleteQuery = new QueryWrapper<>();
             holdingDeleteQuery.eq("customer_id", customerId);
             this.remove(holdingDeleteQuery);
+            customerPnlService.recomputeCustomers(List.of(customerId));
             return true; // 没有交易记录，无需计算
         }
 
-        // 2. 按fund_code对交易进行分组，map的key为同一支基金的code，value为同一只基金的交易记录列表
-        Map<String, List<FundTransaction>> transactionsByFund = transactions.stream()
-                .collect(Collectors.groupingBy(FundTransaction::getFundCode));
-
-        // 3. 删除该客户旧的持仓记录，准备重新计算
+        // 2. 删除该客户旧的持仓记录，准备重新计算
         QueryWrapper<CustomerHolding> holdingDeleteQuery = new QueryWrapper<>();
         holdingDeleteQuery.eq("customer_id", customerId);
         this.remove(holdingDeleteQuery);
 
-        // 4. 遍历每只基金的交易，计算最终持仓
-        for (Map.Entry<String, List<FundTransaction>> entry : transactionsByFund.entrySet()) {
-            String fundCode = entry.getKey(); // 取出一支基金的code
-            List<FundTransaction> fundTransactions = entry.getValue(); // 取出一支基金的交易记录
-
-            // 对每支取出来的基金重新定义总份额和总成本
-            BigDecimal totalShares = BigDecimal.ZERO;  // 总份额
-            BigDecimal totalCost = BigDecimal.ZERO;    // 总成本
-            BigDecimal currentAverageCost = BigDecimal.ZERO; // 用于计算当前平均买入成本 当赎回的成本
-
-            for (FundTransaction tx : fundTransactions) {
-                if ("申购".equals(tx.getTransactionType())) {
-                    totalShares = totalShares.add(tx.getTransactionShares());  // 份额加份额
-                    totalCost = totalCost.add(tx.getTransactionAmount());      // 成本加成本
-                } else if ("赎回".equals(tx.getTransactionType())) {
-                    // 赎回时，需要知道现在的平均成本来在总成本里赎回份额。因为已经假设了原有的交易有的没被计入到持仓情况表里来，因此
-                    // 赎回时的平均成本也不能直接用持仓表里的averageCost字段，因其漏掉了交易 认为不准，重新根据所有交易的总成本与
-                    // 总份额计算当前的最新平均成本
-                    if (totalShares.compareTo(BigDecimal.ZERO) > 0) {
-                        // 总成本除总份额得到当前买入的平均成本
-                        currentAverageCost = totalCost.divide(totalShares, 10, RoundingMode.HALF_UP); // 用更高精度计算当时成本
-                    }
-                    // 总赎回金额 = 份额×平均成本
-                    BigDecimal redeemedCost = tx.getTransactionShares().multiply(currentAverageCost);
-
-                    totalShares = totalShares.subtract(tx.getTransactionShares());
-                    totalCost = totalCost.subtract(redeemedCost); // 赎回时，已经花费的总成本按比例减少
-                }
-            }
-
-            // 如果最终份额大于0，则创建或更新持仓记录
-            if (totalShares.compareTo(BigDecimal.ZERO) > 0) {
-                CustomerHolding newHolding = new CustomerHolding();
-                newHolding.setCustomerId(customerId);
-                newHolding.setFundCode(fundCode);
-                newHolding.setTotalShares(totalShares);
-
-                // 计算交易处理完之后的平均买入成本（因为上面的currentAverageCost只是在当时计算赎回值的时候临时计算的当前平均成本
-                // ,而最后面的交易如果是申购交易的话这个临时平均成本最后就没有在最后通过计算赎回成本时更新，因此不能直接使用。）
-                BigDecimal averageCost = totalCost.divide(totalShares, 4, RoundingMode.HALF_UP);
-                newHolding.setAverageCost(averageCost);
-                newHolding.setLastUpdateDate(LocalDateTime.now());
-
-                // marketValue可以后续通过定时任务或查询时实时计算，这里暂不处理
-
-                this.save(newHolding);
-            }
+        // 3. 按基金回放全部交易，计算最终持仓（份额大于0的才会生成持仓记录）
+        for (CustomerHolding newHolding : HoldingCostReplay.replay(customerId, transactions, LocalDateTime.now())) {
+            this.save(newHolding);
         }
+        // 持仓被整体重写，盈亏汇总无法增量更新，直接按明细重新计算该客户
+        customerPnlService.recomputeCustomers(List.of(customerId));
         return true;
     }
 
@@ -0,0 +1,118 @@
+package com.whu.hongjing.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.google.common.collect.Iterables;
+import com.whu.hongjing.mapper.CustomerMapper;
+import com.whu.hongjing.mapper.CustomerPnlMapper;
+import com.whu.hongjing.pojo.entity.Customer;
+import com.whu.hongjing.pojo.entity.CustomerPnl;
+import com.whu.hongjing.pojo.entity.FundTransaction;
+import com.whu.hongjing.pojo.vo.ProfitLossVO;
+import com.whu.hongjing.service.CustomerPnlService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+
+@Service
+public class CustomerPnlServiceImpl extends ServiceImpl<CustomerPnlMapper, CustomerPnl> implements CustomerPnlService {
+
+    @Autowired
+    private CustomerMapper customerMapper;
+
+    // 分段批量更新时每段覆盖的客户ID跨度，每段一条SQL、一个短事务
+    private static final long RANGE_CHUNK_SIZE = 5000;
+
+    // 按客户ID重新计算时每条SQL最多携带的客户数
+    private static final int SQL_BATCH_SIZE = 1000;
+
+    // 可排序的字段 -> 汇总表上带索引的列，同时起到防止SQL注入的白名单作用
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "customerId", "p.customer_id",
+            "totalInvestment", "p.total_investment",
+            "totalMarketValue", "p.total_market_value",
+            "totalProfitLoss", "p.total_profit_loss",
+            "profitLossRate", "p.profit_loss_rate");
+
+    @Override
+    public void applyTransaction(FundTransaction transaction) {
+        // 与原先的汇总口径一致：申购计为投入，其他交易（赎回）计为取回
+        BigDecimal amount = transaction.getTransactionAmount();
+        BigDecimal delta = "申购".equals(transaction.getTransactionType()) ? amount : amount.negate();
+        if (baseMapper.addInvestment(transaction.getCustomerId(), delta) == 0) {
+            // 还没有汇总行（比如上线前的老客户），直接从明细补算，本笔交易已经保存，会被一并计入
+            recomputeCustomers(List.of(transaction.getCustomerId()));
+        }
+    }
+
+    @Override
+    public void recomputeCustomers(Collection<Long> customerIds) {
+        if (customerIds == null || customerIds.isEmpty()) {
+            return;
+        }
+        for (List<Long> batch : Iterables.partition(new TreeSet<>(customerIds), SQL_BATCH_SIZE)) {
+            baseMapper.recomputeCustomers(batch);
+        }
+    }
+
+    @Override
+    public int refreshAllMarketValues() {
+        long startTime = System.currentTimeMillis();
+        List<Map<String, Object>> bounds = baseMapper.selectMaps(
+                new QueryWrapper<CustomerPnl>().select("MIN(customer_id) AS min_id", "MAX(customer_id) AS max_id"));
+        int updated = forEachRange(bounds, baseMapper::refreshMarketValueRange);
+        System.out.println("【盈亏汇总】总市值批量更新完成，更新 " + updated + " 行，耗时 " + (System.currentTimeMillis() - startTime) + " ms。");
+        return updated;
+    }
+
+    @Override
+    public int rebuildAll() {
+        long startTime = System.currentTimeMillis();
+        List<Map<String, Object>> bounds = customerMapper.selectMaps(
+                new QueryWrapper<Customer>().select("MIN(id) AS min_id", "MAX(id) AS max_id"));
+        int processed = forEachRange(bounds, baseMapper::recomputeRange);
+        System.out.println("【盈亏汇总】全量重建完成，处理 " + processed + " 行，耗时 " + (System.currentTimeMillis() - startTime) + " ms。");
+        return processed;
+    }
+
+    /**
+     * 把 [min_id, max_id] 切成固定跨度的客户ID区间，逐段执行
+     */
+    private int forEachRange(List<Map<String, Object>> bounds, BiFunction<Long, Long, Integer> rangeAction) {
+        if (bounds.isEmpty() || bounds.get(0) == null || bounds.get(0).get("min_id") == null) {
+            return 0;
+        }
+        long minId = ((Number) bounds.get(0).get("min_id")).longValue();
+        long maxId = ((Number) bounds.get(0).get("max_id")).longValue();
+        int total = 0;
+        for (long from = minId; from <= maxId; from += RANGE_CHUNK_SIZE) {
+            total += rangeAction.apply(from, Math.min(from + RANGE_CHUNK_SIZE - 1, maxId));
+        }
+        return total;
+    }
+
+    @Override
+    public Page<ProfitLossVO> getProfitLossPage(Page<ProfitLossVO> page, Long customerId, String customerName,
+                                                String sortField, String sortOrder) {
+        String sortColumn = SORT_COLUMNS.getOrDefault(sortField, "p.total_profit_loss");
+        String order = "asc".equalsIgnoreCase(sortOrder) ? "ASC" : "DESC";
+        return baseMapper.selectProfitLossPage(page, customerId, customerName, sortColumn, order);
+    }
+
+    @Override
+    public ProfitLossVO getProfitLossVO(Long customerId) {
+        ProfitLossVO vo = baseMapper.selectProfitLossVO(customerId);
+        if (vo == null && customerMapper.selectById(customerId) != null) {
+            recomputeCustomers(List.of(customerId));
+            vo = baseMapper.selectProfitLossVO(customerId);
+        }
+        return vo;
+    }
+}
@@ -1,18 +1,29 @@
 package com.whu.hongjing.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.whu.hongjing.event.CustomerTagsChangedEvent;
 import com.whu.hongjing.mapper.CustomerMapper;
 import com.whu.hongjing.pojo.entity.Customer;
-//import com.whu.hongjing.pojo.entity.CustomerTagRelation;
+import com.whu.hongjing.pojo.entity.CustomerAssetSnapshot;
+import com.whu.hongjing.pojo.entity.CustomerTagRelation;
+import com.whu.hongjing.service.CustomerAssetSnapshotService;
+import com.whu.hongjing.service.CustomerChangeLogService;
+import com.whu.hongjing.service.CustomerPnlService;
 import com.whu.hongjing.service.CustomerService;
 import com.whu.hongjing.service.CustomerTagRelationService;
+import com.whu.hongjing.service.TagBitmapIndex;
+import org.roaringbitmap.RoaringBitmap;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
-//import java.util.ArrayList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-//import java.util.stream.Collectors;
+import java.util.stream.Collectors;
 import org.springframework.util.StringUtils;
 import com.whu.hongjing.pojo.vo.ProfitLossVO;
 import java.util.Arrays;
@@ -25,23 +36,58 @@ public class CustomerServiceImpl extends ServiceImpl<CustomerMapper, Customer> i
     private CustomerMapper customerMapper;
     @Autowired
     private CustomerTagRelationService customerTagRelationService;
+    @Autowired
+    private CustomerChangeLogService customerChangeLogService;
+    @Autowired
+    private TagBitmapIndex tagBitmapIndex;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private CustomerPnlService customerPnlService;
+    @Autowired
+    private CustomerAssetSnapshotService customerAssetSnapshotService;
 
     // 删除的方法
     @Override
+    @Transactional
     public boolean removeCustomer(Long id) {
-        return customerMapper.deleteById(id) > 0;  // MP提供的方法
+        boolean removed = customerMapper.deleteById(id) > 0;  // MP提供的方法
+        if (removed) {
+            // 同时清理该客户的标签，并通知内存标签索引，避免已删除的客户继续出现在筛选结果和统计中
+            List<CustomerTagRelation> tags = customerTagRelationService.list(
+                    new QueryWrapper<CustomerTagRelation>().eq("customer_id", id));
+            if (!tags.isEmpty()) {
+                customerTagRelationService.removeByIds(tags.stream().map(CustomerTagRelation::getId).collect(Collectors.toList()));
+                eventPublisher.publishEvent(new CustomerTagsChangedEvent(Collections.emptyList(), tags));
+            }
+            customerPnlService.removeById(id);
+            customerAssetSnapshotService.remove(new QueryWrapper<CustomerAssetSnapshot>().eq("customer_id", id));
+        }
+        return removed;
     }
 
     // 更新（编辑）的方法
     @Override
     public boolean updateCustomer(Customer customer) {
-        return customerMapper.updateById(customer) > 0;  // MP提供的方法 根据已有的ID更新
+        boolean updated = customerMapper.updateById(customer) > 0;  // MP提供的方法 根据已有的ID更新
+        if (updated) {
+            // 出生日期、性别、职业等基础信息直接决定画像标签
+            customerChangeLogService.markDirty(customer.getId(), CustomerChangeLogService.REASON_CUSTOMER_EDIT);
+        }
+        return updated;
     }
 
     // 新增的方法
     @Override
     public boolean save(Customer entity) {
-        return super.save(entity);  // MP提供的方法
+        boolean saved = super.save(entity);  // MP提供的方法
+        if (saved) {
+            // 新客户还没有任何画像，标记后由夜间增量刷新生成
+            customerChangeLogService.markDirty(entity.getId(), CustomerChangeLogService.REASON_CUSTOMER_EDIT);
+            // 新客户的盈亏汇总从一行全零的记录开始，之后随交易增量更新
+            customerPnlService.recomputeCustomers(List.of(entity.getId()));
+        }
+        return saved;
     }
 
     // 唯一保留下来的根据ID查找的方法
@@ -81,8 +127,17 @@ public class CustomerServiceImpl extends ServiceImpl<CustomerMapper, Customer> i
         if (StringUtils.hasText(tagName)) {
             // 单个多个tagName都要统一转换为列表，才好调用多标签查询方法
             List<String> tagList = Arrays.asList(tagName.split(","));
+
+            // 只按标签筛选时，直接在内存标签索引的位图上分页：总数就是位图基数，当前页只按主键取这一页的客户
+            RoaringBitmap matchedCustomers = tagBitmapIndex.findCustomersWithAllTags(tagList);
+            if (matchedCustomers != null && !StringUtils.hasText(name) && !StringUtils.hasText(idNumber) && page.getSize() > 0) {
+                return pageFromBitmap(page, matchedCustomers);
+            }
+
             // 这里调用了外面根据tags查询客户ID的方法
-            List<Long> customerIds = customerTagRelationService.findCustomerIdsByTags(tagList);
+            List<Long> customerIds = matchedCustomers != null
+                    ? TagBitmapIndex.toCustomerIds(matchedCustomers)
+                    : customerTagRelationService.findCustomerIdsByTags(tagList);
 
             if (customerIds.isEmpty()) {
                 // 如果根据标签没有找到任何客户，直接返回空结果，避免无效查询
@@ -106,16 +161,32 @@ public class CustomerServiceImpl extends ServiceImpl<CustomerMapper, Customer> i
 
 
 
+    /**
+     * 按客户ID升序，直接从位图中截取当前页的客户
+     */
+    private Page<Customer> pageFromBitmap(Page<Customer> page, RoaringBitmap matchedCustomers) {
+        page.setTotal(matchedCustomers.getCardinality());
+        List<Long> pageIds = TagBitmapIndex.pageOf(matchedCustomers, page.offset(), page.getSize());
+        if (pageIds.isEmpty()) {
+            return page.setRecords(Collections.emptyList());
+        }
+        List<Customer> records = new ArrayList<>(this.listByIds(pageIds));
+        records.sort(Comparator.comparing(Customer::getId));
+        return page.setRecords(records);
+    }
+
+
+
     @Override
     public Page<ProfitLossVO> getProfitLossPage(Page<ProfitLossVO> page, Long customerId, String customerName, String sortField, String sortOrder) {
-        // 将 customerId 参数传递给Mapper层
-        return baseMapper.getProfitLossPage(page, customerId, customerName, sortField, sortOrder);
+        // 直接读盈亏汇总表，按索引列排序分页
+        return customerPnlService.getProfitLossPage(page, customerId, customerName, sortField, sortOrder);
     }
 
 
     @Override
     public ProfitLossVO getProfitLossVO(Long customerId) {
-        return baseMapper.getProfitLossVOByCustomerId(customerId);
+        return customerPnlService.getProfitLossVO(customerId);
     }
 
 
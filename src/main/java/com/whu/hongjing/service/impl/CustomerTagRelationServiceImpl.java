@@ -4,6 +4,11 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.whu.hongjing.mapper.CustomerTagRelationMapper;
 import com.whu.hongjing.pojo.entity.CustomerTagRelation;
 import com.whu.hongjing.service.CustomerTagRelationService;
+import com.whu.hongjing.service.TagBitmapIndex;
+import com.whu.hongjing.service.TagCooccurrenceCube;
+import com.whu.hongjing.service.TagStatsCache;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import com.whu.hongjing.pojo.vo.TagVO;
 import java.util.*;
@@ -15,10 +20,27 @@ import org.springframework.util.StringUtils;
 @Service
 public class CustomerTagRelationServiceImpl extends ServiceImpl<CustomerTagRelationMapper, CustomerTagRelation> implements CustomerTagRelationService {
 
+    @Autowired
+    private TagBitmapIndex tagBitmapIndex;
+
+    @Autowired
+    private TagCooccurrenceCube tagCooccurrenceCube;
+
+    @Autowired
+    private TagStatsCache tagStatsCache;
+
     @Override
     public List<TagVO> getTagStats() {
-        // 步骤1：从数据库获取未排序的统计数据
-        List<TagVO> unsortedTags = baseMapper.selectTagStats();
+        // 标签数据只在画像刷新时变化，两次刷新之间直接返回缓存的排序结果
+        return tagStatsCache.getAllTagStats(this::loadSortedTagStats);
+    }
+
+    private List<TagVO> loadSortedTagStats() {
+        // 步骤1：获取未排序的统计数据（优先从内存标签索引统计，索引未就绪时查数据库）
+        List<TagVO> unsortedTags = tagBitmapIndex.getTagStats(null);
+        if (unsortedTags == null) {
+            unsortedTags = baseMapper.selectTagStats();
+        }
 
         // 步骤2：定义期望的排序规则
         List<String> categoryOrder = List.of(
@@ -50,12 +72,25 @@ public class CustomerTagRelationServiceImpl extends ServiceImpl<CustomerTagRelat
                 .filter(StringUtils::hasText)
                 .collect(Collectors.toList());
 
-        // 2. 如果没有任何有效的筛选条件，则返回全量统计数据
+        // 2. 不筛选、筛选1个或2个标签是仪表盘最常见的视图，优先直接取预计算的共现统计
+        List<TagVO> precomputed = tagCooccurrenceCube.lookup(activeFilterTags);
+        if (precomputed != null) {
+            return precomputed;
+        }
+
+        // 如果没有任何有效的筛选条件，则返回全量统计数据
         if (activeFilterTags.isEmpty()) {
-            return baseMapper.selectTagStats();
+            List<TagVO> allStats = tagBitmapIndex.getTagStats(null);
+            return allStats != null ? allStats : baseMapper.selectTagStats();
         }
 
-        // 3. 调用findCustomerIdsByTags方法
+        // 3. 索引就绪时：位图求交集得到目标客户，再对每个标签求交集基数，全程不访问数据库
+        RoaringBitmap matchedCustomers = tagBitmapIndex.findCustomersWithAllTags(activeFilterTags);
+        if (matchedCustomers != null) {
+            return matchedCustomers.isEmpty() ? Collections.emptyList() : tagBitmapIndex.getTagStats(matchedCustomers);
+        }
+
+        // 索引未就绪时退回数据库：调用findCustomerIdsByTags方法
         List<Long> customerIds = this.findCustomerIdsByTags(activeFilterTags);
 
         // 4. 如果没有客户符合所有筛选条件，返回空列表
@@ -73,6 +108,11 @@ public class CustomerTagRelationServiceImpl extends ServiceImpl<CustomerTagRelat
         if (tagNames == null || tagNames.isEmpty()) {
             return Collections.emptyList();
         }
+        // 优先用内存标签索引求交集
+        RoaringBitmap matchedCustomers = tagBitmapIndex.findCustomersWithAllTags(tagNames);
+        if (matchedCustomers != null) {
+            return TagBitmapIndex.toCustomerIds(matchedCustomers);
+        }
         // 直接调用本类的Mapper方法 【在SQL语句里判断了只有同时拥有 tagName.size个标签的结果会被返回 因为是同时选择了这么多个标签在进行筛选】
         return baseMapper.findCustomerIdsByTags(tagNames, tagNames.size());
     }
@@ -70,6 +70,8 @@ public class FundDataImportServiceImpl implements FundDataImportService {
 
         if (!fundInfoList.isEmpty()) {
             fundInfoService.saveOrUpdateBatch(fundInfoList);
+            // 导入完成后替换基金快照
+            fundInfoService.reloadSnapshot();
             return fundInfoList.size();
         }
         return 0;
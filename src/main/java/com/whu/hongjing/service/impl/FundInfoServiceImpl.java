@@ -6,12 +6,20 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.whu.hongjing.mapper.FundInfoMapper;
 import com.whu.hongjing.pojo.entity.FundInfo;
 import com.whu.hongjing.service.FundInfoService;
+import com.whu.hongjing.service.FundInfoSnapshot;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 @Service
 public class FundInfoServiceImpl extends ServiceImpl<FundInfoMapper, FundInfo> implements FundInfoService {
 
+    // 当前共享的基金信息快照，首次使用时加载，之后只在基金数据变化后整体替换
+    private final AtomicReference<FundInfoSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong snapshotVersion = new AtomicLong();
+
     @Override
     public Page<FundInfo> getFundInfoPage(Page<FundInfo> page, String fundCode, String fundName, String fundType, Integer riskScore) {
         QueryWrapper<FundInfo> queryWrapper = new QueryWrapper<>();
@@ -36,4 +44,18 @@ public class FundInfoServiceImpl extends ServiceImpl<FundInfoMapper, FundInfo> i
         return this.page(page, queryWrapper);
     }
 
-}
\ No newline at end of file
+    @Override
+    public FundInfoSnapshot getSnapshot() {
+        FundInfoSnapshot current = snapshot.get();
+        return current != null ? current : reloadSnapshot();
+    }
+
+    @Override
+    public synchronized FundInfoSnapshot reloadSnapshot() {
+        // 加锁保证并发重载时，后加载的快照一定后替换，不会被旧数据覆盖
+        FundInfoSnapshot loaded = FundInfoSnapshot.of(snapshotVersion.incrementAndGet(), this.list());
+        snapshot.set(loaded);
+        System.out.println("【基金快照】已加载 " + loaded.size() + " 只基金，版本 " + loaded.getVersion() + "。");
+        return loaded;
+    }
+}
@@ -0,0 +1,163 @@
+package com.whu.hongjing.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.google.common.collect.Iterables;
+import com.whu.hongjing.mapper.FundNavHistoryMapper;
+import com.whu.hongjing.pojo.entity.FundNavHistory;
+import com.whu.hongjing.service.FundNavHistoryService;
+import com.whu.hongjing.service.FundNavStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+public class FundNavHistoryServiceImpl extends ServiceImpl<FundNavHistoryMapper, FundNavHistory> implements FundNavHistoryService {
+
+    // 每条 INSERT 语句写入的行数
+    private static final int UPSERT_BATCH_SIZE = 1000;
+
+    @Autowired
+    private FundNavStore fundNavStore;
+
+    // 本地文件是否与数据库完全一致：null 表示还没确认过（启动后第一次查询时确认），任何一次追加失败都会置为 false
+    private volatile Boolean storeInSync;
+
+    @Override
+    public void recordDailyNavs(LocalDate navDate, Map<String, BigDecimal> navs) {
+        List<FundNavHistory> rows = navs.entrySet().stream()
+                .filter(e -> e.getValue() != null)
+                .map(e -> new FundNavHistory(e.getKey(), navDate, e.getValue()))
+                .collect(Collectors.toList());
+        if (rows.isEmpty()) {
+            return;
+        }
+        for (List<FundNavHistory> batch : Iterables.partition(rows, UPSERT_BATCH_SIZE)) {
+            baseMapper.upsertBatch(batch);
+        }
+        // 数据库已经写入；文件尚未与数据库对齐时不单独追加（需要时会整体重建，其中已包含这一天）
+        if (!isStoreUsable()) {
+            return;
+        }
+        // 文件追加失败只影响读取速度：标记为不同步，之后的查询退回数据库，直到重建文件
+        try {
+            fundNavStore.append(navDate, navs);
+        } catch (Exception e) {
+            storeInSync = false;
+            System.err.println("【净值历史】追加本地净值文件失败，查询将退回数据库: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public BigDecimal getNav(String fundCode, LocalDate navDate) {
+        if (isStoreUsable()) {
+            return fundNavStore.getNav(fundCode, navDate);
+        }
+        List<FundNavHistory> rows = baseMapper.selectRange(Collections.singletonList(fundCode), navDate, navDate);
+        return rows.isEmpty() ? null : rows.get(0).getNetValue();
+    }
+
+    @Override
+    public Map<String, NavigableMap<LocalDate, BigDecimal>> getNavSeries(Collection<String> fundCodes, LocalDate from, LocalDate to) {
+        Map<String, NavigableMap<LocalDate, BigDecimal>> result = new HashMap<>();
+        if (fundCodes == null || fundCodes.isEmpty() || from.isAfter(to)) {
+            return result;
+        }
+        if (isStoreUsable()) {
+            for (String fundCode : new HashSet<>(fundCodes)) {
+                NavigableMap<LocalDate, BigDecimal> series = fundNavStore.getNavSeries(fundCode, from, to);
+                if (!series.isEmpty()) {
+                    result.put(fundCode, series);
+                }
+            }
+            return result;
+        }
+        for (FundNavHistory row : baseMapper.selectRange(new HashSet<>(fundCodes), from, to)) {
+            result.computeIfAbsent(row.getFundCode(), k -> new TreeMap<>()).put(row.getNavDate(), row.getNetValue());
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized int rebuildStore() {
+        if (!fundNavStore.isEnabled()) {
+            return 0;
+        }
+        long startTime = System.currentTimeMillis();
+        storeInSync = false;
+        try {
+            fundNavStore.clear();
+            List<LocalDate> navDates = baseMapper.selectNavDates();
+            for (LocalDate navDate : navDates) {
+                Map<String, BigDecimal> navs = new HashMap<>();
+                for (FundNavHistory row : baseMapper.selectByDate(navDate)) {
+                    navs.put(row.getFundCode(), row.getNetValue());
+                }
+                fundNavStore.append(navDate, navs);
+            }
+            storeInSync = true;
+            System.out.println("【净值历史】本地净值文件重建完成：" + navDates.size() + " 天，耗时 "
+                    + (System.currentTimeMillis() - startTime) + " ms。");
+            return navDates.size();
+        } catch (Exception e) {
+            throw new RuntimeException("重建本地净值文件失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 本地文件是否可以代替数据库回答查询。
+     * 不同步的状态只保存在内存中，所以启动后第一次查询时要与数据库核对一次：文件的起止日期和净值条数都与数据库一致才认为是同步的；
+     * 否则（文件是新建的、上次运行中追加失败、或在写入数据库和追加文件之间崩溃）先从数据库重建。
+     */
+    private boolean isStoreUsable() {
+        if (!fundNavStore.isEnabled()) {
+            return false;
+        }
+        Boolean inSync = storeInSync;
+        if (inSync == null) {
+            synchronized (this) {
+                if (storeInSync == null) {
+                    if (isStoreConsistentWithDatabase()) {
+                        storeInSync = true;
+                    } else {
+                        try {
+                            rebuildStore();
+                        } catch (Exception e) {
+                            System.err.println("【净值历史】" + e.getMessage());
+                        }
+                    }
+                }
+                inSync = storeInSync;
+            }
+        }
+        return inSync;
+    }
+
+    /**
+     * 文件与数据库的第一天、最后一天和净值条数是否都一致。
+     * 文件按日历天排列（没有净值的日期也占一行），所以按有净值的单元格数与数据库的行数比较，中间缺了某一天或某些基金都能发现。
+     */
+    private boolean isStoreConsistentWithDatabase() {
+        long dbNavCount = this.count();
+        if (dbNavCount == 0) {
+            return fundNavStore.getDayCount() == 0;
+        }
+        FundNavHistory first = baseMapper.selectOne(new QueryWrapper<FundNavHistory>()
+                .select("nav_date").orderByAsc("nav_date").last("LIMIT 1"));
+        FundNavHistory last = baseMapper.selectOne(new QueryWrapper<FundNavHistory>()
+                .select("nav_date").orderByDesc("nav_date").last("LIMIT 1"));
+        long storeNavCount = fundNavStore.countNavs();
+        boolean consistent = storeNavCount == dbNavCount
+                && Objects.equals(fundNavStore.getFirstDate(), first.getNavDate())
+                && Objects.equals(fundNavStore.getLastDate(), last.getNavDate());
+        if (!consistent) {
+            System.out.println("【净值历史】本地净值文件（" + fundNavStore.getFirstDate() + " ~ " + fundNavStore.getLastDate() + "，" + storeNavCount
+                    + " 条净值）与数据库（" + first.getNavDate() + " ~ " + last.getNavDate() + "，" + dbNavCount + " 条净值）不一致，从数据库重建。");
+        }
+        return consistent;
+    }
+}
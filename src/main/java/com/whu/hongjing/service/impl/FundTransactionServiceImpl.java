@@ -3,6 +3,7 @@ package com.whu.hongjing.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.whu.hongjing.event.CustomerTradeCommittedEvent;
 import com.whu.hongjing.exception.InsufficientFundsException;
 import com.whu.hongjing.mapper.FundTransactionMapper;
 import com.whu.hongjing.pojo.dto.FundPurchaseDTO;
@@ -15,6 +16,7 @@ import com.whu.hongjing.service.*;
 import com.whu.hongjing.pojo.entity.FundInfo;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -36,8 +38,7 @@ import org.springframework.util.StringUtils;
 public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMapper, FundTransaction> implements FundTransactionService {
 
     @Autowired
-    @Lazy
-    private TagRefreshService tagRefreshService;
+    private ApplicationEventPublisher eventPublisher;
 
     @Autowired
     private CustomerService customerService;
@@ -45,6 +46,15 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
     @Autowired
     private FundInfoService fundInfoService;
 
+    @Autowired
+    private CustomerChangeLogService customerChangeLogService;
+
+    @Autowired
+    private CustomerPnlService customerPnlService;
+
+    @Autowired
+    private CustomerAssetSnapshotService customerAssetSnapshotService;
+
     /**
      * 使用@Lazy注解懒加载客户持仓服务，以解决循环依赖问题
      */
@@ -145,11 +155,15 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
         this.save(transaction);
         // 步骤2：调用客户持仓服务，根据这笔新交易实时更新持仓信息
         customerHoldingService.updateHoldingAfterNewTransaction(transaction);
-
-        // 立即为该客户刷新标签
-        System.out.println("【实时刷新】交易完成，触发客户 " + transaction.getCustomerId() + " 的标签刷新...");
-        tagRefreshService.refreshTagsForCustomer(transaction.getCustomerId());
-        System.out.println("【实时刷新】客户 " + transaction.getCustomerId() + " 的标签已刷新完毕！");
+        // 同一事务内把这笔交易的净投入累加到客户的盈亏汇总上
+        customerPnlService.applyTransaction(transaction);
+        // 持仓和净投入都已更新，写入客户当天的资产快照（补录的历史交易登记为待重建，由每日任务回放）
+        customerAssetSnapshotService.recordTrade(transaction);
+        // 标记该客户画像已过期（与交易同一事务提交）：即使事务提交后的后台异步刷新失败、或因应用重启而没有执行，夜间增量刷新也会补上
+        customerChangeLogService.markDirty(transaction.getCustomerId(), CustomerChangeLogService.REASON_TRADE);
+
+        // 发布交易事件：事务提交后由 AsyncTagRefresher 在后台刷新该客户的标签，不占用本次交易请求的耗时
+        eventPublisher.publishEvent(new CustomerTradeCommittedEvent(transaction.getCustomerId()));
 
         // 步骤3：返回包含ID的完整交易实体
         return transaction;
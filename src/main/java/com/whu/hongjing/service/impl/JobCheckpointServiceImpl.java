@@ -0,0 +1,106 @@
+package com.whu.hongjing.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.google.common.collect.Iterables;
+import com.whu.hongjing.mapper.JobCheckpointMapper;
+import com.whu.hongjing.mapper.JobFailedItemMapper;
+import com.whu.hongjing.pojo.entity.JobCheckpoint;
+import com.whu.hongjing.pojo.entity.JobFailedItem;
+import com.whu.hongjing.service.JobCheckpointService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+public class JobCheckpointServiceImpl extends ServiceImpl<JobCheckpointMapper, JobCheckpoint> implements JobCheckpointService {
+
+    // 批量登记/移除失败条目时每条SQL最多携带的条目数
+    private static final int SQL_BATCH_SIZE = 1000;
+    private static final int ERROR_MAX_LENGTH = 500;
+
+    @Autowired
+    private JobFailedItemMapper jobFailedItemMapper;
+
+    @Override
+    public JobCheckpoint getCheckpoint(String jobName) {
+        return getById(jobName);
+    }
+
+    @Override
+    public void startCheckpoint(String jobName, Long jobRunId, LocalDateTime startedAt) {
+        JobCheckpoint checkpoint = new JobCheckpoint();
+        checkpoint.setJobName(jobName);
+        checkpoint.setJobRunId(jobRunId);
+        checkpoint.setWatermark(0L);
+        checkpoint.setProcessedCount(0L);
+        checkpoint.setStartedAt(startedAt);
+        checkpoint.setUpdateTime(LocalDateTime.now());
+        saveOrUpdate(checkpoint);
+    }
+
+    @Override
+    public void advanceCheckpoint(String jobName, Long jobRunId, long watermark, long processedCount) {
+        // 带上水位条件，乱序到达的旧水位不会覆盖新水位
+        update(new UpdateWrapper<JobCheckpoint>()
+                .set("job_run_id", jobRunId)
+                .set("watermark", watermark)
+                .set("processed_count", processedCount)
+                .set("update_time", LocalDateTime.now())
+                .eq("job_name", jobName)
+                .lt("watermark", watermark));
+    }
+
+    @Override
+    public void completeCheckpoint(String jobName) {
+        removeById(jobName);
+    }
+
+    @Override
+    public void recordFailures(String jobName, Long jobRunId, Map<Long, String> errorsByItemId) {
+        if (errorsByItemId == null || errorsByItemId.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (List<Long> batch : Iterables.partition(new TreeSet<>(errorsByItemId.keySet()), SQL_BATCH_SIZE)) {
+            Map<Long, String> errors = new LinkedHashMap<>();
+            for (Long itemId : batch) {
+                String error = errorsByItemId.get(itemId);
+                errors.put(itemId, error != null && error.length() > ERROR_MAX_LENGTH ? error.substring(0, ERROR_MAX_LENGTH) : error);
+            }
+            jobFailedItemMapper.upsertFailures(jobName, jobRunId, errors, now);
+        }
+    }
+
+    @Override
+    public void clearFailures(String jobName, Collection<Long> itemIds) {
+        if (itemIds == null || itemIds.isEmpty()) {
+            return;
+        }
+        for (List<Long> batch : Iterables.partition(new TreeSet<>(itemIds), SQL_BATCH_SIZE)) {
+            jobFailedItemMapper.delete(new QueryWrapper<JobFailedItem>().eq("job_name", jobName).in("item_id", batch));
+        }
+    }
+
+    @Override
+    public void clearAllFailures(String jobName) {
+        jobFailedItemMapper.delete(new QueryWrapper<JobFailedItem>().eq("job_name", jobName));
+    }
+
+    @Override
+    public List<Long> listFailedItemIds(String jobName) {
+        return jobFailedItemMapper.selectObjs(new QueryWrapper<JobFailedItem>()
+                        .select("item_id").eq("job_name", jobName).orderByAsc("item_id"))
+                .stream().map(id -> ((Number) id).longValue()).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<JobFailedItem> listFailedItems(String jobName, int limit) {
+        return jobFailedItemMapper.selectList(new QueryWrapper<JobFailedItem>()
+                .eq("job_name", jobName).orderByAsc("item_id").last("LIMIT " + Math.max(1, limit)));
+    }
+}
@@ -0,0 +1,270 @@
+package com.whu.hongjing.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.whu.hongjing.mapper.JobRunMapper;
+import com.whu.hongjing.pojo.entity.JobRun;
+import com.whu.hongjing.service.ExecutorRegistry;
+import com.whu.hongjing.service.JobProgress;
+import com.whu.hongjing.service.JobRunService;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Service
+public class JobRunServiceImpl extends ServiceImpl<JobRunMapper, JobRun> implements JobRunService {
+
+    // 运行中任务的进度写回数据库的间隔
+    private static final long PROGRESS_FLUSH_INTERVAL_MILLIS = 10_000;
+    private static final int MESSAGE_MAX_LENGTH = 1000;
+
+    // 会重新计价或批量写入持仓的任务共用一个互斥键：同时运行会互相覆盖持仓市值，并打乱增量计价的水位线
+    private static final String EXCLUSION_MARKET_VALUE = "market-value";
+    private static final Set<String> MARKET_VALUE_JOBS = Set.of(
+            JOB_DAILY_UPDATE, JOB_BENCHMARK_MARKET_VALUE, JOB_BENCHMARK_DATASET);
+
+    @Autowired
+    private ExecutorRegistry executorRegistry;
+
+    // 应用本次启动的时间，早于它提交、却仍处于排队或运行状态的记录，是上次运行时被重启打断的任务
+    private final LocalDateTime applicationStartedAt = LocalDateTime.now();
+
+    // 排队或运行中的任务：任务ID -> 运行状态；互斥键 -> 任务ID
+    private final Map<Long, ActiveRun> activeRuns = new ConcurrentHashMap<>();
+    private final Map<String, Long> activeIdsByExclusionKey = new ConcurrentHashMap<>();
+
+    @Override
+    public Long submit(String jobName, Supplier<String> job) {
+        ActiveRun active = register(jobName, JobRun.TRIGGER_API);
+        try {
+            executorRegistry.get(ExecutorRegistry.Workload.JOB).execute(() -> execute(active, job));
+        } catch (RejectedExecutionException e) {
+            finish(active, JobRun.STATUS_FAILED, "排队的任务过多，未能执行");
+            throw new IllegalStateException("排队的任务过多，请稍后再提交");
+        }
+        return active.run.getId();
+    }
+
+    @Override
+    public Long runScheduled(String jobName, Supplier<String> job) {
+        ActiveRun active;
+        try {
+            active = register(jobName, JobRun.TRIGGER_SCHEDULED);
+        } catch (IllegalStateException e) {
+            System.out.println("【任务记录】" + e.getMessage() + "，本次定时执行跳过。");
+            return null;
+        } catch (Exception e) {
+            // 记录表不可用时任务照常执行，只是没有运行记录
+            System.err.println("【任务记录】无法记录任务 " + jobName + "，任务照常执行: " + e.getMessage());
+            job.get();
+            return null;
+        }
+        execute(active, job);
+        return active.run.getId();
+    }
+
+    @Override
+    public JobRun getRun(Long id) {
+        ActiveRun active = activeRuns.get(id);
+        return active != null ? snapshot(active) : getById(id);
+    }
+
+    @Override
+    public List<JobRun> listRecent(String jobName, int limit) {
+        List<JobRun> runs = list(new QueryWrapper<JobRun>()
+                .eq(StringUtils.hasText(jobName), "job_name", jobName)
+                .orderByDesc("id")
+                .last("LIMIT " + Math.max(1, limit)));
+        return runs.stream()
+                .map(run -> activeRuns.containsKey(run.getId()) ? snapshot(activeRuns.get(run.getId())) : run)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 定期把运行中任务的进度写回数据库，这样即使应用中途退出，记录中也留有最后的进度。
+     * 定时触发的任务会占住一个调度线程直到结束，调度线程池需要多于一个线程（spring.task.scheduling.pool.size），否则运行期间这里不会执行
+     */
+    @Scheduled(fixedDelay = PROGRESS_FLUSH_INTERVAL_MILLIS)
+    public void flushProgress() {
+        for (ActiveRun active : activeRuns.values()) {
+            synchronized (active) {
+                if (active.finished || active.startNanos == 0) {
+                    continue;
+                }
+                JobRun progress = new JobRun();
+                progress.setId(active.run.getId());
+                copyProgress(active, progress);
+                try {
+                    updateById(progress);
+                } catch (Exception e) {
+                    System.err.println("【任务记录】写回任务 " + active.run.getId() + " 的进度失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 启动完成后，把上次运行时没能结束的任务标记为已中断。在后台线程执行，数据库不可用时不影响启动。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void markInterruptedRuns() {
+        new ThreadFactoryBuilder().setNameFormat("job-run-recovery-%d").setDaemon(true).build()
+                .newThread(() -> {
+                    try {
+                        JobRun interrupted = new JobRun();
+                        interrupted.setStatus(JobRun.STATUS_INTERRUPTED);
+                        interrupted.setEndTime(LocalDateTime.now());
+                        interrupted.setMessage("应用重启时任务仍未结束");
+                        int count = baseMapper.update(interrupted, new UpdateWrapper<JobRun>()
+                                .in("status", JobRun.STATUS_QUEUED, JobRun.STATUS_RUNNING)
+                                .lt("submit_time", applicationStartedAt));
+                        if (count > 0) {
+                            System.out.println("【任务记录】" + count + " 个任务在上次停机时仍未结束，已标记为中断。");
+                        }
+                    } catch (Exception e) {
+                        System.err.println("【任务记录】检查上次未结束的任务失败: " + e.getMessage());
+                    }
+                }).start();
+    }
+
+    /**
+     * 登记一个新任务并写入排队状态的记录
+     */
+    private synchronized ActiveRun register(String jobName, String triggerType) {
+        Long activeId = activeIdsByExclusionKey.get(exclusionKeyOf(jobName));
+        if (activeId != null) {
+            ActiveRun conflicting = activeRuns.get(activeId);
+            String activeName = conflicting != null ? conflicting.run.getJobName() : jobName;
+            throw new IllegalStateException(activeName.equals(jobName)
+                    ? "任务 " + jobName + " 正在执行（任务ID " + activeId + "）"
+                    : "任务 " + jobName + " 不能与正在执行的任务 " + activeName + "（任务ID " + activeId + "）同时运行");
+        }
+        JobRun run = new JobRun();
+        run.setJobName(jobName);
+        run.setTriggerType(triggerType);
+        run.setStatus(JobRun.STATUS_QUEUED);
+        run.setRowsProcessed(0L);
+        run.setRowsPerSecond(0L);
+        run.setFailures(0L);
+        run.setSubmitTime(LocalDateTime.now());
+        save(run);
+
+        ActiveRun active = new ActiveRun(run, new JobProgress(run.getId()));
+        activeRuns.put(run.getId(), active);
+        activeIdsByExclusionKey.put(exclusionKeyOf(jobName), run.getId());
+        return active;
+    }
+
+    private static String exclusionKeyOf(String jobName) {
+        return MARKET_VALUE_JOBS.contains(jobName) ? EXCLUSION_MARKET_VALUE : jobName;
+    }
+
+    private void execute(ActiveRun active, Supplier<String> job) {
+        JobRun run = active.run;
+        synchronized (active) {
+            active.startNanos = System.nanoTime();
+            run.setStatus(JobRun.STATUS_RUNNING);
+            run.setStartTime(LocalDateTime.now());
+        }
+        JobRun started = new JobRun();
+        started.setId(run.getId());
+        started.setStatus(JobRun.STATUS_RUNNING);
+        started.setStartTime(run.getStartTime());
+        updateQuietly(started);
+
+        String status = JobRun.STATUS_FAILED;
+        String message = null;
+        JobProgress.bind(active.progress);
+        try {
+            message = job.get();
+            if (active.progress.getFailureMessage() != null) {
+                message = active.progress.getFailureMessage();
+            } else {
+                status = active.progress.getFailures() > 0 ? JobRun.STATUS_PARTIAL : JobRun.STATUS_SUCCEEDED;
+            }
+        } catch (Exception e) {
+            message = "任务异常结束: " + e.getMessage();
+            System.err.println("【任务记录】任务 " + run.getJobName() + "（" + run.getId() + "）异常结束！");
+            e.printStackTrace();
+        } finally {
+            JobProgress.unbind();
+            finish(active, status, message);
+        }
+    }
+
+    private void finish(ActiveRun active, String status, String message) {
+        JobRun run = active.run;
+        synchronized (active) {
+            active.finished = true;
+            copyProgress(active, run);
+            run.setStatus(status);
+            run.setEndTime(LocalDateTime.now());
+            if (message != null && message.length() > MESSAGE_MAX_LENGTH) {
+                message = message.substring(0, MESSAGE_MAX_LENGTH);
+            }
+            run.setMessage(message);
+        }
+        updateQuietly(run);
+        activeRuns.remove(run.getId());
+        activeIdsByExclusionKey.remove(exclusionKeyOf(run.getJobName()), run.getId());
+        System.out.println("【任务记录】任务 " + run.getJobName() + "（" + run.getId() + "）结束：" + status + "，处理 "
+                + run.getRowsProcessed() + " 行，" + run.getRowsPerSecond() + " 行/秒，失败 " + run.getFailures() + "。");
+    }
+
+    private void copyProgress(ActiveRun active, JobRun target) {
+        long rows = active.progress.getRows();
+        long elapsedMillis = active.startNanos == 0 ? 0 : Duration.ofNanos(System.nanoTime() - active.startNanos).toMillis();
+        target.setPhase(active.progress.getPhase());
+        target.setRowsProcessed(rows);
+        target.setRowsPerSecond(rows * 1000 / Math.max(1, elapsedMillis));
+        target.setFailures(active.progress.getFailures());
+    }
+
+    private JobRun snapshot(ActiveRun active) {
+        JobRun copy = new JobRun();
+        synchronized (active) {
+            BeanUtils.copyProperties(active.run, copy);
+            if (!active.finished) {
+                copyProgress(active, copy);
+            }
+        }
+        return copy;
+    }
+
+    private void updateQuietly(JobRun run) {
+        try {
+            updateById(run);
+        } catch (Exception e) {
+            System.err.println("【任务记录】更新任务 " + run.getId() + " 的记录失败: " + e.getMessage());
+        }
+    }
+
+    private static class ActiveRun {
+        private final JobRun run;
+        private final JobProgress progress;
+        // 开始运行的时间，0 表示还在排队
+        private long startNanos;
+        private boolean finished;
+
+        ActiveRun(JobRun run, JobProgress progress) {
+            this.run = run;
+            this.progress = progress;
+        }
+    }
+}
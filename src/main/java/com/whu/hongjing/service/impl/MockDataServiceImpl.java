@@ -1,7 +1,7 @@
 package com.whu.hongjing.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.github.javafaker.Faker;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.whu.hongjing.pojo.entity.Customer;
 import com.whu.hongjing.pojo.entity.CustomerHolding;
 import com.whu.hongjing.pojo.entity.FundInfo;
@@ -16,11 +16,11 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * 交易模拟采用手动管理的线程池实现，并通过“计算/IO分离”模型解决事务传递问题，实现极致性能与稳定性。
+ * 交易模拟使用共享的计算/写入线程池（ExecutorRegistry），并通过“计算/IO分离”模型解决事务传递问题，实现极致性能与稳定性。
  */
 @Service
 public class MockDataServiceImpl implements MockDataService {
@@ -31,134 +31,119 @@ public class MockDataServiceImpl implements MockDataService {
     private CustomerService customerService;
     @Autowired
     private MockDataWriterService mockDataWriterService;
+    @Autowired
+    private HongjingMetrics metrics;
+    @Autowired
+    private ExecutorRegistry executorRegistry;
+
+    // 交易模拟时每块处理的客户数
+    private static final int SIMULATION_CHUNK_CUSTOMERS = 500;
+
+    // 模拟交易时每个客户每天发生交易的概率（%）
+    private static final int SIMULATION_TRADE_PERCENT = 10;
+
+    // 生成客户时每个写入线程对应的在途写入任务数，也是每个生成窗口的客户数 / 写入线程数
+    private static final int CREATE_CUSTOMERS_IN_FLIGHT_PER_WRITER = 4;
+
+    // 每写完多少块打印一次进度
+    private static final int PROGRESS_REPORT_CHUNKS = 20;
 
-    private static final String[] OCCUPATIONS = {
-            "软件工程师", "项目经理", "产品经理", "数据分析师", "教师",
-            "医生", "护士", "律师", "会计师", "设计师",
-            "公务员", "销售经理", "市场专员", "运营专员", "自由职业者"
-    };
 
 
     /**
      * 生成客户的总调度方法，自身不带事务。
      * 负责协调“并发计算客户对象”和“事务性写入”两个阶段。
+     * 按窗口推进：每个窗口先在计算线程池中生成一批客户，再逐个提交给写入线程池；在途的写入任务数由信号量限制，
+     * 无论生成多少客户，占用的共享队列位置都是固定的，不会把其他任务的块挤到后面，也不会因为队列满而在调度线程上直接写库。
      */
     @Override
     public String createMockCustomers(int customerCount) {
         System.out.println("【创世】开始并行生成 " + customerCount + " 位客户的基础信息...");
+        JobProgress progress = JobProgress.current();
+        progress.phase("generate");
 
-        // --- 第一阶段：并发计算（在内存中生成所有Customer对象） ---
-        int corePoolSize = Runtime.getRuntime().availableProcessors();
-        ThreadFactory calcThreadFactory = new ThreadFactoryBuilder().setNameFormat("customer-creator-thread-%d").build();
-        ExecutorService calcExecutor = new ThreadPoolExecutor(
-            corePoolSize+1,   // CPU核数16 计算密集型
-            corePoolSize * 10,
-            60L,
-            TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(customerCount),
-            calcThreadFactory,
-            new ThreadPoolExecutor.CallerRunsPolicy()
-        );
-
-        List<Future<Customer>> calcFutures = new ArrayList<>();
-        for (int i = 0; i < customerCount; i++) {
-            Callable<Customer> task = () -> {
-                Faker faker = new Faker(Locale.CHINA);
-                Random random = ThreadLocalRandom.current();
-                Customer customer = new Customer();
-
-                customer.setName(faker.name().fullName());
-                customer.setGender(random.nextBoolean() ? "男" : "女");
-                customer.setIdType("身份证");
-                customer.setIdNumber(faker.number().digits(18));
-                customer.setBirthDate(faker.date().birthday(18, 65).toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
-                customer.setNationality("中国");
-                customer.setOccupation(OCCUPATIONS[random.nextInt(OCCUPATIONS.length)]);
-                customer.setPhone(faker.phoneNumber().cellPhone());
-                String address = faker.address().state() + faker.address().city() + faker.address().streetName() +
-                        faker.address().buildingNumber() + "号";
-                customer.setAddress(address);
-                return customer;
-            };
-            // 不断给线程池提交任务，并立即返回Future<Customer>对象，add进列表，然后task慢慢执行，真正返回customer后先被保存到Future里包装 存在列表里
-            calcFutures.add(calcExecutor.submit(task));
-        }
-        calcExecutor.shutdown();
-
-        // --- 第二阶段：并发写入 ---
-        ThreadFactory writerThreadFactory = new ThreadFactoryBuilder().setNameFormat("customer-writer-thread-%d").build();
-        ExecutorService writerExecutor = new ThreadPoolExecutor(
-            corePoolSize *2,  // CPU核数16  IO密集型
-            corePoolSize * 10,
-            60L,
-            TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(customerCount),
-            writerThreadFactory,
-            new ThreadPoolExecutor.CallerRunsPolicy()
-        );
+        // 计算使用共享的计算线程池，写入使用共享的写入线程池（线程数受数据库连接池大小约束）
+        ExecutorService calcExecutor = executorRegistry.get(ExecutorRegistry.Workload.COMPUTE);
+        ExecutorService writerExecutor = executorRegistry.get(ExecutorRegistry.Workload.DB_WRITER);
+        int window = executorRegistry.parallelism(ExecutorRegistry.Workload.DB_WRITER) * CREATE_CUSTOMERS_IN_FLIGHT_PER_WRITER;
+        Semaphore inFlightWrites = new Semaphore(window);
 
+        List<Future<Customer>> calcFutures = new ArrayList<>(window);
         List<Future<Void>> writerFutures = new ArrayList<>(); // 用来装载所有任务的future结果，用于最后统计一共成功完成了多少个客户的生成
 
         try {
-            System.out.println("【创世】等待计算任务完成，并向写入线程池提交独立的并发写入任务...");
-            for (Future<Customer> future : calcFutures) {
-                // a. 获取一个在内存中预先计算好的Customer对象
-                // 【核心】  future.get方法保证顺序性，在此调用get时如果碰到Future里的<Customer>还没有计算完成，就会在此阻塞等待其完成，而不会直接拿着Future进入后续流程。
-                final Customer initialCustomer = future.get();
-
-                // b. 为这个Customer对象创建一个独立的、可自我修复的写入任务【即设置任务重试来防止生成的对象和之前的有手机号、id号冲突而写入数据库失败等】
-                Callable<Void> writeTask = () -> {
-                    int maxRetries = 5; // 设置最大重试次数
-                    Customer currentCustomer = initialCustomer; // 将初始客户作为第一次尝试的对象
-
-                    for (int i = 0; i < maxRetries; i++) {
+            for (int windowStart = 0; windowStart < customerCount; windowStart += window) {
+                // --- 第一阶段：并发计算（在内存中生成这个窗口的Customer对象） ---
+                calcFutures.clear();
+                for (int i = windowStart; i < Math.min(windowStart + window, customerCount); i++) {
+                    Callable<Customer> task = this::generateCustomer;
+                    // 给线程池提交任务，并立即返回Future<Customer>对象，add进列表，然后task慢慢执行，真正返回customer后先被保存到Future里包装 存在列表里
+                    calcFutures.add(calcExecutor.submit(task));
+                }
+
+                // --- 第二阶段：并发写入 ---
+                progress.phase("write");
+                for (Future<Customer> future : calcFutures) {
+                    // a. 获取一个在内存中预先计算好的Customer对象
+                    // 【核心】  future.get方法保证顺序性，在此调用get时如果碰到Future里的<Customer>还没有计算完成，就会在此阻塞等待其完成，而不会直接拿着Future进入后续流程。
+                    final Customer initialCustomer = future.get();
+
+                    // b. 为这个Customer对象创建一个独立的、可自我修复的写入任务【即设置任务重试来防止生成的对象和之前的有手机号、id号冲突而写入数据库失败等】
+                    Callable<Void> writeTask = () -> {
                         try {
-
-                            // 尝试写入当前客户的数据 【同时在这里自动生成和写入当前客户的风险评估数据！！！！！！！！！！！！！！！！】
-                            mockDataWriterService.saveNewCustomerInTransaction(currentCustomer);
-
-                            // 如果成功，立刻跳出当前客户的重试循环
-                            return null;
-                        } catch (DuplicateKeyException e) {
-                            // 【核心修复】如果捕获到的是唯一键冲突异常
-                            System.out.println("【创世-警告】线程 [" + Thread.currentThread().getName() + "] 遇到重复数据，正在尝试重新生成...");
-
-                            // 如果已经是最后一次尝试，则不再重新生成，直接向上抛出异常，让主任务失败
-                            if (i == maxRetries - 1) {
-                                System.err.println("【创世-错误】重试 " + maxRetries + " 次后依然遇到重复数据，任务失败。");
-                                throw e;
+                            int maxRetries = 5; // 设置最大重试次数
+                            Customer currentCustomer = initialCustomer; // 将初始客户作为第一次尝试的对象
+
+                            for (int i = 0; i < maxRetries; i++) {
+                                try {
+
+                                    // 尝试写入当前客户的数据 【同时在这里自动生成和写入当前客户的风险评估数据！！！！！！！！！！！！！！！！】
+                                    mockDataWriterService.saveNewCustomerInTransaction(currentCustomer);
+                                    progress.addRows(1);
+
+                                    // 如果成功，立刻跳出当前客户的重试循环
+                                    return null;
+                                } catch (DuplicateKeyException e) {
+                                    // 【核心修复】如果捕获到的是唯一键冲突异常
+                                    System.out.println("【创世-警告】线程 [" + Thread.currentThread().getName() + "] 遇到重复数据，正在尝试重新生成...");
+
+                                    // 如果已经是最后一次尝试，则不再重新生成，直接向上抛出异常，让主任务失败
+                                    if (i == maxRetries - 1) {
+                                        System.err.println("【创世-错误】重试 " + maxRetries + " 次后依然遇到重复数据，任务失败。");
+                                        throw e;
+                                    }
+
+                                    // 【原地重新生成】立刻创建一个全新的Customer对象，用于下一次循环尝试
+                                    currentCustomer = generateCustomer();
+                                }
                             }
-
-                            // 【原地重新生成】立刻创建一个全新的Customer对象，用于下一次循环尝试
-                            Faker faker = new Faker(Locale.CHINA);
-                            Random random = ThreadLocalRandom.current();
-                            currentCustomer = new Customer();
-                            currentCustomer.setName(faker.name().fullName());
-                            currentCustomer.setGender(random.nextBoolean() ? "男" : "女");
-                            currentCustomer.setIdType("身份证");
-                            currentCustomer.setIdNumber(faker.number().digits(18));
-                            currentCustomer.setBirthDate(faker.date().birthday(18, 65).toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
-                            currentCustomer.setNationality("中国");
-                            currentCustomer.setOccupation(OCCUPATIONS[random.nextInt(OCCUPATIONS.length)]);
-                            currentCustomer.setPhone(faker.phoneNumber().cellPhone());
-                            String address = faker.address().state() + faker.address().city() + faker.address().streetName() +
-                                    faker.address().buildingNumber() + "号";
-                            currentCustomer.setAddress(address);
+                            return null;
+                        } finally {
+                            inFlightWrites.release();
                         }
-                    }
-                    return null;
-                };
-                writerFutures.add(writerExecutor.submit(writeTask));
+                    };
+                    // 在途的写入任务达到上限时在这里等待写入跟上
+                    inFlightWrites.acquire();
+                    writerFutures.add(writerExecutor.submit(writeTask));
+                }
+                progress.phase("generate");
             }
-        } catch (InterruptedException | ExecutionException e) {
+        } catch (InterruptedException e) {
+            // 共享线程池不能关闭，取消本次任务还没执行的部分
+            calcFutures.forEach(future -> future.cancel(true));
+            writerFutures.forEach(future -> future.cancel(true));
             Thread.currentThread().interrupt();
+            progress.fail("生成客户信息时被中断");
+            return "【创世】任务失败：生成客户信息时被中断。";
+        } catch (ExecutionException e) {
+            calcFutures.forEach(future -> future.cancel(true));
+            writerFutures.forEach(future -> future.cancel(true));
+            progress.fail("在并发生成客户信息时发生错误: " + e.getMessage());
             return "【创世】任务失败：在并发生成客户信息时发生错误。 " + e.getMessage();
-        } finally {
-            if (!calcExecutor.isTerminated()) calcExecutor.shutdownNow();
         }
 
         // --- 第三阶段：统计所有并发写入任务的结果 ---
-        writerExecutor.shutdown();
+        progress.phase("write");
         int successCount = 0;
         try {
              System.out.println("【创世】所有写入任务已提交，开始逐一检查执行结果...");
@@ -166,227 +151,151 @@ public class MockDataServiceImpl implements MockDataService {
                 future.get(); // 如果任何一个子任务最终失败，这里会抛出异常
                 successCount++;
             }
-        } catch (InterruptedException | ExecutionException e) {
+        } catch (InterruptedException e) {
+            writerFutures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            progress.fail("等待写入任务完成时被中断");
+            return "【创世】任务失败：等待写入任务完成时被中断。";
+        } catch (ExecutionException e) {
             System.err.println("【创世】严重错误：在执行并发写入时，至少有一个任务失败！");
             e.printStackTrace();
-            Thread.currentThread().interrupt();
+            writerFutures.forEach(future -> future.cancel(true));
+            progress.fail("并发写入数据库时发生错误: " + e.getMessage());
             return "【创世】任务失败：并发写入数据库时发生错误，详情请查看控制台日志。";
-        } finally {
-             if (!writerExecutor.isTerminated()) writerExecutor.shutdownNow();
         }
 
+        metrics.countMockRows("create-customers", successCount);
         return "【创世】任务完成！成功创建了 " + successCount + " 位新客户及其初始风险评估。";
     }
 
+    /**
+     * 在内存中生成一个随机客户（不写库）
+     */
+    private Customer generateCustomer() {
+        Faker faker = new Faker(Locale.CHINA);
+        Random random = ThreadLocalRandom.current();
+        Customer customer = new Customer();
+
+        customer.setName(faker.name().fullName());
+        customer.setGender(random.nextBoolean() ? "男" : "女");
+        customer.setIdType("身份证");
+        customer.setIdNumber(faker.number().digits(18));
+        customer.setBirthDate(faker.date().birthday(18, 65).toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+        customer.setNationality("中国");
+        customer.setOccupation(MockDataSimulator.OCCUPATIONS[random.nextInt(MockDataSimulator.OCCUPATIONS.length)]);
+        customer.setPhone(faker.phoneNumber().cellPhone());
+        String address = faker.address().state() + faker.address().city() + faker.address().streetName() +
+                faker.address().buildingNumber() + "号";
+        customer.setAddress(address);
+        return customer;
+    }
+
 
     /**
-     * 模拟计算和保存交易数据的总调度方法，自身不带事务。负责协调“并发计算”和“事务性写入”两个阶段。
+     * 模拟计算和保存交易数据的总调度方法，自身不带事务。
+     * 采用流式的“生成-写入”流水线：按客户ID顺序每次读取 SIMULATION_CHUNK_CUSTOMERS 个客户，交给固定数量的工作线程，
+     * 每个工作线程先在内存中生成这一块客户的模拟交易和持仓，再在一个事务中用多行 INSERT 写入。
+     * 在途（已读取但还没写完）的块数由信号量限制，读取会等待写入跟上，因此无论客户总数多少，内存中最多只有固定数量的块。
      */
     @Override
     public String simulateTradingDays(int days) {
         // --- 1. 数据准备 ---
-            // 加载客户数据
-        System.out.println("【演绎】开始，准备加载初始数据...");
-        List<Customer> allCustomers = customerService.list();
-            // 加载基金数据
-        Map<String, FundInfo> fundInfoMap = fundInfoService.list().stream()
-                .collect(Collectors.toMap(FundInfo::getFundCode, Function.identity()));
-        if (allCustomers.isEmpty() || fundInfoMap.isEmpty()) {
+        System.out.println("【演绎】开始，准备加载基金数据...");
+        JobProgress progress = JobProgress.current();
+        Map<String, FundInfo> fundInfoMap = fundInfoService.getSnapshot().getFundsByCode();
+        if (customerService.count() == 0 || fundInfoMap.isEmpty()) {
+            progress.fail("数据库中没有客户或基金数据");
             return "【演绎】任务中止：请先确保数据库中存在客户和基金数据。";
         }
         List<FundInfo> allFunds = new ArrayList<>(fundInfoMap.values());
 
-
-        // --- 2. 第一阶段：并发计算所有客户的模拟交易数据 ---
-        int corePoolSize = Runtime.getRuntime().availableProcessors();
-        ThreadFactory calcThreadFactory = new ThreadFactoryBuilder().setNameFormat("mock-data-thread-%d").build();
-        ExecutorService calcExecutor = new ThreadPoolExecutor(
-            corePoolSize + 1,  // cpu核数16 计算密集型
-            corePoolSize * 10,
-            1200L,
-            TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(20480),
-            calcThreadFactory,
-            new ThreadPoolExecutor.CallerRunsPolicy()
-        );
-
-        List<Future<Map<String, Object>>> futures = new ArrayList<>();  // 用来保存所有的更新后的持仓表和交易表
-        System.out.println("【演绎-步骤1】向 " + corePoolSize*10 + " 个线程提交 " + allCustomers.size() + " 个客户的并行模拟任务...");
-
-        for (Customer customer : allCustomers) {
-            // 为每一个客户定义了一个返回其所有天数更新后的最新的Map 里面是其更新后的持仓表与交易表
-            Callable<Map<String, Object>> task = () -> {
-                // 这个任务在工作线程中执行，完全在内存中进行，不接触数据库
-                Random random = ThreadLocalRandom.current();
-                List<FundTransaction> customerTransactions = new ArrayList<>();  // （为每一个客户）创建一个保存交易数据的交易表
-                Map<String, CustomerHolding> customerHoldings = new HashMap<>(); // （为每一个客户）创建一个保存客户持仓数据的MAP
-
-                // ... 开始模拟数据生成 ...
-                for (int i = 0; i < days; i++) {
-                    // 每天有10%概率发生交易
-                     if (random.nextInt(100) >= 10) continue;
-                     // 获取当天的持仓数据 要根据customerHoldings.values()来创建这个持仓列表是因为之前的天数可能已经发生过了交易 已经有持仓数据了
-                     List<CustomerHolding> currentHoldingsList = new ArrayList<>(customerHoldings.values());
-                     currentHoldingsList.removeIf(h -> h.getTotalShares() == null || h.getTotalShares().compareTo(BigDecimal.ZERO) <= 0);
-
-                     FundInfo targetFund;  // 目标交易的基金
-                     boolean isPurchase;   // 记录是申购还是赎回操作
-
-                    // 70%概率对已经持有的基金进行操作
-                     if (!currentHoldingsList.isEmpty() && random.nextInt(100) < 70) {
-                         CustomerHolding targetHolding = currentHoldingsList.get(random.nextInt(currentHoldingsList.size()));
-                         targetFund = fundInfoMap.get(targetHolding.getFundCode());
-                         // 70%是申购操作
-                         isPurchase = random.nextInt(100) < 70;
-                     // 30%概率在所有基金里随机操作（只能申购 因为新基金）
-                     } else {
-                         targetFund = allFunds.get(random.nextInt(allFunds.size()));
-                         isPurchase = true;
-                     }
-                     if (targetFund == null || (targetFund.getNetValue() != null && targetFund.getNetValue().compareTo(BigDecimal.ZERO) <= 0)) continue;
-
-                     // 获取基金净值
-                     BigDecimal netValue = (targetFund.getNetValue() != null) ? targetFund.getNetValue() : new BigDecimal("1.0");
-                     // 记录交易时间
-                     LocalDateTime transactionTime = LocalDateTime.now().minusDays(days - i).withHour(10).withMinute(0).withSecond(0);
-                     // 获取当前客户对当前要操作的基金的持仓情况holding 以便最后更新完了以后更新到（当前客户的持仓）总表customerHoldings里去
-                     CustomerHolding holding = customerHoldings.get(targetFund.getFundCode());
-
-                     // 开始进行申购操作
-                     if (isPurchase) {
-                         BigDecimal purchaseAmount = new BigDecimal(500 + random.nextInt(20000)); // 随机购买金额
-                         BigDecimal purchaseShares = purchaseAmount.divide(netValue, 2, RoundingMode.DOWN); // 确认购买份额（模拟 采用前一天的收盘价）
-                         // 保存交易据
-                         customerTransactions.add(createTransaction(customer.getId(), targetFund, "申购", purchaseAmount, purchaseShares, netValue, transactionTime));
-                         // 开始更新持仓数据（针对当前基金是第一次购买的新建持仓）
-                         if (holding == null) {
-                             holding = new CustomerHolding();
-                             holding.setCustomerId(customer.getId());
-                             holding.setFundCode(targetFund.getFundCode());
-                             holding.setTotalShares(purchaseShares);
-                             holding.setAverageCost(netValue);
-                         // 开始更新持仓数据（针对当前基金已有持仓 累加老持仓数据）
-                         } else {
-                             BigDecimal oldTotalCost = holding.getAverageCost().multiply(holding.getTotalShares());
-                             BigDecimal newTotalCost = oldTotalCost.add(purchaseAmount);
-                             BigDecimal newTotalShares = holding.getTotalShares().add(purchaseShares);
-                             holding.setTotalShares(newTotalShares);
-                             holding.setAverageCost(newTotalCost.divide(newTotalShares, 4, RoundingMode.HALF_UP));
-                         }
-                     // 如果是赎回操作
-                     } else {
-                         if (holding == null || holding.getTotalShares().compareTo(BigDecimal.ONE) < 0) continue;
-                         // 按0.1-0.6的随机比例赎回的份额
-                         BigDecimal redeemShares = holding.getTotalShares().multiply(BigDecimal.valueOf(random.nextDouble() * 0.5 + 0.1)).setScale(2, RoundingMode.DOWN);
-                         if (redeemShares.compareTo(BigDecimal.ZERO) <= 0) continue;
-                         // 根据份额*净值（昨天的收盘价模拟）确定赎回的金额
-                         BigDecimal redeemAmount = redeemShares.multiply(netValue).setScale(2, RoundingMode.HALF_UP);
-                         // 保存交易数据
-                         customerTransactions.add(createTransaction(customer.getId(), targetFund, "赎回", redeemAmount, redeemShares, netValue, transactionTime));
-                         // 赎回一定是已有持仓的数据 且只影响总份额 不影响平均成本 因此只用修改总份额
-                         holding.setTotalShares(holding.getTotalShares().subtract(redeemShares));
-                     }
-
-                     // 更新最近交易时间 和 当前客户对当前操作的基金的持仓数据（holding）
-                     holding.setLastUpdateDate(transactionTime);
-                     // 将当前客户当天更新过的目标基金的持仓数据put进当前用户的总持仓表（key是基金code）
-                     customerHoldings.put(targetFund.getFundCode(), holding);
-                        // （交易数据已经在申购和赎回方法内部提前添加到了当前用户的交易数据表）
-
-                } // 到这里单个客户一年内的交易行为模拟循环执行完毕
-
-                // 将当前客户的交易数据保存到结果
-                Map<String, Object> result = new HashMap<>();
-                result.put("customerId", customer.getId()); // 把customerId放进结果
-                result.put("transactions", customerTransactions);  // 当前用户所有天更新后的交易表放进结果
-                result.put("holdings", new ArrayList<>(customerHoldings.values())); // 当前用户所有天更新过的持仓表放进结果
-                return result;  // 当前用户的交易表和持仓表一起打包返回结果 这里一个result就是一个客户所有天更新后的全部数据
-            };
-            futures.add(calcExecutor.submit(task));  // 返回的是一个Future<Map<String, Object>>对象，也就是一个客户的更新后的result数据，添加到总futures列表里
-            // 等所有用户的任务都执行完毕以后线程并发也结束了
-        }
-        calcExecutor.shutdown();
-
-        // --- 3. 第二阶段：并发性写入 ---
-        // a. 创建第二个独立的线程池，专门用于执行数据库IO操作
-        // 创建一个列表来收集写入任务的Future，以便后续检查结果
-        List<Future<Void>> writerFutures = new ArrayList<>();
-        ThreadFactory writerThreadFactory = new ThreadFactoryBuilder().setNameFormat("mock-writer-thread-%d").build();
-        ExecutorService writerExecutor = new ThreadPoolExecutor(
-            corePoolSize *2 ,  // CPU核数16 IO密集型
-            corePoolSize * 10,
-            1200L,
-            TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(20480),
-            writerThreadFactory,
-            new ThreadPoolExecutor.CallerRunsPolicy()
-        );
+        // --- 2. 流水线：分块读取客户 -> 生成 -> 多行 INSERT 写入 ---
+        progress.phase("simulate");
+        int workerCount = executorRegistry.parallelism(ExecutorRegistry.Workload.DB_WRITER);
+        Semaphore inFlightChunks = new Semaphore(workerCount * 2);
+        ExecutorService pipelineExecutor = executorRegistry.get(ExecutorRegistry.Workload.DB_WRITER);
+        List<Future<?>> chunkFutures = new ArrayList<>();
+        AtomicLong processedCustomers = new AtomicLong();
+        AtomicLong writtenTransactions = new AtomicLong();
+        AtomicLong writtenRows = new AtomicLong();
+        AtomicInteger completedChunks = new AtomicInteger();
+        AtomicInteger failedChunks = new AtomicInteger();
+        long startTime = System.currentTimeMillis();
+        LocalDateTime simulationEndTime = LocalDateTime.now();
+        System.out.println("【演绎】启动 " + workerCount + " 个工作线程，每块 " + SIMULATION_CHUNK_CUSTOMERS + " 位客户，最多 " + workerCount * 2 + " 块在途。");
 
         try {
-            System.out.println("【演绎-步骤2】等待所有计算任务完成，并向写入线程池提交独立的写入任务...");
-
-            // a. 汇总所有线程的计算结果
-            for (Future<Map<String, Object>> future : futures) {
-
-                // 一个客户的更新后的数据
-                Map<String, Object> result = future.get();
-                // 当前客户的ID
-                Long customerId = (Long) result.get("customerId");
-                // 从result Map中取出单独保存所有客户的所有交易数据的结果（去掉了MAP里的String "transactions"）
-                 List<FundTransaction> transactions = (List<FundTransaction>) result.get("transactions");
-                 // 从result Map中取出单独保存所有客户的所有持仓数据的结果（去掉了MAP里的String "holdings"）
-                 List<CustomerHolding> holdings = (List<CustomerHolding>) result.get("holdings");
-
-                // c. 为这个客户创建一个独立的写入任务(Runnable)，并提交给写入线程池
-                Callable<Void> writeTask = () -> {
-                    mockDataWriterService.saveCustomerDataInTransaction(customerId, transactions, holdings);
-                    return null; // Callable需要一个返回值，成功时返回null即可
-                };
-                // 提交任务，并把返回的Future保存起来
-                writerFutures.add(writerExecutor.submit(writeTask));
+            Long lastCustomerId = 0L;
+            while (true) {
+                List<Long> customerIds = customerService.listObjs(new QueryWrapper<Customer>()
+                        .select("id").gt("id", lastCustomerId).orderByAsc("id").last("LIMIT " + SIMULATION_CHUNK_CUSTOMERS),
+                        id -> ((Number) id).longValue());
+                if (customerIds.isEmpty()) {
+                    break;
+                }
+                lastCustomerId = customerIds.get(customerIds.size() - 1);
+                // 在途的块已满时在这里等待，直到某一块写入完成
+                inFlightChunks.acquire();
+                chunkFutures.add(pipelineExecutor.submit(() -> {
+                    try {
+                        List<FundTransaction> transactions = new ArrayList<>();
+                        List<CustomerHolding> holdings = new ArrayList<>();
+                        for (Long customerId : customerIds) {
+                            MockDataSimulator.simulateCustomer(customerId, days, SIMULATION_TRADE_PERCENT, simulationEndTime,
+                                    fundInfoMap, allFunds, ThreadLocalRandom.current(), transactions, holdings);
+                        }
+                        int rows = mockDataWriterService.saveCustomerChunkInTransaction(transactions, holdings);
+                        writtenRows.addAndGet(rows);
+                        progress.addRows(rows);
+                        writtenTransactions.addAndGet(transactions.size());
+                        processedCustomers.addAndGet(customerIds.size());
+                        if (completedChunks.incrementAndGet() % PROGRESS_REPORT_CHUNKS == 0) {
+                            System.out.println("【演绎】进度：已写入 " + processedCustomers.get() + " 位客户，" + writtenRows.get() + " 行，"
+                                    + rowsPerSecond(writtenRows.get(), startTime) + " 行/秒。");
+                        }
+                    } catch (Exception e) {
+                        failedChunks.incrementAndGet();
+                        progress.addFailures(1);
+                        System.err.println("【演绎】客户块 [" + customerIds.get(0) + " - " + customerIds.get(customerIds.size() - 1) + "] 写入失败: " + e.getMessage());
+                    } finally {
+                        inFlightChunks.release();
+                    }
+                }));
             }
-        }catch (InterruptedException | ExecutionException e) {
+        } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            return "【演绎】任务失败：在等待并行计算结果时发生错误。 " + e.getMessage();
-        } finally {
-            // d. 确保两个线程池都被关闭
-            if (!calcExecutor.isTerminated()) calcExecutor.shutdownNow();
+            chunkFutures.forEach(future -> future.cancel(true));
+            progress.fail("读取客户时被中断");
+            return "【演绎】任务失败：读取客户时被中断。";
         }
 
-        // e. 等待所有写入任务完成
-        writerExecutor.shutdown();
-        int successCount = 0;
         try {
-            for (Future<Void> future : writerFutures) {
-                // future.get()会阻塞，直到任务完成。如果任务内部有异常，这里会重新抛出！
-                future.get();
-                successCount++;
-            }
-            System.out.println("【演绎-步骤3】所有 " + successCount + " 个写入任务均已成功完成！");
-        } catch (InterruptedException | ExecutionException e) {
-            // 只要有一个任务失败，我们就能在这里捕获到异常
-            System.err.println("【演绎】严重错误：在执行并发写入时，至少有一个任务失败！");
-            e.printStackTrace(); // 打印出根本原因
+            ExecutorRegistry.awaitAll(chunkFutures);
+        } catch (InterruptedException e) {
+            chunkFutures.forEach(future -> future.cancel(true));
             Thread.currentThread().interrupt();
-            return "【演绎】任务失败：并发写入数据库时发生错误，详情请查看控制台日志。";
-        } finally {
-             if (!writerExecutor.isTerminated()) writerExecutor.shutdownNow();
+            progress.fail("等待写入完成时被中断");
+            return "【演绎】任务失败：等待写入完成时被中断。";
+        } catch (ExecutionException e) {
+            // 每块的异常都已在任务内部捕获，这里只是兜底
+            failedChunks.incrementAndGet();
+            progress.addFailures(1);
         }
 
-        return "【演绎】任务完成！成功模拟并保存了交易数据。请更新市值与持仓后再刷新客户标签！";
+        long elapsedMillis = System.currentTimeMillis() - startTime;
+        String summary = "共 " + processedCustomers.get() + " 位客户、" + writtenTransactions.get() + " 笔交易，写入 " + writtenRows.get()
+                + " 行，耗时 " + elapsedMillis + " ms，" + rowsPerSecond(writtenRows.get(), startTime) + " 行/秒。";
+        metrics.countMockRows("simulate-trading-days", writtenRows.get());
+        metrics.recordJob("simulate-trading-days", failedChunks.get() == 0, TimeUnit.MILLISECONDS.toNanos(elapsedMillis));
+        if (failedChunks.get() > 0) {
+            System.err.println("【演绎】严重错误：" + failedChunks.get() + " 个客户块写入失败！" + summary);
+            return "【演绎】任务部分失败：" + failedChunks.get() + " 个客户块写入失败，详情请查看控制台日志。" + summary;
+        }
+        System.out.println("【演绎】所有客户块均已成功写入！" + summary);
+        return "【演绎】任务完成！成功模拟并保存了交易数据（" + summary + "）请更新市值与持仓后再刷新客户标签！";
     }
 
-    // createTransaction 辅助方法保持不变
-    private FundTransaction createTransaction(Long customerId, FundInfo fund, String type, BigDecimal amount, BigDecimal shares, BigDecimal price, LocalDateTime transactionTime) {
-        FundTransaction tx = new FundTransaction();
-        tx.setCustomerId(customerId);
-        tx.setFundCode(fund.getFundCode());
-        tx.setTransactionType(type);
-        tx.setTransactionAmount(amount);
-        tx.setTransactionShares(shares);
-        tx.setSharePrice(price);
-        tx.setStatus("成功");
-        tx.setTransactionTime(transactionTime);
-        return tx;
+    private static long rowsPerSecond(long rows, long startTime) {
+        return rows * 1000 / Math.max(1, System.currentTimeMillis() - startTime);
     }
-}
\ No newline at end of file
+}
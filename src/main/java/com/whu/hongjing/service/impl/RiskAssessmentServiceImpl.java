@@ -11,6 +11,7 @@ import com.whu.hongjing.pojo.entity.Customer;
 import com.whu.hongjing.pojo.entity.CustomerTagRelation;
 import com.whu.hongjing.pojo.entity.RiskAssessment;
 import com.whu.hongjing.pojo.vo.RiskAssessmentVO;
+import com.whu.hongjing.service.CustomerChangeLogService;
 import com.whu.hongjing.service.CustomerService;
 import com.whu.hongjing.service.CustomerTagRelationService;
 import com.whu.hongjing.service.RiskAssessmentService;
@@ -20,6 +21,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.io.Serializable;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -32,7 +34,11 @@ public class RiskAssessmentServiceImpl extends ServiceImpl<RiskAssessmentMapper,
     @Autowired
     private CustomerTagRelationService customerTagRelationService;
 
+    @Autowired
+    private CustomerChangeLogService customerChangeLogService;
+
     @Override
+    @Transactional
     public RiskAssessment createAssessment(RiskAssessmentSubmitDTO dto) {
         // 2. 使用枚举类，根据分数计算出风险等级
         RiskLevelEnum riskLevelEnum = RiskLevelEnum.getByScore(dto.getScore());
@@ -47,11 +53,27 @@ public class RiskAssessmentServiceImpl extends ServiceImpl<RiskAssessmentMapper,
 
         // 5. 将填充完毕的实体对象保存到数据库
         this.save(assessment);
+        // 申报风险等级变了，风险诊断标签随之可能变化
+        customerChangeLogService.markDirty(assessment.getCustomerId(), CustomerChangeLogService.REASON_RISK_ASSESSMENT);
 
         // 6. 返回保存好的实体（它现在已经包含了数据库生成的ID）
         return assessment;
     }
 
+    /**
+     * 删除风险评估后，客户的最新申报等级可能回退到更早的一次评估，同样需要重新计算画像
+     */
+    @Override
+    @Transactional
+    public boolean removeById(Serializable id) {
+        RiskAssessment assessment = this.getById(id);
+        boolean removed = super.removeById(id);
+        if (removed && assessment != null) {
+            customerChangeLogService.markDirty(assessment.getCustomerId(), CustomerChangeLogService.REASON_RISK_ASSESSMENT);
+        }
+        return removed;
+    }
+
     /**
      * 【最终完整版】同时支持多维度复杂查询与动态排序
      */
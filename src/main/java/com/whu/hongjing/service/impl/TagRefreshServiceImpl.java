@@ -1,25 +1,45 @@
 package com.whu.hongjing.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.whu.hongjing.event.TagRefreshCompletedEvent;
+import com.whu.hongjing.mapper.CustomerProfileMapper;
 import com.whu.hongjing.pojo.entity.Customer;
 import com.whu.hongjing.pojo.entity.FundInfo;
+import com.whu.hongjing.pojo.entity.JobCheckpoint;
+import com.whu.hongjing.service.CustomerChangeLogService;
 import com.whu.hongjing.service.CustomerService;
+import com.whu.hongjing.service.ExecutorRegistry;
 import com.whu.hongjing.service.FundInfoService;
+import com.whu.hongjing.service.HongjingMetrics;
+import com.whu.hongjing.service.JobCheckpointService;
+import com.whu.hongjing.service.JobProgress;
+import com.whu.hongjing.service.JobRunService;
 import com.whu.hongjing.service.TagRefreshService;
 import com.whu.hongjing.service.TagRefreshWorker;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.Map;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 /**
  * 客户画像刷新服务的调度中心
- * 职责是准备数据和管理线程池，将具体的刷新任务分发给 TagRefreshWorker 执行。
+ * 职责是准备数据和切分任务，将具体的刷新任务分发给 TagRefreshWorker 执行。
  */
 @Service
 public class TagRefreshServiceImpl implements TagRefreshService {
@@ -27,56 +47,316 @@ public class TagRefreshServiceImpl implements TagRefreshService {
     @Autowired private CustomerService customerService;
     @Autowired private FundInfoService fundInfoService;
     @Autowired private TagRefreshWorker tagRefreshWorker;
+    @Autowired private CustomerChangeLogService customerChangeLogService;
+    @Autowired private CustomerProfileMapper customerProfileMapper;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+    @Autowired private HongjingMetrics metrics;
+    @Autowired private ExecutorRegistry executorRegistry;
+    @Autowired private JobCheckpointService jobCheckpointService;
+    @Autowired private JobRunService jobRunService;
+
+    // 全量刷新的检查点和重试名单都记在这个任务名下
+    private static final String FULL_REFRESH_JOB = JobRunService.JOB_TAG_REFRESH_FULL;
+
+    // 应用启动时发现未完成的全量刷新，是否自动从检查点续跑
+    @Value("${hongjing.tag-refresh.resume-on-startup:true}")
+    private boolean resumeOnStartup;
+    // 检查点的最长有效期（小时），更早开始的一轮不再续跑，避免水位之前的客户长期停留在旧画像上
+    @Value("${hongjing.tag-refresh.checkpoint-max-age-hours:24}")
+    private long checkpointMaxAgeHours;
+
+    // 批量刷新时每一块包含的客户数：每块只产生固定几次范围查询，块越大往返越少，但单个事务也越大
+    private static final int REFRESH_BLOCK_SIZE = 500;
 
     /**
      * 【批量方法】刷新所有客户的画像数据（并行处理）。
      * 这是所有批量、定时任务的入口。
+     * 按客户ID升序分块刷新，每块提交后立即清除这块客户的变更标记并推进检查点（job_checkpoint），
+     * 任务中途失败或应用重启后，再次运行时从检查点之后继续，而不是从头再来。
+     * 逐个客户刷新仍然失败的客户记入重试名单（job_failed_item），由 retryFailedCustomers 单独重试。
+     * 检查点超过 hongjing.tag-refresh.checkpoint-max-age-hours 时不再续跑，重新开始一轮。
      */
     @Override
     public void refreshAllTagsAtomically() {
-        // 1. 一次性获取所有客户，避免N+1查询
-        List<Customer> allCustomers = customerService.list();
-        if (allCustomers == null || allCustomers.isEmpty()) {
-            System.out.println("【批量刷新】没有找到任何客户，任务结束。");
+        refreshAllTagsAtomically(true);
+    }
+
+    /**
+     * 【批量方法】刷新所有客户的画像数据。
+     * @param resume true 时从未过期的检查点继续；false 时丢弃检查点，从头开始新的一轮
+     */
+    @Override
+    public void refreshAllTagsAtomically(boolean resume) {
+        long jobStart = System.nanoTime();
+        JobProgress progress = JobProgress.current();
+
+        // 0. 上一轮没有跑完且检查点未过期时，沿用它的开始时间，从检查点之后继续；否则开始新的一轮
+        JobCheckpoint checkpoint = jobCheckpointService.getCheckpoint(FULL_REFRESH_JOB);
+        if (checkpoint != null && !resume) {
+            System.out.println("【批量刷新】按要求丢弃上一轮的检查点（已刷新到客户 " + checkpoint.getWatermark() + "），重新开始。");
+            checkpoint = null;
+        } else if (checkpoint != null && isExpired(checkpoint)) {
+            System.out.println("【批量刷新】上一轮的检查点开始于 " + checkpoint.getStartedAt() + "，已超过 " + checkpointMaxAgeHours
+                    + " 小时，不再续跑，重新开始。");
+            checkpoint = null;
+        }
+        boolean resuming = checkpoint != null;
+        LocalDateTime startedAt = resuming ? checkpoint.getStartedAt() : LocalDateTime.now();
+        long startWatermark = resuming ? checkpoint.getWatermark() : 0L;
+        long processedBefore = resuming ? checkpoint.getProcessedCount() : 0L;
+
+        // 1. 获取水位之后的所有客户ID（按ID升序，保证后续切出来的每一块都是连续的ID区间）
+        progress.phase("load-customers");
+        List<Long> customerIds = customerService.listObjs(
+                new QueryWrapper<Customer>().select("id").gt("id", startWatermark).orderByAsc("id"), id -> ((Number) id).longValue());
+        if (resuming) {
+            System.out.println("【批量刷新续跑】上一轮已刷新到客户 " + startWatermark + "（共 " + processedBefore + " 位），继续刷新剩余的 "
+                    + customerIds.size() + " 位客户...");
+        } else {
+            if (customerIds.isEmpty()) {
+                System.out.println("【批量刷新】没有找到任何客户，任务结束。");
+                return;
+            }
+            // 新的一轮会重新覆盖所有客户，上一轮的重试名单作废
+            jobCheckpointService.clearAllFailures(FULL_REFRESH_JOB);
+            jobCheckpointService.startCheckpoint(FULL_REFRESH_JOB, progress.getJobId(), startedAt);
+            System.out.println("【批量刷新启动】为 " + customerIds.size() + " 位客户并行更新画像...");
+        }
+
+        // 2. 分块并行刷新，每块提交后：全量刷新同样覆盖了所有被标记的客户，刷新成功的一并清除标记；
+        //    失败的客户记入重试名单；该块及之前的块都完成后推进检查点
+        progress.phase("refresh");
+        BlockWatermark blockWatermark = new BlockWatermark(customerIds, REFRESH_BLOCK_SIZE, startWatermark, processedBefore);
+        RefreshStats stats = refreshCustomersInBlocks(customerIds, loadFundInfoMap(), (blockIndex, blockIds, blockFailures) -> {
+            customerChangeLogService.clearProcessed(withoutFailed(blockIds, blockFailures.keySet()), startedAt);
+            jobCheckpointService.recordFailures(FULL_REFRESH_JOB, progress.getJobId(), blockFailures);
+            blockWatermark.complete(blockIndex, (watermark, processedCount) ->
+                    jobCheckpointService.advanceCheckpoint(FULL_REFRESH_JOB, progress.getJobId(), watermark, processedCount));
+        });
+        if (stats.incomplete) {
+            // 保留检查点，下次运行（包括应用重启后的自动续跑）从这里继续
+            progress.fail("全量刷新中断，已保留检查点（客户 " + blockWatermark.watermark() + "），再次运行时从检查点继续");
+            System.err.println("【批量刷新中断】已连续刷新到客户 " + blockWatermark.watermark() + "，再次运行时从这里继续。");
+            metrics.recordJob("tag-refresh-full", false, System.nanoTime() - jobStart);
             return;
         }
-        System.out.println("【批量刷新启动】为 " + allCustomers.size() + " 位客户并行更新画像...");
 
-        // 2. 一次性获取所有基金信息，避免在循环中重复查询
-        Map<String, FundInfo> fundInfoMap = fundInfoService.list().stream()
-                .collect(Collectors.toMap(FundInfo::getFundCode, Function.identity()));
+        // 3. 这一轮全部完成，删除检查点
+        jobCheckpointService.completeCheckpoint(FULL_REFRESH_JOB);
+        System.out.println("【批量刷新完成】所有客户画像数据更新任务已完成！失败 " + stats.failed.size() + " 位（已记入重试名单），" + stats.describeTagChanges());
+        metrics.recordJob("tag-refresh-full", stats.failed.isEmpty(), System.nanoTime() - jobStart);
+
+        // 4. 通知依赖全量标签数据的预计算结果（如仪表盘的标签共现统计）重建
+        eventPublisher.publishEvent(new TagRefreshCompletedEvent((int) (processedBefore + customerIds.size())));
+    }
 
-        // 3. 创建线程池执行任务
-        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private boolean isExpired(JobCheckpoint checkpoint) {
+        return checkpoint.getStartedAt().isBefore(LocalDateTime.now().minusHours(checkpointMaxAgeHours));
+    }
 
-        try {
-            for (final Customer customer : allCustomers) {
-                executor.submit(() -> {
+    /**
+     * 【重试方法】重新刷新全量刷新重试名单中的客户，成功的移出名单，仍然失败的更新失败原因
+     */
+    @Override
+    public String retryFailedCustomers() {
+        JobProgress progress = JobProgress.current();
+        LocalDateTime startedAt = LocalDateTime.now();
+
+        progress.phase("load-customers");
+        List<Long> failedIds = jobCheckpointService.listFailedItemIds(FULL_REFRESH_JOB);
+        if (failedIds.isEmpty()) {
+            return "重试名单为空，没有需要重试的客户";
+        }
+        System.out.println("【重试刷新启动】重新刷新重试名单中的 " + failedIds.size() + " 位客户...");
+
+        progress.phase("refresh");
+        RefreshStats stats = refreshCustomersInBlocks(failedIds, loadFundInfoMap(), (blockIndex, blockIds, blockFailures) -> {
+            List<Long> succeededIds = withoutFailed(blockIds, blockFailures.keySet());
+            customerChangeLogService.clearProcessed(succeededIds, startedAt);
+            jobCheckpointService.clearFailures(FULL_REFRESH_JOB, succeededIds);
+            jobCheckpointService.recordFailures(FULL_REFRESH_JOB, progress.getJobId(), blockFailures);
+        });
+        String summary = "重试 " + failedIds.size() + " 位客户，成功 " + (failedIds.size() - stats.failed.size()) + " 位，仍失败 "
+                + stats.failed.size() + " 位，" + stats.describeTagChanges();
+        System.out.println("【重试刷新完成】" + summary);
+        return summary;
+    }
+
+    /**
+     * 应用启动完成后，如果上一次全量刷新没有跑完（检查点还在），自动提交一个任务从检查点继续。
+     * 在后台线程检查，数据库不可用时不影响启动。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedRefresh() {
+        if (!resumeOnStartup) {
+            return;
+        }
+        new ThreadFactoryBuilder().setNameFormat("tag-refresh-resume-%d").setDaemon(true).build()
+                .newThread(() -> {
                     try {
-                        // 4. 为每个客户调用定义好的事务方法进行刷新
-                        tagRefreshWorker.refreshSingleCustomer(customer, fundInfoMap);
+                        JobCheckpoint checkpoint = jobCheckpointService.getCheckpoint(FULL_REFRESH_JOB);
+                        if (checkpoint == null || isExpired(checkpoint)) {
+                            // 过期的检查点留给下一次全量刷新丢弃，启动时不触发一轮完整的全量刷新
+                            return;
+                        }
+                        Long jobId = jobRunService.submit(FULL_REFRESH_JOB, () -> {
+                            refreshAllTagsAtomically();
+                            return "全量标签刷新完成（从检查点续跑）";
+                        });
+                        System.out.println("【批量刷新续跑】发现未完成的全量刷新（已刷新到客户 " + checkpoint.getWatermark() + "），已提交续跑任务 " + jobId + "。");
                     } catch (Exception e) {
-                        System.err.println("【批量刷新错误】客户 " + customer.getId() + ": " + e.getMessage());
-                        e.printStackTrace();
+                        System.err.println("【批量刷新续跑】检查未完成的全量刷新失败: " + e.getMessage());
                     }
-                });
-            }
-        } finally {
-            executor.shutdown();
+                }).start();
+    }
+
+    /**
+     * 【增量方法】只刷新“脏客户”和时间型标签到期的客户。
+     * 这是每日定时任务的入口，耗时只与当天的业务活跃度有关，而与客户总数无关。
+     */
+    @Override
+    public void refreshDirtyTags() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long jobStart = System.nanoTime();
+
+        JobProgress progress = JobProgress.current();
+
+        // 1. 汇总待刷新的客户：被业务动作标记过的 + 时间型标签跨越阈值边界的（含从未计算过画像的）
+        progress.phase("load-customers");
+        List<Long> dirtyIds = customerChangeLogService.listDirtyCustomerIds();
+        List<Long> dueIds = customerProfileMapper.selectDueCustomerIds(LocalDate.now());
+        TreeSet<Long> targetIds = new TreeSet<>(dirtyIds);
+        targetIds.addAll(dueIds);
+        if (targetIds.isEmpty()) {
+            System.out.println("【增量刷新】没有需要刷新的客户，任务结束。");
+            return;
         }
+        System.out.println("【增量刷新启动】变更客户 " + dirtyIds.size() + " 位，阈值到期客户 " + dueIds.size()
+                + " 位，合计 " + targetIds.size() + " 位客户需要更新画像...");
 
-        // 5. 等待所有任务执行完毕
+        // 2. 分块并行刷新，每块提交后立即清除这块中刷新成功的客户的标记；失败的客户，以及中途中断时没有刷新到的客户保留标记，下次继续处理
+        progress.phase("refresh");
+        List<Long> sortedIds = new ArrayList<>(targetIds);
+        RefreshStats stats = refreshCustomersInBlocks(sortedIds, loadFundInfoMap(), (blockIndex, blockIds, blockFailures) ->
+                customerChangeLogService.clearProcessed(withoutFailed(blockIds, blockFailures.keySet()), startedAt));
+        if (stats.incomplete) {
+            progress.fail("增量刷新中断，未刷新到的客户保留变更标记，下次运行时继续处理");
+            System.err.println("【增量刷新中断】部分客户没有刷新，保留它们的变更标记，下次继续处理。");
+        } else {
+            System.out.println("【增量刷新完成】成功 " + (sortedIds.size() - stats.failed.size()) + " 位，失败 " + stats.failed.size()
+                    + " 位，" + stats.describeTagChanges());
+        }
+        metrics.recordJob("tag-refresh-dirty", !stats.incomplete && stats.failed.isEmpty(), System.nanoTime() - jobStart);
+
+        // 3. 通知依赖全量标签数据的预计算结果重建（已提交的块同样改变了标签数据）
+        eventPublisher.publishEvent(new TagRefreshCompletedEvent(sortedIds.size()));
+    }
+
+    /**
+     * 将按ID升序排列的客户切块，提交给共享的画像刷新线程池并行刷新，并等待全部完成。
+     * 在途的块数限制为线程数的两倍，不会一次性把所有块塞进共享队列。
+     * @param listener 每块刷新完成后在刷新线程上回调，可以为空；回调失败只打印日志，不影响其他块
+     * @return 本次刷新的统计结果（失败的客户、标签变化数、是否中途中断）
+     */
+    private RefreshStats refreshCustomersInBlocks(List<Long> sortedCustomerIds, Map<String, FundInfo> fundInfoMap, BlockListener listener) {
+        RefreshStats stats = new RefreshStats();
+        JobProgress progress = JobProgress.current();
+        ExecutorService executor = executorRegistry.get(ExecutorRegistry.Workload.BACKGROUND_REFRESH);
+        Semaphore inFlightBlocks = new Semaphore(executorRegistry.parallelism(ExecutorRegistry.Workload.BACKGROUND_REFRESH) * 2);
+        List<Future<?>> futures = new ArrayList<>();
+        // 中断后置位：还没开始的块直接跳过，已经在运行的块照常提交
+        AtomicBoolean stopRequested = new AtomicBoolean(false);
         try {
-            if (!executor.awaitTermination(1, TimeUnit.HOURS)) {
-                System.err.println("【批量刷新警告】线程池在1小时内未能完全终止。");
-                executor.shutdownNow();
+            // 按块提交任务：每块客户的持仓、交易、风险评估都只用几次范围查询一次性读出
+            int blockIndex = 0;
+            for (int from = 0; from < sortedCustomerIds.size(); from += REFRESH_BLOCK_SIZE, blockIndex++) {
+                final int index = blockIndex;
+                final List<Long> blockIds = sortedCustomerIds.subList(from, Math.min(from + REFRESH_BLOCK_SIZE, sortedCustomerIds.size()));
+                inFlightBlocks.acquire();
+                futures.add(executor.submit(() -> {
+                    try {
+                        if (stopRequested.get()) {
+                            return;
+                        }
+                        Map<Long, String> blockFailures = refreshBlockWithFallback(blockIds, fundInfoMap, stats);
+                        progress.addRows(blockIds.size());
+                        if (listener != null) {
+                            try {
+                                listener.onBlockDone(index, blockIds, blockFailures);
+                            } catch (Exception e) {
+                                System.err.println("【批量刷新警告】客户块 [" + blockIds.get(0) + " - " + blockIds.get(blockIds.size() - 1)
+                                        + "] 的完成记录写入失败: " + e.getMessage());
+                            }
+                        }
+                    } finally {
+                        inFlightBlocks.release();
+                    }
+                }));
             }
+            // 等待所有任务执行完毕
+            ExecutorRegistry.awaitAll(futures);
         } catch (InterruptedException e) {
-            System.err.println("【批量刷新错误】等待线程池终止时被中断。");
-            executor.shutdownNow();
+            System.err.println("【批量刷新错误】等待刷新任务完成时被中断，等待正在运行的块结束...");
+            stats.incomplete = true;
+            // 不中断正在运行的块（它们的事务和检查点要么完整提交，要么不提交），等它们结束后再返回
+            stopRequested.set(true);
+            ExecutorRegistry.awaitAllUninterruptibly(futures);
             Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("【批量刷新错误】刷新任务异常结束: " + e.getCause().getMessage());
+            stats.incomplete = true;
         }
-        System.out.println("【批量刷新完成】所有客户画像数据更新任务已完成！");
+        progress.addFailures(stats.failed.size());
+        return stats;
+    }
+
+    /**
+     * 刷新一块客户。整块事务失败时（比如某个客户的数据异常），退回到逐个客户刷新，
+     * 避免一个坏数据拖累整块的其他客户。
+     * 刷新失败的客户和标签变化数都累加到 stats 中。
+     * @return 这一块中刷新失败的客户 -> 失败原因
+     */
+    private Map<Long, String> refreshBlockWithFallback(List<Long> blockIds, Map<String, FundInfo> fundInfoMap, RefreshStats stats) {
+        Map<Long, String> blockFailures = new HashMap<>();
+        List<Customer> block;
+        try {
+            block = customerService.listByIds(blockIds).stream()
+                    .sorted(Comparator.comparing(Customer::getId))
+                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            System.err.println("【批量刷新错误】读取客户块失败: " + e.getMessage());
+            for (Long customerId : blockIds) {
+                blockFailures.put(customerId, "读取客户失败: " + e.getMessage());
+            }
+            stats.failed.putAll(blockFailures);
+            metrics.countTagRefreshFailures(blockIds.size());
+            return blockFailures;
+        }
+        if (block.isEmpty()) {
+            return blockFailures;
+        }
+        long blockStart = System.nanoTime();
+        try {
+            stats.record(tagRefreshWorker.refreshCustomerBlock(block, fundInfoMap));
+            metrics.recordTagRefresh("block", block.size(), System.nanoTime() - blockStart);
+        } catch (Exception blockError) {
+            System.err.println("【批量刷新警告】客户块 [" + block.get(0).getId() + " - " + block.get(block.size() - 1).getId()
+                    + "] 整块刷新失败，改为逐个客户刷新: " + blockError.getMessage());
+            for (Customer customer : block) {
+                long customerStart = System.nanoTime();
+                try {
+                    stats.record(tagRefreshWorker.refreshSingleCustomer(customer, fundInfoMap));
+                    metrics.recordTagRefresh("single", 1, System.nanoTime() - customerStart);
+                } catch (Exception e) {
+                    blockFailures.put(customer.getId(), e.getClass().getSimpleName() + ": " + e.getMessage());
+                    metrics.countTagRefreshFailures(1);
+                    System.err.println("【批量刷新错误】客户 " + customer.getId() + ": " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+            stats.failed.putAll(blockFailures);
+        }
+        return blockFailures;
     }
 
     /**
@@ -85,13 +365,102 @@ public class TagRefreshServiceImpl implements TagRefreshService {
      */
     @Override
     public void  refreshTagsForCustomer(Long customerId) {
+        LocalDateTime startedAt = LocalDateTime.now();
+
         // 1. 准备数据
         Customer customer = customerService.getById(customerId);
         if (customer == null) return;
-        Map<String, FundInfo> fundInfoMap = fundInfoService.list().stream()
-                .collect(Collectors.toMap(FundInfo::getFundCode, Function.identity()));
 
         // 2. 执行刷新
-        tagRefreshWorker.refreshSingleCustomer(customer, fundInfoMap);
+        long refreshStart = System.nanoTime();
+        TagRefreshWorker.TagDiff diff = tagRefreshWorker.refreshSingleCustomer(customer, loadFundInfoMap());
+        metrics.recordTagRefresh("single", 1, System.nanoTime() - refreshStart);
+        if (diff.changedCount() > 0) {
+            System.out.println("【单客户刷新】客户 " + customerId + " 新增标签 " + diff.getAdded().size() + " 条，移除 " + diff.getRemoved().size() + " 条。");
+        }
+
+        // 3. 已经是最新的画像了，夜间增量刷新无需再处理该客户
+        customerChangeLogService.clearProcessed(List.of(customerId), startedAt);
+    }
+
+    private Map<String, FundInfo> loadFundInfoMap() {
+        // 共享的基金快照，不再每次刷新（包括每笔交易后的单客户刷新）都查询基金全表
+        return fundInfoService.getSnapshot().getFundsByCode();
+    }
+
+    /**
+     * 一次批量刷新的统计结果，由多个刷新线程并发累加
+     */
+    private static class RefreshStats {
+        // 刷新失败的客户 -> 失败原因
+        private final Map<Long, String> failed = new ConcurrentHashMap<>();
+        // 等待过程中被中断或有刷新任务异常结束，部分块可能没有处理
+        private volatile boolean incomplete;
+        private final LongAdder addedTags = new LongAdder();
+        private final LongAdder removedTags = new LongAdder();
+
+        void record(TagRefreshWorker.TagDiff diff) {
+            addedTags.add(diff.getAdded().size());
+            removedTags.add(diff.getRemoved().size());
+        }
+
+        String describeTagChanges() {
+            return "标签新增 " + addedTags.sum() + " 条、移除 " + removedTags.sum() + " 条。";
+        }
+    }
+
+    /**
+     * 一块客户刷新完成（画像已提交）后的回调
+     */
+    private interface BlockListener {
+        void onBlockDone(int blockIndex, List<Long> blockIds, Map<Long, String> blockFailures);
+    }
+
+    /**
+     * 块乱序完成时的连续水位：只有某块及它之前的所有块都完成了，水位才推进到该块的最后一个客户。
+     * 推进和写检查点在同一把锁内完成，写入数据库的水位严格递增。
+     */
+    private static class BlockWatermark {
+        private final List<Long> sortedIds;
+        private final int blockSize;
+        private final long processedBefore;
+        private final boolean[] done;
+        private int nextBlock = 0;
+        private long watermark;
+
+        BlockWatermark(List<Long> sortedIds, int blockSize, long startWatermark, long processedBefore) {
+            this.sortedIds = sortedIds;
+            this.blockSize = blockSize;
+            this.processedBefore = processedBefore;
+            this.done = new boolean[(sortedIds.size() + blockSize - 1) / blockSize];
+            this.watermark = startWatermark;
+        }
+
+        /**
+         * 标记一块完成；水位因此推进时，回调 writer(新水位, 累计处理的客户数)
+         */
+        synchronized void complete(int blockIndex, BiConsumer<Long, Long> writer) {
+            done[blockIndex] = true;
+            int before = nextBlock;
+            while (nextBlock < done.length && done[nextBlock]) {
+                nextBlock++;
+            }
+            if (nextBlock > before) {
+                int end = Math.min(nextBlock * blockSize, sortedIds.size());
+                watermark = sortedIds.get(end - 1);
+                writer.accept(watermark, processedBefore + end);
+            }
+        }
+
+        synchronized long watermark() {
+            return watermark;
+        }
+    }
+
+    private List<Long> withoutFailed(List<Long> customerIds, Set<Long> failedIds) {
+        if (failedIds.isEmpty()) {
+            return customerIds;
+        }
+        return customerIds.stream().filter(id -> !failedIds.contains(id)).collect(Collectors.toList());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+-- 客户资产走势快照：每个客户每天最多一行，客户详情页的“资产总额 vs 累计净投入”曲线和月度资金流图直接按主键范围读取
+-- 交易发生时写入当天的一行（daily_flow 累加当天的净流入），每日净值任务结束后为所有客户写入当天的一行（daily_flow 为空表示当天没有交易）
+
+CREATE TABLE IF NOT EXISTS customer_asset_snapshot (
+    customer_id    BIGINT         NOT NULL COMMENT '客户ID',
+    snapshot_date  DATE           NOT NULL COMMENT '快照日期',
+    total_assets   DECIMAL(18, 2) NOT NULL DEFAULT 0 COMMENT '当天的持仓总市值',
+    net_investment DECIMAL(18, 2) NOT NULL DEFAULT 0 COMMENT '截至当天的累计净投入',
+    daily_flow     DECIMAL(18, 2) NULL COMMENT '当天的资金净流入（申购为正、赎回为负），当天没有交易时为空',
+    PRIMARY KEY (customer_id, snapshot_date)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '客户资产走势快照';
+
+-- 待重建资产快照的客户：补录了交易日期早于当天的交易（交易时只更新当天的一行），或上线前就有交易的存量客户。
+-- 每日净值任务写完当天快照后，删除 from_date 到昨天的快照并按交易明细回放重建；客户详情页只读取快照
+CREATE TABLE IF NOT EXISTS customer_snapshot_rebuild (
+    customer_id BIGINT   NOT NULL PRIMARY KEY COMMENT '客户ID',
+    from_date   DATE     NOT NULL COMMENT '已有快照从这一天起不再准确；只需补齐缺失的历史时为登记当天',
+    marked_time DATETIME NOT NULL COMMENT '最近一次被登记的时间'
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '待重建资产快照的客户';
+
+-- 存量客户：上线后的交易和每日快照只覆盖上线之后的日期，有交易的客户全部登记一次，由上线后的第一次每日任务回放补齐
+INSERT INTO customer_snapshot_rebuild (customer_id, from_date, marked_time)
+SELECT DISTINCT customer_id, CURDATE(), NOW() FROM fund_transaction
+ON DUPLICATE KEY UPDATE marked_time = VALUES(marked_time);
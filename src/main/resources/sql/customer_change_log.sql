@@ -0,0 +1,15 @@
+-- 增量标签刷新：客户变更日志（脏客户标记）与画像的下一次到期日期
+
+CREATE TABLE IF NOT EXISTS customer_change_log (
+    customer_id BIGINT      NOT NULL PRIMARY KEY COMMENT '客户ID',
+    reason      VARCHAR(32) NOT NULL COMMENT '最近一次被标记的原因',
+    marked_time DATETIME    NOT NULL COMMENT '最近一次被标记的时间',
+    KEY idx_marked_time (marked_time)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '客户变更日志（待刷新标签的客户）';
+
+ALTER TABLE customer_profile
+    ADD COLUMN next_refresh_date DATE NULL COMMENT '时间型标签下一次可能跨越阈值的日期，为空表示不会因时间流逝而变化',
+    ADD KEY idx_next_refresh_date (next_refresh_date);
+
+-- 存量画像在上线后的第一个夜间任务里全部重新计算一次，以便填充 next_refresh_date
+UPDATE customer_profile SET next_refresh_date = CURDATE();
@@ -0,0 +1,7 @@
+-- 基金 -> 持有客户的倒排索引：每日净值任务只对净值发生变化的基金的持有人重新计价
+-- InnoDB 二级索引自带主键 id，因此 (fund_code, customer_id) 同时覆盖了“基金 -> 持仓ID / 客户ID”的查询，不需要回表
+CREATE INDEX idx_holding_fund_customer ON customer_holding (fund_code, customer_id);
+
+-- 找出上次计价之后份额有变动、或者还没有市值的持仓
+CREATE INDEX idx_holding_last_update ON customer_holding (last_update_date);
+CREATE INDEX idx_holding_market_value ON customer_holding (market_value);
@@ -0,0 +1,34 @@
+-- 客户盈亏汇总表：每个客户一行，由交易增量维护、每日市值任务批量更新，盈亏页面直接按索引排序分页
+
+CREATE TABLE IF NOT EXISTS customer_pnl (
+    customer_id        BIGINT         NOT NULL PRIMARY KEY COMMENT '客户ID',
+    total_investment   DECIMAL(18, 2) NOT NULL DEFAULT 0 COMMENT '累计净投入 = 申购金额 - 赎回金额',
+    total_market_value DECIMAL(18, 2) NOT NULL DEFAULT 0 COMMENT '当前持仓总市值',
+    total_profit_loss  DECIMAL(18, 2) AS (total_market_value - total_investment) STORED COMMENT '总盈亏',
+    profit_loss_rate   DECIMAL(12, 4) AS (IF(total_investment > 0, (total_market_value - total_investment) / total_investment * 100, 0)) STORED COMMENT '总盈亏率(%)',
+    update_time        DATETIME       NOT NULL COMMENT '最近一次更新时间',
+    KEY idx_total_profit_loss (total_profit_loss),
+    KEY idx_profit_loss_rate (profit_loss_rate),
+    KEY idx_total_market_value (total_market_value)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '客户盈亏汇总';
+
+-- 上线时用存量数据全量初始化一次（之后也可以通过 CustomerPnlService.rebuildAll() 重建）
+INSERT INTO customer_pnl (customer_id, total_investment, total_market_value, update_time)
+SELECT c.id,
+       IFNULL(inv.total_investment, 0),
+       IFNULL(mv.total_market_value, 0),
+       NOW()
+FROM customer c
+LEFT JOIN (
+    SELECT customer_id, SUM(CASE WHEN transaction_type = '申购' THEN transaction_amount ELSE -transaction_amount END) AS total_investment
+    FROM fund_transaction
+    GROUP BY customer_id
+) inv ON c.id = inv.customer_id
+LEFT JOIN (
+    SELECT customer_id, SUM(market_value) AS total_market_value
+    FROM customer_holding
+    GROUP BY customer_id
+) mv ON c.id = mv.customer_id
+ON DUPLICATE KEY UPDATE total_investment   = VALUES(total_investment),
+                        total_market_value = VALUES(total_market_value),
+                        update_time        = VALUES(update_time);
@@ -0,0 +1,16 @@
+-- 基金净值历史：fund_info.net_value 只保存最新净值，每日净值任务在覆盖之前把当天所有基金的净值追加到这里
+-- 主键 (fund_code, nav_date) 同时支持“某只基金某天的净值”和“某只基金一段时间的净值走势”两种查询
+
+CREATE TABLE IF NOT EXISTS fund_nav_history (
+    fund_code VARCHAR(20)    NOT NULL COMMENT '基金代码',
+    nav_date  DATE           NOT NULL COMMENT '净值日期',
+    net_value DECIMAL(10, 4) NOT NULL COMMENT '单位净值',
+    PRIMARY KEY (fund_code, nav_date),
+    KEY idx_nav_date (nav_date)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '基金净值历史';
+
+-- 把当前的最新净值作为历史的第一天
+INSERT IGNORE INTO fund_nav_history (fund_code, nav_date, net_value)
+SELECT fund_code, DATE(IFNULL(update_time, NOW())), net_value
+FROM fund_info
+WHERE net_value IS NOT NULL;
@@ -0,0 +1,20 @@
+-- 可续跑的批处理任务：每提交一块推进一次的检查点，以及逐条失败、等待重试的条目
+
+CREATE TABLE IF NOT EXISTS job_checkpoint (
+    job_name        VARCHAR(64) NOT NULL PRIMARY KEY COMMENT '任务名称，每个任务最多一个未完成的检查点',
+    job_run_id      BIGINT      NULL COMMENT '最近一次推进检查点的运行记录ID（job_run.id）',
+    watermark       BIGINT      NOT NULL DEFAULT 0 COMMENT '已连续提交到的最大ID，续跑时从它之后开始',
+    processed_count BIGINT      NOT NULL DEFAULT 0 COMMENT '水位之前已处理的条目数',
+    started_at      DATETIME    NOT NULL COMMENT '这一轮（含续跑）最初开始的时间',
+    update_time     DATETIME    NOT NULL COMMENT '最近一次推进的时间'
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '批处理任务检查点';
+
+CREATE TABLE IF NOT EXISTS job_failed_item (
+    id          BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    job_name    VARCHAR(64)  NOT NULL COMMENT '任务名称',
+    job_run_id  BIGINT       NULL COMMENT '最近一次失败所在的运行记录ID',
+    item_id     BIGINT       NOT NULL COMMENT '失败的条目ID（如客户ID）',
+    error       VARCHAR(500) NULL COMMENT '最近一次失败的原因',
+    failed_time DATETIME     NOT NULL COMMENT '最近一次失败的时间',
+    UNIQUE KEY uk_job_item (job_name, item_id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '批处理任务的失败条目（重试名单）';
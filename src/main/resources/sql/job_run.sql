@@ -0,0 +1,18 @@
+-- 批处理任务的运行记录：每次提交（接口或定时触发）一行，运行期间定期刷新进度，结束时写入最终结果
+
+CREATE TABLE IF NOT EXISTS job_run (
+    id              BIGINT        NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    job_name        VARCHAR(64)   NOT NULL COMMENT '任务名称，如 daily-nav-market-value、tag-refresh-full',
+    trigger_type    VARCHAR(16)   NOT NULL COMMENT '触发方式：api / scheduled',
+    status          VARCHAR(16)   NOT NULL COMMENT 'QUEUED / RUNNING / SUCCEEDED / PARTIAL / FAILED / INTERRUPTED',
+    phase           VARCHAR(64)   NULL COMMENT '当前所处（或结束时所处）的阶段',
+    rows_processed  BIGINT        NOT NULL DEFAULT 0 COMMENT '已处理的行数（客户、持仓或写入的行，视任务而定）',
+    rows_per_second BIGINT        NOT NULL DEFAULT 0 COMMENT '从开始运行到现在（或结束）的平均吞吐',
+    failures        BIGINT        NOT NULL DEFAULT 0 COMMENT '失败的客户数或块数',
+    message         VARCHAR(1000) NULL COMMENT '结束时的结果摘要或错误信息',
+    submit_time     DATETIME      NOT NULL COMMENT '提交时间',
+    start_time      DATETIME      NULL COMMENT '开始运行时间',
+    end_time        DATETIME      NULL COMMENT '结束时间',
+    KEY idx_job_name_submit_time (job_name, submit_time),
+    KEY idx_status (status)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '批处理任务运行记录';
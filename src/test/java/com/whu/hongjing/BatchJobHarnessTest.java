@@ -0,0 +1,293 @@
+package com.whu.hongjing;
+
+import com.whu.hongjing.mapper.CustomerPnlMapper;
+import com.whu.hongjing.pojo.entity.FundInfo;
+import com.whu.hongjing.pojo.vo.BenchmarkDatasetVO;
+import com.whu.hongjing.service.BenchmarkDatasetGenerator;
+import com.whu.hongjing.service.FundInfoService;
+import com.whu.hongjing.service.JobProgress;
+import com.whu.hongjing.service.MockDataService;
+import com.whu.hongjing.service.ScheduledTasksService;
+import com.whu.hongjing.service.TagRefreshService;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 批处理任务的端到端基准测试：在嵌入式 H2（MySQL 兼容模式，不连接任何外部数据库）上启动完整应用，
+ * 用可复现的基准数据集播种后，依次执行四个批处理阶段，输出每个阶段的耗时、行/秒、SQL 语句数和堆内存峰值，
+ * 作为评估批处理引擎改动的基线。
+ *
+ * 默认不执行，运行方式：mvn -P harness test -Dtest=BatchJobHarnessTest
+ * 数据规模可以用系统属性调整，如 -Dhongjing.harness.customers=100000 -Dhongjing.harness.days=60。
+ *
+ * 注意：H2 不支持 MySQL 的多表 UPDATE（UPDATE ... JOIN），每日任务中盈亏汇总的市值同步由 H2CompatibilityInterceptor
+ * 改写为等价的关联子查询执行，这一部分的绝对耗时仍以真实 MySQL 为准；其余语句在两种数据库上一致。
+ * 阶段内有失败（任务自身捕获的异常、失败的块）时，该阶段在报告中标记为失败，不给出耗时和速度。
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:harness;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.sql.init.mode=always",
+        "spring.sql.init.schema-locations=classpath:harness/schema.sql",
+        "hongjing.nav-store.dir=",
+        "logging.level.com.whu.hongjing.mapper=INFO"
+})
+@EnabledIfSystemProperty(named = "hongjing.harness", matches = "true")
+class BatchJobHarnessTest {
+
+    private static final String[] COUNTED_TABLES = {"customer", "fund_transaction", "customer_holding", "customer_tag_relation"};
+    private static final String[] FUND_TYPES = {"股票型", "混合型", "债券型", "指数型", "货币型"};
+
+    @Autowired
+    private BenchmarkDatasetGenerator benchmarkDatasetGenerator;
+    @Autowired
+    private FundInfoService fundInfoService;
+    @Autowired
+    private TagRefreshService tagRefreshService;
+    @Autowired
+    private ScheduledTasksService scheduledTasksService;
+    @Autowired
+    private MockDataService mockDataService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Value("${hongjing.harness.seed:42}")
+    private long seed;
+    @Value("${hongjing.harness.funds:200}")
+    private int fundCount;
+    @Value("${hongjing.harness.customers:2000}")
+    private int customerCount;
+    @Value("${hongjing.harness.days:30}")
+    private int days;
+    @Value("${hongjing.harness.trade-percent:10}")
+    private int tradePercent;
+    @Value("${hongjing.harness.simulate-days:5}")
+    private int simulateDays;
+    @Value("${hongjing.harness.new-customers:500}")
+    private int newCustomers;
+
+    @Test
+    void measureBatchStages() {
+        seedFunds();
+        BenchmarkDatasetVO dataset = benchmarkDatasetGenerator.generate(seed, customerCount, days, tradePercent, LocalDate.of(2025, 1, 1), null);
+        System.out.println("【基准测试】播种完成：客户 " + dataset.getCustomers() + "，交易 " + dataset.getTransactions()
+                + "，持仓 " + dataset.getHoldings() + "，耗时 " + dataset.getElapsedMillis() + " ms。");
+
+        List<StageResult> results = new ArrayList<>();
+        results.add(measure("refreshAllTagsAtomically", () -> tagRefreshService.refreshAllTagsAtomically(),
+                (before, after) -> after.get("customer")));
+        results.add(measure("updateNetValueAndMarketValueDaily", () -> scheduledTasksService.updateNetValueAndMarketValueDaily(),
+                (before, after) -> after.get("customer_holding")));
+        results.add(measure("simulateTradingDays", () -> mockDataService.simulateTradingDays(simulateDays),
+                (before, after) -> after.get("fund_transaction") - before.get("fund_transaction") + after.get("customer_holding")));
+        results.add(measure("createMockCustomers", () -> mockDataService.createMockCustomers(newCustomers),
+                (before, after) -> after.get("customer") - before.get("customer")));
+
+        System.out.println("【基准测试】种子 " + seed + "，" + customerCount + " 位客户，" + days + " 天，交易概率 " + tradePercent + "%");
+        System.out.println(String.format("%-36s %10s %12s %10s %10s %10s %10s %10s",
+                "阶段", "耗时(ms)", "行数", "行/秒", "SELECT", "INSERT", "UPDATE", "DELETE"));
+        for (StageResult r : results) {
+            // 失败的阶段只执行了一部分，耗时不是有效的测量结果
+            System.out.println(String.format("%-36s %10s %12d %10s %10d %10d %10d %10d   堆峰值 %d MB%s",
+                    r.name, r.failure == null ? String.valueOf(r.elapsedMillis) : "失败", r.rows,
+                    r.failure == null ? String.valueOf(r.rows * 1000 / Math.max(1, r.elapsedMillis)) : "-",
+                    r.statements.getOrDefault(SqlCommandType.SELECT, 0L), r.statements.getOrDefault(SqlCommandType.INSERT, 0L),
+                    r.statements.getOrDefault(SqlCommandType.UPDATE, 0L), r.statements.getOrDefault(SqlCommandType.DELETE, 0L),
+                    r.peakHeapBytes / (1024 * 1024), r.failure == null ? "" : "   " + r.failure));
+        }
+
+        assertTrue(results.get(3).rows > 0, "创建模拟客户阶段没有写入任何客户");
+    }
+
+    private void seedFunds() {
+        Random random = new Random(seed);
+        List<FundInfo> funds = new ArrayList<>(fundCount);
+        for (int i = 0; i < fundCount; i++) {
+            FundInfo fund = new FundInfo();
+            fund.setFundCode(String.format("%06d", i));
+            fund.setFundName("基准基金" + i);
+            fund.setFundType(FUND_TYPES[random.nextInt(FUND_TYPES.length)]);
+            fund.setRiskScore(1 + random.nextInt(5));
+            fund.setNetValue(BigDecimal.valueOf(5000 + random.nextInt(25000), 4));
+            funds.add(fund);
+        }
+        fundInfoService.saveBatch(funds);
+        fundInfoService.reloadSnapshot();
+    }
+
+    private StageResult measure(String name, Runnable stage, RowCounter rowCounter) {
+        Map<String, Long> before = countRows();
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+        statementCounter.reset();
+
+        // 与作为异步任务运行时一样绑定进度对象，阶段内被捕获的失败通过它报告出来
+        JobProgress progress = new JobProgress(null);
+        JobProgress.bind(progress);
+        long start = System.nanoTime();
+        try {
+            stage.run();
+        } finally {
+            JobProgress.unbind();
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        StageResult result = new StageResult();
+        result.name = name;
+        result.elapsedMillis = elapsedMillis;
+        if (progress.getFailureMessage() != null) {
+            result.failure = progress.getFailureMessage();
+        } else if (progress.getFailures() > 0) {
+            result.failure = progress.getFailures() + " 处部分失败";
+        }
+        result.statements = statementCounter.snapshot();
+        // 各堆内存池峰值之和，是整个堆峰值的一个上界
+        result.peakHeapBytes = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+        result.rows = rowCounter.rows(before, countRows());
+        return result;
+    }
+
+    private Map<String, Long> countRows() {
+        Map<String, Long> counts = new HashMap<>();
+        for (String table : COUNTED_TABLES) {
+            counts.put(table, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class));
+        }
+        return counts;
+    }
+
+    private interface RowCounter {
+        long rows(Map<String, Long> before, Map<String, Long> after);
+    }
+
+    private static class StageResult {
+        private String name;
+        private long elapsedMillis;
+        private long rows;
+        private long peakHeapBytes;
+        private Map<SqlCommandType, Long> statements;
+        // 阶段内的失败说明，为空表示全部成功
+        private String failure;
+    }
+
+    @TestConfiguration
+    static class HarnessConfig {
+        @Bean
+        StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+
+        @Bean
+        H2CompatibilityInterceptor h2CompatibilityInterceptor() {
+            return new H2CompatibilityInterceptor();
+        }
+    }
+
+    /**
+     * H2 不支持 MySQL 的多表 UPDATE：把盈亏汇总的市值同步（CustomerPnlMapper.refreshMarketValueRange）
+     * 在同一个连接上改为等价的关联子查询执行，结果与原语句一致（没有持仓的客户市值归零）
+     */
+    @Intercepts({
+            @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+    })
+    static class H2CompatibilityInterceptor implements Interceptor {
+
+        private static final String REFRESH_MARKET_VALUE_RANGE = CustomerPnlMapper.class.getName() + ".refreshMarketValueRange";
+        private static final String H2_REFRESH_MARKET_VALUE_RANGE = "UPDATE customer_pnl p"
+                + " SET total_market_value = IFNULL((SELECT SUM(h.market_value) FROM customer_holding h WHERE h.customer_id = p.customer_id), 0),"
+                + " update_time = NOW()"
+                + " WHERE p.customer_id BETWEEN ? AND ?";
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+            if (!REFRESH_MARKET_VALUE_RANGE.equals(statement.getId())) {
+                return invocation.proceed();
+            }
+            Map<?, ?> params = (Map<?, ?>) invocation.getArgs()[1];
+            Executor executor = (Executor) invocation.getTarget();
+            executor.clearLocalCache();
+            Connection connection = executor.getTransaction().getConnection();
+            try (PreparedStatement update = connection.prepareStatement(H2_REFRESH_MARKET_VALUE_RANGE)) {
+                update.setLong(1, ((Number) params.get("fromId")).longValue());
+                update.setLong(2, ((Number) params.get("toId")).longValue());
+                return update.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * 按语句类型统计经过 MyBatis 执行的 SQL 次数（批量执行器中每一行计一次）
+     */
+    @Intercepts({
+            @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+            @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+            @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+    })
+    static class StatementCounter implements Interceptor {
+
+        private final Map<SqlCommandType, AtomicLong> counts = new EnumMap<>(SqlCommandType.class);
+
+        StatementCounter() {
+            for (SqlCommandType type : SqlCommandType.values()) {
+                counts.put(type, new AtomicLong());
+            }
+        }
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+            counts.get(statement.getSqlCommandType()).incrementAndGet();
+            return invocation.proceed();
+        }
+
+        void reset() {
+            counts.values().forEach(count -> count.set(0));
+        }
+
+        Map<SqlCommandType, Long> snapshot() {
+            Map<SqlCommandType, Long> result = new EnumMap<>(SqlCommandType.class);
+            counts.forEach((type, count) -> result.put(type, count.get()));
+            return result;
+        }
+    }
+}
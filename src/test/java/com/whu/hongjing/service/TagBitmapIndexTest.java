@@ -0,0 +1,75 @@
+package com.whu.hongjing.service;
+
+import com.whu.hongjing.event.CustomerTagsChangedEvent;
+import com.whu.hongjing.mapper.CustomerTagRelationMapper;
+import com.whu.hongjing.pojo.entity.CustomerTagRelation;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 验证标签差异清理重复行时，增量更新后的位图索引与数据库中剩下的标签一致。
+ */
+class TagBitmapIndexTest {
+
+    private static final long CUSTOMER_ID = 7L;
+
+    @Test
+    void duplicateRowsOfKeptTagDoNotRemoveCustomerFromIndex() {
+        // 库中：保留的标签有两行重复，失效的标签也有两行重复
+        List<CustomerTagRelation> existingTags = List.of(
+                row(1L, "高资产", "资产规模"),
+                row(2L, "高资产", "资产规模"),
+                row(3L, "短期持有", "持仓周期"),
+                row(4L, "短期持有", "持仓周期"));
+        TagBitmapIndex index = indexOver(existingTags);
+
+        TagRefreshWorker.TagDiff diff = new TagRefreshWorker.TagDiff();
+        diff.compare(existingTags, List.of(
+                new CustomerTagRelation(CUSTOMER_ID, "高资产", "资产规模"),
+                new CustomerTagRelation(CUSTOMER_ID, "长期持有", "持仓周期")));
+
+        assertEquals(1, diff.getAdded().size());
+        assertEquals(1, diff.getRemoved().size());
+        assertEquals(2, diff.getDuplicates().size());
+        index.onTagsChanged(new CustomerTagsChangedEvent(diff.getAdded(), diff.getRemoved()));
+
+        assertContainsCustomer(index, "高资产");
+        assertContainsCustomer(index, "长期持有");
+        RoaringBitmap removed = index.findCustomersWithAllTags(List.of("短期持有"));
+        assertNotNull(removed);
+        assertFalse(removed.contains((int) CUSTOMER_ID), "失效的标签应从索引中移除");
+    }
+
+    private static void assertContainsCustomer(TagBitmapIndex index, String tagName) {
+        RoaringBitmap customers = index.findCustomersWithAllTags(List.of(tagName));
+        assertNotNull(customers, "索引应已就绪");
+        assertTrue(customers.contains((int) CUSTOMER_ID), "客户仍拥有标签 " + tagName + "，索引中不应被移除");
+    }
+
+    private static TagBitmapIndex indexOver(List<CustomerTagRelation> rows) {
+        CustomerTagRelationMapper mapper = mock(CustomerTagRelationMapper.class);
+        when(mapper.selectTagsAfterId(anyLong(), anyInt())).thenReturn(new ArrayList<>());
+        when(mapper.selectTagsAfterId(eq(0L), anyInt())).thenReturn(rows);
+        TagBitmapIndex index = new TagBitmapIndex();
+        ReflectionTestUtils.setField(index, "customerTagRelationMapper", mapper);
+        index.rebuild();
+        return index;
+    }
+
+    private static CustomerTagRelation row(Long id, String tagName, String tagCategory) {
+        CustomerTagRelation tag = new CustomerTagRelation(CUSTOMER_ID, tagName, tagCategory);
+        tag.setId(id);
+        return tag;
+    }
+}
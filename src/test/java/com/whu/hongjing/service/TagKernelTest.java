@@ -0,0 +1,157 @@
+package com.whu.hongjing.service;
+
+import com.whu.hongjing.constants.TaggingConstants;
+import com.whu.hongjing.pojo.entity.CustomerHolding;
+import com.whu.hongjing.pojo.entity.FundInfo;
+import com.whu.hongjing.pojo.entity.FundTransaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 验证定点数内核与原先 BigDecimal 写法的分类结果完全一致。
+ * 两者的内存分配量对比依赖 JIT 和 GC，不在单元测试中断言，见 JMH 基准 TagKernelBenchmark（mvn -P jmh，-prof gc）。
+ */
+class TagKernelTest {
+
+    private static final int CUSTOMER_COUNT = 100_000;
+    private static final long SEED = 20250714L;
+
+    @Test
+    void fixedPointLabelsMatchBigDecimalReference() {
+        Random random = new Random(SEED);
+        Map<String, FundInfo> fundInfoMap = randomFunds(random, 200);
+        List<String> fundCodes = new ArrayList<>(fundInfoMap.keySet());
+
+        for (int i = 0; i < CUSTOMER_COUNT; i++) {
+            List<CustomerHolding> holdings = randomHoldings(random, fundCodes);
+
+            BigDecimal referenceTotal = referenceTotal(holdings);
+            assertEquals(0, referenceTotal.compareTo(TagKernel.fromCents(TagKernel.totalMarketValueCents(holdings))), "总市值不一致");
+            assertEquals(referenceAssetLabel(referenceTotal), TagKernel.assetLabel(TagKernel.totalMarketValueCents(holdings)), "资产标签不一致");
+            assertEquals(referenceActualRiskLabel(holdings, fundInfoMap),
+                    TagKernel.actualRiskLabel(TagKernel.actualRiskLevel(holdings, fundInfoMap)), "实盘风险标签不一致");
+        }
+    }
+
+    @Test
+    void netFlowsMatchBigDecimalReference() {
+        Random random = new Random(SEED);
+        LocalDateTime now = LocalDateTime.of(2025, 7, 14, 10, 30);
+
+        for (int i = 0; i < CUSTOMER_COUNT / 10; i++) {
+            List<FundTransaction> transactions = randomTransactions(random, now);
+            CustomerTradeMetrics metrics = CustomerTradeMetrics.of(transactions, now);
+
+            BigDecimal net3m = referenceNetPurchase(transactions, now.minusMonths(TaggingConstants.RECENCY_STAGNANT_MONTHS), now);
+            BigDecimal net6m = referenceNetPurchase(transactions, now.minusMonths(TaggingConstants.RECENCY_OUTFLOW_MONTHS), now);
+            assertEquals(0, net3m.compareTo(TagKernel.fromCents(metrics.getNetFlow3mCents())), "近3个月净流入不一致");
+            assertEquals(0, net6m.compareTo(TagKernel.fromCents(metrics.getNetFlow6mCents())), "近6个月净流入不一致");
+        }
+    }
+
+    @Test
+    void boundaryScoresRoundLikeBigDecimal() {
+        // 恰好落在阈值上、以及四舍五入后才越过阈值的分数
+        assertEquals(450, TagKernel.actualRiskScoreHundredths(4495, 1000));
+        assertEquals(449, TagKernel.actualRiskScoreHundredths(44949, 10000));
+        assertEquals(150, TagKernel.actualRiskScoreHundredths(3, 2));
+        assertEquals(TaggingConstants.LABEL_ASSET_HIGH, TagKernel.assetLabel(TagKernel.toCents(new BigDecimal("500000.00"))));
+        assertEquals(TaggingConstants.LABEL_ASSET_MEDIUM, TagKernel.assetLabel(TagKernel.toCents(new BigDecimal("499999.99"))));
+    }
+
+    // ---------------- 原先的 BigDecimal 写法，作为对照 ----------------
+
+    private BigDecimal referenceTotal(List<CustomerHolding> holdings) {
+        return holdings.stream().map(CustomerHolding::getMarketValue).filter(Objects::nonNull).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private String referenceAssetLabel(BigDecimal mValue) {
+        if (mValue.compareTo(TaggingConstants.ASSET_THRESHOLD_HIGH) >= 0) return TaggingConstants.LABEL_ASSET_HIGH;
+        if (mValue.compareTo(TaggingConstants.ASSET_THRESHOLD_LOW) >= 0) return TaggingConstants.LABEL_ASSET_MEDIUM;
+        return TaggingConstants.LABEL_ASSET_LOW;
+    }
+
+    private String referenceActualRiskLabel(List<CustomerHolding> holdings, Map<String, FundInfo> fundInfoMap) {
+        if (holdings.isEmpty()) return TaggingConstants.LABEL_ACTUAL_RISK_UNKNOWN;
+        BigDecimal totalMarketValue = referenceTotal(holdings);
+        if (totalMarketValue.compareTo(BigDecimal.ZERO) <= 0) return TaggingConstants.LABEL_ACTUAL_RISK_UNKNOWN;
+
+        BigDecimal weightedRiskSum = BigDecimal.ZERO;
+        for (CustomerHolding holding : holdings) {
+            FundInfo fund = fundInfoMap.get(holding.getFundCode());
+            if (fund != null && fund.getRiskScore() != null && holding.getMarketValue() != null) {
+                weightedRiskSum = weightedRiskSum.add(holding.getMarketValue().multiply(new BigDecimal(fund.getRiskScore())));
+            }
+        }
+        double actualRiskScore = weightedRiskSum.divide(totalMarketValue, 2, RoundingMode.HALF_UP).doubleValue();
+        if (actualRiskScore >= TaggingConstants.ACTUAL_RISK_THRESHOLD_AGGRESSIVE) return TaggingConstants.LABEL_ACTUAL_RISK_AGGRESSIVE;
+        if (actualRiskScore >= TaggingConstants.ACTUAL_RISK_THRESHOLD_GROWTH) return TaggingConstants.LABEL_ACTUAL_RISK_GROWTH;
+        if (actualRiskScore >= TaggingConstants.ACTUAL_RISK_THRESHOLD_BALANCED) return TaggingConstants.LABEL_ACTUAL_RISK_BALANCED;
+        if (actualRiskScore >= TaggingConstants.ACTUAL_RISK_THRESHOLD_STEADY) return TaggingConstants.LABEL_ACTUAL_RISK_STEADY;
+        return TaggingConstants.LABEL_ACTUAL_RISK_CONSERVATIVE;
+    }
+
+    private BigDecimal referenceNetPurchase(List<FundTransaction> transactions, LocalDateTime start, LocalDateTime end) {
+        BigDecimal totalPurchase = transactions.stream()
+                .filter(t -> "申购".equals(t.getTransactionType()) && !t.getTransactionTime().isBefore(start) && t.getTransactionTime().isBefore(end))
+                .map(FundTransaction::getTransactionAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal totalRedeem = transactions.stream()
+                .filter(t -> "赎回".equals(t.getTransactionType()) && !t.getTransactionTime().isBefore(start) && t.getTransactionTime().isBefore(end))
+                .map(FundTransaction::getTransactionAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return totalPurchase.subtract(totalRedeem);
+    }
+
+    // ---------------- 随机数据 ----------------
+
+    private Map<String, FundInfo> randomFunds(Random random, int count) {
+        Map<String, FundInfo> funds = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            FundInfo fund = new FundInfo();
+            fund.setFundCode(String.format("%06d", i));
+            // 少量基金没有风险评分，它们的市值只计入分母
+            fund.setRiskScore(random.nextInt(20) == 0 ? null : 1 + random.nextInt(5));
+            funds.put(fund.getFundCode(), fund);
+        }
+        return funds;
+    }
+
+    private List<CustomerHolding> randomHoldings(Random random, List<String> fundCodes) {
+        int size = random.nextInt(12);
+        List<CustomerHolding> holdings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            CustomerHolding holding = new CustomerHolding();
+            holding.setId((long) i);
+            // 偶尔出现不在基金表里的代码
+            holding.setFundCode(random.nextInt(50) == 0 ? "UNKNOWN" : fundCodes.get(random.nextInt(fundCodes.size())));
+            if (random.nextInt(30) != 0) {
+                // 单只持仓最多30万，多只累加后分布在10万/50万两个资产阈值两侧；也混入少量几分钱的小额持仓
+                long cents = random.nextInt(4) == 0 ? random.nextInt(100) : (long) (random.nextDouble() * 30_000_000L);
+                holding.setMarketValue(BigDecimal.valueOf(cents, 2));
+            }
+            holdings.add(holding);
+        }
+        return holdings;
+    }
+
+    private List<FundTransaction> randomTransactions(Random random, LocalDateTime now) {
+        int size = random.nextInt(40);
+        List<FundTransaction> transactions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            FundTransaction tx = new FundTransaction();
+            tx.setFundCode(String.format("%06d", random.nextInt(20)));
+            tx.setTransactionType(random.nextBoolean() ? "申购" : "赎回");
+            tx.setTransactionAmount(BigDecimal.valueOf(random.nextInt(10_000_000), 2));
+            tx.setTransactionTime(now.minusMinutes(random.nextInt(60 * 24 * 365)).plusMinutes(random.nextInt(5) == 0 ? 60 : 0));
+            transactions.add(tx);
+        }
+        return transactions;
+    }
+}
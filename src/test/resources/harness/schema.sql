@@ -0,0 +1,170 @@
+-- 批处理基准测试（BatchJobHarnessTest）使用的嵌入式 H2 表结构（MODE=MySQL）
+-- 与线上 MySQL 表结构保持同样的列和索引；生成列、独立建索引等写法按 H2 的语法调整
+
+CREATE TABLE IF NOT EXISTS customer (
+    id          BIGINT AUTO_INCREMENT PRIMARY KEY,
+    name        VARCHAR(50),
+    gender      VARCHAR(10),
+    id_type     VARCHAR(20),
+    id_number   VARCHAR(30),
+    birth_date  DATE,
+    nationality VARCHAR(50),
+    occupation  VARCHAR(50),
+    phone       VARCHAR(20),
+    address     VARCHAR(255),
+    create_time DATETIME,
+    update_time DATETIME,
+    CONSTRAINT uk_customer_id_number UNIQUE (id_number),
+    CONSTRAINT uk_customer_phone UNIQUE (phone)
+);
+
+CREATE TABLE IF NOT EXISTS risk_assessment (
+    id              BIGINT AUTO_INCREMENT PRIMARY KEY,
+    customer_id     BIGINT NOT NULL,
+    risk_score      INT,
+    risk_level      VARCHAR(20),
+    assessment_date DATE,
+    create_time     DATETIME,
+    update_time     DATETIME
+);
+CREATE INDEX IF NOT EXISTS idx_assessment_customer ON risk_assessment (customer_id);
+
+CREATE TABLE IF NOT EXISTS fund_info (
+    fund_code   VARCHAR(20) PRIMARY KEY,
+    fund_name   VARCHAR(100),
+    fund_type   VARCHAR(50),
+    risk_score  INT,
+    net_value   DECIMAL(10, 4),
+    create_time DATETIME,
+    update_time DATETIME
+);
+
+CREATE TABLE IF NOT EXISTS fund_transaction (
+    id                 BIGINT AUTO_INCREMENT PRIMARY KEY,
+    customer_id        BIGINT NOT NULL,
+    fund_code          VARCHAR(20) NOT NULL,
+    transaction_type   VARCHAR(10),
+    transaction_amount DECIMAL(18, 2),
+    transaction_shares DECIMAL(18, 2),
+    share_price        DECIMAL(10, 4),
+    transaction_time   DATETIME,
+    status             VARCHAR(20),
+    create_time        DATETIME,
+    update_time        DATETIME
+);
+CREATE INDEX IF NOT EXISTS idx_transaction_customer ON fund_transaction (customer_id, transaction_time);
+
+CREATE TABLE IF NOT EXISTS customer_holding (
+    id               BIGINT AUTO_INCREMENT PRIMARY KEY,
+    customer_id      BIGINT NOT NULL,
+    fund_code        VARCHAR(20) NOT NULL,
+    total_shares     DECIMAL(18, 2),
+    market_value     DECIMAL(18, 2),
+    average_cost     DECIMAL(10, 4),
+    last_update_date DATETIME,
+    create_time      DATETIME,
+    update_time      DATETIME
+);
+CREATE INDEX IF NOT EXISTS idx_holding_customer ON customer_holding (customer_id);
+CREATE INDEX IF NOT EXISTS idx_holding_fund_customer ON customer_holding (fund_code, customer_id);
+CREATE INDEX IF NOT EXISTS idx_holding_last_update ON customer_holding (last_update_date);
+CREATE INDEX IF NOT EXISTS idx_holding_market_value ON customer_holding (market_value);
+
+CREATE TABLE IF NOT EXISTS customer_profile (
+    customer_id            BIGINT PRIMARY KEY,
+    total_market_value     DECIMAL(18, 2),
+    avg_holding_days       INT,
+    recency_days           INT,
+    frequency_90d          INT,
+    has_regular_investment BOOLEAN,
+    next_refresh_date      DATE,
+    update_time            DATETIME,
+    version                INT DEFAULT 0
+);
+CREATE INDEX IF NOT EXISTS idx_next_refresh_date ON customer_profile (next_refresh_date);
+
+CREATE TABLE IF NOT EXISTS customer_tag_relation (
+    id           BIGINT AUTO_INCREMENT PRIMARY KEY,
+    customer_id  BIGINT NOT NULL,
+    tag_name     VARCHAR(50),
+    tag_category VARCHAR(50),
+    create_time  DATETIME
+);
+CREATE INDEX IF NOT EXISTS idx_tag_customer ON customer_tag_relation (customer_id);
+CREATE INDEX IF NOT EXISTS idx_tag_name ON customer_tag_relation (tag_name, customer_id);
+
+CREATE TABLE IF NOT EXISTS customer_change_log (
+    customer_id BIGINT PRIMARY KEY,
+    reason      VARCHAR(32) NOT NULL,
+    marked_time DATETIME NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_marked_time ON customer_change_log (marked_time);
+
+CREATE TABLE IF NOT EXISTS customer_pnl (
+    customer_id        BIGINT PRIMARY KEY,
+    total_investment   DECIMAL(18, 2) NOT NULL DEFAULT 0,
+    total_market_value DECIMAL(18, 2) NOT NULL DEFAULT 0,
+    total_profit_loss  DECIMAL(18, 2) GENERATED ALWAYS AS (total_market_value - total_investment),
+    profit_loss_rate   DECIMAL(12, 4) GENERATED ALWAYS AS (CASE WHEN total_investment > 0 THEN (total_market_value - total_investment) / total_investment * 100 ELSE 0 END),
+    update_time        DATETIME NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_total_profit_loss ON customer_pnl (total_profit_loss);
+CREATE INDEX IF NOT EXISTS idx_profit_loss_rate ON customer_pnl (profit_loss_rate);
+CREATE INDEX IF NOT EXISTS idx_total_market_value ON customer_pnl (total_market_value);
+
+CREATE TABLE IF NOT EXISTS customer_asset_snapshot (
+    customer_id    BIGINT NOT NULL,
+    snapshot_date  DATE NOT NULL,
+    total_assets   DECIMAL(18, 2) NOT NULL DEFAULT 0,
+    net_investment DECIMAL(18, 2) NOT NULL DEFAULT 0,
+    daily_flow     DECIMAL(18, 2),
+    PRIMARY KEY (customer_id, snapshot_date)
+);
+
+CREATE TABLE IF NOT EXISTS customer_snapshot_rebuild (
+    customer_id BIGINT PRIMARY KEY,
+    from_date   DATE NOT NULL,
+    marked_time DATETIME NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS fund_nav_history (
+    fund_code VARCHAR(20) NOT NULL,
+    nav_date  DATE NOT NULL,
+    net_value DECIMAL(10, 4) NOT NULL,
+    PRIMARY KEY (fund_code, nav_date)
+);
+CREATE INDEX IF NOT EXISTS idx_nav_date ON fund_nav_history (nav_date);
+
+CREATE TABLE IF NOT EXISTS job_run (
+    id              BIGINT AUTO_INCREMENT PRIMARY KEY,
+    job_name        VARCHAR(64) NOT NULL,
+    trigger_type    VARCHAR(16) NOT NULL,
+    status          VARCHAR(16) NOT NULL,
+    phase           VARCHAR(64),
+    rows_processed  BIGINT NOT NULL DEFAULT 0,
+    rows_per_second BIGINT NOT NULL DEFAULT 0,
+    failures        BIGINT NOT NULL DEFAULT 0,
+    message         VARCHAR(1000),
+    submit_time     DATETIME NOT NULL,
+    start_time      DATETIME,
+    end_time        DATETIME
+);
+
+CREATE TABLE IF NOT EXISTS job_checkpoint (
+    job_name        VARCHAR(64) PRIMARY KEY,
+    job_run_id      BIGINT,
+    watermark       BIGINT NOT NULL DEFAULT 0,
+    processed_count BIGINT NOT NULL DEFAULT 0,
+    started_at      DATETIME NOT NULL,
+    update_time     DATETIME NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS job_failed_item (
+    id          BIGINT AUTO_INCREMENT PRIMARY KEY,
+    job_name    VARCHAR(64) NOT NULL,
+    job_run_id  BIGINT,
+    item_id     BIGINT NOT NULL,
+    error       VARCHAR(500),
+    failed_time DATETIME NOT NULL,
+    UNIQUE (job_name, item_id)
+);